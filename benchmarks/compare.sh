@@ -0,0 +1,10 @@
+#!/usr/bin/env bash
+# Compare two result files of benchmarks/run.sh, e.g. of two commits, flagging throughput changes beyond the threshold.
+# Exits with status 1 when any benchmark regressed. Run from the project root:
+#   benchmarks/compare.sh benchmarks/results/<baseline>.json benchmarks/results/<current>.json [threshold percent]
+set -euo pipefail
+
+if [ ! -f benchmarks/target/benchmarks.jar ]; then
+    ./mvnw -B -q -f benchmarks/pom.xml package
+fi
+java -cp benchmarks/target/benchmarks.jar com.bc.benchmarks.CompareResults "$@"
@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# JMH benchmarks of the utils hot paths with the GC profiler, throughput and bytes allocated per operation written
+# as JSON to benchmarks/results/<commit>.json for benchmarks/compare.sh. By default the working tree is benchmarked,
+# --ref benchmarks another commit, built in a temporary worktree. Run from the project root:
+#   benchmarks/run.sh [--ref <git ref>] [JMH options, e.g. a benchmark regex, -f 3 or -p cryptogramVersionNumber=CVN_18]
+set -euo pipefail
+
+SOURCE_DIR=$(pwd)
+NAME=$(git rev-parse --short HEAD)
+if [ "${1:-}" = "--ref" ]; then
+    NAME=$(git rev-parse --short "$2")
+    WORK_DIR=$(mktemp -d)
+    trap 'git worktree remove --force "$WORK_DIR/tree" 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+    git worktree add --detach "$WORK_DIR/tree" "$2" > /dev/null
+    SOURCE_DIR="$WORK_DIR/tree"
+    shift 2
+elif ! git diff --quiet HEAD -- src; then
+    NAME="$NAME-dirty"
+fi
+
+# The benchmark jar bundles the emv-utilities artifact installed from SOURCE_DIR
+(cd "$SOURCE_DIR" && ./mvnw -B -q install -DskipTests)
+./mvnw -B -q -f benchmarks/pom.xml package
+mkdir -p benchmarks/results
+java -jar benchmarks/target/benchmarks.jar -prof gc -rf json -rff "benchmarks/results/$NAME.json" "$@"
+echo "Results written to benchmarks/results/$NAME.json"
@@ -0,0 +1,92 @@
+package com.bc.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compare two JMH JSON result files, e.g. of two commits, benchmark by benchmark: throughput and allocated bytes per
+ * operation, and the throughput change. Changes larger than the threshold, 5% by default, are flagged, and the exit
+ * status is 1 when any throughput dropped by more than the threshold.
+ * Usage: CompareResults baseline.json current.json [threshold percent]
+ */
+public final class CompareResults {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults baseline.json current.json [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+
+        boolean regressed = false;
+        System.out.printf("%-70s %14s %14s %8s %12s %12s%n", "Benchmark", "Baseline", "Current", "Change",
+                "Base B/op", "Curr B/op");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode result = entry.getValue();
+            JsonNode baselineResult = baseline.get(entry.getKey());
+            double score = result.path("primaryMetric").path("score").asDouble();
+            if (baselineResult == null) {
+                System.out.printf("%-70s %14s %14.3f %8s %12s %12s%n", entry.getKey(), "-", score, "new", "-",
+                        allocation(result));
+                continue;
+            }
+            double baselineScore = baselineResult.path("primaryMetric").path("score").asDouble();
+            double change = baselineScore == 0 ? 0 : (score - baselineScore) / baselineScore * 100;
+            // Throughput modes are better when higher, time modes when lower
+            boolean higherIsBetter = "thrpt".equals(result.path("mode").asText());
+            boolean worse = higherIsBetter ? change < -threshold : change > threshold;
+            boolean better = higherIsBetter ? change > threshold : change < -threshold;
+            regressed |= worse;
+            System.out.printf("%-70s %14.3f %14.3f %+7.1f%% %12s %12s%s%n", entry.getKey(), baselineScore, score,
+                    change, allocation(baselineResult), allocation(result),
+                    worse ? "  REGRESSION" : better ? "  improvement" : "");
+        }
+        for (String benchmark : baseline.keySet()) {
+            if (!current.containsKey(benchmark)) {
+                System.out.printf("%-70s %14s%n", benchmark, "not in current");
+            }
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * @param file JMH result file written with -rf json
+     * @return Results by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder name = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.bc.benchmarks.", ""));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                name.append(name.indexOf("[") < 0 ? " [" : ", ").append(param.getKey()).append('=')
+                        .append(param.getValue().asText());
+            }
+            if (name.indexOf("[") >= 0) {
+                name.append(']');
+            }
+            results.put(name.toString(), result);
+        }
+        return results;
+    }
+
+    private static String allocation(JsonNode result) {
+        JsonNode allocation = result.path("secondaryMetrics").path(ALLOCATION);
+        return allocation.isMissingNode() ? "-" : String.format("%.0f", allocation.path("score").asDouble());
+    }
+}
@@ -0,0 +1,69 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.TdeaBackend;
+import com.bc.utils.CryptoFunctions;
+import com.bc.utils.HexCodec;
+import com.bc.utils.Xor;
+import org.apache.commons.codec.DecoderException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TDEA encryption through the hexadecimal {@link CryptoFunctions} adapter, and {@link Xor} on hexadecimal strings and
+ * byte arrays. The key schedule is cached after the first invocation, as it is for hot keys in the application. TDEA
+ * runs on each emv.tdea.backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoPrimitivesBenchmark {
+
+    @Param({"JCE", "SOFTWARE"})
+    public TdeaBackend tdeaBackend;
+
+    private final CryptoFunctions cryptoFunctions = new CryptoFunctions();
+    private final Xor xor = new Xor();
+    private byte[] leftBytes;
+    private byte[] rightBytes;
+    private byte[] xorResult;
+
+    @Setup
+    public void setup() throws DecoderException {
+        Fixtures.selectTdeaBackend(tdeaBackend);
+        cryptoFunctions.setKey(Fixtures.KEY);
+        cryptoFunctions.setInputData("4761739001010010");
+        leftBytes = HexCodec.decode(Fixtures.KEY);
+        rightBytes = HexCodec.decode(Fixtures.OTHER_KEY);
+        xorResult = new byte[leftBytes.length];
+    }
+
+    @Benchmark
+    public String tdeaEncrypt() throws Exception {
+        return cryptoFunctions.tDEAEncrypt();
+    }
+
+    @Benchmark
+    public String xorHex() throws DecoderException {
+        return xor.exclusiveOr(Fixtures.KEY, Fixtures.OTHER_KEY);
+    }
+
+    @Benchmark
+    public byte[] xorBytes() {
+        Xor.exclusiveOr(leftBytes, rightBytes, xorResult);
+        return xorResult;
+    }
+}
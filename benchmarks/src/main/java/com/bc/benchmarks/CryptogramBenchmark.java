@@ -0,0 +1,110 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.TdeaBackend;
+import com.bc.enums.UdkDerivationOption;
+import com.bc.utils.ArpcGen;
+import com.bc.utils.ArqcGen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ArqcGen#getArqc()} end to end, UDK and session key derivation included, by cryptogram version, and
+ * {@link ArpcGen#getArpc()} with both ARPC methods, on each emv.tdea.backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptogramBenchmark {
+
+    @Param({"JCE", "SOFTWARE"})
+    public TdeaBackend tdeaBackend;
+
+    @Setup
+    public void setup() {
+        Fixtures.selectTdeaBackend(tdeaBackend);
+    }
+
+    /**
+     * ARQC generator for one cryptogram version, with its own ATC sequence.
+     */
+    @State(Scope.Thread)
+    public static class ArqcState {
+
+        @Param({"CVN_10", "CVN_18", "CVN_22"})
+        public CryptogramVersionNumber cryptogramVersionNumber;
+
+        private final ArqcGen arqcGen = new ArqcGen();
+        private int atcIndex;
+
+        @Setup
+        public void setup() throws Exception {
+            arqcGen.setMdkAc(Fixtures.KEY);
+            arqcGen.setPan(Fixtures.PAN);
+            arqcGen.setPanSeqNbr(Fixtures.PAN_SEQUENCE);
+            arqcGen.setAmountAuthorised("000000001000");
+            arqcGen.setAmountOther("000000000000");
+            arqcGen.setTerminalCountryCode("0826");
+            arqcGen.setTerminalVerificationResults("0000008000");
+            arqcGen.setTransactionCurrencyCode("0826");
+            arqcGen.setTransactionDate("230901");
+            arqcGen.setTransactionType("00");
+            arqcGen.setUnpredictableNumber("A1B2C3D4");
+            arqcGen.setApplicationInterchangeProfile("3800");
+            arqcGen.setIssuerApplicationData("06010A03A00000");
+            arqcGen.setUdkDerivationOption(UdkDerivationOption.Option_A);
+            arqcGen.setCryptogramVersionNumber(cryptogramVersionNumber);
+        }
+    }
+
+    /**
+     * ARPC generators for the ARC and CSU methods.
+     */
+    @State(Scope.Thread)
+    public static class ArpcState {
+
+        private final ArpcGen arcArpcGen = new ArpcGen();
+        private final ArpcGen csuArpcGen = new ArpcGen();
+
+        @Setup
+        public void setup() {
+            arcArpcGen.setSessionKey(Fixtures.KEY);
+            arcArpcGen.setArqc("1122334455667788");
+            arcArpcGen.setArcOrCsu("00");
+            csuArpcGen.setSessionKey(Fixtures.KEY);
+            csuArpcGen.setArqc("1122334455667788");
+            csuArpcGen.setArcOrCsu("00820000");
+            csuArpcGen.setCsuMethod(true);
+        }
+    }
+
+    @Benchmark
+    public String arqc(ArqcState state) throws Exception {
+        state.arqcGen.setApplicationTransactionCounter(Fixtures.ATCS[state.atcIndex++ & (Fixtures.ATCS.length - 1)]);
+        return state.arqcGen.getArqc();
+    }
+
+    @Benchmark
+    public String arpcArc(ArpcState state) throws Exception {
+        return state.arcArpcGen.getArpc();
+    }
+
+    @Benchmark
+    public String arpcCsu(ArpcState state) throws Exception {
+        return state.csuArpcGen.getArpc();
+    }
+}
@@ -0,0 +1,42 @@
+package com.bc.benchmarks;
+
+import com.bc.utils.CvxGen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CvxGen#generateCvx()}, the same computation for CVV, CVV2 and iCVV which only differ in service code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CvxBenchmark {
+
+    private final CvxGen cvxGen = new CvxGen();
+
+    @Setup
+    public void setup() {
+        cvxGen.setPan(Fixtures.PAN);
+        cvxGen.setExpiryDate("2212");
+        cvxGen.setServiceCode("101");
+        cvxGen.setCvk(Fixtures.KEY);
+    }
+
+    @Benchmark
+    public String cvx() throws Exception {
+        return cvxGen.generateCvx();
+    }
+}
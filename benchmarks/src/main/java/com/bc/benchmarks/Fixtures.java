@@ -0,0 +1,44 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.TdeaBackend;
+import com.bc.utils.TdeaEngine;
+
+/**
+ * Test keys and card data shared by the benchmarks, the values of the README examples.
+ */
+final class Fixtures {
+
+    static final String KEY = "0123456789ABCDEFFEDCBA9876543210";
+    static final String OTHER_KEY = "FEDCBA98765432100123456789ABCDEF";
+    static final String PAN = "4761739001010010";
+    /** 19 digit PAN, long enough for UDK Option B to hash it rather than fall back to Option A */
+    static final String LONG_PAN = "4761739001010010123";
+    static final String PAN_SEQUENCE = "01";
+    static final String PIN = "1234";
+
+    /** Consecutive ATCs, cycled through so session key derivation sees a card transacting rather than one repeated ATC */
+    static final String[] ATCS = new String[256];
+
+    static {
+        for (int i = 0; i < ATCS.length; i++) {
+            ATCS[i] = String.format("%04X", i + 1);
+        }
+    }
+
+    private Fixtures() {
+    }
+
+    /**
+     * Select the TDEA backend of the benchmark fork. The engine reads emv.tdea.backend once, when first used, so this
+     * runs before any TDEA operation of the fork, JMH running every parameter combination in a fork of its own.
+     * @param backend Backend to benchmark
+     * @throws IllegalStateException When the engine already runs on another backend, e.g. with forking disabled
+     */
+    static void selectTdeaBackend(TdeaBackend backend) {
+        System.setProperty("emv.tdea.backend", backend.name());
+        if (TdeaEngine.getBackend() != backend) {
+            throw new IllegalStateException("TDEA backend " + TdeaEngine.getBackend() + " is already in use, "
+                    + backend + " must be benchmarked in a fork of its own.");
+        }
+    }
+}
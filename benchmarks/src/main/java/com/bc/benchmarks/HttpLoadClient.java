@@ -0,0 +1,179 @@
+package com.bc.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed loop load client of the REST API, run by loadtest/compare.sh against an application already listening. Every
+ * connection is a thread with a keep-alive socket and one request in flight, and ATCs rotate so session keys are not
+ * all prefetch hits. HTTP is written and parsed by hand, a general purpose client costing more CPU per request than the
+ * endpoints measured. Prints throughput and p50/p99 latency.
+ * Usage: HttpLoadClient [host] [port] [connections] [seconds] [generate|validate|validate-window]
+ */
+public final class HttpLoadClient {
+
+    private static final String REQUEST = "{\"Pan\":\"" + Fixtures.PAN + "\",\"PanSequence\":\"1\","
+            + "\"CryptogramMasterKey\":\"" + Fixtures.KEY + "\",\"AmountAuthorised\":\"1000\",\"AmountOther\":\"0\","
+            + "\"TerminalCountryCode\":\"826\",\"TerminalVerificationResults\":\"0000008000\","
+            + "\"TransactionCurrencyCode\":\"826\",\"TransactionDate\":\"2023-09-01\",\"TransactionType\":\"00\","
+            + "\"UnpredictableNumber\":\"A1B2C3D4\",\"ApplicationInterchangeProfile\":\"3800\","
+            + "\"ApplicationTransactionCounter\":\"%04X\",\"IssuerApplicationData\":\"06011203A0B80003\","
+            + "\"CSUorARC\":\"00820000\"";
+    /** Never matches, so validation always computes the ARQC of every ATC it tries */
+    private static final String ARQC = ",\"ARQC\":\"0000000000000000\"";
+    /** A request without a response by then counts as an error, rather than stalling its connection */
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    private HttpLoadClient() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1099;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        String endpoint = args.length > 4 ? args[4] : "generate";
+
+        String path;
+        String suffix;
+        switch (endpoint) {
+            case "generate":
+                path = "/EmvUtilities/Cryptogram/Arqc/Generate";
+                suffix = "}";
+                break;
+            case "validate":
+                path = "/EmvUtilities/Cryptogram/Arqc/Validate";
+                suffix = ARQC + "}";
+                break;
+            case "validate-window":
+                path = "/EmvUtilities/Cryptogram/Arqc/Validate";
+                suffix = ARQC + ",\"AtcSearchWindow\":16}";
+                break;
+            default:
+                throw new IllegalArgumentException("Endpoint must be generate, validate or validate-window.");
+        }
+        String head = "POST " + path + " HTTP/1.1\r\nHost: " + host + ":" + port
+                + "\r\nContent-Type: application/json\r\nContent-Length: ";
+        // Warm up the JIT on both sides before measuring
+        run(host, port, head, suffix, connections, Math.max(1, seconds / 4), null);
+        long[][] latencies = new long[connections][];
+        long started = System.nanoTime();
+        long errors = run(host, port, head, suffix, connections, seconds, latencies);
+        long elapsed = System.nanoTime() - started;
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%s %d connections: %,.0f req/s, p50 %.2f ms, p99 %.2f ms, %d errors%n", endpoint,
+                connections, all.length * 1e9 / elapsed, all[all.length / 2] / 1e6,
+                all[(int) (all.length * 0.99)] / 1e6, errors);
+    }
+
+    /**
+     * Send requests on every connection for the given time, one in flight per connection.
+     * @param latencies Receives the latencies of each connection, null when not recorded
+     * @return Number of failed requests and responses other than 200
+     */
+    private static long run(String host, int port, String head, String suffix, int connections, int seconds,
+                            long[][] latencies) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            int connection = i;
+            threads[i] = new Thread(() -> {
+                long[] recorded = new long[1024];
+                int count = 0;
+                Socket socket = null;
+                InputStream input = null;
+                while (System.nanoTime() < deadline) {
+                    String body = String.format(REQUEST, 1 + (connection * 4099 + count) % 0xFFFF) + suffix;
+                    byte[] request = (head + body.length() + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+                    long sentNanos = System.nanoTime();
+                    try {
+                        if (socket == null) {
+                            socket = new Socket(host, port);
+                            socket.setTcpNoDelay(true);
+                            socket.setSoTimeout(TIMEOUT_MILLIS);
+                            input = new BufferedInputStream(socket.getInputStream());
+                        }
+                        OutputStream output = socket.getOutputStream();
+                        output.write(request);
+                        output.flush();
+                        if (readResponse(input) != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException exception) {
+                        if (errors.incrementAndGet() == 1) {
+                            System.err.println("First error: " + exception);
+                        }
+                        close(socket);
+                        socket = null;
+                    }
+                    if (count == recorded.length) {
+                        recorded = Arrays.copyOf(recorded, count * 2);
+                    }
+                    recorded[count++] = System.nanoTime() - sentNanos;
+                }
+                close(socket);
+                if (latencies != null) {
+                    latencies[connection] = Arrays.copyOf(recorded, count);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return errors.get();
+    }
+
+    /**
+     * Read one response, which the application always sends with a Content-Length.
+     * @return Status code
+     */
+    private static int readResponse(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int status = -1;
+        int contentLength = 0;
+        while (true) {
+            int value = input.read();
+            if (value < 0) {
+                throw new IOException("Connection closed.");
+            }
+            if (value != '\n') {
+                if (value != '\r') {
+                    line.append((char) value);
+                }
+                continue;
+            }
+            if (line.length() == 0) {
+                break;
+            }
+            String header = line.toString();
+            if (status < 0) {
+                status = Integer.parseInt(header.substring(9, 12));
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+            line.setLength(0);
+        }
+        if (input.readNBytes(contentLength).length != contentLength) {
+            throw new IOException("Connection closed.");
+        }
+        return status;
+    }
+
+    private static void close(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing further is sent on it
+            }
+        }
+    }
+}
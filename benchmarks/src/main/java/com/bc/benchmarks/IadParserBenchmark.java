@@ -0,0 +1,74 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.IadFormat;
+import com.bc.utils.IADParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IADParser#parse(CharSequence, boolean)} for each IAD format it recognises, alone and followed by reading the
+ * fields the cryptogram service uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IadParserBenchmark {
+
+    /**
+     * IAD formats, each with a sample IAD and whether it belongs to a Visa PAN.
+     */
+    public enum Format {
+        VISA_FORMAT_0_1_3("06010A03A00000", true),
+        VISA_FORMAT_2("1F4201A000000000000000000000000000000000000000000000000000000000", true),
+        CCD("0FA501A03800000000000000000000000F000000000000000000000000000000", false),
+        MCHIP_2_1("0110A00003220000", false),
+        MCHIP_2_05("0110A0000322000000", false),
+        MCHIP_4("0110A00003220000000000000000000000FF", false);
+
+        private final String iad;
+        private final boolean visaPan;
+
+        Format(String iad, boolean visaPan) {
+            this.iad = iad;
+            this.visaPan = visaPan;
+        }
+    }
+
+    @Param
+    public Format format;
+
+    private IADParser iadParser;
+
+    @Setup
+    public void setup() {
+        iadParser = new IADParser();
+    }
+
+    @Benchmark
+    public IadFormat parse() {
+        return iadParser.parse(format.iad, format.visaPan);
+    }
+
+    @Benchmark
+    public void parseAndRead(Blackhole blackhole) {
+        blackhole.consume(iadParser.parse(format.iad, format.visaPan));
+        blackhole.consume(iadParser.getCryptogramVersionNumber());
+        blackhole.consume(iadParser.getDerivationKeyIndex());
+        blackhole.consume(iadParser.getCardVerificationResults());
+    }
+}
@@ -0,0 +1,72 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.KeyType;
+import com.bc.enums.TdeaBackend;
+import com.bc.enums.UdkDerivationOption;
+import com.bc.utils.KeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KeyGenerator#getKey()} for UDK and session key derivation, by UDK derivation option and cryptogram version.
+ * The 19 digit PAN makes Option B hash the PAN. UDKs come from the UDK cache after the first invocation and session
+ * keys are derived for consecutive ATCs, which is what a card transacting repeatedly costs, on each emv.tdea.backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyDerivationBenchmark {
+
+    @Param({"Option_A", "Option_B"})
+    public UdkDerivationOption udkDerivationOption;
+    @Param({"CVN_10", "CVN_18", "CVN_22"})
+    public CryptogramVersionNumber cryptogramVersionNumber;
+    @Param({"JCE", "SOFTWARE"})
+    public TdeaBackend tdeaBackend;
+
+    private final KeyGenerator udkGenerator = new KeyGenerator();
+    private final KeyGenerator sessionKeyGenerator = new KeyGenerator();
+    private int atcIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        Fixtures.selectTdeaBackend(tdeaBackend);
+        udkGenerator.pan = Fixtures.LONG_PAN;
+        udkGenerator.panSeq = Fixtures.PAN_SEQUENCE;
+        udkGenerator.mkCryptogram = Fixtures.KEY;
+        udkGenerator.keyType = KeyType.UDK_CRYPTOGRAM;
+        udkGenerator.udkDerivationOption = udkDerivationOption;
+        udkGenerator.cryptogramVersionNumber = cryptogramVersionNumber;
+
+        sessionKeyGenerator.udkCryptogram = udkGenerator.getKey();
+        sessionKeyGenerator.keyType = KeyType.SEK_CRYPTOGRAM;
+        sessionKeyGenerator.udkDerivationOption = udkDerivationOption;
+        sessionKeyGenerator.cryptogramVersionNumber = cryptogramVersionNumber;
+    }
+
+    @Benchmark
+    public String udk() throws Exception {
+        return udkGenerator.getKey();
+    }
+
+    @Benchmark
+    public String sessionKey() throws Exception {
+        sessionKeyGenerator.atc = Fixtures.ATCS[atcIndex++ & (Fixtures.ATCS.length - 1)];
+        return sessionKeyGenerator.getKey();
+    }
+}
@@ -0,0 +1,69 @@
+package com.bc.benchmarks;
+
+import com.bc.tcp.CommandClient;
+import com.bc.tcp.CommandFrame;
+import com.bc.tcp.CommandHandler;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.vertx.core.buffer.Buffer;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics on the TCP command path: an AG command, ARQC and ARPC generation, run through
+ * {@link CommandHandler#process} with emv.metrics.enabled true and false, at the default sample rate, into a Prometheus
+ * registry as in the application. Compare the throughput of the two to check the overhead of the instrumentation.
+ * The metrics configuration is read once, when the application classes are loaded, so the parameter is set as a system
+ * property before the first command, JMH runs each parameter value in a fork of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"true", "false"})
+    public String metricsEnabled;
+
+    private Validator validator;
+    /** AG request frames without their length prefix, one per ATC */
+    private Buffer[] requests;
+    private int atcIndex;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("emv.metrics.enabled", metricsEnabled);
+        if (Metrics.globalRegistry.getRegistries().isEmpty()) {
+            // Without a registry the global composite records nothing
+            Metrics.addRegistry(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        }
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        requests = new Buffer[Fixtures.ATCS.length];
+        for (int i = 0; i < requests.length; i++) {
+            Buffer request = CommandFrame.end(CommandClient.appendSampleArqcData(CommandFrame.request(i, "AG"),
+                    Fixtures.ATCS[i]));
+            requests[i] = request.slice(CommandFrame.LENGTH_SIZE, request.length());
+        }
+    }
+
+    @Benchmark
+    public Buffer agCommand() {
+        return CommandHandler.process(requests[atcIndex++ & (requests.length - 1)], validator);
+    }
+}
@@ -0,0 +1,81 @@
+package com.bc.benchmarks;
+
+import com.bc.constants.PINFunctions;
+import com.bc.utils.IBM3624Pin;
+import com.bc.utils.PinblockFunctions;
+import com.bc.utils.VisaPvv;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IBM 3624 PIN generation with an offset, Visa PVV generation, and ISO format 0 PIN block generation and decryption.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PinBenchmark {
+
+    private final IBM3624Pin ibm3624Pin = new IBM3624Pin();
+    private final VisaPvv visaPvv = new VisaPvv();
+    private final PinblockFunctions pinblockGenerator = new PinblockFunctions();
+    private final PinblockFunctions pinblockDecryptor = new PinblockFunctions();
+
+    @Setup
+    public void setup() throws Exception {
+        ibm3624Pin.setPan(Fixtures.PAN);
+        ibm3624Pin.setPvk(Fixtures.KEY);
+        ibm3624Pin.setPinLength("4");
+        ibm3624Pin.setPinOffset("123456");
+        ibm3624Pin.setDecimalisationTable(PINFunctions.DEFAULT_DECIMALISATION_TABLE);
+
+        visaPvv.setPan(Fixtures.PAN);
+        visaPvv.setPin(Fixtures.PIN);
+        visaPvv.setKey(Fixtures.KEY);
+        visaPvv.setKeyIndex("1");
+
+        pinblockGenerator.setPan(Fixtures.PAN);
+        pinblockGenerator.setPin(Fixtures.PIN);
+        pinblockGenerator.setPinBlockFormat('0');
+        pinblockGenerator.setZonePinKey(Fixtures.KEY);
+        pinblockDecryptor.setPan(Fixtures.PAN);
+        pinblockDecryptor.setZonePinKey(Fixtures.KEY);
+        pinblockGenerator.generatePinblock();
+        pinblockDecryptor.setPinBlock(pinblockGenerator.getPinBlock());
+    }
+
+    @Benchmark
+    public String ibm3624Pin() throws Exception {
+        ibm3624Pin.generateIBM3624Pin();
+        return ibm3624Pin.getPin();
+    }
+
+    @Benchmark
+    public String visaPvv() throws Exception {
+        visaPvv.generateVisaPvv();
+        return visaPvv.getPinVerificationValue();
+    }
+
+    @Benchmark
+    public String pinblockGenerate() throws Exception {
+        return pinblockGenerator.generatePinblock();
+    }
+
+    @Benchmark
+    public String pinblockDecrypt() throws Exception {
+        pinblockDecryptor.decryptPinblock();
+        return pinblockDecryptor.getClearPin();
+    }
+}
@@ -0,0 +1,138 @@
+package com.bc.benchmarks;
+
+import com.bc.tcp.CommandClient;
+import com.bc.tcp.CommandFrame;
+import com.bc.tcp.CommandHandler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined load client of the TCP command interface, run by loadtest/tcp-benchmark.sh against an application already
+ * listening. Prints throughput and p50/p99 latency of one command.
+ * Usage: TcpLoadClient [host] [port] [connections] [pipeline depth] [commands per connection] [AG|AV|CV]
+ */
+public final class TcpLoadClient {
+
+    private TcpLoadClient() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        int commands = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+        String command = args.length > 5 ? args[5] : "AG";
+
+        Vertx vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(Math.min(connections,
+                Runtime.getRuntime().availableProcessors())));
+        try {
+            List<CommandClient> clients = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                clients.add(CommandClient.connect(vertx, host, port).toCompletionStage().toCompletableFuture().get());
+            }
+            Buffer request = sampleRequest(clients.get(0), command);
+            // Warm up the JIT on both sides before measuring
+            run(clients, request, depth, Math.max(1, commands / 10));
+            long[] latencies = new long[connections * commands];
+            long started = System.nanoTime();
+            long errors = run(clients, request, depth, commands, latencies);
+            long elapsed = System.nanoTime() - started;
+            Arrays.sort(latencies);
+            System.out.printf("%s %d connections, pipeline depth %d: %,.0f commands/s, p50 %.1f us, p99 %.1f us,"
+                            + " %d errors%n", command, connections, depth, latencies.length * 1e9 / elapsed,
+                    latencies[latencies.length / 2] / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3, errors);
+            for (CommandClient client : clients) {
+                client.close();
+            }
+        } finally {
+            vertx.close();
+        }
+    }
+
+    /**
+     * Build the benchmark request, for AV the ARQC to verify is generated first.
+     */
+    private static Buffer sampleRequest(CommandClient client, String command) throws Exception {
+        Buffer request;
+        switch (command) {
+            case "AG":
+                return CommandClient.appendSampleArqcData(CommandFrame.request(0, "AG"), "0001");
+            case "AV":
+                CommandFrame generated = client.send(CommandClient.appendSampleArqcData(
+                        CommandFrame.request(0, "AG"), "0001")).toCompletionStage().toCompletableFuture().get();
+                request = CommandClient.appendSampleArqcData(CommandFrame.request(0, "AV"), "0001");
+                CommandFrame.appendHex(request, generated.readHex(8));
+                return CommandFrame.appendHex(request, "00");
+            case "CV":
+                request = CommandFrame.request(0, "CV");
+                CommandFrame.appendDigits(request, Fixtures.PAN);
+                CommandFrame.appendDigits(request, "2212");
+                CommandFrame.appendDigits(request, "101");
+                CommandFrame.appendHex(request, Fixtures.KEY);
+                return CommandFrame.appendDigits(request, "123");
+            default:
+                throw new IllegalArgumentException("Benchmark command must be AG, AV or CV.");
+        }
+    }
+
+    private static void run(List<CommandClient> clients, Buffer request, int depth, int commands)
+            throws InterruptedException {
+        run(clients, request, depth, commands, null);
+    }
+
+    /**
+     * Send commands on every connection, keeping up to depth of them in flight per connection.
+     * @return Number of responses with an error code other than 00 and 01
+     */
+    private static long run(List<CommandClient> clients, Buffer request, int depth, int commands, long[] latencies)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(clients.size());
+        AtomicLong errors = new AtomicLong();
+        for (int i = 0; i < clients.size(); i++) {
+            CommandClient client = clients.get(i);
+            AtomicInteger sent = new AtomicInteger();
+            AtomicInteger received = new AtomicInteger();
+            int latencyOffset = i * commands;
+            Runnable[] sendNext = new Runnable[1];
+            sendNext[0] = () -> {
+                if (sent.getAndIncrement() >= commands) {
+                    return;
+                }
+                long sentNanos = System.nanoTime();
+                client.send(request.copy()).onComplete(result -> {
+                    int index = received.getAndIncrement();
+                    if (latencies != null) {
+                        latencies[latencyOffset + index] = System.nanoTime() - sentNanos;
+                    }
+                    if (result.failed() || !isSuccess(result.result())) {
+                        errors.incrementAndGet();
+                    }
+                    if (index + 1 == commands) {
+                        done.countDown();
+                    } else {
+                        sendNext[0].run();
+                    }
+                });
+            };
+            for (int j = 0; j < Math.min(depth, commands); j++) {
+                sendNext[0].run();
+            }
+        }
+        done.await();
+        return errors.get();
+    }
+
+    private static boolean isSuccess(CommandFrame response) {
+        String errorCode = response.getErrorCode();
+        return CommandHandler.NO_ERROR.equals(errorCode) || CommandHandler.VERIFICATION_FAILURE.equals(errorCode);
+    }
+}
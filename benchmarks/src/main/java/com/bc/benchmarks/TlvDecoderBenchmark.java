@@ -0,0 +1,60 @@
+package com.bc.benchmarks;
+
+import com.bc.enums.EmvTag;
+import com.bc.utils.HexCodec;
+import com.bc.utils.IADParser;
+import com.bc.utils.TlvDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TlvDecoder#decode(byte[], int, int)} of a DE55 holding the ARQC data objects, alone and followed by parsing
+ * the IAD in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TlvDecoderBenchmark {
+
+    private static final String ICC_DATA = "9F02060000000010009F03060000000000009F1A020826950500000080005F2A0208269A"
+            + "032309019C01009F3704A1B2C3D4820238009F360200019F100806011203A0B800039F260830A0E9FCAA07B3A3";
+
+    private byte[] iccData;
+    private TlvDecoder tlvDecoder;
+    private IADParser iadParser;
+
+    @Setup
+    public void setup() throws Exception {
+        iccData = HexCodec.decode(ICC_DATA);
+        tlvDecoder = new TlvDecoder();
+        iadParser = new IADParser();
+    }
+
+    @Benchmark
+    public int decode() {
+        tlvDecoder.decode(iccData, 0, iccData.length);
+        return tlvDecoder.offset(EmvTag.APPLICATION_CRYPTOGRAM);
+    }
+
+    @Benchmark
+    public void decodeAndParseIad(Blackhole blackhole) {
+        tlvDecoder.decode(iccData, 0, iccData.length);
+        blackhole.consume(iadParser.wrap(iccData, tlvDecoder.offset(EmvTag.ISSUER_APPLICATION_DATA),
+                tlvDecoder.length(EmvTag.ISSUER_APPLICATION_DATA), true));
+        blackhole.consume(iadParser.getCryptogramVersionNumber());
+    }
+}
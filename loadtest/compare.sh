@@ -0,0 +1,37 @@
+#!/usr/bin/env bash
+# Compare throughput and latency of /Cryptogram/Arqc/Generate and single ATC /Cryptogram/Arqc/Validate between two
+# builds, by default the blocking RESTEasy build before the switch to RESTEasy Reactive and the working tree. The load
+# client, com.bc.benchmarks.HttpLoadClient, is built with the benchmarks module against the installed emv-utilities
+# artifact.
+# Run from the project root:
+#   loadtest/compare.sh [baseline-ref] [connections] [seconds]
+set -euo pipefail
+
+BASELINE_REF=${1:-"$(git log --format=%H -1 -S'quarkus-resteasy-reactive-jackson' -- pom.xml)~1"}
+CONNECTIONS=${2:-64}
+SECONDS_PER_RUN=${3:-60}
+PORT=1099
+CLIENT_JAR="$(pwd)/benchmarks/target/benchmarks.jar"
+WORK_DIR=$(mktemp -d)
+trap 'git worktree remove --force "$WORK_DIR/baseline" 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+run() {
+    local name=$1 dir=$2
+    (cd "$dir" && ./mvnw -B -q package -DskipTests)
+    java -jar "$dir/target/quarkus-app/quarkus-run.jar" > "$WORK_DIR/$name.log" 2>&1 &
+    local pid=$!
+    until curl -s -o /dev/null "http://localhost:$PORT/"; do sleep 1; done
+    for endpoint in generate validate; do
+        printf '%-10s ' "$name"
+        java -cp "$CLIENT_JAR" com.bc.benchmarks.HttpLoadClient localhost "$PORT" "$CONNECTIONS" "$SECONDS_PER_RUN" \
+            "$endpoint"
+    done
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+./mvnw -B -q install -DskipTests
+./mvnw -B -q -f benchmarks/pom.xml package
+git worktree add --detach "$WORK_DIR/baseline" "$BASELINE_REF" > /dev/null
+run blocking "$WORK_DIR/baseline"
+run reactive "$(pwd)"
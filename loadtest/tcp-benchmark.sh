@@ -0,0 +1,20 @@
+#!/usr/bin/env bash
+# Pipelined benchmark of the TCP command interface, against an application already listening on emv.tcp.port,
+# started with -Demv.tcp.enabled=true. The load client, com.bc.benchmarks.TcpLoadClient, is built with the benchmarks
+# module against the installed emv-utilities artifact.
+# Run from the project root:
+#   loadtest/tcp-benchmark.sh [host] [port] [connections] [pipeline depth] [commands per connection]
+set -euo pipefail
+
+HOST=${1:-localhost}
+PORT=${2:-1500}
+CONNECTIONS=${3:-16}
+DEPTH=${4:-32}
+COMMANDS=${5:-100000}
+
+./mvnw -B -q install -DskipTests
+./mvnw -B -q -f benchmarks/pom.xml package
+for command in AG AV CV; do
+    java -cp benchmarks/target/benchmarks.jar com.bc.benchmarks.TcpLoadClient "$HOST" "$PORT" "$CONNECTIONS" "$DEPTH" \
+        "$COMMANDS" "$command"
+done
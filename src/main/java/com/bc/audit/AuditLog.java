@@ -0,0 +1,140 @@
+package com.bc.audit;
+
+import com.bc.metrics.Diagnostics;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit log of API requests. The request thread only samples and publishes the request into a lock-free
+ * ring, a background appender thread masks it through the template of its type, see {@link AuditTemplate}, and writes
+ * one JSON line per request to the com.bc.audit logger, so log I/O never runs on the request thread.
+ * - emv.audit.enabled turns auditing off altogether
+ * - emv.audit.sample-rate is the fraction of requests audited, from 0.0 to 1.0
+ * - emv.audit.buffer-size records may wait for the appender, further records are dropped and counted
+ * Requests of a type without a template are audited by operation only.
+ */
+public final class AuditLog {
+
+    private static final boolean ENABLED = ConfigProvider.getConfig()
+            .getOptionalValue("emv.audit.enabled", Boolean.class).orElse(true);
+    private static final double SAMPLE_RATE = ConfigProvider.getConfig()
+            .getOptionalValue("emv.audit.sample-rate", Double.class).orElse(1.0);
+    private static final int BUFFER_SIZE = ConfigProvider.getConfig()
+            .getOptionalValue("emv.audit.buffer-size", Integer.class).orElse(8192);
+    /** Longest wait of the appender for new records */
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("com.bc.audit");
+    private static final AuditRing<Record> RING = new AuditRing<>(BUFFER_SIZE);
+    private static final LongAdder WRITTEN = new LongAdder();
+    private static final LongAdder FAILED = new LongAdder();
+
+    static {
+        if (ENABLED && SAMPLE_RATE > 0) {
+            Thread appender = new Thread(new Appender(), "emv-audit");
+            appender.setDaemon(true);
+            appender.start();
+        }
+    }
+
+    private AuditLog() {
+    }
+
+    /**
+     * Audit a request, if it is sampled. Never blocks: the record is dropped when the appender has fallen behind.
+     * @param operation API operation, e.g. Pin/Generate
+     * @param request   Request object, not modified afterwards
+     */
+    public static void record(String operation, Object request) {
+        if (!ENABLED || SAMPLE_RATE <= 0
+                || (SAMPLE_RATE < 1 && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE)) {
+            return;
+        }
+        RING.offer(new Record(System.currentTimeMillis(), operation, request));
+    }
+
+    public static long getWrittenCount() {
+        return WRITTEN.sum();
+    }
+
+    public static long getDroppedCount() {
+        return RING.getDroppedCount();
+    }
+
+    public static long getFailedCount() {
+        return FAILED.sum();
+    }
+
+    private static final class Record {
+
+        private final long timeMillis;
+        private final String operation;
+        private final Object request;
+
+        private Record(long timeMillis, String operation, Object request) {
+            this.timeMillis = timeMillis;
+            this.operation = operation;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Drains the ring, reusing one writer and JSON generator factory for every record.
+     */
+    private static final class Appender implements Runnable {
+
+        private final JsonFactory jsonFactory = new JsonFactory();
+        private final StringWriter line = new StringWriter(256);
+
+        @Override
+        public void run() {
+            long idleNanos = 0;
+            while (true) {
+                Record record = RING.poll();
+                if (record == null) {
+                    // Back off up to MAX_IDLE_NANOS while idle, producers never wake the appender
+                    idleNanos = Math.min(MAX_IDLE_NANOS, Math.max(TimeUnit.MICROSECONDS.toNanos(50), idleNanos * 2));
+                    LockSupport.parkNanos(idleNanos);
+                    continue;
+                }
+                idleNanos = 0;
+                try {
+                    LOGGER.info(format(record));
+                    WRITTEN.increment();
+                } catch (IOException | RuntimeException exception) {
+                    FAILED.increment();
+                    Diagnostics.warn("AUDT01", "Audit record of " + record.operation + " could not be written: "
+                            + exception.getMessage());
+                }
+            }
+        }
+
+        private String format(Record record) throws IOException {
+            line.getBuffer().setLength(0);
+            try (JsonGenerator generator = jsonFactory.createGenerator(line)) {
+                generator.writeStartObject();
+                generator.writeStringField("Time", Instant.ofEpochMilli(record.timeMillis).toString());
+                generator.writeStringField("Operation", record.operation);
+                AuditTemplate<?> template = AuditTemplate.forType(record.request.getClass());
+                if (template != null) {
+                    generator.writeObjectFieldStart("Request");
+                    template.write(record.request, generator);
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            return line.toString();
+        }
+    }
+}
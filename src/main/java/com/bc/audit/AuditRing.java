@@ -0,0 +1,70 @@
+package com.bc.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free ring of audit records, written by any number of request threads and read by the single appender
+ * thread. A producer claims a sequence with a compare and set on the tail and publishes its record into the slot, the
+ * consumer takes records in sequence order as they are published. A full ring drops the record rather than making
+ * the request thread wait.
+ * @param <T> Record type
+ */
+final class AuditRing<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    /** Next sequence to claim */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next sequence to take, only advanced by the consumer */
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity Number of slots, rounded up to a power of two
+     */
+    AuditRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Publish a record, never blocking.
+     * @param record Record to publish
+     * @return False when the ring is full and the record was dropped
+     */
+    boolean offer(T record) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, record);
+        return true;
+    }
+
+    /**
+     * Take the next record, consumer thread only.
+     * @return Next record, or null when none has been published yet
+     */
+    T poll() {
+        long sequence = head.get();
+        int slot = (int) sequence & mask;
+        T record = slots.get(slot);
+        if (record == null) {
+            return null;
+        }
+        slots.lazySet(slot, null);
+        head.lazySet(sequence + 1);
+        return record;
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,113 @@
+package com.bc.audit;
+
+import com.bc.requestResponse.PinGenerateRequest;
+import com.bc.requestResponse.PinIssuanceRequest;
+import com.bc.requestResponse.PinblockDecryptRequest;
+import com.bc.requestResponse.PinblockGenerateRequest;
+import com.bc.requestResponse.PvvGenerateRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Masking template of one request type, listing the attributes written to the audit log and how each is masked.
+ * Attributes not listed are never written, so a new request attribute stays out of the audit log until it is added
+ * to the template.
+ * @param <T> Request type
+ */
+final class AuditTemplate<T> {
+
+    /**
+     * How an attribute value is written.
+     * - CLEAR: as is, for values that are not sensitive
+     * - PAN: first 6 and last 4 digits, the digits between replaced by *, as PCI DSS allows to be displayed
+     * - REDACT: replaced by a fixed string that does not reveal the length, for keys, PINs and PIN blocks
+     */
+    enum Mask {
+        CLEAR, PAN, REDACT
+    }
+
+    private static final String REDACTED = "****";
+    private static final Map<Class<?>, AuditTemplate<?>> TEMPLATES = templates();
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Function<T, String>> values = new ArrayList<>();
+    private final List<Mask> masks = new ArrayList<>();
+
+    private AuditTemplate<T> attribute(String name, Function<T, String> value, Mask mask) {
+        names.add(name);
+        values.add(value);
+        masks.add(mask);
+        return this;
+    }
+
+    /**
+     * @param requestType Request class
+     * @return Template of the request type, null if it has none
+     */
+    static AuditTemplate<?> forType(Class<?> requestType) {
+        return TEMPLATES.get(requestType);
+    }
+
+    /**
+     * Write the masked attributes of a request as the fields of the current JSON object.
+     * @param request   Request to write
+     * @param generator Generator positioned inside an object
+     * @throws IOException When the generator fails to write
+     */
+    @SuppressWarnings("unchecked")
+    void write(Object request, JsonGenerator generator) throws IOException {
+        for (int i = 0; i < names.size(); i++) {
+            String value = values.get(i).apply((T) request);
+            generator.writeStringField(names.get(i), value == null ? null : mask(value, masks.get(i)));
+        }
+    }
+
+    static String mask(String value, Mask mask) {
+        switch (mask) {
+            case PAN:
+                if (value.length() <= 10) {
+                    return REDACTED;
+                }
+                return value.substring(0, 6) + "*".repeat(value.length() - 10) + value.substring(value.length() - 4);
+            case REDACT:
+                return REDACTED;
+            default:
+                return value;
+        }
+    }
+
+    private static Map<Class<?>, AuditTemplate<?>> templates() {
+        Map<Class<?>, AuditTemplate<?>> templates = new HashMap<>();
+        templates.put(PinGenerateRequest.class, new AuditTemplate<PinGenerateRequest>()
+                .attribute("Pan", PinGenerateRequest::getPan, Mask.PAN)
+                .attribute("PINLength", PinGenerateRequest::getPinLength, Mask.CLEAR)
+                .attribute("PINOffset", PinGenerateRequest::getPinOffset, Mask.REDACT)
+                .attribute("PVK", PinGenerateRequest::getPinVerificationKey, Mask.REDACT));
+        templates.put(PinIssuanceRequest.class, new AuditTemplate<PinIssuanceRequest>()
+                .attribute("InputFile", PinIssuanceRequest::getInputFile, Mask.CLEAR)
+                .attribute("OutputFile", PinIssuanceRequest::getOutputFile, Mask.CLEAR)
+                .attribute("PINLength", PinIssuanceRequest::getPinLength, Mask.CLEAR)
+                .attribute("PVK", PinIssuanceRequest::getPinVerificationKey, Mask.REDACT));
+        templates.put(PvvGenerateRequest.class, new AuditTemplate<PvvGenerateRequest>()
+                .attribute("Pan", PvvGenerateRequest::getPan, Mask.PAN)
+                .attribute("PIN", PvvGenerateRequest::getPin, Mask.REDACT)
+                .attribute("PVK", PvvGenerateRequest::getPinVerificationKey, Mask.REDACT)
+                .attribute("PVKIndex", PvvGenerateRequest::getPinVerificationKeyIndex, Mask.CLEAR));
+        templates.put(PinblockDecryptRequest.class, new AuditTemplate<PinblockDecryptRequest>()
+                .attribute("Pan", PinblockDecryptRequest::getPan, Mask.PAN)
+                .attribute("Pinblock", PinblockDecryptRequest::getPinBlock, Mask.REDACT)
+                .attribute("ZonePinKey", PinblockDecryptRequest::getZonePinKey, Mask.REDACT));
+        templates.put(PinblockGenerateRequest.class, new AuditTemplate<PinblockGenerateRequest>()
+                .attribute("Pan", PinblockGenerateRequest::getPan, Mask.PAN)
+                .attribute("Pin", PinblockGenerateRequest::getPin, Mask.REDACT)
+                .attribute("PinblockFormat", PinblockGenerateRequest::getPinBlockFormat, Mask.CLEAR)
+                .attribute("ZonePinKey", PinblockGenerateRequest::getZonePinKey, Mask.REDACT));
+        return templates;
+    }
+}
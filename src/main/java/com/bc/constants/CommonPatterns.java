@@ -12,6 +12,7 @@ public class CommonPatterns {
     public static final String DECIMAL_1TO2_DIGITS = "^[0-9]{1,2}$";
     public static final String DECIMAL_4TO12_DIGITS = "^[0-9]{4,12}$";
     public static final String DECIMAL_1TO12_DIGITS = "^[0-9]{1,12}$";
+    public static final String DECIMAL_16_DIGITS = "^[0-9]{16}$";
     public static final String DECIMAL_16TO19_DIGITS = "^[0-9]{16}$";
     // Hexadecimal patterns
     public static final String HEXADECIMAL_14_64_DIGITS = "^[0-9A-Fa-f]{14,64}$";
@@ -21,5 +22,7 @@ public class CommonPatterns {
     public static final String HEXADECIMAL_10_DIGITS = "^[0-9A-Fa-f]{10}$";
     public static final String HEXADECIMAL_16_DIGITS = "^[0-9A-Fa-f]{16}$";
     public static final String HEXADECIMAL_32_DIGITS = "^[0-9A-Fa-f]{32}$";
+    public static final String HEXADECIMAL_1TO255_BYTES = "^([0-9A-Fa-f]{2}){1,255}$";
+    public static final String FILE_NAME = "^[A-Za-z0-9_-][A-Za-z0-9._-]{0,127}$";
     public static final String ISO_DATE = "^\\d{4}-\\d{2}-\\d{2}$";
 }
@@ -0,0 +1,41 @@
+package com.bc.enums;
+
+/**
+ * ICC data elements of DE55 the ARQC is validated from, with their BER-TLV tag and value length in bytes
+ */
+public enum EmvTag {
+    AMOUNT_AUTHORISED(0x9F02, 6, 6),
+    AMOUNT_OTHER(0x9F03, 6, 6),                         // Optional, zero when absent
+    TERMINAL_COUNTRY_CODE(0x9F1A, 2, 2),
+    TERMINAL_VERIFICATION_RESULTS(0x95, 5, 5),
+    TRANSACTION_CURRENCY_CODE(0x5F2A, 2, 2),
+    TRANSACTION_DATE(0x9A, 3, 3),
+    TRANSACTION_TYPE(0x9C, 1, 1),
+    UNPREDICTABLE_NUMBER(0x9F37, 4, 4),
+    APPLICATION_INTERCHANGE_PROFILE(0x82, 2, 2),
+    APPLICATION_TRANSACTION_COUNTER(0x9F36, 2, 2),
+    ISSUER_APPLICATION_DATA(0x9F10, 1, 32),
+    APPLICATION_CRYPTOGRAM(0x9F26, 8, 8);
+
+    private final int tag;
+    private final int minLength;
+    private final int maxLength;
+
+    EmvTag(int tag, int minLength, int maxLength) {
+        this.tag = tag;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+}
@@ -0,0 +1,13 @@
+package com.bc.enums;
+
+public enum IadField {
+    LENGTH,                     // IAD or Visa discretionary data length indicator
+    COMMON_CORE_IDENTIFIER,     // CCD only
+    DERIVATION_KEY_INDEX,
+    CRYPTOGRAM_VERSION_NUMBER,  // Visa format 2: left nibble IAD format, right nibble CVN
+    CARD_VERIFICATION_RESULTS,  // Visa format 0/1/3 includes the CVR length byte
+    DAC_ICC_DYNAMIC_NUMBER,     // M/Chip only
+    COUNTERS,                   // CCD counters, M/Chip 4 plaintext or encrypted counters and last online ATC
+    ISSUER_DISCRETIONARY_DATA_LENGTH,
+    ISSUER_DISCRETIONARY_DATA
+}
@@ -0,0 +1,10 @@
+package com.bc.enums;
+
+public enum IadFormat {
+    VISA_FORMAT_0_1_3,  // Visa VIS 1.6 format 0, 1 or 3, length indicator 0x06
+    VISA_FORMAT_2,      // Visa VIS 1.6 format 2, length indicator 0x1F, 32 bytes
+    CCD,                // EMV Common Core Definitions format A, 32 bytes
+    MCHIP_2_1,          // M/Chip 2.1 and 2.2, 8 bytes
+    MCHIP_2_05,         // M/Chip 2.05, 9 bytes
+    MCHIP_4             // M/Chip 4 and Advance, 10 bytes or more
+}
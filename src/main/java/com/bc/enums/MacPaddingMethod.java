@@ -0,0 +1,6 @@
+package com.bc.enums;
+
+public enum MacPaddingMethod {
+    Method_1,   // ISO 9797-1 padding method 1, zero pad to a block boundary
+    Method_2    // ISO 9797-1 padding method 2, append 0x80 then zero pad
+}
@@ -0,0 +1,6 @@
+package com.bc.enums;
+
+public enum TdeaBackend {
+    JCE,        // DESede/ECB/NoPadding through the JCE provider
+    SOFTWARE    // In-house single block DES/TDEA, see DesBlockCipher
+}
@@ -3,5 +3,5 @@ package com.bc.enums;
 public enum UdkDerivationOption {
     Option_A,
     Option_B,
-    Option_C //Unsupported UDK method
+    Option_C // Option A/B UDK with EMV tree based session key derivation, see SessionKeyTree
 }
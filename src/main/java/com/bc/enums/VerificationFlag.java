@@ -0,0 +1,153 @@
+package com.bc.enums;
+
+/**
+ * Named bits of the TVR and CVR layouts, by byte 1 to n and bit b8 to b1 as numbered in the scheme specifications.
+ * Bits of counters and RFU bits have no name and are only reported by position.
+ */
+public enum VerificationFlag {
+    TVR_OFFLINE_DATA_AUTHENTICATION_NOT_PERFORMED(VerificationLayout.TVR, 1, 8),
+    TVR_SDA_FAILED(VerificationLayout.TVR, 1, 7),
+    TVR_ICC_DATA_MISSING(VerificationLayout.TVR, 1, 6),
+    TVR_CARD_ON_EXCEPTION_FILE(VerificationLayout.TVR, 1, 5),
+    TVR_DDA_FAILED(VerificationLayout.TVR, 1, 4),
+    TVR_CDA_FAILED(VerificationLayout.TVR, 1, 3),
+    TVR_SDA_SELECTED(VerificationLayout.TVR, 1, 2),
+    TVR_APPLICATION_VERSIONS_DIFFER(VerificationLayout.TVR, 2, 8),
+    TVR_EXPIRED_APPLICATION(VerificationLayout.TVR, 2, 7),
+    TVR_APPLICATION_NOT_YET_EFFECTIVE(VerificationLayout.TVR, 2, 6),
+    TVR_SERVICE_NOT_ALLOWED(VerificationLayout.TVR, 2, 5),
+    TVR_NEW_CARD(VerificationLayout.TVR, 2, 4),
+    TVR_CARDHOLDER_VERIFICATION_FAILED(VerificationLayout.TVR, 3, 8),
+    TVR_UNRECOGNISED_CVM(VerificationLayout.TVR, 3, 7),
+    TVR_PIN_TRY_LIMIT_EXCEEDED(VerificationLayout.TVR, 3, 6),
+    TVR_PIN_PAD_NOT_PRESENT(VerificationLayout.TVR, 3, 5),
+    TVR_PIN_NOT_ENTERED(VerificationLayout.TVR, 3, 4),
+    TVR_ONLINE_PIN_ENTERED(VerificationLayout.TVR, 3, 3),
+    TVR_FLOOR_LIMIT_EXCEEDED(VerificationLayout.TVR, 4, 8),
+    TVR_LOWER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.TVR, 4, 7),
+    TVR_UPPER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.TVR, 4, 6),
+    TVR_SELECTED_RANDOMLY_FOR_ONLINE(VerificationLayout.TVR, 4, 5),
+    TVR_MERCHANT_FORCED_ONLINE(VerificationLayout.TVR, 4, 4),
+    TVR_DEFAULT_TDOL_USED(VerificationLayout.TVR, 5, 8),
+    TVR_ISSUER_AUTHENTICATION_FAILED(VerificationLayout.TVR, 5, 7),
+    TVR_SCRIPT_FAILED_BEFORE_FINAL_GENERATE_AC(VerificationLayout.TVR, 5, 6),
+    TVR_SCRIPT_FAILED_AFTER_FINAL_GENERATE_AC(VerificationLayout.TVR, 5, 5),
+    TVR_RELAY_RESISTANCE_THRESHOLD_EXCEEDED(VerificationLayout.TVR, 5, 4),
+    TVR_RELAY_RESISTANCE_TIME_LIMITS_EXCEEDED(VerificationLayout.TVR, 5, 3),
+
+    // AC type bits: 10 ARQC or second GENERATE AC not requested, 01 TC, 00 AAC
+    VISA_SECOND_AC_NOT_REQUESTED(VerificationLayout.VISA, 2, 8),
+    VISA_SECOND_AC_TC(VerificationLayout.VISA, 2, 7),
+    VISA_FIRST_AC_ARQC(VerificationLayout.VISA, 2, 6),
+    VISA_FIRST_AC_TC(VerificationLayout.VISA, 2, 5),
+    VISA_ISSUER_AUTHENTICATION_FAILED(VerificationLayout.VISA, 2, 4),
+    VISA_OFFLINE_PIN_PERFORMED(VerificationLayout.VISA, 2, 3),
+    VISA_OFFLINE_PIN_FAILED(VerificationLayout.VISA, 2, 2),
+    VISA_UNABLE_TO_GO_ONLINE(VerificationLayout.VISA, 2, 1),
+    VISA_LAST_ONLINE_TRANSACTION_NOT_COMPLETED(VerificationLayout.VISA, 3, 8),
+    VISA_PIN_TRY_LIMIT_EXCEEDED(VerificationLayout.VISA, 3, 7),
+    VISA_VELOCITY_COUNTERS_EXCEEDED(VerificationLayout.VISA, 3, 6),
+    VISA_NEW_CARD(VerificationLayout.VISA, 3, 5),
+    VISA_ISSUER_AUTHENTICATION_FAILED_LAST_ONLINE(VerificationLayout.VISA, 3, 4),
+    VISA_ISSUER_AUTHENTICATION_NOT_PERFORMED(VerificationLayout.VISA, 3, 3),
+    VISA_APPLICATION_BLOCKED_PIN_TRY_LIMIT(VerificationLayout.VISA, 3, 2),
+    VISA_SDA_FAILED_LAST_TRANSACTION(VerificationLayout.VISA, 3, 1),
+    VISA_ISSUER_SCRIPT_FAILED(VerificationLayout.VISA, 4, 4),
+    VISA_DDA_FAILED_LAST_TRANSACTION(VerificationLayout.VISA, 4, 3),
+    VISA_DDA_PERFORMED(VerificationLayout.VISA, 4, 2),
+
+    CCD_SECOND_AC_NOT_REQUESTED(VerificationLayout.CCD, 1, 8),
+    CCD_SECOND_AC_TC(VerificationLayout.CCD, 1, 7),
+    CCD_FIRST_AC_ARQC(VerificationLayout.CCD, 1, 6),
+    CCD_FIRST_AC_TC(VerificationLayout.CCD, 1, 5),
+    CCD_CDA_PERFORMED(VerificationLayout.CCD, 1, 4),
+    CCD_OFFLINE_DDA_PERFORMED(VerificationLayout.CCD, 1, 3),
+    CCD_ISSUER_AUTHENTICATION_NOT_PERFORMED(VerificationLayout.CCD, 1, 2),
+    CCD_ISSUER_AUTHENTICATION_FAILED(VerificationLayout.CCD, 1, 1),
+    CCD_OFFLINE_PIN_PERFORMED(VerificationLayout.CCD, 2, 4),
+    CCD_OFFLINE_PIN_FAILED(VerificationLayout.CCD, 2, 3),
+    CCD_PIN_TRY_LIMIT_EXCEEDED(VerificationLayout.CCD, 2, 2),
+    CCD_LAST_ONLINE_TRANSACTION_NOT_COMPLETED(VerificationLayout.CCD, 2, 1),
+    CCD_LOWER_OFFLINE_COUNT_LIMIT_EXCEEDED(VerificationLayout.CCD, 3, 8),
+    CCD_UPPER_OFFLINE_COUNT_LIMIT_EXCEEDED(VerificationLayout.CCD, 3, 7),
+    CCD_LOWER_OFFLINE_AMOUNT_LIMIT_EXCEEDED(VerificationLayout.CCD, 3, 6),
+    CCD_UPPER_OFFLINE_AMOUNT_LIMIT_EXCEEDED(VerificationLayout.CCD, 3, 5),
+    CCD_ISSUER_SCRIPT_FAILED(VerificationLayout.CCD, 4, 4),
+    CCD_OFFLINE_DATA_AUTHENTICATION_FAILED_LAST_TRANSACTION(VerificationLayout.CCD, 4, 3),
+    CCD_GO_ONLINE_NEXT_TRANSACTION(VerificationLayout.CCD, 4, 2),
+    CCD_UNABLE_TO_GO_ONLINE(VerificationLayout.CCD, 4, 1),
+
+    MCHIP_4_SECOND_AC_NOT_REQUESTED(VerificationLayout.MCHIP_4, 1, 8),
+    MCHIP_4_SECOND_AC_TC(VerificationLayout.MCHIP_4, 1, 7),
+    MCHIP_4_FIRST_AC_ARQC(VerificationLayout.MCHIP_4, 1, 6),
+    MCHIP_4_FIRST_AC_TC(VerificationLayout.MCHIP_4, 1, 5),
+    MCHIP_4_OFFLINE_PIN_PERFORMED(VerificationLayout.MCHIP_4, 1, 3),
+    MCHIP_4_OFFLINE_ENCRYPTED_PIN_PERFORMED(VerificationLayout.MCHIP_4, 1, 2),
+    MCHIP_4_OFFLINE_PIN_SUCCESSFUL(VerificationLayout.MCHIP_4, 1, 1),
+    MCHIP_4_DDA_RETURNED(VerificationLayout.MCHIP_4, 2, 8),
+    MCHIP_4_CDA_FIRST_AC(VerificationLayout.MCHIP_4, 2, 7),
+    MCHIP_4_CDA_SECOND_AC(VerificationLayout.MCHIP_4, 2, 6),
+    MCHIP_4_ISSUER_AUTHENTICATION_PERFORMED(VerificationLayout.MCHIP_4, 2, 5),
+    MCHIP_4_CIAC_DEFAULT_SKIPPED_CAT3(VerificationLayout.MCHIP_4, 2, 4),
+    MCHIP_4_LAST_ONLINE_TRANSACTION_NOT_COMPLETED(VerificationLayout.MCHIP_4, 4, 8),
+    MCHIP_4_UNABLE_TO_GO_ONLINE(VerificationLayout.MCHIP_4, 4, 7),
+    MCHIP_4_OFFLINE_PIN_NOT_PERFORMED(VerificationLayout.MCHIP_4, 4, 6),
+    MCHIP_4_OFFLINE_PIN_FAILED(VerificationLayout.MCHIP_4, 4, 5),
+    MCHIP_4_PIN_TRY_LIMIT_EXCEEDED(VerificationLayout.MCHIP_4, 4, 4),
+    MCHIP_4_INTERNATIONAL_TRANSACTION(VerificationLayout.MCHIP_4, 4, 3),
+    MCHIP_4_DOMESTIC_TRANSACTION(VerificationLayout.MCHIP_4, 4, 2),
+    MCHIP_4_TERMINAL_CONSIDERS_OFFLINE_PIN_OK(VerificationLayout.MCHIP_4, 4, 1),
+    MCHIP_4_LOWER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_4, 5, 8),
+    MCHIP_4_UPPER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_4, 5, 7),
+    MCHIP_4_LOWER_CUMULATIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_4, 5, 6),
+    MCHIP_4_UPPER_CUMULATIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_4, 5, 5),
+    MCHIP_4_GO_ONLINE_NEXT_TRANSACTION(VerificationLayout.MCHIP_4, 5, 4),
+    MCHIP_4_ISSUER_AUTHENTICATION_FAILED(VerificationLayout.MCHIP_4, 5, 3),
+    MCHIP_4_SCRIPT_RECEIVED(VerificationLayout.MCHIP_4, 5, 2),
+    MCHIP_4_SCRIPT_FAILED(VerificationLayout.MCHIP_4, 5, 1),
+    MCHIP_4_ADDITIONAL_CHECK_TABLE_MATCH(VerificationLayout.MCHIP_4, 6, 2),
+    MCHIP_4_ADDITIONAL_CHECK_TABLE_NO_MATCH(VerificationLayout.MCHIP_4, 6, 1),
+
+    MCHIP_2_SECOND_AC_NOT_REQUESTED(VerificationLayout.MCHIP_2, 1, 8),
+    MCHIP_2_SECOND_AC_TC(VerificationLayout.MCHIP_2, 1, 7),
+    MCHIP_2_FIRST_AC_ARQC(VerificationLayout.MCHIP_2, 1, 6),
+    MCHIP_2_FIRST_AC_TC(VerificationLayout.MCHIP_2, 1, 5),
+    MCHIP_2_LAST_ONLINE_TRANSACTION_NOT_COMPLETED(VerificationLayout.MCHIP_2, 3, 8),
+    MCHIP_2_UNABLE_TO_GO_ONLINE(VerificationLayout.MCHIP_2, 3, 7),
+    MCHIP_2_OFFLINE_PIN_NOT_PERFORMED(VerificationLayout.MCHIP_2, 3, 6),
+    MCHIP_2_OFFLINE_PIN_FAILED(VerificationLayout.MCHIP_2, 3, 5),
+    MCHIP_2_PIN_TRY_LIMIT_EXCEEDED(VerificationLayout.MCHIP_2, 3, 4),
+    MCHIP_2_INTERNATIONAL_TRANSACTION(VerificationLayout.MCHIP_2, 3, 3),
+    MCHIP_2_DOMESTIC_TRANSACTION(VerificationLayout.MCHIP_2, 3, 2),
+    MCHIP_2_LOWER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_2, 4, 8),
+    MCHIP_2_UPPER_CONSECUTIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_2, 4, 7),
+    MCHIP_2_LOWER_CUMULATIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_2, 4, 6),
+    MCHIP_2_UPPER_CUMULATIVE_OFFLINE_LIMIT_EXCEEDED(VerificationLayout.MCHIP_2, 4, 5),
+    MCHIP_2_GO_ONLINE_NEXT_TRANSACTION(VerificationLayout.MCHIP_2, 4, 4),
+    MCHIP_2_ISSUER_AUTHENTICATION_FAILED(VerificationLayout.MCHIP_2, 4, 3),
+    MCHIP_2_SCRIPT_RECEIVED(VerificationLayout.MCHIP_2, 4, 2),
+    MCHIP_2_SCRIPT_FAILED(VerificationLayout.MCHIP_2, 4, 1);
+
+    private final VerificationLayout layout;
+    private final int bitIndex;
+
+    VerificationFlag(VerificationLayout layout, int byteNumber, int bitNumber) {
+        this.layout = layout;
+        this.bitIndex = (byteNumber - 1) * 8 + 8 - bitNumber;
+    }
+
+    public VerificationLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return Position of the flag in the bitmask, byte 1 bit b8 is 0
+     */
+    public int getBitIndex() {
+        return bitIndex;
+    }
+
+    public long getMask() {
+        return 1L << bitIndex;
+    }
+}
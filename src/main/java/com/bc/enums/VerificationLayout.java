@@ -0,0 +1,34 @@
+package com.bc.enums;
+
+/**
+ * Bit layouts of the Terminal Verification Results (95) and of the Card Verification Results in the IAD
+ */
+public enum VerificationLayout {
+    TVR(5, 0),          // EMV Book 3 Annex C5
+    VISA(4, 0xFFL),     // Visa format 0/1/3 CVR, byte 1 is the CVR length and is not decoded
+    CCD(5, 0),          // EMV Common Core Definitions CVR, also used by Visa format 2
+    MCHIP_4(6, 0),      // M/Chip 4 and Advance CVR
+    MCHIP_2(4, 0);      // M/Chip 2.05, 2.1 and 2.2 CVR
+
+    private final int length;
+    private final long ignoredBits;
+
+    VerificationLayout(int length, long ignoredBits) {
+        this.length = length;
+        this.ignoredBits = ignoredBits;
+    }
+
+    /**
+     * @return Length in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Bits in the bitmask of bytes that are not flags, e.g. lengths
+     */
+    public long getIgnoredBits() {
+        return ignoredBits;
+    }
+}
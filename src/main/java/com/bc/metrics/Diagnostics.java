@@ -0,0 +1,46 @@
+package com.bc.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diagnostic messages, logged as "CODE01: message" at WARN or ERROR level to the com.bc.diagnostics logger and counted
+ * by code as emv.diagnostics{level, code}, level WARN or ERRR.
+ */
+public final class Diagnostics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("com.bc.diagnostics");
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private Diagnostics() {
+    }
+
+    /**
+     * @param code    Diagnostic code, e.g. TDEA01
+     * @param message Message
+     */
+    public static void warn(String code, String message) {
+        LOGGER.warn("{}: {}", code, message);
+        count("WARN", code);
+    }
+
+    /**
+     * @param code    Diagnostic code, e.g. OFFC01
+     * @param message Message
+     */
+    public static void error(String code, String message) {
+        LOGGER.error("{}: {}", code, message);
+        count("ERRR", code);
+    }
+
+    private static void count(String level, String code) {
+        COUNTERS.computeIfAbsent(level + code, key -> Counter.builder("emv.diagnostics").tag("level", level)
+                .tag("code", code).description("Diagnostic messages by code").register(Metrics.globalRegistry))
+                .increment();
+    }
+}
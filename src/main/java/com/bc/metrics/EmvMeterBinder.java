@@ -0,0 +1,99 @@
+package com.bc.metrics;
+
+import com.bc.audit.AuditLog;
+import com.bc.utils.KeyScheduleCache;
+import com.bc.utils.SessionKeyPrefetcher;
+import com.bc.utils.SessionKeyTree;
+import com.bc.utils.TdeaEngine;
+import com.bc.utils.UdkCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters the cryptographic code keeps anyway, read by the registry on each scrape so the request path pays nothing
+ * for them.
+ * - emv.cache.requests{cache, result}, emv.cache.hit.ratio{cache}, emv.cache.evictions{cache} and
+ *   emv.cache.size{cache} for the key schedule, UDK, session key tree and session key prefetch caches
+ * - emv.tdea.blocks: DES blocks processed, divided by http.server.requests it gives the blocks per request
+ * - emv.session.key.prefetch{result}: session keys prefetched and prefetched keys never used
+ * - emv.audit.records{result}: audit records written, dropped and failed
+ * Also publishes the histogram buckets of http.server.requests, for percentiles by endpoint.
+ */
+@Singleton
+public class EmvMeterBinder implements MeterBinder {
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCache(registry, "key_schedule", KeyScheduleCache::getHitCount, KeyScheduleCache::getMissCount,
+                KeyScheduleCache::getEvictionCount, KeyScheduleCache::size);
+        bindCache(registry, "udk", UdkCache::getHitCount, UdkCache::getMissCount, UdkCache::getEvictionCount,
+                UdkCache::size);
+        bindCache(registry, "session_key_tree", SessionKeyTree::getNodeHitCount, SessionKeyTree::getNodeMissCount,
+                SessionKeyTree::getCardEvictionCount, SessionKeyTree::size);
+        bindCache(registry, "session_key_prefetch", SessionKeyPrefetcher::getHitCount,
+                SessionKeyPrefetcher::getMissCount, null, SessionKeyPrefetcher::size);
+
+        counter("emv.tdea.blocks", TdeaEngine::getBlockCount).description("DES blocks processed")
+                .register(registry);
+        counter("emv.session.key.prefetch", SessionKeyPrefetcher::getPrefetchCount)
+                .tag("result", "prefetched").description("Session keys prefetched ahead of their ATC").register(registry);
+        counter("emv.session.key.prefetch", SessionKeyPrefetcher::getUnusedCount)
+                .tag("result", "unused").description("Session keys prefetched ahead of their ATC").register(registry);
+        counter("emv.audit.records", AuditLog::getWrittenCount).tag("result", "written")
+                .description("Audit records").register(registry);
+        counter("emv.audit.records", AuditLog::getDroppedCount).tag("result", "dropped")
+                .description("Audit records").register(registry);
+        counter("emv.audit.records", AuditLog::getFailedCount).tag("result", "failed")
+                .description("Audit records").register(registry);
+    }
+
+    /**
+     * @return Filter publishing the histogram buckets of the REST endpoint timers
+     */
+    @Produces
+    @Singleton
+    public MeterFilter httpServerRequestsHistogram() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!"http.server.requests".equals(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        };
+    }
+
+    private static void bindCache(MeterRegistry registry, String cache, LongSupplier hits, LongSupplier misses,
+                                  LongSupplier evictions, IntSupplier size) {
+        counter("emv.cache.requests", hits).tag("cache", cache).tag("result", "hit")
+                .description("Cache lookups").register(registry);
+        counter("emv.cache.requests", misses).tag("cache", cache).tag("result", "miss")
+                .description("Cache lookups").register(registry);
+        Gauge.builder("emv.cache.hit.ratio", () -> {
+            long hitCount = hits.getAsLong();
+            long lookups = hitCount + misses.getAsLong();
+            return lookups == 0 ? Double.NaN : (double) hitCount / lookups;
+        }).tag("cache", cache).description("Cache hits over lookups since start").register(registry);
+        if (evictions != null) {
+            counter("emv.cache.evictions", evictions).tag("cache", cache).description("Cache evictions")
+                    .register(registry);
+        }
+        Gauge.builder("emv.cache.size", size::getAsInt).tag("cache", cache).description("Cache entries")
+                .register(registry);
+    }
+
+    private static FunctionCounter.Builder<LongSupplier> counter(String name, LongSupplier count) {
+        return FunctionCounter.builder(name, count, LongSupplier::getAsLong);
+    }
+}
@@ -0,0 +1,124 @@
+package com.bc.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and operation counts of the cryptographic phases and TCP commands, recorded into the global
+ * Micrometer registry and exposed with the other metrics on /q/metrics.
+ * - emv.crypto.operations{phase} and emv.crypto.phase{phase}: UDK derivation, session key derivation, MAC, ARPC,
+ *   PIN block, PIN, CVV and PVV
+ * - emv.tcp.commands{command, error} and emv.tcp.command.latency{command, error}: TCP commands by command and error code
+ * Every operation is counted, only the emv.metrics.sample-rate fraction of them, 0.0 to 1.0, is timed: recording a
+ * histogram costs more than the cheapest phases themselves, while a sample gives the same percentiles.
+ * Histogram buckets are published so percentiles can be computed across instances, e.g.
+ *   histogram_quantile(0.99, sum by (le, phase) (rate(emv_crypto_phase_seconds_bucket[1m])))
+ * emv.metrics.enabled=false turns recording off, the meters then stay at zero.
+ */
+public final class EmvMetrics {
+
+    /**
+     * Timed cryptographic phases.
+     */
+    public enum Phase {
+        UDK_DERIVATION("udk_derivation"),
+        SESSION_KEY_DERIVATION("session_key_derivation"),
+        MAC("mac"),
+        ARPC("arpc"),
+        PIN_BLOCK("pin_block"),
+        PIN("pin"),
+        CVV("cvv"),
+        PVV("pvv");
+
+        private final LongAdder operations = new LongAdder();
+        private final Timer timer;
+
+        Phase(String name) {
+            FunctionCounter.builder("emv.crypto.operations", operations, LongAdder::sum).tag("phase", name)
+                    .description("Cryptographic phases run").register(Metrics.globalRegistry);
+            timer = histogram(Timer.builder("emv.crypto.phase").tag("phase", name)
+                    .description("Latency of sampled cryptographic phases"));
+        }
+    }
+
+    /** Start time of an operation that is counted but not timed */
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static final boolean ENABLED = ConfigProvider.getConfig()
+            .getOptionalValue("emv.metrics.enabled", Boolean.class).orElse(true);
+    private static final double SAMPLE_RATE = ConfigProvider.getConfig()
+            .getOptionalValue("emv.metrics.sample-rate", Double.class).orElse(0.05);
+    /** Meters by command and then error code, not keyed by their concatenation to save an allocation per command */
+    private static final Map<String, Map<String, CommandMeters>> TCP_COMMANDS = new ConcurrentHashMap<>();
+
+    private EmvMetrics() {
+    }
+
+    /**
+     * @return Start time to pass to {@link #record(Phase, long)}, or a marker if the operation is not sampled
+     */
+    public static long start() {
+        if (!ENABLED || (SAMPLE_RATE < 1 && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE)) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Count a phase and record its latency if it was sampled.
+     * @param phase   Phase that completed, successfully or not
+     * @param started Value returned by {@link #start()} when the phase started
+     */
+    public static void record(Phase phase, long started) {
+        if (ENABLED) {
+            phase.operations.increment();
+            if (started != NOT_SAMPLED) {
+                phase.timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Count a TCP command and record its latency if it was sampled.
+     * @param command   Two character command code
+     * @param errorCode Two character error code of the response
+     * @param started   Value returned by {@link #start()} when the command was read
+     */
+    public static void recordTcpCommand(String command, String errorCode, long started) {
+        if (ENABLED) {
+            CommandMeters meters = TCP_COMMANDS.computeIfAbsent(command, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(errorCode, key -> new CommandMeters(command, errorCode));
+            meters.count.increment();
+            if (started != NOT_SAMPLED) {
+                meters.timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static Timer histogram(Timer.Builder builder) {
+        return builder.publishPercentileHistogram().minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(1)).register(Metrics.globalRegistry);
+    }
+
+    private static final class CommandMeters {
+
+        private final LongAdder count = new LongAdder();
+        private final Timer timer;
+
+        private CommandMeters(String command, String errorCode) {
+            FunctionCounter.builder("emv.tcp.commands", count, LongAdder::sum).tag("command", command)
+                    .tag("error", errorCode).description("TCP commands").register(Metrics.globalRegistry);
+            timer = histogram(Timer.builder("emv.tcp.command.latency").tag("command", command).tag("error", errorCode)
+                    .description("Latency of sampled TCP commands"));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Result of one batch item, written as one NDJSON line. Either ARQC and ARPC or Error is set.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ArqcBatchResult {
+    @JsonProperty("Index") // Position of the request in the batch, starting at 0
+    private long index;
+    @JsonProperty("ARQC")
+    private String arqc;
+    @JsonProperty("ARPC")
+    private String arpc;
+    @JsonProperty("Error")
+    private String error;
+}
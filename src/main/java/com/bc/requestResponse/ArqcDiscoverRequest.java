@@ -0,0 +1,20 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.Setter;
+import static com.bc.constants.CommonPatterns.*;
+
+/**
+ * Cryptogram parameter discovery request, one known good ARQC together with the values it was computed over. The CVN
+ * in the IAD is not used, every supported CVN is probed.
+ */
+@Getter
+@Setter
+public class ArqcDiscoverRequest extends ArqcGenerateRequest {
+    @JsonProperty("ARQC")
+    @NotBlank(message = "ARQC required, please provide a value.")
+    @Pattern(regexp = HEXADECIMAL_16_DIGITS, message = "ARQC must be exactly 16 hexadecimal digits.")
+    private String arqc;
+}
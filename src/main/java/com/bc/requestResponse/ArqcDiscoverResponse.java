@@ -0,0 +1,16 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class ArqcDiscoverResponse {
+    @JsonProperty("ARQC")
+    private String arqc;
+    @JsonProperty("Matches")
+    private List<ArqcParameterMatch> matches;
+}
@@ -65,6 +65,9 @@ public class ArqcGenerateRequest {
     @NotBlank(message = "IssuerApplicationData required, please provide a value.")
     @Pattern(regexp = HEXADECIMAL_14_64_DIGITS, message = "IssuerApplicationData must be 14 to 64 hexadecimal digits.")
     private String issuerApplicationData;
+    @JsonProperty("CdolProfile") // Optional, emv.cdol.profile.<CdolProfile> the ARQC data is built from
+    @Pattern(regexp = "^[A-Za-z0-9_-]{1,32}$", message = "CdolProfile must be 1 to 32 letters, digits, '_' or '-'.")
+    private String cdolProfile;
     @JsonProperty("CSUorARC") // Replace with IAD parser to derive CVN
     @NotBlank(message = "CSUorARC required, please provide either value based on the CVN.")
     private String arcOrCsu;
@@ -0,0 +1,42 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.Setter;
+import static com.bc.constants.CommonPatterns.*;
+
+/**
+ * ARQC validation request carrying the ICC data as received in DE55, the ARQC and the values it was computed over are
+ * decoded from its BER-TLV data objects
+ */
+@Getter
+@Setter
+public class ArqcIccDataValidateRequest {
+    @JsonProperty("Pan")
+    @NotBlank(message = "Pan required, please provide a value.")
+    @Pattern(regexp = DECIMAL_16TO19_DIGITS, message = "Pan is required, must be numeric and 16 to 19 digits long.")
+    private String pan;
+    @JsonProperty("PanSequence")
+    @NotBlank(message = "PanSequence required, please provide a value.")
+    @Pattern(regexp = DECIMAL_1TO2_DIGITS, message = "PanSequence required, must be numeric and 1 to 2 digits long.")
+    private String panSeqNbr;
+    @JsonProperty("CryptogramMasterKey")
+    @NotBlank(message = "CryptogramMasterKey required, please provide a value.")
+    @Pattern(regexp = HEXADECIMAL_32_DIGITS, message = "CryptogramMasterKey must be exactly 32 hexadecimal digits.")
+    private String mdkAc;
+    @JsonProperty("IccData") // DE55, BER-TLV holding 9F02, 9F03, 9F1A, 95, 5F2A, 9A, 9C, 9F37, 82, 9F36, 9F10 and 9F26
+    @NotBlank(message = "IccData required, please provide a value.")
+    @Pattern(regexp = HEXADECIMAL_1TO255_BYTES, message = "IccData must be 1 to 255 bytes in hexadecimal.")
+    private String iccData;
+    @JsonProperty("CdolProfile") // Optional, emv.cdol.profile.<CdolProfile> the ARQC data is built from
+    @Pattern(regexp = "^[A-Za-z0-9_-]{1,32}$", message = "CdolProfile must be 1 to 32 letters, digits, '_' or '-'.")
+    private String cdolProfile;
+    @JsonProperty("CSUorARC")
+    @NotBlank(message = "CSUorARC required, please provide either value based on the CVN.")
+    private String arcOrCsu;
+    @JsonProperty("AtcSearchWindow") // Optional, ATCs searched either side of the 9F36 ATC
+    @Min(value = 0, message = "AtcSearchWindow must be 0 to 256.")
+    @Max(value = 256, message = "AtcSearchWindow must be 0 to 256.")
+    private int atcSearchWindow;
+}
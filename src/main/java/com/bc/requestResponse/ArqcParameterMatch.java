@@ -0,0 +1,22 @@
+package com.bc.requestResponse;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.MacPaddingMethod;
+import com.bc.enums.UdkDerivationOption;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Cryptogram parameter combination that reproduces an ARQC
+ */
+@Getter
+@Setter
+public class ArqcParameterMatch {
+    @JsonProperty("CryptogramVersionNumber")
+    private CryptogramVersionNumber cryptogramVersionNumber;
+    @JsonProperty("UdkDerivationOption")
+    private UdkDerivationOption udkDerivationOption;
+    @JsonProperty("PaddingMethod") // Method_1: 0x00 terminated and zero padded, Method_2: 0x80 then zero padded
+    private MacPaddingMethod paddingMethod;
+}
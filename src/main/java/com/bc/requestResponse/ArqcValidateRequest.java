@@ -0,0 +1,23 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.Setter;
+import static com.bc.constants.CommonPatterns.*;
+
+/**
+ * ARQC validation request, the card supplied ARQC together with the values it was computed over
+ */
+@Getter
+@Setter
+public class ArqcValidateRequest extends ArqcGenerateRequest {
+    @JsonProperty("ARQC")
+    @NotBlank(message = "ARQC required, please provide a value.")
+    @Pattern(regexp = HEXADECIMAL_16_DIGITS, message = "ARQC must be exactly 16 hexadecimal digits.")
+    private String arqc;
+    @JsonProperty("AtcSearchWindow") // Optional, ATCs searched either side of ApplicationTransactionCounter
+    @Min(value = 0, message = "AtcSearchWindow must be 0 to 256.")
+    @Max(value = 256, message = "AtcSearchWindow must be 0 to 256.")
+    private int atcSearchWindow;
+}
@@ -0,0 +1,18 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ArqcValidateResponse {
+    @JsonProperty("ArqcValid")
+    private boolean arqcValid;
+    @JsonProperty("ARQC")
+    private String arqc;
+    @JsonProperty("ARPC")
+    private String arpc;
+    @JsonProperty("ApplicationTransactionCounter") // ATC the ARQC matched at, set if valid
+    private String applicationTransactionCounter;
+}
@@ -27,4 +27,7 @@ public class PinGenerateRequest {
     @NotBlank(message = "PVK required, please provide a value.")
     @Pattern(regexp = HEXADECIMAL_32_DIGITS, message = "PVK must be exactly 32 hexadecimal digits.")
     public String pinVerificationKey;
+    @JsonProperty("DecimalisationTable") // Optional, digit of each nibble 0 to F, 0123456789012345 by default
+    @Pattern(regexp = DECIMAL_16_DIGITS, message = "DecimalisationTable must be exactly 16 decimal digits.")
+    public String decimalisationTable;
 }
@@ -0,0 +1,35 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Getter;
+import lombok.Setter;
+
+import static com.bc.constants.CommonPatterns.*;
+
+/**
+ * Bulk PIN issuance of a card personalisation file, the files are named within emv.issuance.directory
+ */
+@Getter
+@Setter
+public class PinIssuanceRequest {
+    @JsonProperty("InputFile") // One card per line, PAN or PAN,CustomerPIN
+    @NotBlank(message = "InputFile required, please provide a value.")
+    @Pattern(regexp = FILE_NAME, message = "InputFile must be a file name of letters, digits, '.', '_' and '-'.")
+    public String inputFile;
+    @JsonProperty("OutputFile") // One card per line, PAN,Offset,NaturalPIN,Error
+    @NotBlank(message = "OutputFile required, please provide a value.")
+    @Pattern(regexp = FILE_NAME, message = "OutputFile must be a file name of letters, digits, '.', '_' and '-'.")
+    public String outputFile;
+    @JsonProperty("PVK")
+    @NotBlank(message = "PVK required, please provide a value.")
+    @Pattern(regexp = HEXADECIMAL_32_DIGITS, message = "PVK must be exactly 32 hexadecimal digits.")
+    public String pinVerificationKey;
+    @JsonProperty("PINLength") // Optional, length of natural PINs, 4 by default, customer PINs keep their own length
+    @Pattern(regexp = DECIMAL_1TO2_DIGITS, message = "PINLength must be numeric and 1 to 2 digits long.")
+    public String pinLength;
+    @JsonProperty("DecimalisationTable") // Optional, digit of each nibble 0 to F, 0123456789012345 by default
+    @Pattern(regexp = DECIMAL_16_DIGITS, message = "DecimalisationTable must be exactly 16 decimal digits.")
+    public String decimalisationTable;
+}
@@ -0,0 +1,33 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Progress of a bulk PIN issuance job
+ */
+@Getter
+@Setter
+public class PinIssuanceStatus {
+    @JsonProperty("JobId")
+    private String jobId;
+    @JsonProperty("State") // RUNNING, COMPLETED or FAILED
+    private String state;
+    @JsonProperty("InputFile")
+    private String inputFile;
+    @JsonProperty("OutputFile")
+    private String outputFile;
+    @JsonProperty("Records") // Cards written, including those written before the job resumed
+    private long records;
+    @JsonProperty("FailedRecords") // Cards written with an error
+    private long failedRecords;
+    @JsonProperty("ResumedRecords") // Cards written before the job resumed from its checkpoint
+    private long resumedRecords;
+    @JsonProperty("Progress") // Percentage of the input file read and written
+    private double progress;
+    @JsonProperty("RecordsPerSecond") // Since the job started or resumed
+    private double recordsPerSecond;
+    @JsonProperty("Error") // Why the job failed, it can be resumed by starting it again
+    private String error;
+}
@@ -0,0 +1,24 @@
+package com.bc.requestResponse;
+
+import com.bc.enums.VerificationFlag;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Number of transactions with a bit, or a pair of bits, set
+ */
+@Getter
+@Setter
+public class VerificationBitCount {
+    @JsonProperty("Bits") // Byte and bit, e.g. B4b8
+    private List<String> bits;
+    @JsonProperty("Flags") // Flag of each bit, null for bits without a name
+    private List<VerificationFlag> flags;
+    @JsonProperty("Count")
+    private long count;
+    @JsonProperty("Ratio") // Count over the transactions of the layout
+    private double ratio;
+}
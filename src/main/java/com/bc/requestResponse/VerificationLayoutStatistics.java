@@ -0,0 +1,24 @@
+package com.bc.requestResponse;
+
+import com.bc.enums.VerificationLayout;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Bit counts and bit pair co-occurrence counts of one TVR or CVR layout, bits and pairs never set are left out
+ */
+@Getter
+@Setter
+public class VerificationLayoutStatistics {
+    @JsonProperty("Layout")
+    private VerificationLayout layout;
+    @JsonProperty("Transactions")
+    private long transactions;
+    @JsonProperty("Bits") // By bit position
+    private List<VerificationBitCount> bits;
+    @JsonProperty("CoOccurrence") // By count, highest first
+    private List<VerificationBitCount> coOccurrence;
+}
@@ -0,0 +1,21 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Verification results analysis of a transaction file, per layout bit and bit pair counts
+ */
+@Getter
+@Setter
+public class VerificationResultsAnalysis {
+    @JsonProperty("Transactions")
+    private long transactions;
+    @JsonProperty("InvalidTransactions") // Transactions with no TVR or IAD, or one that could not be decoded
+    private long invalidTransactions;
+    @JsonProperty("Layouts") // Layouts seen in the file
+    private List<VerificationLayoutStatistics> layouts;
+}
@@ -0,0 +1,27 @@
+package com.bc.requestResponse;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.*;
+import lombok.Getter;
+import lombok.Setter;
+import static com.bc.constants.CommonPatterns.*;
+
+/**
+ * TVR and CVR decoding request, also one transaction of a verification results analysis. Either or both of the IAD,
+ * with the PAN telling its scheme, and the TVR are decoded, other transaction attributes are ignored.
+ */
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class VerificationResultsRequest {
+    @JsonProperty("Pan") // Required with IssuerApplicationData
+    @Pattern(regexp = DECIMAL_16TO19_DIGITS, message = "Pan must be numeric and 16 to 19 digits long.")
+    private String pan;
+    @JsonProperty("IssuerApplicationData")
+    @Pattern(regexp = HEXADECIMAL_14_64_DIGITS, message = "IssuerApplicationData must be 14 to 64 hexadecimal digits.")
+    private String issuerApplicationData;
+    @JsonProperty("TerminalVerificationResults")
+    @Pattern(regexp = HEXADECIMAL_10_DIGITS, message = "TerminalVerificationResults must be exactly 10 hexadecimal digits.")
+    private String terminalVerificationResults;
+}
@@ -0,0 +1,30 @@
+package com.bc.requestResponse;
+
+import com.bc.enums.VerificationFlag;
+import com.bc.enums.VerificationLayout;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decoded CVR and TVR, each as its named flags and as every bit set, e.g. B4b8, named or not
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VerificationResultsResponse {
+    @JsonProperty("CvrLayout")
+    private VerificationLayout cvrLayout;
+    @JsonProperty("CvrFlags")
+    private Set<VerificationFlag> cvrFlags;
+    @JsonProperty("CvrBits")
+    private List<String> cvrBits;
+    @JsonProperty("TvrFlags")
+    private Set<VerificationFlag> tvrFlags;
+    @JsonProperty("TvrBits")
+    private List<String> tvrBits;
+}
@@ -0,0 +1,239 @@
+package com.bc.rest.client;
+
+import com.bc.service.CryptogramBatchServiceImpl;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * POST /EmvUtilities/Cryptogram/Arqc/Generate/Batch, generating ARQCs and ARPCs in bulk from a JSON array or an NDJSON
+ * stream of ARQC generation requests, see {@link CryptogramBatchServiceImpl}. The route is registered on the Vert.x
+ * router ahead of the quarkus.http.limits.max-body-size check, which keeps applying to every other endpoint, and the
+ * size of one batch is capped by emv.batch.max-body-size instead.
+ * - The request body is never buffered whole: it is read on a worker thread a few chunks at a time, each chunk only
+ *   fetched from the connection once an earlier one has been parsed
+ * - Results are written as they complete, and writing waits while the client is not reading them
+ * - A batch over the limit is answered 413 when no result has been written yet, else its connection is closed
+ */
+@ApplicationScoped
+public class ArqcBatchRoute {
+
+    static final String PATH = "/EmvUtilities/Cryptogram/Arqc/Generate/Batch";
+
+    private static final String NDJSON = "application/x-ndjson";
+    /** Ahead of the Quarkus body size limit handler, which runs at order -2 */
+    private static final int ORDER = -3;
+    /** Request body chunks parsed ahead of the one being read */
+    private static final int READ_AHEAD = 4;
+    private static final long MAX_BODY_SIZE = ConfigProvider.getConfig()
+            .getOptionalValue("emv.batch.max-body-size", MemorySize.class).map(MemorySize::asLongValue)
+            .orElse(1L << 30);
+
+    @Inject
+    Validator validator;
+
+    void register(@Observes Router router) {
+        router.post(PATH).order(ORDER).handler(this::handle);
+    }
+
+    private void handle(RoutingContext routingContext) {
+        HttpServerRequest request = routingContext.request();
+        HttpServerResponse response = routingContext.response();
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        if (contentType == null || !(contentType.startsWith("application/json") || contentType.startsWith(NDJSON))) {
+            response.setStatusCode(415).end();
+            return;
+        }
+        String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null && Long.parseLong(contentLength) > MAX_BODY_SIZE) {
+            response.putHeader(HttpHeaders.CONNECTION, "close").setStatusCode(413).end();
+            return;
+        }
+        Vertx vertx = routingContext.vertx();
+        Context context = vertx.getOrCreateContext();
+        RequestBody requestBody = new RequestBody(request, context);
+        ResponseBody responseBody = new ResponseBody(response, context);
+        response.setChunked(true).putHeader(HttpHeaders.CONTENT_TYPE, NDJSON);
+        vertx.<Void>executeBlocking(promise -> {
+            try {
+                CryptogramBatchServiceImpl.generateArqcAndArpcBatch(requestBody, responseBody, validator);
+                promise.complete();
+            } catch (IOException | RuntimeException exception) {
+                promise.fail(exception);
+            }
+        }, false).onComplete(result -> {
+            if (result.succeeded()) {
+                response.end();
+            } else if (!response.headWritten() && !response.closed()) {
+                boolean tooLarge = result.cause() instanceof BodyTooLargeException;
+                response.putHeader(HttpHeaders.CONNECTION, "close").putHeader(HttpHeaders.CONTENT_TYPE, "text/plain")
+                        .setStatusCode(tooLarge ? 413 : 400).end(String.valueOf(result.cause().getMessage()));
+            } else {
+                // Part of the results has been sent, a truncated stream tells the client the batch failed
+                request.connection().close();
+            }
+        });
+    }
+
+    /**
+     * Request body read on demand from the connection, on a worker thread.
+     */
+    private static final class RequestBody extends InputStream {
+
+        private static final Buffer END = Buffer.buffer();
+
+        private final HttpServerRequest request;
+        private final Context context;
+        private final BlockingQueue<Buffer> chunks = new LinkedBlockingQueue<>();
+        private volatile IOException failure;
+        /** Bytes received, event loop only */
+        private long received;
+        private Buffer chunk;
+        private int position;
+
+        private RequestBody(HttpServerRequest request, Context context) {
+            this.request = request;
+            this.context = context;
+            request.pause();
+            request.handler(data -> {
+                received += data.length();
+                if (received > MAX_BODY_SIZE) {
+                    // Nothing further is fetched, the reader stops at the failure
+                    end(new BodyTooLargeException());
+                } else {
+                    chunks.add(data);
+                }
+            });
+            request.endHandler(ignored -> chunks.add(END));
+            request.exceptionHandler(exception -> end(new IOException("Batch request failed: "
+                    + exception.getMessage(), exception)));
+            request.fetch(READ_AHEAD);
+        }
+
+        private void end(IOException exception) {
+            if (failure == null) {
+                failure = exception;
+                chunks.add(END);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (chunk != END && (chunk == null || position == chunk.length())) {
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Batch interrupted.");
+                }
+                position = 0;
+                if (chunk != END) {
+                    context.runOnContext(ignored -> request.fetch(1));
+                }
+            }
+            if (chunk == END) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return -1;
+            }
+            int count = Math.min(length, chunk.length() - position);
+            chunk.getBytes(position, position + count, bytes, offset);
+            position += count;
+            return count;
+        }
+    }
+
+    /**
+     * Response body written from a worker thread, waiting while the connection's write queue is full.
+     */
+    private static final class ResponseBody extends OutputStream {
+
+        private final HttpServerResponse response;
+        private final Context context;
+
+        private ResponseBody(HttpServerResponse response, Context context) {
+            this.response = response;
+            this.context = context;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            awaitDrained();
+            // Vert.x wraps rather than copies the array, which the caller reuses
+            response.write(Buffer.buffer(Arrays.copyOfRange(bytes, offset, offset + length)));
+        }
+
+        private void awaitDrained() throws IOException {
+            if (response.closed()) {
+                throw new IOException("Client closed the connection.");
+            }
+            if (!response.writeQueueFull()) {
+                return;
+            }
+            CountDownLatch drained = new CountDownLatch(1);
+            context.runOnContext(ignored -> {
+                if (response.writeQueueFull() && !response.closed()) {
+                    response.drainHandler(drain -> drained.countDown());
+                    response.closeHandler(close -> drained.countDown());
+                } else {
+                    drained.countDown();
+                }
+            });
+            try {
+                drained.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Batch interrupted.");
+            }
+            if (response.closed()) {
+                throw new IOException("Client closed the connection.");
+            }
+        }
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private BodyTooLargeException() {
+            super("Batch exceeds emv.batch.max-body-size of " + MAX_BODY_SIZE + " bytes.");
+        }
+    }
+}
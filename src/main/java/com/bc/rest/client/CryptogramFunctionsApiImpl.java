@@ -1,11 +1,21 @@
 package com.bc.rest.client;
 
+import com.bc.requestResponse.ArqcDiscoverRequest;
+import com.bc.requestResponse.ArqcDiscoverResponse;
 import com.bc.requestResponse.ArqcGenerateResponse;
+import com.bc.requestResponse.ArqcIccDataValidateRequest;
+import com.bc.requestResponse.ArqcValidateRequest;
+import com.bc.requestResponse.ArqcValidateResponse;
 import com.bc.service.CryptogramServiceImpl;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
@@ -13,14 +23,19 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import com.bc.requestResponse.ArqcGenerateRequest;
+
 /**
  * Implementation class for Cryptogram functions API
+ * Single cryptograms are pure CPU work of a few microseconds and run on the event loop, discovery and ATC window
+ * search wait on parallel work and run on worker threads. Batches are streamed by {@link ArqcBatchRoute}
  */
 @Path("/EmvUtilities")
 public class CryptogramFunctionsApiImpl {
 
     @Inject
     CryptogramServiceImpl cryptogramServiceImpl;
+    @Inject
+    Validator validator;
     Logger log = LoggerFactory.getLogger("new");
     /**
      * Method hosting REST API and functions for generating Authoris\ation Request Cryptogram (ARQC) and
@@ -30,6 +45,7 @@ public class CryptogramFunctionsApiImpl {
 
     @POST
     @Path("/Cryptogram/Arqc/Generate")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response ArqcGenerate(@Valid ArqcGenerateRequest arqcGenerateRequest) {
@@ -42,6 +58,27 @@ public class CryptogramFunctionsApiImpl {
         }
     }
 
+    /**
+     * Method hosting REST API and functions for discovering the Cryptogram Version Number, UDK derivation option and
+     * padding of a card from one known good Authorisation Request Cryptogram (ARQC)
+     * @return JSON response object containing the ARQC and every parameter combination that reproduces it
+     */
+    @POST
+    @Path("/Cryptogram/Arqc/Discover")
+    @Blocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response ArqcDiscover(@Valid ArqcDiscoverRequest arqcDiscoverRequest) {
+        try {
+            ArqcDiscoverResponse arqcDiscoverResponse =
+                    CryptogramServiceImpl.discoverArqcParameters(arqcDiscoverRequest);
+            return Response.status(Response.Status.OK).entity(arqcDiscoverResponse).build();
+        }
+        catch(Exception e){
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
     /*
      * Pending implementation
      */
@@ -58,6 +95,7 @@ public class CryptogramFunctionsApiImpl {
     public Response ArpcGenerate(ArpcGenerateRequest arpcGenerateRequest) {
         return null;
     }
+*/
 
     /**
      * Method hosting REST API and functions for validating Authorisation Request Cryptogram (ARQC)
@@ -67,12 +105,52 @@ public class CryptogramFunctionsApiImpl {
      * ARQC value that was input
      * ARPC value generated, if ARQC validation was successful, else set to null
      */
-/*
     @POST
     @Path("/Cryptogram/Arqc/Validate")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response ArqcValidate(ArqcValidateRequest arqcValidateRequest) {
-        return null;
-    } */
+    public Uni<Response> ArqcValidate(@Valid ArqcValidateRequest arqcValidateRequest) {
+        Uni<Response> response = Uni.createFrom().item(() -> {
+            try {
+                ArqcValidateResponse arqcValidateResponse =
+                        CryptogramServiceImpl.validateArqcAndGenerateArpc(arqcValidateRequest);
+                return Response.status(Response.Status.OK).entity(arqcValidateResponse).build();
+            }
+            catch(Exception e){
+                return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            }
+        });
+        // A single ATC is validated on the event loop, an ATC window search waits on parallel workers and is
+        // moved to a worker thread
+        return arqcValidateRequest.getAtcSearchWindow() > 0
+                ? response.runSubscriptionOn(Infrastructure.getDefaultWorkerPool()) : response;
+    }
+
+    /**
+     * Method hosting REST API and functions for validating the Authorisation Request Cryptogram (ARQC) of ICC data as
+     * received in DE55 and generating the Authorisation Response Cryptogram
+     * @return JSON response object containing the following:
+     * Boolean attribute indicating if ARQC validation was successful
+     * ARQC value read from tag 9F26
+     * ARPC value generated, if ARQC validation was successful, else set to null
+     */
+    @POST
+    @Path("/Cryptogram/Arqc/Validate/IccData")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> ArqcValidateIccData(@Valid ArqcIccDataValidateRequest arqcIccDataValidateRequest) {
+        Uni<Response> response = Uni.createFrom().item(() -> {
+            try {
+                ArqcValidateResponse arqcValidateResponse =
+                        CryptogramServiceImpl.validateArqcFromIccData(arqcIccDataValidateRequest);
+                return Response.status(Response.Status.OK).entity(arqcValidateResponse).build();
+            }
+            catch(Exception e){
+                return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+            }
+        });
+        return arqcIccDataValidateRequest.getAtcSearchWindow() > 0
+                ? response.runSubscriptionOn(Infrastructure.getDefaultWorkerPool()) : response;
+    }
+
 }
@@ -3,6 +3,7 @@ package com.bc.rest.client;
 import com.bc.requestResponse.CvxGenerateRequest;
 import com.bc.requestResponse.CvxGenerateResponse;
 import com.bc.service.CardVerificationCodesServiceImpl;
+import io.smallrye.common.annotation.NonBlocking;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
@@ -14,6 +15,7 @@ import jakarta.ws.rs.core.Response;
 
 /**
  * Implementation class for CVx functions API
+ * CVx generation is pure CPU work and runs on the event loop
  */
 @Path("/EmvUtilities")
 public class CvxFunctionsApiImpl {
@@ -27,6 +29,7 @@ public class CvxFunctionsApiImpl {
 
     @POST
     @Path("/Cvx/Generate")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response generateCvx(@Valid CvxGenerateRequest cvxGenerateRequest) throws Exception {
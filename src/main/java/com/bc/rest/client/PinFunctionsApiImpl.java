@@ -1,17 +1,21 @@
 package com.bc.rest.client;
 
+import com.bc.audit.AuditLog;
 import com.bc.requestResponse.*;
+import com.bc.service.PinIssuanceServiceImpl;
 import com.bc.service.PinServiceImpl;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import lombok.extern.slf4j.Slf4j;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
@@ -20,9 +24,10 @@ import java.util.Arrays;
 /**
  * Implementation class for PIN functions API
  * Only IBM 3624 PIN and Offset method is supported at this time
+ * PIN functions are pure CPU work and run on the event loop, bulk issuance opens files and runs on a worker thread
+ * Requests are audited with keys, PINs and PIN blocks masked, see {@link AuditLog}
  */
 @Path("/EmvUtilities")
-@Slf4j
 public class PinFunctionsApiImpl {
 
     @Inject
@@ -34,12 +39,12 @@ public class PinFunctionsApiImpl {
 
     @POST
     @Path("/Pin/Generate")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response generatePin(@Valid PinGenerateRequest pinGenerateRequest) throws Exception {
 //        try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        log.info(objectMapper.writer().writeValueAsString(pinGenerateRequest));
+        AuditLog.record("Pin/Generate", pinGenerateRequest);
         PinGenerateResponse pinGenerateResponse = PinServiceImpl.generatePin(pinGenerateRequest);
         return Response.status(Response.Status.OK).entity(pinGenerateResponse).build();
 //        }
@@ -55,12 +60,12 @@ public class PinFunctionsApiImpl {
 
     @POST
     @Path("/Pvv/Generate")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response generatePvv(@Valid PvvGenerateRequest pvvGenerateRequest) throws Exception {
 //        try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        log.info(objectMapper.writer().writeValueAsString(pvvGenerateRequest));
+        AuditLog.record("Pvv/Generate", pvvGenerateRequest);
         PvvGenerateResponse pvvGenerateResponse = PinServiceImpl.generatePvv(pvvGenerateRequest);
         return Response.status(Response.Status.OK).entity(pvvGenerateResponse).build();
 //        }
@@ -76,12 +81,12 @@ public class PinFunctionsApiImpl {
 
     @POST
     @Path("/Pinblock/Decrypt")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response decryptPinblock(@Valid PinblockDecryptRequest pinblockDecryptRequest) throws Exception {
 //        try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        log.info(objectMapper.writer().writeValueAsString(pinblockDecryptRequest));
+        AuditLog.record("Pinblock/Decrypt", pinblockDecryptRequest);
         PinblockDecryptResponse pinblockDecryptResponse = PinServiceImpl.decryptPinblock(pinblockDecryptRequest);
         return Response.status(Response.Status.OK).entity(pinblockDecryptResponse).build();
 //        }
@@ -97,12 +102,12 @@ public class PinFunctionsApiImpl {
 
     @POST
     @Path("/Pinblock/Generate")
+    @NonBlocking
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response generatePinblock(@Valid PinblockGenerateRequest pinblockGenerateRequest) throws Exception {
 //        try {
-        ObjectMapper objectMapper = new ObjectMapper();
-        log.info(objectMapper.writer().writeValueAsString(pinblockGenerateRequest));
+        AuditLog.record("Pinblock/Generate", pinblockGenerateRequest);
         PinblockGenerateResponse pinblockGenerateResponse = PinServiceImpl.generatePinblock(pinblockGenerateRequest);
         return Response.status(Response.Status.OK).entity(pinblockGenerateResponse).build();
 //        }
@@ -111,6 +116,45 @@ public class PinFunctionsApiImpl {
 //        }
     }
 
+    /**
+     * Method hosting REST API and functions for starting a bulk PIN issuance job of a card personalisation file, or
+     * resuming it from its checkpoint
+     * @return JSON response object containing the job id and progress of the job started
+     */
+
+    @POST
+    @Path("/Pin/Issuance")
+    @Blocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response startPinIssuance(@Valid PinIssuanceRequest pinIssuanceRequest) {
+        try {
+            AuditLog.record("Pin/Issuance", pinIssuanceRequest);
+            PinIssuanceStatus pinIssuanceStatus = PinIssuanceServiceImpl.start(pinIssuanceRequest);
+            return Response.status(Response.Status.ACCEPTED).entity(pinIssuanceStatus).build();
+        }
+        catch(Exception e){
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Method hosting REST API and functions for polling the progress of a bulk PIN issuance job
+     * @return JSON response object containing the state, cards written and progress of the job
+     */
+
+    @GET
+    @Path("/Pin/Issuance/{JobId}")
+    @NonBlocking
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response pinIssuanceStatus(@PathParam("JobId") String jobId) {
+        PinIssuanceStatus pinIssuanceStatus = PinIssuanceServiceImpl.status(jobId);
+        if (pinIssuanceStatus == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Unknown JobId.").build();
+        }
+        return Response.status(Response.Status.OK).entity(pinIssuanceStatus).build();
+    }
+
     /*
      * Pending implementation
      */
@@ -0,0 +1,74 @@
+package com.bc.rest.client;
+
+import com.bc.requestResponse.VerificationResultsAnalysis;
+import com.bc.requestResponse.VerificationResultsRequest;
+import com.bc.requestResponse.VerificationResultsResponse;
+import com.bc.service.VerificationResultsServiceImpl;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.io.InputStream;
+
+/**
+ * Implementation class for the Terminal and Card Verification Results API
+ */
+@Path("/EmvUtilities")
+public class VerificationResultsApiImpl {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Inject
+    Validator validator;
+
+    /**
+     * Method hosting REST API and functions for decoding the Card Verification Results in the Issuer Application Data
+     * and the Terminal Verification Results of a transaction
+     * @return JSON response object containing the CVR layout, and the named flags and bits set of the CVR and TVR
+     */
+    @POST
+    @Path("/VerificationResults/Decode")
+    @NonBlocking
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response VerificationResultsDecode(@Valid VerificationResultsRequest verificationResultsRequest) {
+        try {
+            VerificationResultsResponse verificationResultsResponse =
+                    VerificationResultsServiceImpl.decode(verificationResultsRequest);
+            return Response.status(Response.Status.OK).entity(verificationResultsResponse).build();
+        }
+        catch(Exception e){
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Method hosting REST API and functions for analysing the CVR and TVR of a transaction file, a JSON array or an
+     * NDJSON stream of transactions each with an IAD and PAN, a TVR or both
+     * @return JSON response object containing, by layout, the number of transactions with each bit and each pair of
+     * bits set
+     */
+    @POST
+    @Path("/VerificationResults/Analyse")
+    @Blocking
+    @Consumes({MediaType.APPLICATION_JSON, NDJSON})
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response VerificationResultsAnalyse(InputStream transactions) {
+        try {
+            VerificationResultsAnalysis verificationResultsAnalysis =
+                    VerificationResultsServiceImpl.analyse(transactions, validator);
+            return Response.status(Response.Status.OK).entity(verificationResultsAnalysis).build();
+        }
+        catch(Exception e){
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+}
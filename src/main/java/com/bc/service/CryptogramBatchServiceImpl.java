@@ -0,0 +1,187 @@
+package com.bc.service;
+
+import com.bc.requestResponse.ArqcBatchResult;
+import com.bc.requestResponse.ArqcGenerateRequest;
+import com.bc.requestResponse.ArqcGenerateResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Batch ARQC and ARPC generation. Requests are read one at a time from a JSON array or an NDJSON stream and generated
+ * in parallel, and each result is written as one NDJSON line as soon as it completes, so results arrive in completion
+ * order and carry the index of their request.
+ * - At most emv.batch.max-in-flight requests of a batch are parsed but not yet written, reading blocks until a
+ *   result has been written, so memory stays bounded whatever the size of the batch
+ * - Requests run on a shared pool of emv.batch.threads threads, 0 sizes it to the number of processors
+ * - A request that fails to map, validate or generate is reported in place through the Error attribute of its line.
+ *   Malformed JSON is reported the same way and ends the batch, as the next request can no longer be found.
+ */
+@ApplicationScoped
+public class CryptogramBatchServiceImpl {
+
+    private static final int MAX_IN_FLIGHT = Math.max(1, ConfigProvider.getConfig()
+            .getOptionalValue("emv.batch.max-in-flight", Integer.class).orElse(256));
+    private static final int THREADS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.batch.threads", Integer.class).orElse(0);
+    /** Lines written between flushes while further results are still in flight */
+    private static final int FLUSH_INTERVAL = 64;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectWriter RESULT_WRITER = OBJECT_MAPPER.writerFor(ArqcBatchResult.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            THREADS > 0 ? THREADS : Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "emv-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Generate ARQC and ARPC for every request of a batch.
+     * @param requests  JSON array or NDJSON stream of ArqcGenerateRequest objects
+     * @param results   Stream receiving one ArqcBatchResult NDJSON line per request
+     * @param validator Bean validator applied to every request
+     * @throws IOException When the requests cannot be read as JSON or the results cannot be written
+     */
+    public static void generateArqcAndArpcBatch(InputStream requests, OutputStream results, Validator validator)
+            throws IOException {
+        Batch batch = new Batch(new BufferedWriter(new OutputStreamWriter(results, StandardCharsets.UTF_8)));
+        long index = 0;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(requests)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY && batch.failure.get() == null) {
+                JsonNode request = OBJECT_MAPPER.readTree(parser);
+                batch.submit(index++, request, validator);
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException exception) {
+            ArqcBatchResult result = new ArqcBatchResult();
+            result.setIndex(index);
+            result.setError("Malformed JSON: " + exception.getOriginalMessage());
+            batch.write(result);
+        } finally {
+            batch.awaitCompletion();
+        }
+        IOException failure = batch.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Requests of one batch in flight, and the writer their results share.
+     */
+    private static final class Batch {
+
+        private final Writer writer;
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+        /** Lines written since the last flush, guarded by the writer */
+        private int unflushed;
+
+        private Batch(Writer writer) {
+            this.writer = writer;
+        }
+
+        private void submit(long index, JsonNode request, Validator validator) throws IOException {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch interrupted.", exception);
+            }
+            try {
+                EXECUTOR.execute(() -> {
+                    try {
+                        write(generate(index, request, validator));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RuntimeException exception) {
+                inFlight.release();
+                throw exception;
+            }
+        }
+
+        private static ArqcBatchResult generate(long index, JsonNode request, Validator validator) {
+            ArqcBatchResult result = new ArqcBatchResult();
+            result.setIndex(index);
+            try {
+                ArqcGenerateRequest arqcGenerateRequest = OBJECT_MAPPER.treeToValue(request,
+                        ArqcGenerateRequest.class);
+                Set<ConstraintViolation<ArqcGenerateRequest>> violations = validator.validate(arqcGenerateRequest);
+                if (!violations.isEmpty()) {
+                    StringBuilder error = new StringBuilder();
+                    for (ConstraintViolation<ArqcGenerateRequest> violation : violations) {
+                        error.append(error.length() == 0 ? "" : " ").append(violation.getMessage());
+                    }
+                    result.setError(error.toString());
+                    return result;
+                }
+                ArqcGenerateResponse arqcGenerateResponse =
+                        CryptogramServiceImpl.generateArqcAndArpc(arqcGenerateRequest);
+                result.setArqc(arqcGenerateResponse.getArqc());
+                result.setArpc(arqcGenerateResponse.getArpc());
+            } catch (Exception exception) {
+                result.setError(exception.getMessage() == null ? exception.toString() : exception.getMessage());
+            }
+            return result;
+        }
+
+        private void write(ArqcBatchResult result) {
+            if (failure.get() != null) {
+                return;
+            }
+            try {
+                synchronized (writer) {
+                    RESULT_WRITER.writeValue(writer, result);
+                    writer.write('\n');
+                    // Flush at once when this is the last result in flight, so a slow batch still streams
+                    if (++unflushed >= FLUSH_INTERVAL || inFlight.availablePermits() >= MAX_IN_FLIGHT - 1) {
+                        writer.flush();
+                        unflushed = 0;
+                    }
+                }
+            } catch (IOException exception) {
+                // The client has gone, stop reading further requests
+                failure.compareAndSet(null, exception);
+            }
+        }
+
+        private void awaitCompletion() throws IOException {
+            inFlight.acquireUninterruptibly(MAX_IN_FLIGHT);
+            inFlight.release(MAX_IN_FLIGHT);
+            if (failure.get() == null) {
+                synchronized (writer) {
+                    writer.flush();
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.bc.service;
 
 import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.EmvTag;
 import com.bc.enums.UdkDerivationOption;
+import com.bc.requestResponse.ArqcDiscoverRequest;
+import com.bc.requestResponse.ArqcDiscoverResponse;
 import com.bc.requestResponse.ArqcGenerateRequest;
 import com.bc.requestResponse.ArqcGenerateResponse;
+import com.bc.requestResponse.ArqcIccDataValidateRequest;
+import com.bc.requestResponse.ArqcValidateRequest;
+import com.bc.requestResponse.ArqcParameterMatch;
+import com.bc.requestResponse.ArqcValidateResponse;
 import com.bc.utils.ArpcGen;
+import com.bc.utils.ArqcDiscovery;
 import com.bc.utils.ArqcGen;
+import com.bc.utils.HexCodec;
 import com.bc.utils.IADParser;
+import com.bc.utils.TlvDecoder;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @ApplicationScoped
 public class CryptogramServiceImpl {
 
@@ -23,19 +36,142 @@ public class CryptogramServiceImpl {
         ArqcGen arqcGen = new ArqcGen();
         ArpcGen arpcGen = new ArpcGen();
         // Parse IAD and derive CVN
-        IADParser iadParser = new IADParser();
-        iadParser.parse(arqcGenerateRequest.getIssuerApplicationData(), checkForVisaPan(arqcGenerateRequest.getPan()));
+        IADParser iadParser = parseIad(arqcGenerateRequest);
         mapArqcGenerateRequest(arqcGenerateRequest, arqcGen, iadParser); // Is this a call by reference??
-        String arqc = arqcGen.getArqc().toUpperCase();
+        String arqc = arqcGen.getArqc();
         arqcGenerateResponse.setArqc(arqc);
         arpcGen.setArqc(arqc);
-        arpcGen.setCsuMethod(!iadParser.getCvn().equals("10") && !iadParser.getCvn().equals("14"));
+        arpcGen.setCsuMethod(isCsuMethod(iadParser));
         arpcGen.setArcOrCsu(arqcGenerateRequest.getArcOrCsu());
         arpcGen.setSessionKey(arqcGen.getUskLeft() + arqcGen.getUskRight());
-        arqcGenerateResponse.setArpc(arpcGen.getArpc().toUpperCase());
+        arqcGenerateResponse.setArpc(arpcGen.getArpc());
         return arqcGenerateResponse;
     }
 
+    /**
+     * Driver method for validating a card supplied Authorisation Request Cryptogram (ARQC) and generating the
+     * Authorisation Response Cryptogram (ARPC) under the same session key when it is valid, optionally searching a
+     * window of ATCs around the request ATC
+     * @param arqcValidateRequest ArqcValidateRequest object containing the ARQC and the values it was computed over
+     * @return ArqcValidateResponse object containing the validation result, the ARQC and, if valid, the ARPC
+     */
+    public static ArqcValidateResponse validateArqcAndGenerateArpc(ArqcValidateRequest arqcValidateRequest)
+            throws Exception {
+        ArqcGen arqcGen = new ArqcGen();
+        IADParser iadParser = parseIad(arqcValidateRequest);
+        mapArqcGenerateRequest(arqcValidateRequest, arqcGen, iadParser);
+        return validateArqc(arqcGen, iadParser, arqcValidateRequest.getArqc(),
+                arqcValidateRequest.getAtcSearchWindow(), arqcValidateRequest.getArcOrCsu());
+    }
+
+    /**
+     * Driver method for validating the Authorisation Request Cryptogram (ARQC) of ICC data as received in DE55 and
+     * generating the Authorisation Response Cryptogram (ARPC) when it is valid. The ARQC and the values it was
+     * computed over are read from the BER-TLV data objects in a single pass, the IAD is parsed in place.
+     * @param arqcIccDataValidateRequest ArqcIccDataValidateRequest object containing the keys and the ICC data
+     * @return ArqcValidateResponse object containing the validation result, the ARQC and, if valid, the ARPC
+     * @throws IllegalArgumentException When the ICC data is not valid BER-TLV, misses a required data object or the
+     *                                  IAD is not of a known format
+     */
+    public static ArqcValidateResponse validateArqcFromIccData(ArqcIccDataValidateRequest arqcIccDataValidateRequest)
+            throws Exception {
+        byte[] iccData = HexCodec.decode(arqcIccDataValidateRequest.getIccData());
+        TlvDecoder tlvDecoder = new TlvDecoder();
+        tlvDecoder.decode(iccData, 0, iccData.length);
+        if (!tlvDecoder.has(EmvTag.ISSUER_APPLICATION_DATA)) {
+            throw new IllegalArgumentException("DE55: tag 9F10 required.");
+        }
+        IADParser iadParser = new IADParser();
+        if (iadParser.wrap(iccData, tlvDecoder.offset(EmvTag.ISSUER_APPLICATION_DATA),
+                tlvDecoder.length(EmvTag.ISSUER_APPLICATION_DATA),
+                checkForVisaPan(arqcIccDataValidateRequest.getPan())) == null) {
+            throw new IllegalArgumentException("Issuer application data is not of a known IAD format.");
+        }
+        ArqcGen arqcGen = new ArqcGen();
+        mapIccData(arqcIccDataValidateRequest, tlvDecoder, arqcGen, iadParser);
+        return validateArqc(arqcGen, iadParser, requireHex(tlvDecoder, EmvTag.APPLICATION_CRYPTOGRAM),
+                arqcIccDataValidateRequest.getAtcSearchWindow(), arqcIccDataValidateRequest.getArcOrCsu());
+    }
+
+    /**
+     * Validate a card supplied ARQC and generate the ARPC under the same session key when it is valid, optionally
+     * searching a window of ATCs around the ATC set on the ARQC generator
+     * @param arqcGen         ARQC generator holding the values the ARQC was computed over
+     * @param iadParser       Parsed IAD
+     * @param arqc            ARQC received from the card
+     * @param atcSearchWindow Number of ATCs searched either side of the ATC, 0 only tests the ATC
+     * @param arcOrCsu        ARC or CSU the ARPC is generated with
+     * @return ArqcValidateResponse object containing the validation result, the ARQC and, if valid, the ARPC
+     */
+    private static ArqcValidateResponse validateArqc(ArqcGen arqcGen, IADParser iadParser, String arqc,
+                                                     int atcSearchWindow, String arcOrCsu) throws Exception {
+        ArqcValidateResponse arqcValidateResponse = new ArqcValidateResponse();
+        // A non-zero window searches the ATCs around the request ATC when the card and host counters are out of sync
+        boolean arqcValid = arqcGen.validateArqc(arqc, atcSearchWindow);
+        arqcValidateResponse.setArqcValid(arqcValid);
+        arqcValidateResponse.setArqc(arqc);
+        if (arqcValid) {
+            arqcValidateResponse.setApplicationTransactionCounter(arqcGen.getApplicationTransactionCounter());
+            // The session key derived for the validation is reused for the ARPC
+            ArpcGen arpcGen = new ArpcGen();
+            arpcGen.setArqc(arqc);
+            arpcGen.setCsuMethod(isCsuMethod(iadParser));
+            arpcGen.setArcOrCsu(arcOrCsu);
+            arpcGen.setSessionKey(arqcGen.getUskLeft() + arqcGen.getUskRight());
+            arqcValidateResponse.setArpc(arpcGen.getArpc());
+        }
+        return arqcValidateResponse;
+    }
+
+    /**
+     * Driver method for discovering the cryptogram parameters of a card, by probing every combination of Cryptogram
+     * Version Number (CVN), UDK derivation option and padding against a known good Authorisation Request Cryptogram
+     * @param arqcDiscoverRequest ArqcDiscoverRequest object containing the ARQC and the values it was computed over
+     * @return ArqcDiscoverResponse object containing the ARQC and the combinations that reproduce it
+     */
+    public static ArqcDiscoverResponse discoverArqcParameters(ArqcDiscoverRequest arqcDiscoverRequest)
+            throws Exception {
+        ArqcDiscoverResponse arqcDiscoverResponse = new ArqcDiscoverResponse();
+        ArqcGen arqcGen = new ArqcGen();
+        mapArqcGenerateRequest(arqcDiscoverRequest, arqcGen, null);
+        List<ArqcParameterMatch> matches = new ArrayList<>();
+        for (ArqcDiscovery.Match match : ArqcDiscovery.discover(arqcGen, arqcDiscoverRequest.getArqc())) {
+            ArqcParameterMatch arqcParameterMatch = new ArqcParameterMatch();
+            arqcParameterMatch.setCryptogramVersionNumber(match.getCryptogramVersionNumber());
+            arqcParameterMatch.setUdkDerivationOption(match.getUdkDerivationOption());
+            arqcParameterMatch.setPaddingMethod(match.getPaddingMethod());
+            matches.add(arqcParameterMatch);
+        }
+        arqcDiscoverResponse.setArqc(arqcDiscoverRequest.getArqc());
+        arqcDiscoverResponse.setMatches(matches);
+        return arqcDiscoverResponse;
+    }
+
+    /**
+     * Parse the IAD of a request
+     * @param arqcGenerateRequest Request carrying the PAN and IAD
+     * @return IAD parser over the request IAD
+     * @throws IllegalArgumentException When the IAD is not of a known format
+     */
+    private static IADParser parseIad(ArqcGenerateRequest arqcGenerateRequest) {
+        IADParser iadParser = new IADParser();
+        if (iadParser.parse(arqcGenerateRequest.getIssuerApplicationData(),
+                checkForVisaPan(arqcGenerateRequest.getPan())) == null) {
+            throw new IllegalArgumentException("Issuer application data is not of a known IAD format.");
+        }
+        return iadParser;
+    }
+
+    /**
+     * @param iadParser Parsed IAD
+     * @return True for ARPC method 2 with a CSU, false for ARPC method 1 with an ARC which CVN 10 and 14 use
+     */
+    private static boolean isCsuMethod(IADParser iadParser) {
+        CryptogramVersionNumber cryptogramVersionNumber = iadParser.getCryptogramVersionNumber();
+        return cryptogramVersionNumber != CryptogramVersionNumber.CVN_10
+                && cryptogramVersionNumber != CryptogramVersionNumber.CVN_14;
+    }
+
     /**
      * Check if a given Pan is Visa pan or not by checking first character of PAN
      * @param pan Pan to be verified
@@ -74,28 +210,83 @@ public class CryptogramServiceImpl {
         arqcGen.setApplicationInterchangeProfile(arqcGenerateRequest.getApplicationInterchangeProfile());
         arqcGen.setIssuerApplicationData(arqcGenerateRequest.getIssuerApplicationData());
         arqcGen.setApplicationTransactionCounter(arqcGenerateRequest.getApplicationTransactionCounter());
+        arqcGen.setCdolProfile(arqcGenerateRequest.getCdolProfile());
+        mapCryptogramVersion(arqcGen, iadParser);
+         // Need to move this to the API request object and introduce ARC for older CVNs
+    }
+
+    /**
+     * Map the keys of an ArqcIccDataValidateRequest and the ICC data objects to ArqcGen object attributes, the BER-TLV
+     * values are already in the encoding the ARQC data is built from
+     * @param arqcIccDataValidateRequest ArqcIccDataValidateRequest API request object
+     * @param tlvDecoder                 Decoder over the request ICC data
+     * @param arqcGen                    Arqc generation utility request object
+     * @param iadParser                  Parser over the IAD of the ICC data
+     */
+    private static void mapIccData(ArqcIccDataValidateRequest arqcIccDataValidateRequest, TlvDecoder tlvDecoder,
+                                   ArqcGen arqcGen, IADParser iadParser) throws Exception {
+        arqcGen.setMdkAc(arqcIccDataValidateRequest.getMdkAc());
+        arqcGen.setPan(arqcIccDataValidateRequest.getPan());
+        arqcGen.setPanSeqNbr("0".repeat(2 - arqcIccDataValidateRequest.getPanSeqNbr().length())
+                + arqcIccDataValidateRequest.getPanSeqNbr());
+        arqcGen.setAmountAuthorised(requireHex(tlvDecoder, EmvTag.AMOUNT_AUTHORISED));
+        // Terminals leave out amount other when there is no cashback
+        arqcGen.setAmountOther(tlvDecoder.has(EmvTag.AMOUNT_OTHER) ? tlvDecoder.getHex(EmvTag.AMOUNT_OTHER)
+                : "000000000000");
+        arqcGen.setTerminalCountryCode(requireHex(tlvDecoder, EmvTag.TERMINAL_COUNTRY_CODE));
+        arqcGen.setTerminalVerificationResults(requireHex(tlvDecoder, EmvTag.TERMINAL_VERIFICATION_RESULTS));
+        arqcGen.setTransactionCurrencyCode(requireHex(tlvDecoder, EmvTag.TRANSACTION_CURRENCY_CODE));
+        arqcGen.setTransactionDate(requireHex(tlvDecoder, EmvTag.TRANSACTION_DATE));
+        arqcGen.setTransactionType(requireHex(tlvDecoder, EmvTag.TRANSACTION_TYPE));
+        arqcGen.setUnpredictableNumber(requireHex(tlvDecoder, EmvTag.UNPREDICTABLE_NUMBER));
+        arqcGen.setApplicationInterchangeProfile(requireHex(tlvDecoder, EmvTag.APPLICATION_INTERCHANGE_PROFILE));
+        arqcGen.setIssuerApplicationData(requireHex(tlvDecoder, EmvTag.ISSUER_APPLICATION_DATA));
+        arqcGen.setApplicationTransactionCounter(requireHex(tlvDecoder, EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        arqcGen.setCdolProfile(arqcIccDataValidateRequest.getCdolProfile());
+        mapCryptogramVersion(arqcGen, iadParser);
+    }
+
+    /**
+     * Set the UDK derivation option and the CVN of the IAD on an ArqcGen object, shared by the request and ICC data
+     * mappings
+     * @param arqcGen   Arqc generation utility request object
+     * @param iadParser Parser over the IAD, null for parameter discovery which probes every CVN
+     * @throws IllegalArgumentException When the IAD carries CVN 14 or a CVN without a known ARQC method
+     */
+    private static void mapCryptogramVersion(ArqcGen arqcGen, IADParser iadParser) throws Exception {
         // This needs to be auto set based on PAN length, I think, PAN greater than 16 digits must use Option_B
         // for UDK derivation, refer EMV manual BOOK 2 again to understand properly
         arqcGen.setUdkDerivationOption(UdkDerivationOption.Option_A);
-        // Set CVN for ARQC generation
 
         // Below IAD parser logic is not fully accurate and needs to be reworked as the current logic was based on
         // some assumptions, additionally the response object must be switched to a Map object such that the parsed IAD
         // response can be processed in a scheme agnostic manner and any parsed element can be easily retrieved
         // using the key, instead of relying on IAD attribute positions. Map based approach to be implemented for all
         // parser modules, e.g., CSU, CVR etc
+        if (iadParser == null) {
+            return;
+        }
+        CryptogramVersionNumber cryptogramVersionNumber = iadParser.getCryptogramVersionNumber();
+        // CVN 14 is unsupported, left unset the ARQC would silently be computed with a mix of the CVN 10 and 18 methods
+        if (!ArqcGen.VALIDATED_CRYPTOGRAM_VERSIONS.contains(cryptogramVersionNumber)) {
+            throw new IllegalArgumentException("Cryptogram version " + (cryptogramVersionNumber == null ? "of the IAD"
+                    : cryptogramVersionNumber) + " is not supported, only CVN_10, CVN_18 and CVN_22 are.");
+        }
+        arqcGen.setCryptogramVersionNumber(cryptogramVersionNumber);
+    }
 
-        switch (iadParser.getCvn()){
-            case "10":
-                arqcGen.setCryptogramVersionNumber(CryptogramVersionNumber.CVN_10);
-                break;
-            case "18":
-                arqcGen.setCryptogramVersionNumber(CryptogramVersionNumber.CVN_18);
-                break;
-            case "22":
-                arqcGen.setCryptogramVersionNumber(CryptogramVersionNumber.CVN_22);
-                break;
+    /**
+     * @param tlvDecoder Decoder over the request ICC data
+     * @param emvTag     Data object required for the ARQC
+     * @return Value of the data object in hexadecimal
+     * @throws IllegalArgumentException When the ICC data does not hold the data object
+     */
+    private static String requireHex(TlvDecoder tlvDecoder, EmvTag emvTag) {
+        String value = tlvDecoder.getHex(emvTag);
+        if (value == null) {
+            throw new IllegalArgumentException("DE55: tag " + Integer.toHexString(emvTag.getTag()).toUpperCase()
+                    + " required.");
         }
-         // Need to move this to the API request object and introduce ARC for older CVNs
+        return value;
     }
 }
\ No newline at end of file
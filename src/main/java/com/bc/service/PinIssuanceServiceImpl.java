@@ -0,0 +1,189 @@
+package com.bc.service;
+
+import com.bc.metrics.Diagnostics;
+import com.bc.requestResponse.PinIssuanceRequest;
+import com.bc.requestResponse.PinIssuanceStatus;
+import com.bc.utils.DecimalisationTable;
+import com.bc.utils.PinIssuance;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk IBM 3624 PIN issuance jobs of card personalisation files, see {@link PinIssuance}.
+ * Files are named within emv.issuance.directory, a job runs in the background with emv.issuance.threads workers, 0 for
+ * one per processor, and its progress is polled by job id. Jobs are issued one at a time, a job started while another
+ * runs stays at 0% until the first completes. A job that failed, or was stopped with the application, is resumed from
+ * its checkpoint by starting it again with the same files and parameters.
+ */
+@ApplicationScoped
+public class PinIssuanceServiceImpl {
+
+    private static final Path DIRECTORY = Paths.get(ConfigProvider.getConfig()
+            .getOptionalValue("emv.issuance.directory", String.class).orElse("issuance")).toAbsolutePath();
+    private static final int THREADS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.issuance.threads", Integer.class).filter(threads -> threads > 0)
+            .orElse(Runtime.getRuntime().availableProcessors());
+    /** Finished jobs kept for their status */
+    private static final int MAX_FINISHED_JOBS = 64;
+
+    private static final Map<String, Job> JOBS = new ConcurrentHashMap<>();
+    // Issuance is CPU bound, so the workers are platform threads, one per core. A job occupies every worker until it
+    // completes, so concurrent jobs queue for the workers and a job started while another runs waits for it
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "emv-issuance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "emv-issuance-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Job states
+     */
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * Start a bulk issuance job, or resume it from the checkpoint of its output file
+     * @param pinIssuanceRequest PinIssuanceRequest object containing the files, PVK and PIN parameters
+     * @return PinIssuanceStatus object of the job started
+     * @throws IllegalArgumentException When a job is already writing the output file, the input file does not exist or
+     *                                  the output file exists without a checkpoint
+     */
+    public static synchronized PinIssuanceStatus start(PinIssuanceRequest pinIssuanceRequest) throws Exception {
+        Path input = resolve(pinIssuanceRequest.getInputFile());
+        Path output = resolve(pinIssuanceRequest.getOutputFile());
+        if (input.equals(output)) {
+            throw new IllegalArgumentException("InputFile and OutputFile must differ.");
+        }
+        for (Job job : JOBS.values()) {
+            if (job.state == State.RUNNING && job.output.equals(output)) {
+                throw new IllegalArgumentException("Job " + job.id + " is already writing the OutputFile.");
+            }
+        }
+        DecimalisationTable decimalisation = pinIssuanceRequest.getDecimalisationTable() == null
+                ? DecimalisationTable.DEFAULT
+                : DecimalisationTable.forDigits(pinIssuanceRequest.getDecimalisationTable());
+        if (decimalisation == null) {
+            throw new IllegalArgumentException("DecimalisationTable must be exactly 16 decimal digits.");
+        }
+        int pinLength = pinIssuanceRequest.getPinLength() == null ? 4
+                : Integer.parseInt(pinIssuanceRequest.getPinLength());
+        PinIssuance pinIssuance = new PinIssuance(input, output, pinIssuanceRequest.getPinVerificationKey(),
+                pinLength, decimalisation, WORKERS, THREADS);
+        pinIssuance.open();
+
+        removeFinishedJobs();
+        Job job = new Job(UUID.randomUUID().toString(), input, output, pinIssuance);
+        JOBS.put(job.id, job);
+        READERS.execute(job::run);
+        return status(job);
+    }
+
+    /**
+     * @param jobId Job id returned when the job was started
+     * @return PinIssuanceStatus object of the job, null if the job is unknown
+     */
+    public static PinIssuanceStatus status(String jobId) {
+        Job job = JOBS.get(jobId);
+        return job == null ? null : status(job);
+    }
+
+    private static PinIssuanceStatus status(Job job) {
+        PinIssuance pinIssuance = job.pinIssuance;
+        PinIssuanceStatus pinIssuanceStatus = new PinIssuanceStatus();
+        pinIssuanceStatus.setJobId(job.id);
+        pinIssuanceStatus.setState(job.state.name());
+        pinIssuanceStatus.setInputFile(job.input.getFileName().toString());
+        pinIssuanceStatus.setOutputFile(job.output.getFileName().toString());
+        pinIssuanceStatus.setRecords(pinIssuance.getRecords());
+        pinIssuanceStatus.setFailedRecords(pinIssuance.getFailedRecords());
+        pinIssuanceStatus.setResumedRecords(pinIssuance.getResumedRecords());
+        long inputSize = pinIssuance.getInputSize();
+        pinIssuanceStatus.setProgress(job.state == State.COMPLETED || inputSize == 0 ? 100.0
+                : Math.floor(1000.0 * pinIssuance.getInputOffset() / inputSize) / 10);
+        long elapsedNanos = (job.finishedNanos == 0 ? System.nanoTime() : job.finishedNanos) - job.startedNanos;
+        pinIssuanceStatus.setRecordsPerSecond(elapsedNanos <= 0 ? 0
+                : Math.round((pinIssuance.getRecords() - pinIssuance.getResumedRecords()) * 1e9 / elapsedNanos));
+        pinIssuanceStatus.setError(job.error);
+        return pinIssuanceStatus;
+    }
+
+    /**
+     * @param fileName File name, validated against path traversal by the request pattern
+     * @return File within the issuance directory
+     */
+    private static Path resolve(String fileName) {
+        Path path = DIRECTORY.resolve(fileName).normalize();
+        if (!DIRECTORY.equals(path.getParent())) {
+            throw new IllegalArgumentException("Files must be named within the issuance directory.");
+        }
+        return path;
+    }
+
+    private static void removeFinishedJobs() {
+        int finished = 0;
+        for (Job job : JOBS.values()) {
+            if (job.state != State.RUNNING) {
+                finished++;
+            }
+        }
+        for (Map.Entry<String, Job> entry : JOBS.entrySet()) {
+            if (finished < MAX_FINISHED_JOBS) {
+                break;
+            }
+            if (entry.getValue().state != State.RUNNING) {
+                JOBS.remove(entry.getKey());
+                finished--;
+            }
+        }
+    }
+
+    /**
+     * One issuance job, run by a reader thread feeding the shared workers
+     */
+    private static final class Job {
+
+        private final String id;
+        private final Path input;
+        private final Path output;
+        private final PinIssuance pinIssuance;
+        private final long startedNanos = System.nanoTime();
+        private volatile long finishedNanos;
+        private volatile State state = State.RUNNING;
+        private volatile String error;
+
+        private Job(String id, Path input, Path output, PinIssuance pinIssuance) {
+            this.id = id;
+            this.input = input;
+            this.output = output;
+            this.pinIssuance = pinIssuance;
+        }
+
+        private void run() {
+            State finished = State.COMPLETED;
+            try {
+                pinIssuance.run();
+            } catch (IOException | RuntimeException exception) {
+                error = exception.getMessage();
+                Diagnostics.error("ISSU03", "Issuance job " + id + " failed: " + exception.getMessage());
+                finished = State.FAILED;
+            }
+            finishedNanos = System.nanoTime();
+            state = finished;
+        }
+    }
+}
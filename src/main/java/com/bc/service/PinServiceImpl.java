@@ -2,6 +2,7 @@ package com.bc.service;
 
 import com.bc.constants.PINFunctions;
 import com.bc.requestResponse.*;
+import com.bc.utils.DecimalisationTable;
 import com.bc.utils.IBM3624Pin;
 import com.bc.utils.PinblockFunctions;
 import com.bc.utils.VisaPvv;
@@ -83,6 +84,9 @@ public class PinServiceImpl {
         ibm3624Pin.setPinLength(pinGenerateRequest.getPinLength());
         ibm3624Pin.setPinOffset(pinGenerateRequest.getPinOffset());
         ibm3624Pin.setPvk(pinGenerateRequest.getPinVerificationKey());
+        if (pinGenerateRequest.getDecimalisationTable() != null) {
+            ibm3624Pin.setDecimalisation(DecimalisationTable.forDigits(pinGenerateRequest.getDecimalisationTable()));
+        }
         ibm3624Pin.setGenerateNaturalPin(false);
     }
 
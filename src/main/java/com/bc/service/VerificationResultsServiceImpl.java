@@ -0,0 +1,339 @@
+package com.bc.service;
+
+import com.bc.enums.VerificationFlag;
+import com.bc.enums.VerificationLayout;
+import com.bc.requestResponse.VerificationBitCount;
+import com.bc.requestResponse.VerificationLayoutStatistics;
+import com.bc.requestResponse.VerificationResultsAnalysis;
+import com.bc.requestResponse.VerificationResultsRequest;
+import com.bc.requestResponse.VerificationResultsResponse;
+import com.bc.utils.IADParser;
+import com.bc.utils.VerificationResultsDecoder;
+import com.bc.utils.VerificationStatistics;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.validation.Validator;
+import org.apache.commons.codec.DecoderException;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TVR and CVR decoding, one transaction at a time or aggregated over a transaction file.
+ * The analysis reads transactions from a JSON array or an NDJSON stream in chunks, and emv.analytics.threads workers,
+ * 0 for one per processor, decode them into per bit and bit pair counts of their own. The counts are merged once the
+ * file has been read, so workers never contend on shared counters, and at most two chunks per worker wait to be
+ * decoded, so memory stays bounded whatever the size of the file.
+ * A transaction that is not a JSON object, does not map onto a VerificationResultsRequest, fails its constraints or
+ * cannot be decoded is counted as invalid. Malformed JSON ends the analysis, as the next transaction can no longer be
+ * found, and so does a worker failing, rather than leave the reader waiting on a queue no worker drains.
+ */
+@ApplicationScoped
+public class VerificationResultsServiceImpl {
+
+    private static final int THREADS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.analytics.threads", Integer.class).filter(threads -> threads > 0)
+            .orElse(Runtime.getRuntime().availableProcessors());
+    private static final int CHUNK_SIZE = 1024;
+    /** Chunk telling a worker the file has been read */
+    private static final List<VerificationResultsRequest> END = Collections.emptyList();
+    /** Interval at which a reader waiting on a full queue checks that its workers are still running */
+    private static final long WORKER_CHECK_MILLIS = 100;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    // Decoding is CPU bound, so the workers are platform threads, one per core
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "emv-analytics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Decode the CVR in the IAD and the TVR of a transaction
+     * @param verificationResultsRequest VerificationResultsRequest object containing the IAD and PAN, the TVR or both
+     * @return VerificationResultsResponse object containing the CVR layout and flags and the TVR flags
+     * @throws IllegalArgumentException When neither is given, the IAD is given without the PAN or is not of a known
+     *                                  format
+     */
+    public static VerificationResultsResponse decode(VerificationResultsRequest verificationResultsRequest)
+            throws DecoderException {
+        String iad = verificationResultsRequest.getIssuerApplicationData();
+        String tvr = verificationResultsRequest.getTerminalVerificationResults();
+        if (iad == null && tvr == null) {
+            throw new IllegalArgumentException("IssuerApplicationData or TerminalVerificationResults required.");
+        }
+        VerificationResultsResponse verificationResultsResponse = new VerificationResultsResponse();
+        if (iad != null) {
+            IADParser iadParser = parseIad(verificationResultsRequest, new IADParser());
+            VerificationLayout layout = VerificationResultsDecoder.cvrLayout(iadParser.getFormat());
+            long cvrBits = VerificationResultsDecoder.cvrBits(iadParser);
+            verificationResultsResponse.setCvrLayout(layout);
+            verificationResultsResponse.setCvrFlags(VerificationResultsDecoder.flags(layout, cvrBits));
+            verificationResultsResponse.setCvrBits(bitNames(cvrBits));
+        }
+        if (tvr != null) {
+            long tvrBits = VerificationResultsDecoder.tvrBits(tvr);
+            verificationResultsResponse.setTvrFlags(VerificationResultsDecoder.flags(VerificationLayout.TVR, tvrBits));
+            verificationResultsResponse.setTvrBits(bitNames(tvrBits));
+        }
+        return verificationResultsResponse;
+    }
+
+    /**
+     * Count every TVR and CVR bit and bit pair over a transaction file, in parallel
+     * @param transactions JSON array or NDJSON stream of VerificationResultsRequest objects
+     * @param validator    Bean validator applied to every transaction
+     * @return VerificationResultsAnalysis object containing the counts of every layout seen
+     * @throws IOException           When the transactions cannot be read as JSON
+     * @throws IllegalStateException When a worker fails
+     */
+    public static VerificationResultsAnalysis analyse(InputStream transactions, Validator validator)
+            throws IOException {
+        BlockingQueue<List<VerificationResultsRequest>> chunks = new ArrayBlockingQueue<>(2 * THREADS);
+        List<Future<Worker>> workers = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(EXECUTOR.submit(new Worker(chunks, validator)::call));
+        }
+        boolean read = false;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(transactions)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            List<VerificationResultsRequest> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (token != null && token != JsonToken.END_ARRAY) {
+                chunk.add(transaction(OBJECT_MAPPER.readTree(parser)));
+                if (chunk.size() == CHUNK_SIZE) {
+                    put(chunks, chunk, workers);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+                token = parser.nextToken();
+            }
+            if (!chunk.isEmpty()) {
+                put(chunks, chunk, workers);
+            }
+            for (int i = 0; i < THREADS; i++) {
+                put(chunks, END, workers);
+            }
+            read = true;
+        } finally {
+            if (!read) {
+                // Stop the workers rather than feed them the end of a file that could not be read
+                for (Future<Worker> worker : workers) {
+                    worker.cancel(true);
+                }
+            }
+        }
+
+        VerificationStatistics statistics = new VerificationStatistics();
+        VerificationResultsAnalysis verificationResultsAnalysis = new VerificationResultsAnalysis();
+        for (Future<Worker> future : workers) {
+            Worker worker = result(future);
+            statistics.merge(worker.statistics);
+            verificationResultsAnalysis.setTransactions(verificationResultsAnalysis.getTransactions()
+                    + worker.transactions);
+            verificationResultsAnalysis.setInvalidTransactions(verificationResultsAnalysis.getInvalidTransactions()
+                    + worker.invalidTransactions);
+        }
+        List<VerificationLayoutStatistics> layouts = new ArrayList<>();
+        for (VerificationLayout layout : VerificationLayout.values()) {
+            if (statistics.getTransactions(layout) > 0) {
+                layouts.add(layoutStatistics(statistics, layout));
+            }
+        }
+        verificationResultsAnalysis.setLayouts(layouts);
+        return verificationResultsAnalysis;
+    }
+
+    private static IADParser parseIad(VerificationResultsRequest verificationResultsRequest, IADParser iadParser) {
+        String pan = verificationResultsRequest.getPan();
+        if (pan == null || pan.isEmpty()) {
+            throw new IllegalArgumentException("Pan required to decode the IssuerApplicationData.");
+        }
+        if (iadParser.parse(verificationResultsRequest.getIssuerApplicationData(), pan.charAt(0) == '4') == null) {
+            throw new IllegalArgumentException("Issuer application data is not of a known IAD format.");
+        }
+        return iadParser;
+    }
+
+    /**
+     * @param element One element of the transaction file
+     * @return The transaction, null when the element is not an object or does not map onto a transaction
+     */
+    private static VerificationResultsRequest transaction(JsonNode element) {
+        if (element == null || !element.isObject()) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.treeToValue(element, VerificationResultsRequest.class);
+        } catch (JsonProcessingException | IllegalArgumentException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Queue a chunk for the workers, failing rather than waiting forever when a worker has stopped. Workers only
+     * return once they have taken the end of the file, so a worker done before then has failed.
+     */
+    private static void put(BlockingQueue<List<VerificationResultsRequest>> chunks,
+                            List<VerificationResultsRequest> chunk, List<Future<Worker>> workers) throws IOException {
+        try {
+            while (!chunks.offer(chunk, WORKER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                for (Future<Worker> worker : workers) {
+                    if (worker.isDone()) {
+                        result(worker);
+                        throw new IllegalStateException("Analysis failed: a worker stopped early.");
+                    }
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Analysis interrupted.", exception);
+        }
+    }
+
+    private static Worker result(Future<Worker> worker) throws IOException {
+        try {
+            return worker.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Analysis interrupted.", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Analysis failed: " + exception.getCause(), exception.getCause());
+        }
+    }
+
+    private static VerificationLayoutStatistics layoutStatistics(VerificationStatistics statistics,
+                                                                 VerificationLayout layout) {
+        long transactions = statistics.getTransactions(layout);
+        List<VerificationBitCount> bits = new ArrayList<>();
+        List<VerificationBitCount> coOccurrence = new ArrayList<>();
+        for (int first = 0; first < VerificationResultsDecoder.MAX_BITS; first++) {
+            long count = statistics.getBitCount(layout, first);
+            if (count == 0) {
+                continue;
+            }
+            bits.add(bitCount(layout, transactions, count, first));
+            for (int second = first + 1; second < VerificationResultsDecoder.MAX_BITS; second++) {
+                long pairCount = statistics.getPairCount(layout, first, second);
+                if (pairCount > 0) {
+                    coOccurrence.add(bitCount(layout, transactions, pairCount, first, second));
+                }
+            }
+        }
+        coOccurrence.sort(Comparator.comparingLong(VerificationBitCount::getCount).reversed());
+        VerificationLayoutStatistics verificationLayoutStatistics = new VerificationLayoutStatistics();
+        verificationLayoutStatistics.setLayout(layout);
+        verificationLayoutStatistics.setTransactions(transactions);
+        verificationLayoutStatistics.setBits(bits);
+        verificationLayoutStatistics.setCoOccurrence(coOccurrence);
+        return verificationLayoutStatistics;
+    }
+
+    private static VerificationBitCount bitCount(VerificationLayout layout, long transactions, long count,
+                                                 int... bitIndexes) {
+        VerificationBitCount verificationBitCount = new VerificationBitCount();
+        List<String> bits = new ArrayList<>(bitIndexes.length);
+        List<VerificationFlag> flags = new ArrayList<>(bitIndexes.length);
+        for (int bitIndex : bitIndexes) {
+            bits.add(VerificationResultsDecoder.bitName(bitIndex));
+            flags.add(VerificationResultsDecoder.flag(layout, bitIndex));
+        }
+        verificationBitCount.setBits(bits);
+        verificationBitCount.setFlags(flags);
+        verificationBitCount.setCount(count);
+        verificationBitCount.setRatio((double) count / transactions);
+        return verificationBitCount;
+    }
+
+    private static List<String> bitNames(long bits) {
+        String[] names = new String[Long.bitCount(bits)];
+        int i = 0;
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            names[i++] = VerificationResultsDecoder.bitName(Long.numberOfTrailingZeros(remaining));
+        }
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Decodes chunks into counts of its own until the end of the file.
+     */
+    private static final class Worker {
+
+        private final BlockingQueue<List<VerificationResultsRequest>> chunks;
+        private final Validator validator;
+        private final VerificationStatistics statistics = new VerificationStatistics();
+        private final IADParser iadParser = new IADParser();
+        private long transactions;
+        private long invalidTransactions;
+
+        private Worker(BlockingQueue<List<VerificationResultsRequest>> chunks, Validator validator) {
+            this.chunks = chunks;
+            this.validator = validator;
+        }
+
+        private Worker call() throws InterruptedException {
+            for (List<VerificationResultsRequest> chunk = chunks.take(); chunk != END; chunk = chunks.take()) {
+                for (VerificationResultsRequest transaction : chunk) {
+                    transactions++;
+                    add(transaction);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param transaction Transaction to count, null for an element that is not a transaction
+         */
+        private void add(VerificationResultsRequest transaction) {
+            if (transaction == null || !validator.validate(transaction).isEmpty()) {
+                invalidTransactions++;
+                return;
+            }
+            boolean hasIad = transaction.getIssuerApplicationData() != null;
+            boolean hasTvr = transaction.getTerminalVerificationResults() != null;
+            if (!hasIad && !hasTvr) {
+                invalidTransactions++;
+                return;
+            }
+            // Both are decoded before either is counted, so an invalid transaction is not counted at all
+            try {
+                VerificationLayout cvrLayout = null;
+                long cvrBits = 0;
+                if (hasIad) {
+                    parseIad(transaction, iadParser);
+                    cvrLayout = VerificationResultsDecoder.cvrLayout(iadParser.getFormat());
+                    cvrBits = VerificationResultsDecoder.cvrBits(iadParser);
+                }
+                long tvrBits = hasTvr ? VerificationResultsDecoder.tvrBits(transaction.getTerminalVerificationResults())
+                        : 0;
+                if (hasIad) {
+                    statistics.add(cvrLayout, cvrBits);
+                }
+                if (hasTvr) {
+                    statistics.add(VerificationLayout.TVR, tvrBits);
+                }
+            } catch (RuntimeException | DecoderException exception) {
+                // One transaction the decoders do not anticipate must not stop the worker, and with it the analysis
+                invalidTransactions++;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.bc.tcp;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.core.net.NetSocket;
+import org.apache.commons.codec.DecoderException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipelining client of the TCP command interface. Commands may be sent from any thread without waiting for earlier
+ * responses, each response completes the future of the command with the same correlation id. The load client of
+ * loadtest/tcp-benchmark.sh, com.bc.benchmarks.TcpLoadClient in the benchmarks module, is built on it.
+ */
+public final class CommandClient {
+
+    private static final String PAN = "4761739001010010";
+    private static final String KEY = "0123456789ABCDEFFEDCBA9876543210";
+
+    private final NetSocket socket;
+    private final Map<Integer, Promise<CommandFrame>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+
+    private CommandClient(NetSocket socket) {
+        this.socket = socket;
+        socket.handler(new CommandFrameDecoder(this::receive));
+        socket.closeHandler(ignored -> {
+            IllegalStateException closed = new IllegalStateException("Connection closed.");
+            pending.values().forEach(promise -> promise.tryFail(closed));
+            pending.clear();
+        });
+    }
+
+    /**
+     * Connect to the TCP command interface.
+     * @param vertx Vert.x instance whose event loop the connection runs on
+     * @param host  Host name or address
+     * @param port  Port, emv.tcp.port of the application
+     * @return Connected client
+     */
+    public static Future<CommandClient> connect(Vertx vertx, String host, int port) {
+        return vertx.createNetClient(new NetClientOptions().setTcpNoDelay(true)).connect(port, host)
+                .map(CommandClient::new);
+    }
+
+    /**
+     * Send a command, its correlation id and length are set by the client.
+     * @param request Frame started with {@link CommandFrame#request(int, String)} and its fields appended
+     * @return Response, positioned at its first field
+     */
+    public Future<CommandFrame> send(Buffer request) {
+        int correlationId = nextCorrelationId.getAndIncrement();
+        Promise<CommandFrame> promise = Promise.promise();
+        pending.put(correlationId, promise);
+        socket.write(CommandFrame.end(request.setInt(CommandFrame.LENGTH_SIZE, correlationId)));
+        return promise.future();
+    }
+
+    public Future<Void> close() {
+        return socket.close();
+    }
+
+    private void receive(Buffer response) {
+        if (response.length() < CommandFrame.RESPONSE_HEADER_SIZE) {
+            return;
+        }
+        CommandFrame frame = new CommandFrame(response, CommandFrame.RESPONSE_HEADER_SIZE);
+        Promise<CommandFrame> promise = pending.remove(frame.getCorrelationId());
+        if (promise != null) {
+            promise.complete(frame);
+        }
+    }
+
+    /**
+     * Append the ARQC data fields of the sample transaction used by the benchmarks.
+     * @param request Request frame
+     * @param atc     Application Transaction Counter, 4 hexadecimal digits
+     * @return The request frame
+     * @throws DecoderException Never, the sample values are valid
+     */
+    public static Buffer appendSampleArqcData(Buffer request, String atc) throws DecoderException {
+        CommandFrame.appendDigits(request, PAN);
+        CommandFrame.appendDigits(request, "1");
+        CommandFrame.appendHex(request, KEY);
+        CommandFrame.appendDigits(request, "1000");
+        CommandFrame.appendDigits(request, "0");
+        CommandFrame.appendDigits(request, "826");
+        CommandFrame.appendHex(request, "0000008000");
+        CommandFrame.appendDigits(request, "826");
+        CommandFrame.appendDigits(request, "230901");
+        CommandFrame.appendHex(request, "00");
+        CommandFrame.appendHex(request, "A1B2C3D4");
+        CommandFrame.appendHex(request, "3800");
+        CommandFrame.appendHex(request, atc);
+        CommandFrame.appendVarHex(request, "06011203A0B80003");
+        return CommandFrame.appendVarHex(request, "00820000");
+    }
+}
@@ -0,0 +1,202 @@
+package com.bc.tcp;
+
+import com.bc.utils.HexCodec;
+import io.vertx.core.buffer.Buffer;
+import org.apache.commons.codec.DecoderException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary command frame of the HSM-style TCP interface. Every frame starts with a two byte big-endian length of the
+ * rest of the frame, followed by a four byte correlation id echoed in the response, so a client can pipeline commands
+ * on one connection and match responses that complete out of order.
+ * - Request:  length(2) correlation id(4) command(2 ASCII) fields
+ * - Response: length(2) correlation id(4) response code(2 ASCII) error code(2 ASCII) fields
+ * Fields follow each other without separators, in the order of the command:
+ * - Digits: one byte digit count, then packed BCD padded with F to a whole byte, e.g. PAN, amounts and dates
+ * - Binary: fixed length raw bytes, e.g. keys, PIN blocks, ARQC and ATC
+ * - Variable binary: one byte length, then raw bytes, e.g. issuer application data and ARPC
+ * Fields are read straight from the frame buffer, which is a slice of the connection's read buffer.
+ */
+public final class CommandFrame {
+
+    /** Bytes of the length prefix */
+    public static final int LENGTH_SIZE = 2;
+    /** Bytes of the correlation id and command code following the length prefix of a request */
+    public static final int REQUEST_HEADER_SIZE = 6;
+    /** Bytes of the correlation id, response code and error code following the length prefix of a response */
+    public static final int RESPONSE_HEADER_SIZE = 8;
+    public static final int MAX_LENGTH = 0xFFFF;
+
+    private final Buffer buffer;
+    private int position;
+
+    /**
+     * @param buffer   Frame without its length prefix
+     * @param position Offset of the first field
+     */
+    public CommandFrame(Buffer buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    public int getCorrelationId() {
+        return buffer.getInt(0);
+    }
+
+    /**
+     * @return Two character command code of a request, or response code of a response
+     */
+    public String getCode() {
+        return buffer.getString(4, 6, StandardCharsets.US_ASCII.name());
+    }
+
+    /**
+     * @return Two character error code of a response
+     */
+    public String getErrorCode() {
+        return buffer.getString(6, 8, StandardCharsets.US_ASCII.name());
+    }
+
+    /**
+     * @return True when every field of the frame has been read
+     */
+    public boolean isFullyRead() {
+        return position == buffer.length();
+    }
+
+    /**
+     * @return Decimal digits of a digits field
+     * @throws IllegalArgumentException When the frame ends before the field
+     */
+    public String readDigits() {
+        int digits = readUnsignedByte();
+        String packed = readHex((digits + 1) / 2);
+        return packed.substring(0, digits);
+    }
+
+    /**
+     * @param length Number of bytes
+     * @return Fixed length binary field in upper case hexadecimal
+     * @throws IllegalArgumentException When the frame ends before the field
+     */
+    public String readHex(int length) {
+        checkAvailable(length);
+        byte[] field = buffer.getBytes(position, position + length);
+        position += length;
+        return HexCodec.encode(field, true);
+    }
+
+    /**
+     * @return Variable length binary field in upper case hexadecimal
+     * @throws IllegalArgumentException When the frame ends before the field
+     */
+    public String readVarHex() {
+        return readHex(readUnsignedByte());
+    }
+
+    /**
+     * @return Remaining bytes of the frame as ASCII text, the error message of an error response
+     */
+    public String readRemainingText() {
+        String text = buffer.getString(position, buffer.length(), StandardCharsets.US_ASCII.name());
+        position = buffer.length();
+        return text;
+    }
+
+    private int readUnsignedByte() {
+        checkAvailable(1);
+        return buffer.getUnsignedByte(position++);
+    }
+
+    private void checkAvailable(int length) {
+        if (position + length > buffer.length()) {
+            throw new IllegalArgumentException("Frame truncated at offset " + position + ", " + length
+                    + " more bytes expected.");
+        }
+    }
+
+    /**
+     * Start a request frame, the length is set by {@link #end(Buffer)}.
+     * @param correlationId Id echoed in the response
+     * @param command       Two character command code
+     * @return Frame buffer to append the fields to
+     */
+    public static Buffer request(int correlationId, String command) {
+        return Buffer.buffer(64).appendUnsignedShort(0).appendInt(correlationId)
+                .appendString(command, StandardCharsets.US_ASCII.name());
+    }
+
+    /**
+     * Start a response frame, the length is set by {@link #end(Buffer)}.
+     * @param correlationId Id of the request
+     * @param responseCode  Two character response code
+     * @param errorCode     Two character error code
+     * @return Frame buffer to append the fields to
+     */
+    public static Buffer response(int correlationId, String responseCode, String errorCode) {
+        return Buffer.buffer(32).appendUnsignedShort(0).appendInt(correlationId)
+                .appendString(responseCode, StandardCharsets.US_ASCII.name())
+                .appendString(errorCode, StandardCharsets.US_ASCII.name());
+    }
+
+    /**
+     * Set the length prefix of a complete frame.
+     * @param frame Frame started by {@link #request(int, String)} or {@link #response(int, String, String)}
+     * @return The frame
+     * @throws IllegalArgumentException When the frame exceeds the maximum length
+     */
+    public static Buffer end(Buffer frame) {
+        int length = frame.length() - LENGTH_SIZE;
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes exceeds " + MAX_LENGTH + " bytes.");
+        }
+        return frame.setUnsignedShort(0, length);
+    }
+
+    /**
+     * Append a digits field.
+     * @param frame  Frame buffer
+     * @param digits Decimal digits, at most 255
+     * @return The frame buffer
+     * @throws DecoderException When the value is not decimal
+     */
+    public static Buffer appendDigits(Buffer frame, String digits) throws DecoderException {
+        if (digits.length() > 0xFF) {
+            throw new IllegalArgumentException("Digits field of " + digits.length() + " digits exceeds 255 digits.");
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                throw new DecoderException("Digits field \"" + digits + "\" is not decimal.");
+            }
+        }
+        frame.appendUnsignedByte((short) digits.length());
+        return frame.appendBytes(HexCodec.decode((digits.length() & 1) == 0 ? digits : digits + "F"));
+    }
+
+    /**
+     * Append a fixed length binary field.
+     * @param frame Frame buffer
+     * @param hex   Field value in hexadecimal
+     * @return The frame buffer
+     * @throws DecoderException When the value is not hexadecimal
+     */
+    public static Buffer appendHex(Buffer frame, String hex) throws DecoderException {
+        return frame.appendBytes(HexCodec.decode(hex));
+    }
+
+    /**
+     * Append a variable length binary field.
+     * @param frame Frame buffer
+     * @param hex   Field value in hexadecimal, at most 255 bytes
+     * @return The frame buffer
+     * @throws DecoderException When the value is not hexadecimal
+     */
+    public static Buffer appendVarHex(Buffer frame, String hex) throws DecoderException {
+        byte[] field = HexCodec.decode(hex);
+        if (field.length > 0xFF) {
+            throw new IllegalArgumentException("Variable field of " + field.length + " bytes exceeds 255 bytes.");
+        }
+        return frame.appendUnsignedByte((short) field.length).appendBytes(field);
+    }
+}
@@ -0,0 +1,46 @@
+package com.bc.tcp;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Splits the byte stream of a connection into length prefixed frames. Frames that arrive whole within one read are
+ * passed on as slices of the read buffer without copying, only a frame split across reads is gathered into a buffer
+ * of its own. Used on the connection's event loop only, so it is not thread safe.
+ */
+public final class CommandFrameDecoder implements Handler<Buffer> {
+
+    private final Handler<Buffer> frameHandler;
+    /** Start of a frame split across reads, null when the last read ended on a frame boundary */
+    private Buffer pending;
+
+    /**
+     * @param frameHandler Receives every frame without its length prefix
+     */
+    public CommandFrameDecoder(Handler<Buffer> frameHandler) {
+        this.frameHandler = frameHandler;
+    }
+
+    @Override
+    public void handle(Buffer data) {
+        Buffer input = data;
+        if (pending != null) {
+            input = pending.appendBuffer(data);
+            pending = null;
+        }
+        int position = 0;
+        int available = input.length();
+        while (available - position >= CommandFrame.LENGTH_SIZE) {
+            int length = input.getUnsignedShort(position);
+            int end = position + CommandFrame.LENGTH_SIZE + length;
+            if (end > available) {
+                break;
+            }
+            frameHandler.handle(input.slice(position + CommandFrame.LENGTH_SIZE, end));
+            position = end;
+        }
+        if (position < available) {
+            pending = input.getBuffer(position, available);
+        }
+    }
+}
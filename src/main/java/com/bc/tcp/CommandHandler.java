@@ -0,0 +1,344 @@
+package com.bc.tcp;
+
+import com.bc.audit.AuditLog;
+import com.bc.metrics.EmvMetrics;
+import com.bc.requestResponse.ArqcGenerateRequest;
+import com.bc.requestResponse.ArqcGenerateResponse;
+import com.bc.requestResponse.ArqcValidateRequest;
+import com.bc.requestResponse.ArqcValidateResponse;
+import com.bc.requestResponse.CvxGenerateRequest;
+import com.bc.requestResponse.PinGenerateRequest;
+import com.bc.requestResponse.PinblockDecryptRequest;
+import com.bc.requestResponse.PinblockDecryptResponse;
+import com.bc.requestResponse.PinblockGenerateRequest;
+import com.bc.requestResponse.PvvGenerateRequest;
+import com.bc.service.CardVerificationCodesServiceImpl;
+import com.bc.service.CryptogramServiceImpl;
+import com.bc.service.PinServiceImpl;
+import io.vertx.core.buffer.Buffer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.apache.commons.codec.DecoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+
+/**
+ * Commands of the HSM-style TCP interface, see {@link CommandFrame} for the field encodings. Each command maps its
+ * fields onto the REST request object, validates it with the same constraints and calls the same service, the response
+ * code is the command code with its second character incremented.
+ * - AG ARQC and ARPC generate: ARQC data, response AH: ARQC(8) ARPC(var)
+ * - AV ARQC verify and ARPC generate: ARQC data, ARQC(8), ATC search window(1), response AW: ATC(2) ARPC(var)
+ * - PT PIN translate: PAN(digits) source ZPK(16) PIN block(8) destination ZPK(16) destination format(digits), response
+ *   PU: PIN block(8)
+ * - PO PIN verify, IBM 3624 offset: PAN(digits) ZPK(16) PIN block(8) PVK(16) offset(digits), response PP
+ * - PV PVV verify: PAN(digits) ZPK(16) PIN block(8) PVK(16) PVK index(digits) PVV(digits), response PW
+ * - CV CVV verify: PAN(digits) expiry date(digits) service code(digits) CVK(16) CVV(digits), response CW
+ * ARQC data is PAN(digits) PAN sequence(digits) MDK(16) amount authorised(digits) amount other(digits) terminal
+ * country code(digits) TVR(5) transaction currency code(digits) transaction date YYMMDD(digits) transaction type(1)
+ * unpredictable number(4) AIP(2) ATC(2) IAD(var) CSU or ARC(var).
+ * PIN commands are audited like the REST endpoints, each request they map onto recorded as "TCP/" and the command
+ * code, see {@link AuditLog}.
+ * Error codes: 00 success, 01 verification failure, 15 invalid input data, 20 PIN block does not contain a valid PIN,
+ * 68 unknown command, 99 processing error. Error responses other than 01 carry the error message as ASCII text.
+ */
+public final class CommandHandler {
+
+    public static final String NO_ERROR = "00";
+    public static final String VERIFICATION_FAILURE = "01";
+    public static final String INVALID_INPUT = "15";
+    public static final String INVALID_PIN_BLOCK = "20";
+    public static final String UNKNOWN_COMMAND = "68";
+    public static final String PROCESSING_ERROR = "99";
+
+    /** Audit operation prefix of the PIN commands, followed by the command code */
+    private static final String AUDIT_PREFIX = "TCP/";
+    /** Field of {@link #VERIFY_ARQC_FIELDS} whose length is given by its leading byte, in digits */
+    private static final int DIGITS = -1;
+    /** Field of {@link #VERIFY_ARQC_FIELDS} whose length is given by its leading byte, in bytes */
+    private static final int VAR_HEX = -2;
+    /** Field lengths of an AV request, ending with the ARQC and the ATC search window */
+    private static final int[] VERIFY_ARQC_FIELDS = {DIGITS, DIGITS, 16, DIGITS, DIGITS, DIGITS, 5, DIGITS, DIGITS, 1,
+            4, 2, 2, VAR_HEX, VAR_HEX, 8, 1};
+
+    private CommandHandler() {
+    }
+
+    /**
+     * @param request Request frame without its length prefix
+     * @return True for commands that wait on parallel work and should not run on the event loop, an ARQC
+     * verification with an ATC search window. The field lengths are walked to the window, a frame that does not end
+     * there is rejected on the event loop whatever its last byte
+     */
+    public static boolean isOffloaded(Buffer request) {
+        if (request.length() <= CommandFrame.REQUEST_HEADER_SIZE || !"AV".equals(command(request))) {
+            return false;
+        }
+        int position = CommandFrame.REQUEST_HEADER_SIZE;
+        for (int field : VERIFY_ARQC_FIELDS) {
+            if (field >= 0) {
+                position += field;
+            } else if (position < request.length()) {
+                int length = request.getUnsignedByte(position++);
+                position += field == DIGITS ? (length + 1) / 2 : length;
+            } else {
+                return false;
+            }
+        }
+        return position == request.length() && request.getByte(position - 1) != 0;
+    }
+
+    /**
+     * Run one command, recording its latency by command and error code.
+     * @param request   Request frame without its length prefix
+     * @param validator Bean validator applied to the mapped request
+     * @return Complete response frame
+     */
+    public static Buffer process(Buffer request, Validator validator) {
+        long started = EmvMetrics.start();
+        Buffer response = run(request, validator);
+        // The error code follows the length prefix, correlation id and response code
+        String errorCode = response.getString(8, 10, StandardCharsets.US_ASCII.name());
+        // Unknown commands are not tagged with their code, which the client controls
+        boolean unknown = UNKNOWN_COMMAND.equals(errorCode) || request.length() < CommandFrame.REQUEST_HEADER_SIZE;
+        EmvMetrics.recordTcpCommand(unknown ? "unknown" : command(request), errorCode, started);
+        return response;
+    }
+
+    private static Buffer run(Buffer request, Validator validator) {
+        if (request.length() < CommandFrame.REQUEST_HEADER_SIZE) {
+            // Not even a header to answer, reply with correlation id 0 so the client can report it
+            return error(new CommandFrame(Buffer.buffer(new byte[CommandFrame.REQUEST_HEADER_SIZE]), 0), "  ",
+                    INVALID_INPUT, "Frame of " + request.length() + " bytes is shorter than its header.");
+        }
+        CommandFrame frame = new CommandFrame(request, CommandFrame.REQUEST_HEADER_SIZE);
+        String command = command(request);
+        String responseCode = command.substring(0, 1) + (char) (command.charAt(1) + 1);
+        try {
+            Buffer response;
+            switch (command) {
+                case "AG":
+                    response = generateArqc(frame, responseCode, validator);
+                    break;
+                case "AV":
+                    response = verifyArqc(frame, responseCode, validator);
+                    break;
+                case "PT":
+                    response = translatePin(frame, responseCode, validator);
+                    break;
+                case "PO":
+                    response = verifyPinOffset(frame, responseCode, validator);
+                    break;
+                case "PV":
+                    response = verifyPvv(frame, responseCode, validator);
+                    break;
+                case "CV":
+                    response = verifyCvv(frame, responseCode, validator);
+                    break;
+                default:
+                    return error(frame, responseCode, UNKNOWN_COMMAND, "Unknown command \"" + command + "\".");
+            }
+            return CommandFrame.end(response);
+        } catch (InvalidInputException | IllegalArgumentException | DecoderException exception) {
+            return error(frame, responseCode, INVALID_INPUT, exception.getMessage());
+        } catch (InvalidPinBlockException exception) {
+            return error(frame, responseCode, INVALID_PIN_BLOCK, exception.getMessage());
+        } catch (Exception exception) {
+            return error(frame, responseCode, PROCESSING_ERROR,
+                    exception.getMessage() == null ? exception.toString() : exception.getMessage());
+        }
+    }
+
+    private static Buffer generateArqc(CommandFrame frame, String responseCode, Validator validator)
+            throws Exception {
+        ArqcGenerateRequest arqcGenerateRequest = readArqcData(frame, new ArqcGenerateRequest());
+        checkFullyRead(frame);
+        validate(validator, arqcGenerateRequest);
+        ArqcGenerateResponse arqcGenerateResponse = CryptogramServiceImpl.generateArqcAndArpc(arqcGenerateRequest);
+        Buffer response = CommandFrame.response(frame.getCorrelationId(), responseCode, NO_ERROR);
+        CommandFrame.appendHex(response, arqcGenerateResponse.getArqc());
+        return CommandFrame.appendVarHex(response, arqcGenerateResponse.getArpc());
+    }
+
+    private static Buffer verifyArqc(CommandFrame frame, String responseCode, Validator validator) throws Exception {
+        ArqcValidateRequest arqcValidateRequest = readArqcData(frame, new ArqcValidateRequest());
+        arqcValidateRequest.setArqc(frame.readHex(8));
+        arqcValidateRequest.setAtcSearchWindow(Integer.parseInt(frame.readHex(1), 16));
+        checkFullyRead(frame);
+        validate(validator, arqcValidateRequest);
+        ArqcValidateResponse arqcValidateResponse =
+                CryptogramServiceImpl.validateArqcAndGenerateArpc(arqcValidateRequest);
+        if (!arqcValidateResponse.isArqcValid()) {
+            return CommandFrame.response(frame.getCorrelationId(), responseCode, VERIFICATION_FAILURE);
+        }
+        Buffer response = CommandFrame.response(frame.getCorrelationId(), responseCode, NO_ERROR);
+        CommandFrame.appendHex(response, arqcValidateResponse.getApplicationTransactionCounter());
+        return CommandFrame.appendVarHex(response, arqcValidateResponse.getArpc());
+    }
+
+    private static Buffer translatePin(CommandFrame frame, String responseCode, Validator validator) throws Exception {
+        String pan = frame.readDigits();
+        String clearPin = decryptPin(frame, pan, validator);
+        PinblockGenerateRequest pinblockGenerateRequest = new PinblockGenerateRequest();
+        pinblockGenerateRequest.setPan(pan);
+        pinblockGenerateRequest.setPin(clearPin);
+        pinblockGenerateRequest.setZonePinKey(frame.readHex(16));
+        pinblockGenerateRequest.setPinBlockFormat(frame.readDigits());
+        checkFullyRead(frame);
+        validate(validator, pinblockGenerateRequest);
+        AuditLog.record(AUDIT_PREFIX + frame.getCode(), pinblockGenerateRequest);
+        Buffer response = CommandFrame.response(frame.getCorrelationId(), responseCode, NO_ERROR);
+        return CommandFrame.appendHex(response,
+                PinServiceImpl.generatePinblock(pinblockGenerateRequest).getEncryptedPinblock());
+    }
+
+    private static Buffer verifyPinOffset(CommandFrame frame, String responseCode, Validator validator)
+            throws Exception {
+        String pan = frame.readDigits();
+        String clearPin = decryptPin(frame, pan, validator);
+        PinGenerateRequest pinGenerateRequest = new PinGenerateRequest();
+        pinGenerateRequest.setPan(pan);
+        pinGenerateRequest.setPinVerificationKey(frame.readHex(16));
+        pinGenerateRequest.setPinOffset(frame.readDigits());
+        pinGenerateRequest.setPinLength(String.valueOf(clearPin.length()));
+        checkFullyRead(frame);
+        validate(validator, pinGenerateRequest);
+        if (pinGenerateRequest.getPinOffset().length() < clearPin.length()) {
+            throw new InvalidInputException("PIN offset of " + pinGenerateRequest.getPinOffset().length()
+                    + " digits is shorter than the PIN of " + clearPin.length() + " digits.");
+        }
+        AuditLog.record(AUDIT_PREFIX + frame.getCode(), pinGenerateRequest);
+        String pin = PinServiceImpl.generatePin(pinGenerateRequest).getPin();
+        if (pin == null) {
+            throw new InvalidInputException("PIN could not be generated from the PAN, PVK and PIN offset.");
+        }
+        return CommandFrame.response(frame.getCorrelationId(), responseCode, matches(pin, clearPin));
+    }
+
+    private static Buffer verifyPvv(CommandFrame frame, String responseCode, Validator validator) throws Exception {
+        String pan = frame.readDigits();
+        String clearPin = decryptPin(frame, pan, validator);
+        PvvGenerateRequest pvvGenerateRequest = new PvvGenerateRequest();
+        pvvGenerateRequest.setPan(pan);
+        pvvGenerateRequest.setPin(clearPin);
+        pvvGenerateRequest.setPinVerificationKey(frame.readHex(16));
+        pvvGenerateRequest.setPinVerificationKeyIndex(frame.readDigits());
+        String pvv = frame.readDigits();
+        checkFullyRead(frame);
+        validate(validator, pvvGenerateRequest);
+        AuditLog.record(AUDIT_PREFIX + frame.getCode(), pvvGenerateRequest);
+        String expectedPvv = PinServiceImpl.generatePvv(pvvGenerateRequest).getPinVerificationValue();
+        return CommandFrame.response(frame.getCorrelationId(), responseCode, matches(expectedPvv, pvv));
+    }
+
+    private static Buffer verifyCvv(CommandFrame frame, String responseCode, Validator validator) throws Exception {
+        CvxGenerateRequest cvxGenerateRequest = new CvxGenerateRequest();
+        cvxGenerateRequest.setPan(frame.readDigits());
+        cvxGenerateRequest.setExpiryDate(frame.readDigits());
+        cvxGenerateRequest.setServiceCode(frame.readDigits());
+        cvxGenerateRequest.setCvk(frame.readHex(16));
+        String cvv = frame.readDigits();
+        checkFullyRead(frame);
+        validate(validator, cvxGenerateRequest);
+        String expectedCvv = CardVerificationCodesServiceImpl.generateCvx(cvxGenerateRequest).getCvx();
+        return CommandFrame.response(frame.getCorrelationId(), responseCode, matches(expectedCvv, cvv));
+    }
+
+    /**
+     * Read the ARQC data fields shared by the ARQC commands.
+     */
+    private static <T extends ArqcGenerateRequest> T readArqcData(CommandFrame frame, T request) {
+        request.setPan(frame.readDigits());
+        request.setPanSeqNbr(frame.readDigits());
+        request.setMdkAc(frame.readHex(16));
+        request.setAmountAuthorised(frame.readDigits());
+        request.setAmountOther(frame.readDigits());
+        request.setTerminalCountryCode(frame.readDigits());
+        request.setTerminalVerificationResults(frame.readHex(5));
+        request.setTransactionCurrencyCode(frame.readDigits());
+        String transactionDate = frame.readDigits();
+        if (transactionDate.length() != 6) {
+            throw new IllegalArgumentException("Transaction date must be 6 digits, YYMMDD.");
+        }
+        request.setTransactionDate("20" + transactionDate.substring(0, 2) + "-" + transactionDate.substring(2, 4)
+                + "-" + transactionDate.substring(4));
+        request.setTransactionType(frame.readHex(1));
+        request.setUnpredictableNumber(frame.readHex(4));
+        request.setApplicationInterchangeProfile(frame.readHex(2));
+        request.setApplicationTransactionCounter(frame.readHex(2));
+        request.setIssuerApplicationData(frame.readVarHex());
+        request.setArcOrCsu(frame.readVarHex());
+        return request;
+    }
+
+    /**
+     * Read a ZPK and PIN block and return the clear PIN.
+     */
+    private static String decryptPin(CommandFrame frame, String pan, Validator validator) throws Exception {
+        PinblockDecryptRequest pinblockDecryptRequest = new PinblockDecryptRequest();
+        pinblockDecryptRequest.setPan(pan);
+        pinblockDecryptRequest.setZonePinKey(frame.readHex(16));
+        pinblockDecryptRequest.setPinBlock(frame.readHex(8));
+        validate(validator, pinblockDecryptRequest);
+        AuditLog.record(AUDIT_PREFIX + frame.getCode(), pinblockDecryptRequest);
+        PinblockDecryptResponse pinblockDecryptResponse = PinServiceImpl.decryptPinblock(pinblockDecryptRequest);
+        String clearPin = pinblockDecryptResponse.getClearPin();
+        if (clearPin == null || clearPin.isEmpty()) {
+            throw new InvalidPinBlockException("PIN block does not contain a valid PIN.");
+        }
+        return clearPin;
+    }
+
+    private static String matches(String expected, String received) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                received.getBytes(StandardCharsets.US_ASCII)) ? NO_ERROR : VERIFICATION_FAILURE;
+    }
+
+    private static void checkFullyRead(CommandFrame frame) {
+        if (!frame.isFullyRead()) {
+            throw new IllegalArgumentException("Unexpected data after the last field of " + frame.getCode() + ".");
+        }
+    }
+
+    private static <T> void validate(Validator validator, T request) throws InvalidInputException {
+        Set<ConstraintViolation<T>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            StringBuilder error = new StringBuilder();
+            for (ConstraintViolation<T> violation : violations) {
+                error.append(error.length() == 0 ? "" : " ").append(violation.getMessage());
+            }
+            throw new InvalidInputException(error.toString());
+        }
+    }
+
+    private static Buffer error(CommandFrame frame, String responseCode, String errorCode, String message) {
+        Buffer response = CommandFrame.response(frame.getCorrelationId(), responseCode, errorCode);
+        if (message != null) {
+            // Keep the frame within its maximum length whatever the message
+            response.appendString(message.length() > 1024 ? message.substring(0, 1024) : message,
+                    StandardCharsets.US_ASCII.name());
+        }
+        return CommandFrame.end(response);
+    }
+
+    private static String command(Buffer request) {
+        return request.getString(4, 6, StandardCharsets.US_ASCII.name());
+    }
+
+    private static final class InvalidInputException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private InvalidInputException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class InvalidPinBlockException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private InvalidPinBlockException(String message) {
+            super(message);
+        }
+    }
+}
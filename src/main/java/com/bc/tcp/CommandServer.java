@@ -0,0 +1,113 @@
+package com.bc.tcp;
+
+import com.bc.metrics.Diagnostics;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServerOptions;
+import io.vertx.core.net.NetSocket;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HSM-style TCP command interface, listening alongside the REST API for switches that talk to HSMs over length
+ * prefixed binary TCP. See {@link CommandFrame} for the framing and {@link CommandHandler} for the commands.
+ * - emv.tcp.enabled turns the listener on, on emv.tcp.host and emv.tcp.port. It is off by default and listens on the
+ *   loopback interface only unless emv.tcp.host names another, as the commands carry keys and PIN blocks in the clear
+ *   of TLS and authenticate no client.
+ * - emv.tcp.event-loops listeners share the port, each on its own event loop, 0 uses one per processor. Vert.x
+ *   spreads new connections across them, a connection stays on one event loop.
+ * - Commands are pipelined: a client may send further commands before the responses to earlier ones arrive. They are
+ *   run on the event loop as they are read, as the REST endpoints do, except ARQC verification with an ATC search
+ *   window which runs on a worker thread and may complete out of order, matched by its correlation id.
+ * - Reading from a connection pauses while its responses are not being read by the client
+ */
+@ApplicationScoped
+public class CommandServer {
+
+    private static final boolean ENABLED = ConfigProvider.getConfig()
+            .getOptionalValue("emv.tcp.enabled", Boolean.class).orElse(false);
+    private static final String HOST = ConfigProvider.getConfig()
+            .getOptionalValue("emv.tcp.host", String.class).orElse("127.0.0.1");
+    private static final int PORT = ConfigProvider.getConfig()
+            .getOptionalValue("emv.tcp.port", Integer.class).orElse(1500);
+    private static final int EVENT_LOOPS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.tcp.event-loops", Integer.class).orElse(0);
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandServer.class);
+
+    @Inject
+    Vertx vertx;
+    @Inject
+    Validator validator;
+
+    private String deploymentId;
+
+    void onStart(@Observes StartupEvent startupEvent) throws InterruptedException {
+        if (!ENABLED) {
+            return;
+        }
+        int instances = EVENT_LOOPS > 0 ? EVENT_LOOPS : Runtime.getRuntime().availableProcessors();
+        try {
+            deploymentId = vertx.deployVerticle(CommandVerticle::new, new DeploymentOptions().setInstances(instances))
+                    .toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+            LOGGER.info("TCP command interface listening on {}:{} with {} event loops", HOST, PORT, instances);
+        } catch (Exception exception) {
+            // The REST API stays up without the TCP interface
+            Diagnostics.warn("TCPS01", "TCP command interface could not listen on " + HOST + ":" + PORT + ": "
+                    + (exception.getCause() == null ? exception : exception.getCause()).getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent shutdownEvent) {
+        if (deploymentId != null) {
+            vertx.undeploy(deploymentId);
+        }
+    }
+
+    /**
+     * One listener, bound to the event loop it is deployed on.
+     */
+    private final class CommandVerticle extends AbstractVerticle {
+
+        @Override
+        public void start(Promise<Void> startPromise) {
+            NetServerOptions options = new NetServerOptions().setHost(HOST).setPort(PORT).setTcpNoDelay(true);
+            vertx.createNetServer(options).connectHandler(this::connect).listen()
+                    .<Void>mapEmpty().onComplete(startPromise);
+        }
+
+        private void connect(NetSocket socket) {
+            socket.handler(new CommandFrameDecoder(request -> {
+                if (CommandHandler.isOffloaded(request)) {
+                    offload(socket, request);
+                } else {
+                    write(socket, CommandHandler.process(request, validator));
+                }
+            }));
+            socket.drainHandler(ignored -> socket.resume());
+        }
+
+        private void offload(NetSocket socket, Buffer request) {
+            vertx.<Buffer>executeBlocking(promise -> promise.complete(CommandHandler.process(request, validator)),
+                    false).onSuccess(response -> write(socket, response));
+        }
+
+        private void write(NetSocket socket, Buffer response) {
+            socket.write(response);
+            if (socket.writeQueueFull()) {
+                socket.pause();
+            }
+        }
+    }
+}
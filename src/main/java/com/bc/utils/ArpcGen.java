@@ -1,17 +1,16 @@
 package com.bc.utils;
 
+import com.bc.enums.MacPaddingMethod;
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Calculate ARPC based on the input data, key and method
@@ -27,35 +26,47 @@ public class ArpcGen {
 
     public String getArpc() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException,
             BadPaddingException, InvalidKeyException, DecoderException {
-        if (csuMethod){
-            return generateArpcWithCsu().toUpperCase();
-        } else {
-            return generateArpcWithArc().toUpperCase();
+        long started = EmvMetrics.start();
+        try {
+            if (csuMethod){
+                return generateArpcWithCsu();
+            } else {
+                return generateArpcWithArc();
+            }
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.ARPC, started);
         }
     }
 
     /**
      * Compute ARPC using ARQC XOR ARC method
      * @return computed ARPC
-     * @throws NoSuchPaddingException May throw this exception
-     * @throws IllegalBlockSizeException May throw this exception
-     * @throws NoSuchAlgorithmException May throw this exception
-     * @throws BadPaddingException May throw this exception
      * @throws InvalidKeyException May throw this exception
+     * @throws DecoderException May throw this exception
      */
-    private String generateArpcWithArc() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+    private String generateArpcWithArc() throws InvalidKeyException, DecoderException {
 
-        Xor xor = new Xor();
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        cryptoFunctions.setKey(sessionKey);
         if (isDebug){
             System.out.println("Session Key: " + getSessionKey());
             System.out.println("ARQC: " + getArqc());
             System.out.println("Hex ARC: " + convertStringTOHex(getArcOrCsu(), 12, "0", false));
         }
-        cryptoFunctions.setInputData(xor.exclusiveOr(convertStringTOHex(
-                getArcOrCsu(), 12, "0", false), getArqc()));
-        return cryptoFunctions.tDEAEncrypt();
+        long arpc = HexCodec.decodeBlock(getArqc()) ^ arcBlock(getArcOrCsu());
+        return HexCodec.encodeBlock(TdeaEngine.encryptOnce(HexCodec.decode(sessionKey), arpc), true);
+    }
+
+    /**
+     * Build the ARC block, the ARC characters followed by binary zeros
+     * @param arc 2 character Authorisation Response Code
+     * @return ARC block
+     */
+    private static long arcBlock(String arc) {
+        byte [] arcBytes = arc.getBytes(StandardCharsets.UTF_8);
+        if (arcBytes.length != 2) {
+            throw new IllegalArgumentException("ARC: 2 characters expected, received \""
+                    + arc + "\".");
+        }
+        return ((arcBytes[0] & 0xFFL) << 56) | ((arcBytes[1] & 0xFFL) << 48);
     }
 
     /**
@@ -69,106 +80,33 @@ public class ArpcGen {
     public String convertStringTOHex(String input, int padLength, String padChar, boolean padLeft){
         if (padLeft) {
 //            return padChar.repeat(padLength) + HexFormat.of().formatHex(input.getBytes(StandardCharsets.UTF_8));
-            return padChar.repeat(padLength) + Hex.encodeHexString(input.getBytes(StandardCharsets.UTF_8));
+            return padChar.repeat(padLength) + HexCodec.encode(input.getBytes(StandardCharsets.UTF_8), false);
         } else {
-            return Hex.encodeHexString((input.getBytes(StandardCharsets.UTF_8))) + padChar.repeat(padLength);
+            return HexCodec.encode(input.getBytes(StandardCharsets.UTF_8), false) + padChar.repeat(padLength);
 //            return HexFormat.of().formatHex(input.getBytes(StandardCharsets.UTF_8)) + padChar.repeat(padLength);
         }
     }
 
-    private   String generateArpcWithCsu() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        //Build ARPC segments
-        List<String> arpcSegments = buildArpcTransactionData();
-        String uskLeft = getSessionKey().substring(0, 16);
-        String uskRight = getSessionKey().substring(16);
-        //Generate ARPC
-        int loopCount = 0;
-        String tempArpc = null;
-        Xor  xor = new Xor();
-
-        for (String transactionDataSegment: arpcSegments) {
-            loopCount += 1;
-            if (transactionDataSegment != null) {
-                //Based on the document referenced, the first block must be xor'ed with "0x0000000000000000", which
-                //would result in the same value being returned after xor. So I have  skipped implementing that step.
-                if  (loopCount == 1){
-                    tempArpc = transactionDataEncrypt(transactionDataSegment, uskLeft);
-                    if (isDebug()) {
-                        System.out.println(loopCount + " " + tempArpc);
-                    }
-                } else{
-                    tempArpc = xor.exclusiveOr(transactionDataSegment, tempArpc);
-                    tempArpc = transactionDataEncrypt(tempArpc, uskLeft);
-                    if (isDebug()) {
-                        System.out.println(loopCount + " " + tempArpc);
-                    }
-                }
-            } else {
-                break;
-            }
-        }
-        return transactionDataEncrypt(transactionDataDecrypt(tempArpc, uskRight),
-                uskLeft).substring(0,8)
-                + getArcOrCsu();
-    }
-
-    private List<String> buildArpcTransactionData() {
-
-        String HEX80 = "80";
-
-        String arpcData = getArqc() + getArcOrCsu() + HEX80;
-        int arpcDataLength = arpcData.length();
-
-        if (arpcDataLength % 16 != 0){
-            int nextMultiplierOf8 = ((arpcDataLength/16) + 1) * 16;
-            int lengthShortBy = nextMultiplierOf8 - (arpcDataLength);
-            arpcData = arpcData + "0".repeat(lengthShortBy);
-        }
+    /**
+     * Compute ARPC using the CSU method, a retail MAC over ARQC and CSU with ISO padding method 2
+     * @return computed ARPC, the first 4 bytes of the MAC followed by the CSU
+     * @throws InvalidKeyException May throw this exception
+     * @throws DecoderException May throw this exception
+     */
+    private String generateArpcWithCsu() throws InvalidKeyException, DecoderException {
 
         if (isDebug()) {
-            System.out.println("ARPC Data: " + arpcData + " / ARPC Data Length: " + arpcData.length());
+            System.out.println("ARPC Data: " + getArqc() + getArcOrCsu());
         }
-
-        return splitArpcData(arpcData);
-
-    }
-
-    private List<String> splitArpcData(String arpcData){
-
-        List<String> arpcSegments = new ArrayList<>();
-        int offsetCounter = 0;
-
-        for(int i = 0; i < (arpcData.length()/16); i++){
-            arpcSegments.add(arpcData.substring(offsetCounter,offsetCounter + 16));
-            offsetCounter = offsetCounter + 16;
+        RetailMac retailMac = new RetailMac(HexCodec.decode(getSessionKey()), MacPaddingMethod.Method_2);
+        try {
+            retailMac.update(HexCodec.decode(getArqc()));
+            retailMac.update(HexCodec.decode(getArcOrCsu()));
+            return HexCodec.encode(retailMac.doFinal(), 0, 4, true)
+                    + getArcOrCsu().toUpperCase();
+        } finally {
+            retailMac.destroy();
         }
-
-        return arpcSegments;
-    }
-
-    private String transactionDataEncrypt(String data, String key) throws NoSuchPaddingException,
-            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-
-        cryptoFunctions.setInputData(data);
-        cryptoFunctions.setKey(key);
-        return  cryptoFunctions.tDEAEncrypt();
-
-    }
-
-    private String transactionDataDecrypt(String data, String key) throws NoSuchPaddingException,
-            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-
-        cryptoFunctions.setInputData(data);
-        cryptoFunctions.setKey(key);
-        return  cryptoFunctions.tDEADecrypt();
-
     }
 
-
-}
-
+}
\ No newline at end of file
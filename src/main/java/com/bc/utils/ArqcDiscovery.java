@@ -0,0 +1,159 @@
+package com.bc.utils;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.MacPaddingMethod;
+import com.bc.enums.UdkDerivationOption;
+import lombok.Getter;
+import org.apache.commons.codec.DecoderException;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Discover the cryptogram parameters of a card from one known good transaction, by computing the ARQC under every
+ * combination of CVN and UDK derivation option that ARQC validation accepts, and returning the combinations that
+ * reproduce it. The padding is not probed on its own, each CVN has one, see {@link ArqcGen#paddingMethod}, so every
+ * match can be validated as reported. The combinations only differ in a few keys, which are derived once and shared:
+ * - UDKs are derived for Option A and Option B in parallel, Option C uses the Option B UDK and Option B falls back to
+ *   the Option A UDK for PANs of up to 16 digits, in which case its results are copied from Option A
+ * - CVN 10 uses the UDK as session key and CVN 18 and 22 the ATC derived session key, Option C the session key tree
+ *   for every CVN, so there are at most five distinct session keys, each MACed in parallel with the paddings of its
+ *   CVNs
+ */
+public final class ArqcDiscovery {
+
+    private ArqcDiscovery() {
+    }
+
+    /**
+     * CVN, UDK derivation option and padding that reproduce the ARQC.
+     */
+    @Getter
+    public static final class Match {
+
+        private final CryptogramVersionNumber cryptogramVersionNumber;
+        private final UdkDerivationOption udkDerivationOption;
+        private final MacPaddingMethod paddingMethod;
+
+        private Match(CryptogramVersionNumber cryptogramVersionNumber, UdkDerivationOption udkDerivationOption,
+                      MacPaddingMethod paddingMethod) {
+            this.cryptogramVersionNumber = cryptogramVersionNumber;
+            this.udkDerivationOption = udkDerivationOption;
+            this.paddingMethod = paddingMethod;
+        }
+    }
+
+    /**
+     * Find the parameter combinations that reproduce a card ARQC.
+     * @param arqcGen ARQC generator holding the MDK, card and transaction data, its CVN and derivation option are
+     *                not used
+     * @param arqc    ARQC received from the card, 16 hexadecimal digits in either case
+     * @return Matching combinations, empty if none reproduces the ARQC
+     * @throws GeneralSecurityException When a key derivation fails
+     * @throws DecoderException When the ARQC or a data element is not valid hexadecimal
+     */
+    public static List<Match> discover(ArqcGen arqcGen, String arqc) throws GeneralSecurityException,
+            DecoderException {
+        byte [] cardArqc = HexCodec.decode(arqc);
+        byte [] transactionData = arqcGen.buildArqcTransactionData();
+        int atc = (int) HexCodec.decodeLong(arqcGen.getApplicationTransactionCounter(), 0, 4);
+
+        List<Future<byte []>> udks = ForkJoinPool.commonPool().invokeAll(Arrays.asList(
+                () -> HexCodec.decode(arqcGen.getUniqueDerivationKey(UdkDerivationOption.Option_A)),
+                () -> HexCodec.decode(arqcGen.getUniqueDerivationKey(UdkDerivationOption.Option_B))));
+        byte [] udkA = result(udks.get(0));
+        byte [] udkB = result(udks.get(1));
+        boolean optionBIsOptionA = Arrays.equals(udkA, udkB);
+
+        List<Callable<List<Match>>> candidates = new ArrayList<>();
+        candidates.add(() -> probe(udkA.clone(), transactionData, cardArqc, UdkDerivationOption.Option_A,
+                CryptogramVersionNumber.CVN_10));
+        candidates.add(() -> probe(KeyGenerator.deriveSessionKey(udkA, false, atc), transactionData, cardArqc,
+                UdkDerivationOption.Option_A, CryptogramVersionNumber.CVN_18, CryptogramVersionNumber.CVN_22));
+        if (!optionBIsOptionA) {
+            candidates.add(() -> probe(udkB.clone(), transactionData, cardArqc, UdkDerivationOption.Option_B,
+                    CryptogramVersionNumber.CVN_10));
+            candidates.add(() -> probe(KeyGenerator.deriveSessionKey(udkB, false, atc), transactionData, cardArqc,
+                    UdkDerivationOption.Option_B, CryptogramVersionNumber.CVN_18, CryptogramVersionNumber.CVN_22));
+        }
+        // Option C derives the session key through the session key tree for every CVN
+        candidates.add(() -> probe(KeyGenerator.deriveSessionKey(udkB, true, atc), transactionData, cardArqc,
+                UdkDerivationOption.Option_C, CryptogramVersionNumber.values()));
+
+        List<Match> matches = new ArrayList<>();
+        try {
+            for (Future<List<Match>> candidate : ForkJoinPool.commonPool().invokeAll(candidates)) {
+                for (Match match : result(candidate)) {
+                    matches.add(match);
+                    if (optionBIsOptionA && match.udkDerivationOption == UdkDerivationOption.Option_A) {
+                        matches.add(new Match(match.cryptogramVersionNumber, UdkDerivationOption.Option_B,
+                                match.paddingMethod));
+                    }
+                }
+            }
+        } finally {
+            Arrays.fill(udkA, (byte) 0);
+            Arrays.fill(udkB, (byte) 0);
+        }
+        return matches;
+    }
+
+    /**
+     * MAC the transaction data under one session key with the padding of each validated CVN sharing the key.
+     * @param sessionKey Session key, zeroised once probed
+     */
+    private static List<Match> probe(byte [] sessionKey, byte [] transactionData, byte [] cardArqc,
+                                     UdkDerivationOption udkDerivationOption,
+                                     CryptogramVersionNumber... cryptogramVersionNumbers)
+            throws GeneralSecurityException {
+        try {
+            List<Match> matches = new ArrayList<>();
+            for (MacPaddingMethod paddingMethod : MacPaddingMethod.values()) {
+                List<CryptogramVersionNumber> paddingCryptogramVersions = new ArrayList<>();
+                for (CryptogramVersionNumber cryptogramVersionNumber : cryptogramVersionNumbers) {
+                    if (ArqcGen.VALIDATED_CRYPTOGRAM_VERSIONS.contains(cryptogramVersionNumber)
+                            && ArqcGen.paddingMethod(cryptogramVersionNumber) == paddingMethod) {
+                        paddingCryptogramVersions.add(cryptogramVersionNumber);
+                    }
+                }
+                if (!paddingCryptogramVersions.isEmpty() && MessageDigest.isEqual(
+                        ArqcGen.arqcMac(sessionKey, transactionData, paddingMethod), cardArqc)) {
+                    for (CryptogramVersionNumber cryptogramVersionNumber : paddingCryptogramVersions) {
+                        matches.add(new Match(cryptogramVersionNumber, udkDerivationOption, paddingMethod));
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            Arrays.fill(sessionKey, (byte) 0);
+        }
+    }
+
+    private static <T> T result(Future<T> future) throws GeneralSecurityException, DecoderException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ARQC discovery interrupted.", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof DecoderException) {
+                throw (DecoderException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("ARQC discovery failed: " + cause.getMessage(), cause);
+        }
+    }
+}
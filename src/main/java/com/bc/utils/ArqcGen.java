@@ -2,7 +2,9 @@ package com.bc.utils;
 
 import com.bc.enums.CryptogramVersionNumber;
 import com.bc.enums.KeyType;
+import com.bc.enums.MacPaddingMethod;
 import com.bc.enums.UdkDerivationOption;
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
@@ -12,9 +14,15 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import java.math.BigInteger;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Calculate ARQC based on the input data and key
@@ -24,6 +32,11 @@ import java.util.List;
 
 public class ArqcGen {
 
+    /** CVNs whose ARQCs are validated, CVN 14 has no known ARQC method */
+    public static final Set<CryptogramVersionNumber> VALIDATED_CRYPTOGRAM_VERSIONS = Collections.unmodifiableSet(
+            EnumSet.of(CryptogramVersionNumber.CVN_10, CryptogramVersionNumber.CVN_18, CryptogramVersionNumber.CVN_22));
+    private static final int MAX_ATC = 0xFFFF;
+
     private String mdkAc;
     private String pan;
     private String panSeqNbr;
@@ -38,10 +51,13 @@ public class ArqcGen {
     private String applicationInterchangeProfile;
     private String applicationTransactionCounter;
     private String issuerApplicationData;
+
     private String udk;
     private String uskLeft;
     private String uskRight;
     private UdkDerivationOption udkDerivationOption;
+    /** CDOL profile the ARQC transaction data is built from, null for the default profile */
+    private String cdolProfile;
     private CryptogramVersionNumber cryptogramVersionNumber;
     private boolean debug;
 
@@ -116,9 +132,10 @@ public class ArqcGen {
 
     public void setUdkDerivationOption(UdkDerivationOption udkDerivationOption) throws Exception {
         if (udkDerivationOption != UdkDerivationOption.Option_A
-                && udkDerivationOption != UdkDerivationOption.Option_B){
+                && udkDerivationOption != UdkDerivationOption.Option_B
+                && udkDerivationOption != UdkDerivationOption.Option_C){
             throw(new Exception("Invalid UDK derivation option, " +
-                    "only UDK derivation Option_A and Option_B is supported."));
+                    "only UDK derivation Option_A, Option_B and Option_C is supported."));
         }
         this.udkDerivationOption = udkDerivationOption;
     }
@@ -136,6 +153,83 @@ public class ArqcGen {
 
     public String getArqc() throws NoSuchPaddingException, IllegalBlockSizeException,
             NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+        return HexCodec.encode(generateArqc(), true);
+    }
+
+    /**
+     * Validate a card supplied ARQC against the ARQC computed from the transaction data. The cryptograms are compared
+     * as bytes in constant time, and the session key stays set for the ARPC afterwards.
+     * @param arqc ARQC received from the card, 16 hexadecimal digits in either case
+     * @return True if the ARQC matches
+     * @throws DecoderException When the ARQC or a data element is not valid hexadecimal
+     */
+    public boolean validateArqc(String arqc) throws NoSuchPaddingException, IllegalBlockSizeException,
+            NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+        return validateArqc(arqc, 0);
+    }
+
+    /**
+     * Validate a card supplied ARQC, searching the ATCs around the host ATC when it does not match at the host ATC.
+     * The window is searched in parallel on the common fork-join pool under the UDK already derived for the host
+     * ATC, and all workers stop on the first match. On a match the application transaction counter and session key
+     * are set to those of the matching ATC, ready for the ARPC.
+     * @param arqc            ARQC received from the card, 16 hexadecimal digits in either case
+     * @param atcSearchWindow Number of ATCs searched below and above the host ATC, 0 only tests the host ATC
+     * @return True if the ARQC matches at the host ATC or at an ATC in the window
+     * @throws DecoderException When the ARQC or a data element is not valid hexadecimal
+     */
+    public boolean validateArqc(String arqc, int atcSearchWindow) throws NoSuchPaddingException,
+            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException,
+            DecoderException {
+        byte [] cardArqc = HexCodec.decode(arqc);
+        byte [] computedArqc = generateArqc();
+        if (debug) {
+            System.out.println("Computed ARQC: " + HexCodec.encode(computedArqc, true));
+        }
+        if (MessageDigest.isEqual(computedArqc, cardArqc)) {
+            prefetchSessionKeys();
+            return true;
+        }
+        if (atcSearchWindow <= 0) {
+            return false;
+        }
+        int hostAtc = (int) HexCodec.decodeLong(getApplicationTransactionCounter(), 0, 4);
+        AtcSearch atcSearch = new AtcSearch(HexCodec.decode(getUdk()), buildArqcTransactionData(), cardArqc);
+        ForkJoinPool.commonPool().invoke(atcSearch.new Task(Math.max(hostAtc - atcSearchWindow, 0),
+                Math.min(hostAtc + atcSearchWindow, MAX_ATC) + 1, hostAtc));
+        if (atcSearch.matchedAtc.get() < 0) {
+            return false;
+        }
+        byte [] sessionKey = atcSearch.matchedSessionKey;
+        setApplicationTransactionCounter(HexCodec.encodeBlock(atcSearch.matchedAtc.get(), true).substring(12));
+        setUskLeft(HexCodec.encode(sessionKey, 0, 8, true));
+        setUskRight(HexCodec.encode(sessionKey, 8, 8, true));
+        Arrays.fill(sessionKey, (byte) 0);
+        if (debug) {
+            System.out.println("Matched ATC: " + getApplicationTransactionCounter());
+        }
+        prefetchSessionKeys();
+        return true;
+    }
+
+    /**
+     * Prefetch the session keys of the card's next ATCs once its ARQC has been verified, the UDK is the session key
+     * for CVN 10 and 14 unless the tree derivation is used
+     */
+    private void prefetchSessionKeys() throws DecoderException {
+        boolean treeDerivation = udkDerivationOption == UdkDerivationOption.Option_C;
+        if (!treeDerivation && (cryptogramVersionNumber == CryptogramVersionNumber.CVN_10
+                || cryptogramVersionNumber == CryptogramVersionNumber.CVN_14)) {
+            return;
+        }
+        byte [] udk = HexCodec.decode(getUdk());
+        SessionKeyPrefetcher.prefetchAfter(udk, treeDerivation,
+                (int) HexCodec.decodeLong(getApplicationTransactionCounter(), 0, 4));
+        Arrays.fill(udk, (byte) 0);
+    }
+
+    private byte [] generateArqc() throws NoSuchPaddingException, IllegalBlockSizeException,
+            NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
 
         //Generate a Unique Derivation Key
         setUdk(getUniqueDerivationKey());
@@ -150,42 +244,70 @@ public class ArqcGen {
             System.out.println("SEKR : " + getUskRight());
         }
 
-        //Build ARQC segments
-        List<String> arqcSegments = buildArqcTransactionData();
-
-        //Generate ARQC
-        int loopCount = 0;
-        String tempArqc = null;
-        Xor  xor = new Xor();
-
-        for (String transactionDataSegment: arqcSegments) {
-            loopCount += 1;
-            if (transactionDataSegment != null) {
-                //Based on the document referenced, the first block must be xor'ed with "0x0000000000000000", which
-                //would result in the same value being returned after xor. So I have  skipped implementing that step.
-                //and instead went with direct encryption of the data segment with session key left half
-                if  (loopCount == 1){
-                    tempArqc = transactionDataEncrypt(transactionDataSegment, getUskLeft());
-                    if (debug) {
-                        System.out.println(loopCount + " " + tempArqc);
-                    }
-                } else{
-                    tempArqc = xor.exclusiveOr(transactionDataSegment, tempArqc);
-                    tempArqc = transactionDataEncrypt(tempArqc, getUskLeft());
-                    if (debug) {
-                        System.out.println(loopCount + " " + tempArqc);
-                    }
+        if (debug) {
+            System.out.println("IAD       : " + getIssuerApplicationData());
+        }
+        return arqcMac(HexCodec.decode(sessionKey), buildArqcTransactionData());
+    }
+
+    /**
+     * MAC the ARQC transaction data under a session key. CVN 10 and 14 terminate the data with 0x00 and zero pad,
+     * CVN 18 and 22 use ISO padding method 2, which appends 0x80 before zero padding.
+     * @param sessionKey      Double length session key
+     * @param transactionData ARQC transaction data
+     * @return 8 byte ARQC
+     * @throws InvalidKeyException When the session key is not 16 bytes long
+     */
+    private byte [] arqcMac(byte [] sessionKey, byte [] transactionData) throws InvalidKeyException {
+        return arqcMac(sessionKey, transactionData, paddingMethod(cryptogramVersionNumber));
+    }
+
+    /**
+     * @param cryptogramVersionNumber CVN
+     * @return ARQC padding of the CVN, ISO padding method 2 for CVN 18 and 22, method 1 otherwise
+     */
+    static MacPaddingMethod paddingMethod(CryptogramVersionNumber cryptogramVersionNumber) {
+        return cryptogramVersionNumber == CryptogramVersionNumber.CVN_18
+                || cryptogramVersionNumber == CryptogramVersionNumber.CVN_22
+                ? MacPaddingMethod.Method_2 : MacPaddingMethod.Method_1;
+    }
+
+    /**
+     * MAC the ARQC transaction data under a session key with the given padding, Method_1 terminates the data with
+     * 0x00 before zero padding as CVN 10 and 14 do.
+     * @param sessionKey      Double length session key
+     * @param transactionData ARQC transaction data
+     * @param paddingMethod   ARQC padding
+     * @return 8 byte ARQC
+     * @throws InvalidKeyException When the session key is not 16 bytes long
+     */
+    static byte [] arqcMac(byte [] sessionKey, byte [] transactionData, MacPaddingMethod paddingMethod)
+            throws InvalidKeyException {
+        long started = EmvMetrics.start();
+        try {
+            RetailMac retailMac = new RetailMac(sessionKey, paddingMethod);
+            try {
+                retailMac.update(transactionData);
+                if (paddingMethod == MacPaddingMethod.Method_1) {
+                    retailMac.update((byte) 0x00);
                 }
-            } else {
-                break;
+                return retailMac.doFinal();
+            } finally {
+                retailMac.destroy();
             }
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.MAC, started);
         }
-
-        return transactionDataEncrypt(transactionDataDecrypt(tempArqc, getUskRight()), getUskLeft()).toUpperCase();
     }
 
     private String getUniqueDerivationKey() throws NoSuchPaddingException, IllegalBlockSizeException,
             NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+        return getUniqueDerivationKey(udkDerivationOption);
+    }
+
+    String getUniqueDerivationKey(UdkDerivationOption udkDerivationOption) throws NoSuchPaddingException,
+            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException,
+            DecoderException {
         // Generate UDK key for PAN and Sequence number
         KeyGenerator keyGenerator = new KeyGenerator();
         keyGenerator.pan = getPan();
@@ -212,6 +334,7 @@ public class ArqcGen {
         keyGenerator.keyType = KeyType.SEK_CRYPTOGRAM;
         keyGenerator.udkCryptogram = getUdk();
         keyGenerator.cryptogramVersionNumber = getCryptogramVersionNumber();
+        keyGenerator.udkDerivationOption = udkDerivationOption;
         if (debug) {
             System.out.println("ATC: " + getApplicationTransactionCounter());
         }
@@ -219,80 +342,107 @@ public class ArqcGen {
         return keyGenerator.getKey();
     }
 
-    private List <String> buildArqcTransactionData() {
-
-        String HEX80 = "80";
-        String HEX00 = "00";
-
-        String arqcData = getAmountAuthorised() + getAmountOther() +
-                getTerminalCountryCode() + getTerminalVerificationResults() +
-                getTransactionCurrencyCode() + getTransactionDate() +
-                getTransactionType() + getUnpredictableNumber() +
-                getApplicationInterchangeProfile() + getApplicationTransactionCounter();
-        switch (cryptogramVersionNumber){
-            case CVN_10:
-            case CVN_14:
-                if (debug) {
-                    System.out.println("IAD       : " + getIssuerApplicationData());
-                    System.out.println("IAD INPUT      : " + getIssuerApplicationData());
-                }
-                arqcData += getIssuerApplicationData() +  HEX00;
-                break;
-        case CVN_18:
-            case CVN_22:
-                arqcData += getIssuerApplicationData() + HEX80;
-                break;
-        }
-
-        int arqcDataLength = arqcData.length();
-
-        if (arqcDataLength % 16 != 0){
-            int nextMultiplierOf8 = ((arqcDataLength/16) + 1) * 16;
-            int lengthShortBy = nextMultiplierOf8 - (arqcDataLength);
-            arqcData = arqcData + "0".repeat(lengthShortBy);
-        }
-
+    /**
+     * Build the ARQC transaction data from the compiled CDOL plan of the CDOL profile.
+     * @return ARQC transaction data
+     * @throws DecoderException When a data element is not valid hexadecimal
+     */
+    byte [] buildArqcTransactionData() throws DecoderException {
+        CdolPlan cdolPlan = CdolPlan.forProfile(cdolProfile);
+        byte [] transactionData = new byte[cdolPlan.length(this)];
+        cdolPlan.write(this, transactionData, 0);
         if (debug) {
-            System.out.println("ARQC Data: " + arqcData + " / ARQC Data Length: " + arqcData.length());
+            System.out.println("ARQC Data: " + HexCodec.encode(transactionData, true));
         }
-
-        return splitArqcData(arqcData);
-
+        return transactionData;
     }
 
-    private List<String> splitArqcData(String arqcData){
-
-        List<String> arqcSegments = new ArrayList<>();
-        int offsetCounter = 0;
-
-        for(int i = 0; i < (arqcData.length()/16); i++){
-            arqcSegments.add(arqcData.substring(offsetCounter,offsetCounter + 16));
-            offsetCounter = offsetCounter + 16;
+    /**
+     * Parallel search of an ATC window for the ATC a card computed its ARQC at. Every candidate ATC costs one session
+     * key derivation from the shared UDK and one MAC over a private copy of the transaction data with the ATC bytes
+     * replaced.
+     */
+    private final class AtcSearch {
+
+        /** Number of ATCs a task tests itself rather than splitting */
+        private static final int LEAF_SIZE = 4;
+
+        private final byte [] udk;
+        private final byte [] transactionData;
+        private final byte [] cardArqc;
+        private final int atcOffset;
+        private final boolean treeDerivation = udkDerivationOption == UdkDerivationOption.Option_C;
+        private final AtomicInteger matchedAtc = new AtomicInteger(-1);
+        private volatile byte [] matchedSessionKey;
+
+        private AtcSearch(byte [] udk, byte [] transactionData, byte [] cardArqc) {
+            this.udk = udk;
+            this.transactionData = transactionData;
+            this.cardArqc = cardArqc;
+            this.atcOffset = CdolPlan.forProfile(cdolProfile).offsetOf(CdolPlan.ATC_TAG);
+            if (atcOffset < 0) {
+                throw new IllegalArgumentException("ATC search: the CDOL of profile \""
+                        + (cdolProfile == null ? CdolPlan.DEFAULT_PROFILE : cdolProfile) + "\" does not hold the ATC.");
+            }
         }
 
-        return arqcSegments;
-    }
-
-    private String transactionDataEncrypt(String data, String key) throws NoSuchPaddingException,
-            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-
-        cryptoFunctions.setInputData(data);
-        cryptoFunctions.setKey(key);
-        return  cryptoFunctions.tDEAEncrypt();
+        private byte [] sessionKey(int atc) throws InvalidKeyException {
+            // The UDK is the session key for CVN 10 and 14, unless the tree derivation is used
+            if (!treeDerivation && (cryptogramVersionNumber == CryptogramVersionNumber.CVN_10
+                    || cryptogramVersionNumber == CryptogramVersionNumber.CVN_14)) {
+                return udk.clone();
+            }
+            return KeyGenerator.deriveSessionKey(udk, treeDerivation, atc);
+        }
 
-    }
+        /**
+         * Tests ATCs from (inclusive) to (exclusive), skipping the host ATC that has already been tested.
+         */
+        private final class Task extends RecursiveAction {
 
-    private String transactionDataDecrypt(String data, String key) throws NoSuchPaddingException,
-            IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+            private static final long serialVersionUID = 1L;
 
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
+            private final int from;
+            private final int to;
+            private final int hostAtc;
 
-        cryptoFunctions.setInputData(data);
-        cryptoFunctions.setKey(key);
-        return  cryptoFunctions.tDEADecrypt();
+            private Task(int from, int to, int hostAtc) {
+                this.from = from;
+                this.to = to;
+                this.hostAtc = hostAtc;
+            }
 
+            @Override
+            protected void compute() {
+                if (matchedAtc.get() >= 0) {
+                    return;
+                }
+                if (to - from > LEAF_SIZE) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Task(from, middle, hostAtc), new Task(middle, to, hostAtc));
+                    return;
+                }
+                byte [] candidateData = transactionData.clone();
+                try {
+                    for (int atc = from; atc < to && matchedAtc.get() < 0; atc++) {
+                        if (atc == hostAtc) {
+                            continue;
+                        }
+                        candidateData[atcOffset] = (byte) (atc >>> 8);
+                        candidateData[atcOffset + 1] = (byte) atc;
+                        byte [] sessionKey = sessionKey(atc);
+                        if (MessageDigest.isEqual(arqcMac(sessionKey, candidateData), cardArqc)
+                                && matchedAtc.compareAndSet(-1, atc)) {
+                            matchedSessionKey = sessionKey;
+                        } else {
+                            Arrays.fill(sessionKey, (byte) 0);
+                        }
+                    }
+                } catch (InvalidKeyException exception) {
+                    throw new IllegalArgumentException("ATC search failed: " + exception.getMessage(), exception);
+                }
+            }
+        }
     }
 
 }
\ No newline at end of file
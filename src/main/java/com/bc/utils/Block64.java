@@ -0,0 +1,64 @@
+package com.bc.utils;
+
+/**
+ * Helpers for 64-bit blocks held as a single long, most significant byte first. TDEA blocks, single length key
+ * halves, PIN blocks and MAC chaining values are passed around in this form, so XOR, masking and nibble access are
+ * plain arithmetic and no byte arrays are allocated in between block operations.
+ */
+public final class Block64 {
+
+    public static final int SIZE = 8;
+
+    private Block64() {
+    }
+
+    /**
+     * Read 8 bytes starting at offset as a 64-bit block.
+     * @param data   Source buffer
+     * @param offset Offset of the first byte
+     * @return 64-bit block
+     */
+    public static long toLong(byte[] data, int offset) {
+        long block = 0;
+        for (int i = 0; i < SIZE; i++) {
+            block = (block << 8) | (data[offset + i] & 0xFF);
+        }
+        return block;
+    }
+
+    /**
+     * Write a 64-bit block into 8 bytes starting at offset.
+     * @param block  64-bit block
+     * @param data   Destination buffer
+     * @param offset Offset of the first byte
+     */
+    public static void toBytes(long block, byte[] data, int offset) {
+        for (int i = SIZE - 1; i >= 0; i--) {
+            data[offset + i] = (byte) block;
+            block >>>= 8;
+        }
+    }
+
+    /**
+     * Write two 64-bit blocks into a new 16 byte array, e.g. the halves of a double length key.
+     * @param left  Left block
+     * @param right Right block
+     * @return 16 byte array, left block followed by right block
+     */
+    public static byte[] toBytes(long left, long right) {
+        byte[] data = new byte[2 * SIZE];
+        toBytes(left, data, 0);
+        toBytes(right, data, SIZE);
+        return data;
+    }
+
+    /**
+     * Return the nibble at a given position, scanning the block from left to right.
+     * @param block    64-bit block
+     * @param position Nibble position, 0 being the high order nibble
+     * @return Nibble value, 0 through 15
+     */
+    public static int nibble(long block, int position) {
+        return (int) (block >>> (60 - 4 * position)) & 0x0F;
+    }
+}
@@ -0,0 +1,195 @@
+package com.bc.utils;
+
+import org.apache.commons.codec.DecoderException;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * ARQC input assembly plan compiled from a Card Risk Management Data Object List (CDOL). A CDOL is a list of tag and
+ * length pairs, e.g. 9F0206 9F0306 9F1A02 for amount authorised, amount other and terminal country code, which is
+ * compiled once into flat arrays of offsets, lengths and value sources. Building the ARQC input then decodes every
+ * value straight into its slot in the output buffer.
+ * - Each tag takes its value from the matching {@link ArqcGen} field, tags without a source are filled with binary
+ *   zeros as for data objects the terminal does not hold (EMV Book 3, 5.4)
+ * - A length of 00 marks a variable length entry, taking the whole value, and is only allowed as the last entry. The
+ *   default template appends the issuer application data this way.
+ * Templates are configured per profile through emv.cdol.profile.&lt;name&gt;, the default profile falls back to the
+ * ARQC data of CVN 10, 18 and 22. Plans are compiled on first use and kept for the lifetime of the application.
+ */
+public final class CdolPlan {
+
+    public static final String DEFAULT_PROFILE = "default";
+    /** Amount, amount other, country, TVR, currency, date, type, UN, AIP, ATC and IAD */
+    private static final String DEFAULT_TEMPLATE = "9F02069F03069F1A0295055F2A029A039C019F370482029F36029F1000";
+    /** Tag of the Application Transaction Counter */
+    public static final int ATC_TAG = 0x9F36;
+
+    private static final Map<Integer, Function<ArqcGen, String>> SOURCES = sources();
+    private static final Map<String, CdolPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final int[] tags;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final List<Function<ArqcGen, String>> sources;
+    /** Length of the fixed length entries, the variable length entry if any follows them */
+    private final int fixedLength;
+    private final boolean variableTail;
+
+    private CdolPlan(int[] tags, int[] lengths, List<Function<ArqcGen, String>> sources) {
+        this.tags = tags;
+        this.lengths = lengths;
+        this.sources = sources;
+        offsets = new int[tags.length];
+        int offset = 0;
+        for (int i = 0; i < tags.length; i++) {
+            offsets[i] = offset;
+            offset += lengths[i];
+        }
+        fixedLength = offset;
+        variableTail = tags.length > 0 && lengths[tags.length - 1] == 0;
+    }
+
+    /**
+     * Return the compiled plan of a profile, compiling it on first use.
+     * @param profile CDOL profile name, null selects the default profile
+     * @return Compiled plan
+     * @throws IllegalArgumentException When the profile is not configured or its template is invalid
+     */
+    public static CdolPlan forProfile(String profile) {
+        return PLANS.computeIfAbsent(profile == null ? DEFAULT_PROFILE : profile, name -> {
+            String template = ConfigProvider.getConfig().getOptionalValue("emv.cdol.profile." + name, String.class)
+                    .orElse(DEFAULT_PROFILE.equals(name) ? DEFAULT_TEMPLATE : null);
+            if (template == null) {
+                throw new IllegalArgumentException("CDOL profile \"" + name + "\" is not configured.");
+            }
+            try {
+                return compile(template);
+            } catch (DecoderException exception) {
+                throw new IllegalArgumentException("CDOL profile \"" + name + "\": " + exception.getMessage(),
+                        exception);
+            }
+        });
+    }
+
+    /**
+     * Compile a CDOL template of BER-TLV tags, each followed by a one byte length.
+     * @param cdol CDOL template in hexadecimal
+     * @return Compiled plan
+     * @throws DecoderException When the template is not valid hexadecimal
+     * @throws IllegalArgumentException When a tag or length is truncated, or a variable length entry is not last
+     */
+    public static CdolPlan compile(String cdol) throws DecoderException {
+        byte[] template = HexCodec.decode(cdol);
+        List<Integer> tags = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        List<Function<ArqcGen, String>> sources = new ArrayList<>();
+        int index = 0;
+        while (index < template.length) {
+            if (!lengths.isEmpty() && lengths.get(lengths.size() - 1) == 0) {
+                throw new IllegalArgumentException("CDOL: variable length entry must be the last entry.");
+            }
+            int tag = template[index++] & 0xFF;
+            if ((tag & 0x1F) == 0x1F) {
+                // Multi byte tag, subsequent bytes follow while bit 8 is set
+                do {
+                    if (index >= template.length) {
+                        throw new IllegalArgumentException("CDOL: truncated tag at the end of \"" + cdol + "\".");
+                    }
+                    tag = (tag << 8) | (template[index] & 0xFF);
+                } while ((template[index++] & 0x80) != 0);
+            }
+            if (index >= template.length) {
+                throw new IllegalArgumentException("CDOL: missing length for tag "
+                        + Integer.toHexString(tag).toUpperCase() + ".");
+            }
+            tags.add(tag);
+            lengths.add(template[index++] & 0xFF);
+            sources.add(SOURCES.get(tag));
+        }
+        return new CdolPlan(tags.stream().mapToInt(Integer::intValue).toArray(),
+                lengths.stream().mapToInt(Integer::intValue).toArray(), sources);
+    }
+
+    /**
+     * @param source ARQC generator holding the data element values
+     * @return Number of bytes {@link #write(ArqcGen, byte[], int)} writes for this source
+     */
+    public int length(ArqcGen source) {
+        if (!variableTail) {
+            return fixedLength;
+        }
+        Function<ArqcGen, String> tailSource = sources.get(tags.length - 1);
+        String tailValue = tailSource == null ? null : tailSource.apply(source);
+        return fixedLength + (tailValue == null ? 0 : tailValue.length() / 2);
+    }
+
+    /**
+     * Decode every data element into its slot of the output buffer.
+     * @param source ARQC generator holding the data element values
+     * @param output Buffer receiving the CDOL data
+     * @param offset Offset of the CDOL data in the output buffer
+     * @return Number of bytes written
+     * @throws DecoderException When a value is not valid hexadecimal
+     * @throws IllegalArgumentException When a value does not have the length of its entry
+     */
+    public int write(ArqcGen source, byte[] output, int offset) throws DecoderException {
+        int length = 0;
+        for (int i = 0; i < tags.length; i++) {
+            Function<ArqcGen, String> valueSource = sources.get(i);
+            String value = valueSource == null ? null : valueSource.apply(source);
+            int entryOffset = offset + offsets[i];
+            if (value == null) {
+                if (valueSource != null) {
+                    throw new IllegalArgumentException("CDOL: no value for tag "
+                            + Integer.toHexString(tags[i]).toUpperCase() + ".");
+                }
+                for (int j = 0; j < lengths[i]; j++) {
+                    output[entryOffset + j] = 0;
+                }
+                length += lengths[i];
+                continue;
+            }
+            if (lengths[i] != 0 && value.length() != lengths[i] * 2) {
+                throw new IllegalArgumentException("CDOL: tag " + Integer.toHexString(tags[i]).toUpperCase()
+                        + " " + lengths[i] + " bytes expected, received \"" + value + "\".");
+            }
+            length += HexCodec.decode(value, output, entryOffset);
+        }
+        return length;
+    }
+
+    /**
+     * @param tag Data element tag, e.g. {@link #ATC_TAG}
+     * @return Offset of the tag's value in the CDOL data, -1 if the tag is not in the CDOL
+     */
+    public int offsetOf(int tag) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == tag) {
+                return offsets[i];
+            }
+        }
+        return -1;
+    }
+
+    private static Map<Integer, Function<ArqcGen, String>> sources() {
+        Map<Integer, Function<ArqcGen, String>> sources = new HashMap<>();
+        sources.put(0x9F02, ArqcGen::getAmountAuthorised);
+        sources.put(0x9F03, ArqcGen::getAmountOther);
+        sources.put(0x9F1A, ArqcGen::getTerminalCountryCode);
+        sources.put(0x95, ArqcGen::getTerminalVerificationResults);
+        sources.put(0x5F2A, ArqcGen::getTransactionCurrencyCode);
+        sources.put(0x9A, ArqcGen::getTransactionDate);
+        sources.put(0x9C, ArqcGen::getTransactionType);
+        sources.put(0x9F37, ArqcGen::getUnpredictableNumber);
+        sources.put(0x82, ArqcGen::getApplicationInterchangeProfile);
+        sources.put(ATC_TAG, ArqcGen::getApplicationTransactionCounter);
+        sources.put(0x9F10, ArqcGen::getIssuerApplicationData);
+        return sources;
+    }
+}
@@ -1,5 +1,6 @@
 package com.bc.utils;
 
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
@@ -19,83 +20,38 @@ public class CvxGen {
     private String serviceCode;
     private String cvk;
     public String generateCvx() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
+        long started = EmvMetrics.start();
+        try {
 //        String cvxInputData = pan + expiryDate + getCvxRequest.getServiceCode();
-        StringBuilder cvxInputData = new StringBuilder();
-        cvxInputData.append(pan)
-                .append(expiryDate)
-                .append(serviceCode);
-        String cvxInput = cvxInputData + "0".repeat(32 - cvxInputData.length());
-        String cvkA = cvk.substring(0,16);
-        String cvkB = cvk.substring(16,32);
-        return buildCvx(cvxInput, cvkA, cvkB);
+            StringBuilder cvxInputData = new StringBuilder();
+            cvxInputData.append(pan)
+                    .append(expiryDate)
+                    .append(serviceCode);
+            String cvxInput = cvxInputData + "0".repeat(32 - cvxInputData.length());
+            return buildCvx(cvxInput, HexCodec.decode(cvk.substring(0,16)), HexCodec.decode(cvk.substring(16,32)));
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.CVV, started);
+        }
     }
 
-    private String buildCvx(String cvxData, String cvkA, String cvkB) throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        Xor xor = new Xor();
+    private String buildCvx(String cvxData, byte [] keyA, byte [] keyB) throws InvalidKeyException, DecoderException {
 
-        cryptoFunctions.setKey(cvkA);
-        cryptoFunctions.setInputData(cvxData);
-        String cvxDataLeft = cvxData.substring(0,16);
-        String cvxDataRight = cvxData.substring(16,32);
-        cryptoFunctions.setKey(cvkA);
-        cryptoFunctions.setInputData(cvxDataLeft);
-        cvxDataLeft = cryptoFunctions.tDEAEncrypt();
-        cvxDataLeft = xor.exclusiveOr(cvxDataLeft, cvxDataRight);
-        cryptoFunctions.setKey(cvkA);
-        cryptoFunctions.setInputData(cvxDataLeft);
-        cvxDataLeft = cryptoFunctions.tDEAEncrypt();
-        cryptoFunctions.setKey(cvkB);
-        cryptoFunctions.setInputData(cvxDataLeft);
-        cvxDataLeft = cryptoFunctions.tDEADecrypt();
-        cryptoFunctions.setKey(cvkA);
-        cryptoFunctions.setInputData(cvxDataLeft);
-        cvxDataLeft = cryptoFunctions.tDEAEncrypt();
+        long cvxBlock = TdeaEngine.encrypt(keyA, HexCodec.decodeLong(cvxData, 0, 16));
+        cvxBlock = TdeaEngine.encrypt(keyA, cvxBlock ^ HexCodec.decodeLong(cvxData, 16, 16));
+        cvxBlock = TdeaEngine.decrypt(keyB, cvxBlock);
+        cvxBlock = TdeaEngine.encrypt(keyA, cvxBlock);
 
-        StringBuilder cvxValue = new StringBuilder();
-
-        for (int i = 0; i < cvxDataLeft.length(); i++){
-            String cvxChar = cvxDataLeft.substring(i, i + 1);
-            switch (cvxChar){
-                case "0":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "1":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "2":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "3":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "4":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "5":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "6":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "7":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "8":
-                    cvxValue.append(cvxChar);
-                    break;
-                case "9":
-                    cvxValue.append(cvxChar);
-                    break;
-            }
-            if (cvxValue.length() == 3){
-                break;
+        // Take the first three decimal digits, scanning the result from left to right
+        char [] cvxValue = new char[3];
+        int cvxLength = 0;
+        for (int i = 0; i < 16 && cvxLength < cvxValue.length; i++){
+            int cvxNibble = Block64.nibble(cvxBlock, i);
+            if (cvxNibble < 10) {
+                cvxValue[cvxLength++] = (char) ('0' + cvxNibble);
             }
         }
 
-        return cvxValue.toString();
+        return new String(cvxValue, 0, cvxLength);
     }
 
 }
@@ -4,16 +4,19 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class DataChecker {
+
+    // Compiled once, the checks run for every PIN of a bulk issuance
+    private static final Pattern NUMERIC = Pattern.compile("[0-9]+");
+    private static final Pattern HEXADECIMAL = Pattern.compile("[0-9a-fA-F]+");
+
     /**
      * Check if an input data supplied is numeric
      * @param checkData Input data to be verified as numeric
      * @return Returns true, if input data is numeric
      */
     public static boolean isNumeric(String checkData){
-        String NUM_PATTERN = "[0-9]+";
-        Pattern hexPattern = Pattern.compile(NUM_PATTERN);
-        Matcher hexPatternMatcher = hexPattern.matcher(checkData);
-        return hexPatternMatcher.matches();
+        Matcher numericMatcher = NUMERIC.matcher(checkData);
+        return numericMatcher.matches();
     }
 
     /**
@@ -22,9 +25,7 @@ public class DataChecker {
      * @return Returns true, if input data contains valid hexadecimal characters
      */
     public static boolean isHexadecimal(String checkData){
-        String HEX_PATTERN = "[0-9a-fA-F]+";
-        Pattern hexPattern = Pattern.compile(HEX_PATTERN);
-        Matcher hexPatternMatcher = hexPattern.matcher(checkData);
+        Matcher hexPatternMatcher = HEXADECIMAL.matcher(checkData);
         return hexPatternMatcher.matches();
     }
 
@@ -0,0 +1,107 @@
+package com.bc.utils;
+
+import com.bc.constants.PINFunctions;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decimalisation table compiled into a 16 entry lookup table, the decimal digit of each hexadecimal nibble.
+ * Tables are given either as 16 decimal digits, the digit of nibble 0 first as HSMs take them, e.g. 0123456789012345
+ * for the default table, or as 16 "nibble:digit" entries in any order, e.g. "A:0". Compiled tables are cached by
+ * their digits, so a custom table supplied with every request is only compiled once, up to
+ * emv.decimalisation-cache.max-entries tables, further tables are compiled per request.
+ */
+public final class DecimalisationTable {
+
+    private static final int MAX_ENTRIES = ConfigProvider.getConfig()
+            .getOptionalValue("emv.decimalisation-cache.max-entries", Integer.class).orElse(256);
+    private static final Map<String, DecimalisationTable> TABLES = new ConcurrentHashMap<>();
+
+    public static final DecimalisationTable DEFAULT = forTable(PINFunctions.DEFAULT_DECIMALISATION_TABLE);
+
+    /** Decimal digit character by nibble */
+    private final char[] digits;
+
+    private DecimalisationTable(String digits) {
+        this.digits = digits.toCharArray();
+    }
+
+    /**
+     * @param digits 16 decimal digits, the digit of nibble 0 first
+     * @return Compiled table, null if the digits are not 16 decimal digits
+     */
+    public static DecimalisationTable forDigits(String digits) {
+        if (digits == null || digits.length() != 16) {
+            return null;
+        }
+        for (int i = 0; i < 16; i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                return null;
+            }
+        }
+        DecimalisationTable table = TABLES.get(digits);
+        if (table != null) {
+            return table;
+        }
+        table = new DecimalisationTable(digits);
+        if (TABLES.size() < MAX_ENTRIES) {
+            DecimalisationTable cached = TABLES.putIfAbsent(digits, table);
+            return cached == null ? table : cached;
+        }
+        return table;
+    }
+
+    /**
+     * @param table 16 "nibble:digit" entries, e.g. "A:0", each hexadecimal nibble exactly once
+     * @return Compiled table, null if the table is not 16 such entries
+     */
+    public static DecimalisationTable forTable(String[] table) {
+        if (table == null || table.length != 16) {
+            return null;
+        }
+        char[] digits = new char[16];
+        for (String entry : table) {
+            if (entry == null || entry.length() != 3 || entry.charAt(1) != ':') {
+                return null;
+            }
+            int nibble = Character.digit(entry.charAt(0), 16);
+            char digit = entry.charAt(2);
+            if (nibble < 0 || entry.charAt(0) > 'f' || digits[nibble] != 0 || digit < '0' || digit > '9') {
+                return null;
+            }
+            digits[nibble] = digit;
+        }
+        return forDigits(new String(digits));
+    }
+
+    /**
+     * Decimalise a block in a single pass over its nibbles
+     * @param block  Block, e.g. the encrypted PIN verification data
+     * @param output Array receiving the 16 decimal digits, the high nibble's first
+     * @param offset Offset in the output array
+     */
+    public void decimalise(long block, char[] output, int offset) {
+        for (int i = 0; i < 16; i++) {
+            output[offset + i] = digits[(int) (block >>> (60 - 4 * i)) & 0x0F];
+        }
+    }
+
+    /**
+     * @param block Block, e.g. the encrypted PIN verification data
+     * @return 16 decimal digits, the high nibble's first
+     */
+    public String decimalise(long block) {
+        char[] output = new char[16];
+        decimalise(block, output, 0);
+        return new String(output);
+    }
+
+    /**
+     * @return The 16 decimal digits of the table, the digit of nibble 0 first
+     */
+    public String getDigits() {
+        return new String(digits);
+    }
+}
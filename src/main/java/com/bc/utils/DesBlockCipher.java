@@ -0,0 +1,279 @@
+package com.bc.utils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Pure Java single block DES/TDEA primitive working on 64-bit blocks. All tables are precomputed at class load:
+ * - Initial and final permutations as byte indexed lookup tables, 8 lookups per permutation
+ * - S-boxes combined with the P permutation, so each round is 8 table lookups OR'ed together
+ * - Key schedules are precomputed once per key by {@link #schedule(byte[])}, with the 6 bit round key chunks packed
+ *   into two words per round that line up with the rotated right half, so the E expansion costs two rotations
+ * TDEA keeps the block in its permuted form between the three DES passes, the final permutation of one pass and the
+ * initial permutation of the next cancel out. Nothing is allocated per block.
+ */
+public final class DesBlockCipher {
+
+    /** Round key words per DES key: 16 rounds of two words, each packing four 6 bit chunks */
+    private static final int DES_SUBKEYS = 16 * 2;
+
+    private static final int[] INITIAL_PERMUTATION = {
+            58, 50, 42, 34, 26, 18, 10, 2, 60, 52, 44, 36, 28, 20, 12, 4,
+            62, 54, 46, 38, 30, 22, 14, 6, 64, 56, 48, 40, 32, 24, 16, 8,
+            57, 49, 41, 33, 25, 17, 9, 1, 59, 51, 43, 35, 27, 19, 11, 3,
+            61, 53, 45, 37, 29, 21, 13, 5, 63, 55, 47, 39, 31, 23, 15, 7};
+
+    private static final int[] P_PERMUTATION = {
+            16, 7, 20, 21, 29, 12, 28, 17, 1, 15, 23, 26, 5, 18, 31, 10,
+            2, 8, 24, 14, 32, 27, 3, 9, 19, 13, 30, 6, 22, 11, 4, 25};
+
+    private static final int[] PERMUTED_CHOICE_1 = {
+            57, 49, 41, 33, 25, 17, 9, 1, 58, 50, 42, 34, 26, 18,
+            10, 2, 59, 51, 43, 35, 27, 19, 11, 3, 60, 52, 44, 36,
+            63, 55, 47, 39, 31, 23, 15, 7, 62, 54, 46, 38, 30, 22,
+            14, 6, 61, 53, 45, 37, 29, 21, 13, 5, 28, 20, 12, 4};
+
+    private static final int[] PERMUTED_CHOICE_2 = {
+            14, 17, 11, 24, 1, 5, 3, 28, 15, 6, 21, 10,
+            23, 19, 12, 4, 26, 8, 16, 7, 27, 20, 13, 2,
+            41, 52, 31, 37, 47, 55, 30, 40, 51, 45, 33, 48,
+            44, 49, 39, 56, 34, 53, 46, 42, 50, 36, 29, 32};
+
+    private static final int[] KEY_SHIFTS = {1, 1, 2, 2, 2, 2, 2, 2, 1, 2, 2, 2, 2, 2, 2, 1};
+
+    private static final int[][] S_BOXES = {
+            {14, 4, 13, 1, 2, 15, 11, 8, 3, 10, 6, 12, 5, 9, 0, 7,
+                    0, 15, 7, 4, 14, 2, 13, 1, 10, 6, 12, 11, 9, 5, 3, 8,
+                    4, 1, 14, 8, 13, 6, 2, 11, 15, 12, 9, 7, 3, 10, 5, 0,
+                    15, 12, 8, 2, 4, 9, 1, 7, 5, 11, 3, 14, 10, 0, 6, 13},
+            {15, 1, 8, 14, 6, 11, 3, 4, 9, 7, 2, 13, 12, 0, 5, 10,
+                    3, 13, 4, 7, 15, 2, 8, 14, 12, 0, 1, 10, 6, 9, 11, 5,
+                    0, 14, 7, 11, 10, 4, 13, 1, 5, 8, 12, 6, 9, 3, 2, 15,
+                    13, 8, 10, 1, 3, 15, 4, 2, 11, 6, 7, 12, 0, 5, 14, 9},
+            {10, 0, 9, 14, 6, 3, 15, 5, 1, 13, 12, 7, 11, 4, 2, 8,
+                    13, 7, 0, 9, 3, 4, 6, 10, 2, 8, 5, 14, 12, 11, 15, 1,
+                    13, 6, 4, 9, 8, 15, 3, 0, 11, 1, 2, 12, 5, 10, 14, 7,
+                    1, 10, 13, 0, 6, 9, 8, 7, 4, 15, 14, 3, 11, 5, 2, 12},
+            {7, 13, 14, 3, 0, 6, 9, 10, 1, 2, 8, 5, 11, 12, 4, 15,
+                    13, 8, 11, 5, 6, 15, 0, 3, 4, 7, 2, 12, 1, 10, 14, 9,
+                    10, 6, 9, 0, 12, 11, 7, 13, 15, 1, 3, 14, 5, 2, 8, 4,
+                    3, 15, 0, 6, 10, 1, 13, 8, 9, 4, 5, 11, 12, 7, 2, 14},
+            {2, 12, 4, 1, 7, 10, 11, 6, 8, 5, 3, 15, 13, 0, 14, 9,
+                    14, 11, 2, 12, 4, 7, 13, 1, 5, 0, 15, 10, 3, 9, 8, 6,
+                    4, 2, 1, 11, 10, 13, 7, 8, 15, 9, 12, 5, 6, 3, 0, 14,
+                    11, 8, 12, 7, 1, 14, 2, 13, 6, 15, 0, 9, 10, 4, 5, 3},
+            {12, 1, 10, 15, 9, 2, 6, 8, 0, 13, 3, 4, 14, 7, 5, 11,
+                    10, 15, 4, 2, 7, 12, 9, 5, 6, 1, 13, 14, 0, 11, 3, 8,
+                    9, 14, 15, 5, 2, 8, 12, 3, 7, 0, 4, 10, 1, 13, 11, 6,
+                    4, 3, 2, 12, 9, 5, 15, 10, 11, 14, 1, 7, 6, 0, 8, 13},
+            {4, 11, 2, 14, 15, 0, 8, 13, 3, 12, 9, 7, 5, 10, 6, 1,
+                    13, 0, 11, 7, 4, 9, 1, 10, 14, 3, 5, 12, 2, 15, 8, 6,
+                    1, 4, 11, 13, 12, 3, 7, 14, 10, 15, 6, 8, 0, 5, 9, 2,
+                    6, 11, 13, 8, 1, 4, 10, 7, 9, 5, 0, 15, 14, 2, 3, 12},
+            {13, 2, 8, 4, 6, 15, 11, 1, 10, 9, 3, 14, 5, 0, 12, 7,
+                    1, 15, 13, 8, 10, 3, 7, 4, 12, 5, 6, 11, 0, 14, 9, 2,
+                    7, 11, 4, 1, 9, 12, 14, 2, 0, 6, 10, 13, 15, 3, 5, 8,
+                    2, 1, 14, 7, 4, 10, 8, 13, 15, 12, 9, 0, 3, 5, 6, 11}};
+
+    /** S-box outputs already passed through P, indexed by box * 64 + 6 bit input */
+    private static final int[] SP = new int[8 * 64];
+    /** Initial permutation, indexed by input byte position * 256 + byte value */
+    private static final long[] IP = new long[8 * 256];
+    /** Final (inverse initial) permutation, indexed by input byte position * 256 + byte value */
+    private static final long[] FP = new long[8 * 256];
+
+    static {
+        int[] finalPermutation = new int[64];
+        for (int i = 0; i < 64; i++) {
+            finalPermutation[INITIAL_PERMUTATION[i] - 1] = i + 1;
+        }
+        buildPermutationTable(INITIAL_PERMUTATION, IP);
+        buildPermutationTable(finalPermutation, FP);
+        for (int box = 0; box < 8; box++) {
+            for (int input = 0; input < 64; input++) {
+                // Outer bits select the row, inner four bits the column
+                int row = ((input >>> 4) & 0x02) | (input & 0x01);
+                int column = (input >>> 1) & 0x0F;
+                int sBoxOutput = S_BOXES[box][row * 16 + column] << (28 - 4 * box);
+                SP[box * 64 + input] = (int) permute(sBoxOutput & 0xFFFFFFFFL, 32, P_PERMUTATION);
+            }
+        }
+    }
+
+    private DesBlockCipher() {
+    }
+
+    /**
+     * Precompute the TDEA key schedule for a triple length key.
+     * @param tripleLengthKey 24 byte key, K1 K2 K3
+     * @return Round key words for K1, K2 and K3, 32 entries each
+     */
+    public static int[] schedule(byte[] tripleLengthKey) {
+        int[] subkeys = new int[3 * DES_SUBKEYS];
+        for (int i = 0; i < 3; i++) {
+            desSchedule(Block64.toLong(tripleLengthKey, i * 8), subkeys, i * DES_SUBKEYS);
+        }
+        return subkeys;
+    }
+
+    /**
+     * TDEA encrypt a 64-bit block, E(K3, D(K2, E(K1, block))).
+     * @param subkeys Key schedule built by {@link #schedule(byte[])}
+     * @param block   Clear block
+     * @return Encrypted block
+     */
+    public static long encrypt(int[] subkeys, long block) {
+        block = permute(block, IP);
+        block = rounds(block, subkeys, 0, false);
+        block = rounds(block, subkeys, DES_SUBKEYS, true);
+        block = rounds(block, subkeys, 2 * DES_SUBKEYS, false);
+        return permute(block, FP);
+    }
+
+    /**
+     * TDEA decrypt a 64-bit block, D(K1, E(K2, D(K3, block))).
+     * @param subkeys Key schedule built by {@link #schedule(byte[])}
+     * @param block   Encrypted block
+     * @return Clear block
+     */
+    public static long decrypt(int[] subkeys, long block) {
+        block = permute(block, IP);
+        block = rounds(block, subkeys, 2 * DES_SUBKEYS, true);
+        block = rounds(block, subkeys, DES_SUBKEYS, false);
+        block = rounds(block, subkeys, 0, true);
+        return permute(block, FP);
+    }
+
+    /**
+     * Validate this implementation against the JCE DESede provider, using the FIPS 46 single DES example and a set of
+     * pseudo random double length keys and blocks.
+     * @return True if every block matches the JCE result
+     */
+    public static boolean selfTest() {
+        try {
+            Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+            SplittableRandom random = new SplittableRandom(0x3624L);
+            byte[] key = {0x13, 0x34, 0x57, 0x79, (byte) 0x9B, (byte) 0xBC, (byte) 0xDF, (byte) 0xF1};
+            long block = 0x0123456789ABCDEFL;
+            for (int test = 0; test < 64; test++) {
+                byte[] tripleLengthKey = new byte[24];
+                System.arraycopy(key, 0, tripleLengthKey, 0, 8);
+                System.arraycopy(key, key.length - 8, tripleLengthKey, 8, 8);
+                System.arraycopy(key, 0, tripleLengthKey, 16, 8);
+                int[] subkeys = schedule(tripleLengthKey);
+                byte[] data = new byte[8];
+                Block64.toBytes(block, data, 0);
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(tripleLengthKey, "DESede"));
+                long expected = Block64.toLong(cipher.doFinal(data), 0);
+                if (encrypt(subkeys, block) != expected || decrypt(subkeys, expected) != block) {
+                    return false;
+                }
+                if (test == 0 && expected != 0x85E813540F0AB405L) {
+                    return false;
+                }
+                key = new byte[16];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = (byte) random.nextInt(256);
+                }
+                block = random.nextLong();
+            }
+            return true;
+        } catch (GeneralSecurityException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Zeroise a key schedule.
+     * @param subkeys Key schedule built by {@link #schedule(byte[])}
+     */
+    public static void destroy(int[] subkeys) {
+        Arrays.fill(subkeys, 0);
+    }
+
+    /**
+     * Run the 16 Feistel rounds of a single DES pass on an initially permuted block. The halves are returned
+     * swapped, which is the pre-output the final permutation, or the next TDEA pass, expects.
+     */
+    private static long rounds(long block, int[] subkeys, int offset, boolean decrypt) {
+        int left = (int) (block >>> 32);
+        int right = (int) block;
+        for (int round = 0; round < 16; round++) {
+            int subkey = offset + 2 * (decrypt ? 15 - round : round);
+            // Right half rotated right by 1 holds the E expansion input of S1, S3, S5 and S7 at bits 31, 23, 15 and
+            // 7, rotating a further 4 bits left lines up S2, S4, S6 and S8 the same way
+            int oddBoxes = Integer.rotateRight(right, 1) ^ subkeys[subkey];
+            int evenBoxes = Integer.rotateLeft(right, 3) ^ subkeys[subkey + 1];
+            int feistel = SP[(oddBoxes >>> 26) & 0x3F]
+                    | SP[128 + ((oddBoxes >>> 18) & 0x3F)]
+                    | SP[256 + ((oddBoxes >>> 10) & 0x3F)]
+                    | SP[384 + ((oddBoxes >>> 2) & 0x3F)]
+                    | SP[64 + ((evenBoxes >>> 26) & 0x3F)]
+                    | SP[192 + ((evenBoxes >>> 18) & 0x3F)]
+                    | SP[320 + ((evenBoxes >>> 10) & 0x3F)]
+                    | SP[448 + ((evenBoxes >>> 2) & 0x3F)];
+            int previousRight = right;
+            right = left ^ feistel;
+            left = previousRight;
+        }
+        return ((long) right << 32) | (left & 0xFFFFFFFFL);
+    }
+
+    private static long permute(long block, long[] table) {
+        return table[(int) (block >>> 56) & 0xFF]
+                | table[256 + ((int) (block >>> 48) & 0xFF)]
+                | table[512 + ((int) (block >>> 40) & 0xFF)]
+                | table[768 + ((int) (block >>> 32) & 0xFF)]
+                | table[1024 + ((int) (block >>> 24) & 0xFF)]
+                | table[1280 + ((int) (block >>> 16) & 0xFF)]
+                | table[1536 + ((int) (block >>> 8) & 0xFF)]
+                | table[1792 + ((int) block & 0xFF)];
+    }
+
+    private static void desSchedule(long key, int[] subkeys, int offset) {
+        long permutedKey = permute(key, 64, PERMUTED_CHOICE_1);
+        int c = (int) (permutedKey >>> 28) & 0x0FFFFFFF;
+        int d = (int) permutedKey & 0x0FFFFFFF;
+        for (int round = 0; round < 16; round++) {
+            for (int shift = 0; shift < KEY_SHIFTS[round]; shift++) {
+                c = ((c << 1) | (c >>> 27)) & 0x0FFFFFFF;
+                d = ((d << 1) | (d >>> 27)) & 0x0FFFFFFF;
+            }
+            long roundKey = permute(((long) c << 28) | d, 56, PERMUTED_CHOICE_2);
+            int oddBoxes = 0;
+            int evenBoxes = 0;
+            for (int chunk = 0; chunk < 8; chunk += 2) {
+                oddBoxes |= ((int) (roundKey >>> (42 - 6 * chunk)) & 0x3F) << (26 - 4 * chunk);
+                evenBoxes |= ((int) (roundKey >>> (36 - 6 * chunk)) & 0x3F) << (26 - 4 * chunk);
+            }
+            subkeys[offset + round * 2] = oddBoxes;
+            subkeys[offset + round * 2 + 1] = evenBoxes;
+        }
+    }
+
+    /**
+     * Generic bit permutation, used while building tables and key schedules only.
+     * @param input      Input bits, right aligned
+     * @param inputBits  Number of input bits
+     * @param permutation 1 based input bit position for every output bit, most significant first
+     * @return Permuted bits, right aligned
+     */
+    private static long permute(long input, int inputBits, int[] permutation) {
+        long output = 0;
+        for (int position : permutation) {
+            output = (output << 1) | ((input >>> (inputBits - position)) & 1);
+        }
+        return output;
+    }
+
+    private static void buildPermutationTable(int[] permutation, long[] table) {
+        for (int bytePosition = 0; bytePosition < 8; bytePosition++) {
+            for (int value = 0; value < 256; value++) {
+                table[bytePosition * 256 + value] = permute((long) value << (56 - 8 * bytePosition), 64, permutation);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.bc.utils;
+
+import org.apache.commons.codec.DecoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table driven hexadecimal codec. Decoding accepts upper and lower case digits, encoding writes either case directly,
+ * so no toUpperCase() pass is needed afterwards. Besides the String convenience methods, data can be decoded into
+ * and encoded from caller supplied byte[], char[] and 64-bit block buffers without intermediate Strings. Within the
+ * utils classes hex is only decoded once on the way in and encoded once on the way out, all processing in between is
+ * done on bytes and 64-bit blocks, see {@link Block64}.
+ */
+public final class HexCodec {
+
+    private static final char[] UPPER_CASE_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] LOWER_CASE_DIGITS = "0123456789abcdef".toCharArray();
+    /** Nibble value for every ASCII character, -1 for characters that are not hexadecimal digits */
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[UPPER_CASE_DIGITS[i]] = (byte) i;
+            NIBBLES[LOWER_CASE_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private HexCodec() {
+    }
+
+    /**
+     * Decode a hexadecimal string into a new byte array.
+     * @param hex Hexadecimal data, even number of characters
+     * @return Decoded data
+     * @throws DecoderException When the data has an odd length or contains a non hexadecimal character
+     */
+    public static byte[] decode(CharSequence hex) throws DecoderException {
+        byte[] output = new byte[checkEvenLength(hex) / 2];
+        decode(hex, output, 0);
+        return output;
+    }
+
+    /**
+     * Decode a hexadecimal string into a caller supplied buffer.
+     * @param hex          Hexadecimal data, even number of characters
+     * @param output       Buffer receiving the decoded bytes
+     * @param outputOffset Offset in the output buffer of the first decoded byte
+     * @return Number of bytes written
+     * @throws DecoderException When the data has an odd length or contains a non hexadecimal character
+     */
+    public static int decode(CharSequence hex, byte[] output, int outputOffset) throws DecoderException {
+        int length = checkEvenLength(hex) / 2;
+        for (int i = 0; i < length; i++) {
+            output[outputOffset + i] = (byte) ((digit(hex, 2 * i) << 4) | digit(hex, 2 * i + 1));
+        }
+        return length;
+    }
+
+    /**
+     * Decode up to 16 hexadecimal characters into a right aligned 64-bit value, e.g. "0F2A" into 0x0F2A.
+     * @param hex    Hexadecimal data
+     * @param offset Offset of the first character to decode
+     * @param length Number of characters to decode, 16 decodes a full 64-bit block
+     * @return Decoded value
+     * @throws DecoderException When more than 16 characters are requested or a character is not hexadecimal
+     */
+    public static long decodeLong(CharSequence hex, int offset, int length) throws DecoderException {
+        if (length > 16) {
+            throw new DecoderException("At most 16 hexadecimal characters fit a 64-bit block, received "
+                    + length + " characters.");
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 4) | digit(hex, i);
+        }
+        return value;
+    }
+
+    /**
+     * Decode exactly 16 hexadecimal characters into a 64-bit block.
+     * @param hex Hexadecimal block
+     * @return Decoded block
+     * @throws DecoderException When the data is not 16 hexadecimal characters long
+     */
+    public static long decodeBlock(CharSequence hex) throws DecoderException {
+        if (hex.length() != 2 * Block64.SIZE) {
+            throw new DecoderException("16 hexadecimal characters expected, received " + hex.length()
+                    + " characters.");
+        }
+        return decodeLong(hex, 0, hex.length());
+    }
+
+    /**
+     * Encode bytes into a caller supplied char buffer.
+     * @param input        Data to encode
+     * @param inputOffset  Offset of the first byte to encode
+     * @param length       Number of bytes to encode
+     * @param output       Buffer receiving 2 * length characters
+     * @param outputOffset Offset in the output buffer of the first character
+     * @param upperCase    Encode A through F in upper case when true, lower case otherwise
+     */
+    public static void encode(byte[] input, int inputOffset, int length, char[] output, int outputOffset,
+                              boolean upperCase) {
+        char[] digits = upperCase ? UPPER_CASE_DIGITS : LOWER_CASE_DIGITS;
+        for (int i = 0; i < length; i++) {
+            int inputByte = input[inputOffset + i];
+            output[outputOffset + 2 * i] = digits[(inputByte >>> 4) & 0x0F];
+            output[outputOffset + 2 * i + 1] = digits[inputByte & 0x0F];
+        }
+    }
+
+    /**
+     * Encode bytes as ASCII hexadecimal digits into a caller supplied byte buffer, e.g. a response stream buffer.
+     * @param input        Data to encode
+     * @param inputOffset  Offset of the first byte to encode
+     * @param length       Number of bytes to encode
+     * @param output       Buffer receiving 2 * length ASCII characters
+     * @param outputOffset Offset in the output buffer of the first character
+     * @param upperCase    Encode A through F in upper case when true, lower case otherwise
+     */
+    public static void encode(byte[] input, int inputOffset, int length, byte[] output, int outputOffset,
+                              boolean upperCase) {
+        char[] digits = upperCase ? UPPER_CASE_DIGITS : LOWER_CASE_DIGITS;
+        for (int i = 0; i < length; i++) {
+            int inputByte = input[inputOffset + i];
+            output[outputOffset + 2 * i] = (byte) digits[(inputByte >>> 4) & 0x0F];
+            output[outputOffset + 2 * i + 1] = (byte) digits[inputByte & 0x0F];
+        }
+    }
+
+    /**
+     * Encode a range of bytes as a hexadecimal string.
+     * @param input       Data to encode
+     * @param inputOffset Offset of the first byte to encode
+     * @param length      Number of bytes to encode
+     * @param upperCase   Encode A through F in upper case when true, lower case otherwise
+     * @return Hexadecimal string
+     */
+    public static String encode(byte[] input, int inputOffset, int length, boolean upperCase) {
+        byte[] output = new byte[2 * length];
+        encode(input, inputOffset, length, output, 0, upperCase);
+        return new String(output, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encode bytes as a hexadecimal string.
+     * @param input     Data to encode
+     * @param upperCase Encode A through F in upper case when true, lower case otherwise
+     * @return Hexadecimal string
+     */
+    public static String encode(byte[] input, boolean upperCase) {
+        return encode(input, 0, input.length, upperCase);
+    }
+
+    /**
+     * Encode a 64-bit block as 16 hexadecimal characters into a caller supplied char buffer.
+     * @param block        Block to encode
+     * @param output       Buffer receiving 16 characters
+     * @param outputOffset Offset in the output buffer of the first character
+     * @param upperCase    Encode A through F in upper case when true, lower case otherwise
+     */
+    public static void encodeBlock(long block, char[] output, int outputOffset, boolean upperCase) {
+        char[] digits = upperCase ? UPPER_CASE_DIGITS : LOWER_CASE_DIGITS;
+        for (int i = 15; i >= 0; i--) {
+            output[outputOffset + i] = digits[(int) block & 0x0F];
+            block >>>= 4;
+        }
+    }
+
+    /**
+     * Encode a 64-bit block as a 16 character hexadecimal string.
+     * @param block     Block to encode
+     * @param upperCase Encode A through F in upper case when true, lower case otherwise
+     * @return Hexadecimal string
+     */
+    public static String encodeBlock(long block, boolean upperCase) {
+        char[] output = new char[2 * Block64.SIZE];
+        encodeBlock(block, output, 0, upperCase);
+        return new String(output);
+    }
+
+    /**
+     * Return the hexadecimal digit for a nibble value.
+     * @param nibble    Value 0 through 15
+     * @param upperCase Return A through F in upper case when true, lower case otherwise
+     * @return Hexadecimal digit
+     */
+    public static char toDigit(int nibble, boolean upperCase) {
+        return (upperCase ? UPPER_CASE_DIGITS : LOWER_CASE_DIGITS)[nibble & 0x0F];
+    }
+
+    /**
+     * Return the nibble value of the hexadecimal digit at a given index.
+     * @param hex   Hexadecimal data
+     * @param index Index of the digit
+     * @return Value 0 through 15
+     * @throws DecoderException When the character is not a hexadecimal digit
+     */
+    public static int digit(CharSequence hex, int index) throws DecoderException {
+        char hexChar = hex.charAt(index);
+        int nibble = hexChar < NIBBLES.length ? NIBBLES[hexChar] : -1;
+        if (nibble < 0) {
+            throw new DecoderException("Illegal hexadecimal character " + hexChar + " at index " + index);
+        }
+        return nibble;
+    }
+
+    private static int checkEvenLength(CharSequence hex) throws DecoderException {
+        if ((hex.length() & 0x01) != 0) {
+            throw new DecoderException("Odd number of characters.");
+        }
+        return hex.length();
+    }
+}
@@ -1,262 +1,326 @@
 package com.bc.utils;
 
-import lombok.Getter;
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.IadField;
+import com.bc.enums.IadFormat;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Parse issuer application data
+ * Parse issuer application data (9F10) in place. {@link #parse(CharSequence, boolean)} and
+ * {@link #wrap(byte[], int, int, boolean)} only validate the IAD and detect its format, fields are then decoded from
+ * the wrapped hexadecimal String or byte array when they are read, through typed accessors or their {@link IadField}
+ * key. Nothing is copied or allocated, so one parser can be reused from one IAD to the next.
+ * Field layouts, byte offsets:
+ * Format           Length  DKI  CVN   CVR    DAC/IDN  Counters  IDD length  IDD    Other
+ * Visa 0/1/3       0       1    2     3-6 *  -        -         7           8-     * CVR length byte included
+ * Visa 2           0       2    1 **  3-7    -        -         -           8-31   ** Left nibble IAD format
+ * CCD              0       2    -     3-7    -        8-15      16          17-31  Common Core Identifier 1
+ * M/Chip 2.1/2.2   -       0    1     2-5    6-7      -         -           -
+ * M/Chip 2.05      0       1    2     3-6    7-8      -         -           -
+ * M/Chip 4         -       0    1     2-7    8-9      10-       -           -
+ * The format is looked up in tables built once: by first byte for Visa PANs, by length for other PANs.
  */
-@Getter
 public class IADParser {
-    private String cvn;
-    private String cvr;
-    private String dki;
-    private boolean invalidIad;
+
+    /** Longest IAD, EMV Book 3 tag 9F10 */
+    private static final int MAX_LENGTH = 32;
+    /** Field length running to the end of the IAD */
+    private static final int REMAINDER = -1;
+
+    private static final IadFormat[] FORMATS = IadFormat.values();
+    /** Byte offset of each field by format and field, -1 when the format has no such field */
+    private static final int[][] OFFSETS = new int[FORMATS.length][IadField.values().length];
+    /** Byte length of each field by format and field, or REMAINDER */
+    private static final int[][] LENGTHS = new int[FORMATS.length][IadField.values().length];
+    private static final int[] MIN_LENGTHS = new int[FORMATS.length];
+    private static final IadFormat[] VISA_FORMATS_BY_FIRST_BYTE = new IadFormat[256];
+    private static final IadFormat[] OTHER_FORMATS_BY_LENGTH = new IadFormat[MAX_LENGTH + 1];
+    /** CVN by the CVN byte, Visa encodes the CVN in binary, M/Chip as two decimal digits */
+    private static final CryptogramVersionNumber[] VISA_CVNS = new CryptogramVersionNumber[256];
+    private static final CryptogramVersionNumber[] MCHIP_CVNS = new CryptogramVersionNumber[256];
+
+    static {
+        for (int[] offsets : OFFSETS) {
+            Arrays.fill(offsets, -1);
+        }
+        MIN_LENGTHS[IadFormat.VISA_FORMAT_0_1_3.ordinal()] = 7;
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.LENGTH, 0, 1);
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.DERIVATION_KEY_INDEX, 1, 1);
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.CRYPTOGRAM_VERSION_NUMBER, 2, 1);
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.CARD_VERIFICATION_RESULTS, 3, 4);
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.ISSUER_DISCRETIONARY_DATA_LENGTH, 7, 1);
+        field(IadFormat.VISA_FORMAT_0_1_3, IadField.ISSUER_DISCRETIONARY_DATA, 8, REMAINDER);
+
+        MIN_LENGTHS[IadFormat.VISA_FORMAT_2.ordinal()] = 32;
+        field(IadFormat.VISA_FORMAT_2, IadField.LENGTH, 0, 1);
+        field(IadFormat.VISA_FORMAT_2, IadField.CRYPTOGRAM_VERSION_NUMBER, 1, 1);
+        field(IadFormat.VISA_FORMAT_2, IadField.DERIVATION_KEY_INDEX, 2, 1);
+        field(IadFormat.VISA_FORMAT_2, IadField.CARD_VERIFICATION_RESULTS, 3, 5);
+        field(IadFormat.VISA_FORMAT_2, IadField.ISSUER_DISCRETIONARY_DATA, 8, REMAINDER);
+
+        MIN_LENGTHS[IadFormat.CCD.ordinal()] = 32;
+        field(IadFormat.CCD, IadField.LENGTH, 0, 1);
+        field(IadFormat.CCD, IadField.COMMON_CORE_IDENTIFIER, 1, 1);
+        field(IadFormat.CCD, IadField.DERIVATION_KEY_INDEX, 2, 1);
+        field(IadFormat.CCD, IadField.CARD_VERIFICATION_RESULTS, 3, 5);
+        field(IadFormat.CCD, IadField.COUNTERS, 8, 8);
+        field(IadFormat.CCD, IadField.ISSUER_DISCRETIONARY_DATA_LENGTH, 16, 1);
+        field(IadFormat.CCD, IadField.ISSUER_DISCRETIONARY_DATA, 17, REMAINDER);
+
+        MIN_LENGTHS[IadFormat.MCHIP_2_1.ordinal()] = 8;
+        field(IadFormat.MCHIP_2_1, IadField.DERIVATION_KEY_INDEX, 0, 1);
+        field(IadFormat.MCHIP_2_1, IadField.CRYPTOGRAM_VERSION_NUMBER, 1, 1);
+        field(IadFormat.MCHIP_2_1, IadField.CARD_VERIFICATION_RESULTS, 2, 4);
+        field(IadFormat.MCHIP_2_1, IadField.DAC_ICC_DYNAMIC_NUMBER, 6, 2);
+
+        MIN_LENGTHS[IadFormat.MCHIP_2_05.ordinal()] = 9;
+        field(IadFormat.MCHIP_2_05, IadField.LENGTH, 0, 1);
+        field(IadFormat.MCHIP_2_05, IadField.DERIVATION_KEY_INDEX, 1, 1);
+        field(IadFormat.MCHIP_2_05, IadField.CRYPTOGRAM_VERSION_NUMBER, 2, 1);
+        field(IadFormat.MCHIP_2_05, IadField.CARD_VERIFICATION_RESULTS, 3, 4);
+        field(IadFormat.MCHIP_2_05, IadField.DAC_ICC_DYNAMIC_NUMBER, 7, 2);
+
+        MIN_LENGTHS[IadFormat.MCHIP_4.ordinal()] = 10;
+        field(IadFormat.MCHIP_4, IadField.DERIVATION_KEY_INDEX, 0, 1);
+        field(IadFormat.MCHIP_4, IadField.CRYPTOGRAM_VERSION_NUMBER, 1, 1);
+        field(IadFormat.MCHIP_4, IadField.CARD_VERIFICATION_RESULTS, 2, 6);
+        field(IadFormat.MCHIP_4, IadField.DAC_ICC_DYNAMIC_NUMBER, 8, 2);
+        field(IadFormat.MCHIP_4, IadField.COUNTERS, 10, REMAINDER);
+
+        // Visa IADs carry their format in the length indicator, other IADs are told apart by length
+        Arrays.fill(VISA_FORMATS_BY_FIRST_BYTE, IadFormat.VISA_FORMAT_0_1_3);
+        VISA_FORMATS_BY_FIRST_BYTE[0x1F] = IadFormat.VISA_FORMAT_2;
+        Arrays.fill(OTHER_FORMATS_BY_LENGTH, IadFormat.MCHIP_4);
+        OTHER_FORMATS_BY_LENGTH[8] = IadFormat.MCHIP_2_1;
+        OTHER_FORMATS_BY_LENGTH[9] = IadFormat.MCHIP_2_05;
+        OTHER_FORMATS_BY_LENGTH[32] = IadFormat.CCD;
+
+        VISA_CVNS[10] = CryptogramVersionNumber.CVN_10;
+        VISA_CVNS[14] = CryptogramVersionNumber.CVN_14;
+        VISA_CVNS[18] = CryptogramVersionNumber.CVN_18;
+        VISA_CVNS[22] = CryptogramVersionNumber.CVN_22;
+        MCHIP_CVNS[0x10] = CryptogramVersionNumber.CVN_10;
+        MCHIP_CVNS[0x14] = CryptogramVersionNumber.CVN_14;
+        MCHIP_CVNS[0x18] = CryptogramVersionNumber.CVN_18;
+        MCHIP_CVNS[0x22] = CryptogramVersionNumber.CVN_22;
+    }
+
+    private CharSequence hex;
+    private byte[] bytes;
+    private int bytesOffset;
+    /** IAD length in bytes */
+    private int length;
+    private IadFormat format;
+
+    private static void field(IadFormat format, IadField field, int offset, int length) {
+        OFFSETS[format.ordinal()][field.ordinal()] = offset;
+        LENGTHS[format.ordinal()][field.ordinal()] = length;
+    }
+
     /**
      * Parse issuer application data based on payment scheme
-     * @param iad Issued Application Data received in the reuqest
-     * @return List of strings containing parsed IAD data
-    */
-    public List<String> parse(String iad, boolean isVisaPan) {
-        mchipIadParser(iad);
-        if (isVisaPan){
-            return visaIAD(iad); // Visa IADs
-        } else if (iad.length() == 64){ // CCD compliant IAD
-            return ccdCompliantIAD(iad);
-        } else return mchipIadParser(iad); // MasterCard IADs
+     * @param iad       Issuer Application Data received in the request, hexadecimal
+     * @param isVisaPan True for an IAD of a Visa card
+     * @return IAD format, null if the IAD is not valid hexadecimal data of a known format
+     */
+    public IadFormat parse(CharSequence iad, boolean isVisaPan) {
+        hex = iad;
+        bytes = null;
+        bytesOffset = 0;
+        length = isHexadecimal(iad) ? iad.length() / 2 : 0;
+        return detectFormat(isVisaPan);
+    }
+
+    /**
+     * Parse issuer application data in a byte array, which must not change while fields are read
+     * @param iad       Array holding the IAD
+     * @param offset    Offset of the IAD in the array
+     * @param length    IAD length in bytes
+     * @param isVisaPan True for an IAD of a Visa card
+     * @return IAD format, null if the IAD is not of a known format
+     */
+    public IadFormat wrap(byte[] iad, int offset, int length, boolean isVisaPan) {
+        hex = null;
+        bytes = iad;
+        bytesOffset = offset;
+        this.length = length;
+        return detectFormat(isVisaPan);
+    }
+
+    private IadFormat detectFormat(boolean isVisaPan) {
+        format = null;
+        if (length > 0 && length <= MAX_LENGTH) {
+            IadFormat candidate = isVisaPan ? VISA_FORMATS_BY_FIRST_BYTE[getByte(0)] : OTHER_FORMATS_BY_LENGTH[length];
+            if (length >= MIN_LENGTHS[candidate.ordinal()]) {
+                format = candidate;
+            }
+        }
+        return format;
+    }
+
+    /**
+     * @return IAD format, null if the last IAD parsed was not valid
+     */
+    public IadFormat getFormat() {
+        return format;
+    }
+
+    public boolean isInvalidIad() {
+        return format == null;
     }
 
     /**
-     * Parser method for an EMV CCD compliant IAD
-     * @param iad Issuer Application Data (9F10)
-     * @return Map with parser IAD as follows:
-     * Key                      Value
-     * ---------                ----------------------
-     * IAD Format               "A"
-     * LengthIndicator          "0F"
-     * CCI                      Common Core Identifier
-     * DKI                      Derivation Key Index
-     * CVR                      5 byte Card Verification Results (Not parsed, used CVR parser to parse)
-     * Length Indicator         Discretionary Data length
-     * DD                       Discretionary Data (Not parsed)
+     * @return IAD length in bytes
      */
-    //private static Map ccdCompliantIAD(String iad){
-    private List<String> ccdCompliantIAD(String iad){
-        List<String> ccdCompliantIad = new ArrayList<>();
-        ccdCompliantIad.add("Format-A"); // 0 - IAD format
-        ccdCompliantIad.add(iad.substring(0,2)); // 1 - Length indicator: 1 byte
-        ccdCompliantIad.add(iad.substring(2,4)); // 2 - Common Core Identifier: 1 byte
-        ccdCompliantIad.add(iad.substring(4,6)); // 3 - Derivation Key Index: 1 byte
-        ccdCompliantIad.add(iad.substring(6,16)); // 4 - Card Verification Results: 5 bytes
-        ccdCompliantIad.add(iad.substring(16,32)); // 5 - Counters: 8 bytes
-        ccdCompliantIad.add(iad.substring(32,34)); // 6 - Issuer Discretionary Data length: 1 byte
-        ccdCompliantIad.add(iad.substring(34)); // 7 - Issuer Discretionary Data: 15 bytes
-        return ccdCompliantIad;
+    public int getLength() {
+        return length;
     }
 
-/*    /**
-     * Check if a CCD compliant IAD's IAD and IDD length indicators are set to 0xOF
-     * @param iadLengthIndicator IAD length indicator extracted, must be set to 0x0F for CCD compliant IAD
-     * @param iddLengthIndicator IDD length indicator extracted, must be set to 0x0F for CCD compliant IAD
-     * @return True if valid, else return False
+    /**
+     * @param field IAD field
+     * @return True if the IAD format has the field and the IAD is long enough to hold at least a byte of it
      */
-/*    private static boolean isCcdIadIddLengthIndicatorValid(String iadLengthIndicator, String iddLengthIndicator){
-        String HEX_0F = "0F";
-        return iadLengthIndicator.equalsIgnoreCase(HEX_0F) && iddLengthIndicator.equalsIgnoreCase(HEX_0F);
+    public boolean has(IadField field) {
+        if (format == null) {
+            return false;
+        }
+        int offset = OFFSETS[format.ordinal()][field.ordinal()];
+        int fieldLength = LENGTHS[format.ordinal()][field.ordinal()];
+        return offset >= 0 && (fieldLength == REMAINDER ? offset < length : offset + fieldLength <= length);
     }
-*/
-/*    /**
-     * Check if a CCD compliant IAD has valid Common Core Identifier set
-     * @param commonCoreIdentifier Common Core Identifier value extracted from IAD, format is:
-     * - Left nibble: must be 0X0A
-     * - Right nibble: must be:
-     *   - 0X05: CCD TDEA Version 4.1 Cryptogram Version
-     *   - 0x06: CCD AES Version 4.1 Cryptogram Version
-     * @return True if valid, else return False
+
+    /**
+     * @param field IAD field
+     * @return Byte offset of the field in the IAD, -1 if the IAD does not have it
+     */
+    public int offset(IadField field) {
+        return has(field) ? OFFSETS[format.ordinal()][field.ordinal()] : -1;
+    }
+
+    /**
+     * @param field IAD field
+     * @return Field length in bytes, 0 if the IAD does not have it
      */
-/*    private static boolean isCcdIadCciValid(String commonCoreIdentifier){
-        String FORMAT_A_TDEA_41 = "A5";
-        String FORMAT_A_AES_41 = "A6";
-        return commonCoreIdentifier.equalsIgnoreCase(FORMAT_A_AES_41) ||
-                commonCoreIdentifier.equalsIgnoreCase(FORMAT_A_TDEA_41);
+    public int length(IadField field) {
+        if (!has(field)) {
+            return 0;
+        }
+        int fieldLength = LENGTHS[format.ordinal()][field.ordinal()];
+        return fieldLength == REMAINDER ? length - OFFSETS[format.ordinal()][field.ordinal()] : fieldLength;
     }
-*/
+
     /**
-     * Parser method for a Visa Format 0/1/3 and Format 2 IAD
-     * @param iad Issuer Application Data (9F10)
-     * @return Map with parser IAD
+     * @param index Byte index in the IAD
+     * @return Unsigned byte of the IAD
      */
-    private List<String> visaIAD(String iad){
-        if (iad.length() / 2 == 32) {
-            return visaFormat2IadParser(iad);
+    public int getByte(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("IAD byte " + index + " of " + length);
+        }
+        if (bytes != null) {
+            return bytes[bytesOffset + index] & 0xFF;
         }
-        return visaFormat013IadParser(iad);
+        return Character.digit(hex.charAt(2 * index), 16) << 4 | Character.digit(hex.charAt(2 * index + 1), 16);
     }
 
     /**
-     * Parse a Visa Format 0/1/3 IAD into components. Reference: Visa VIS 1.6 Table A-1 tag 9F10 details
-     * IAD Format               Format-0/1/3
-     * LengthIndicator          "06" - Format-0/1/3
-     * DKI                      Derivation Key Index
-     * CryptogramVersion        10/18/22 (in Decimal)
-     * CVR                      4 byte Card Verification Results (Not parsed, used CVR parser to parse), including 1 byte length.
-     * IDD Length Indicator     Issuer Discretionary Data length
-     * IDD                      Issuer Discretionary Data (Not parsed)
-     *
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * @param field IAD field of up to 8 bytes
+     * @return Field value, big endian
+     * @throws IllegalArgumentException When the IAD does not have the field or it is longer than 8 bytes
      */
-    private List<String> visaFormat013IadParser(String iad) {
-        // IAD format 0/1/3
-        List<String> visaFormat013Iad = new ArrayList<>();
-        visaFormat013Iad.add("Format-0/1/3"); // 0 - IAD Format hardcoded to Format-0/1/3
-        visaFormat013Iad.add(iad.substring(0,2)); // 1- Visa Discretionary Data length, must be "06"
-        visaFormat013Iad.add(iad.substring(2, 4)); // 2 - Derivation Key Index
-        visaFormat013Iad.add(String.valueOf(Integer.parseInt(iad.substring(4,6),16))); // 3 - Cryptogram Version Number
-        visaFormat013Iad.add(iad.substring(6,14)); // 4 - 1 byte Card Verification Results length + Card Verification Results
-        visaFormat013Iad.add(iad.substring(14,16)); // 5 - Issuer Discretionary Data length
-        visaFormat013Iad.add(iad.substring(16)); // 6 - Issuer Discretionary Data
-        dki = visaFormat013Iad.get(2);
-        cvn = visaFormat013Iad.get(3);
-        cvr = visaFormat013Iad.get(4);
-        return visaFormat013Iad;
+    public long getLong(IadField field) {
+        int offset = offset(field);
+        int fieldLength = length(field);
+        if (offset < 0 || fieldLength > 8) {
+            throw new IllegalArgumentException(offset < 0 ? format + " IAD has no " + field
+                    : field + " of " + fieldLength + " bytes does not fit a long.");
+        }
+        long value = 0;
+        for (int i = 0; i < fieldLength; i++) {
+            value = value << 8 | getByte(offset + i);
+        }
+        return value;
     }
 
     /**
-     * Parse a Visa Format 2 IAD into components. Reference: Visa VIS 1.6 Table A-1 tag 9F10 details
-     * Key                  Value
-     * ---------            ----------------------
-     * IAD Format           Format-2
-     * LengthIndicator      "1F" - Format 2
-     * CryptogramVersion    Left nibble - IAD format/Right Nibble CVN
-     * DKI                  Derivation Key Index
-     * CVR                  5 byte Card Verification Results (Not parsed, used CVR parser to parse)
-     * IDD                  Issuer Discretionary Data (Not parsed)
-     *
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * Copy a field into a caller supplied array
+     * @param field        IAD field
+     * @param output       Array receiving the field
+     * @param outputOffset Offset in the output array
+     * @return Number of bytes copied, 0 if the IAD does not have the field
      */
-    private List<String> visaFormat2IadParser(String iad) {
-        List<String> visaFormat2Iad = new ArrayList<>();
-        // IAD format 2 is not is use yet
-        visaFormat2Iad.add("Format-2"); // 0 - IAD Format hardcoded to Format-2
-        visaFormat2Iad.add(iad.substring(0,2)); // 1 - IAD length indicator, must be "1F"
-        visaFormat2Iad.add(iad.substring(2,4)); // 2 - Left nibble IAD format/Right nibble Cryptogram Version Number
-        visaFormat2Iad.add(iad.substring(4,6)); // 3 - Derivation Key Index
-        visaFormat2Iad.add(iad.substring(6,16)); // 4-  5 byte Card Verification Results
-        visaFormat2Iad.add(iad.substring(14,16)); // 5 - Issuer Discretionary Data length
-        visaFormat2Iad.add(iad.substring(16)); // 6 - Issuer Discretionary Data
-        dki = visaFormat2Iad.get(2);
-        cvn = null;
-        cvr = visaFormat2Iad.get(4);
-        return visaFormat2Iad;
+    public int copy(IadField field, byte[] output, int outputOffset) {
+        int offset = offset(field);
+        int fieldLength = length(field);
+        for (int i = 0; i < fieldLength; i++) {
+            output[outputOffset + i] = (byte) getByte(offset + i);
+        }
+        return fieldLength;
     }
 
     /**
-     * Mastercard m/Chip advance IAD parser driver method
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * @param field IAD field
+     * @return Field as upper case hexadecimal, null if the IAD does not have it. Allocates, for responses and logging.
      */
-    private List<String> mchipIadParser(String iad){
-        switch (iad.length()/2){
-            case 8:
-                return mChip2122IadParser(iad);
-            case 9:
-                return mChip205IadParser(iad);
-        default:
-                return mChip4IadParser(iad);
+    public String getHex(IadField field) {
+        int offset = offset(field);
+        if (offset < 0) {
+            return null;
+        }
+        char[] fieldHex = new char[2 * length(field)];
+        for (int i = 0; i < fieldHex.length; i += 2) {
+            int fieldByte = getByte(offset + i / 2);
+            fieldHex[i] = HexCodec.toDigit(fieldByte >>> 4, true);
+            fieldHex[i + 1] = HexCodec.toDigit(fieldByte & 0x0F, true);
         }
+        return new String(fieldHex);
     }
 
     /**
-     * Parse Mastercard m/Chip4 IAD into components. Reference: M/Chip advance card application specification
-     * Key                  Value
-     * ---------            ----------------------
-     * IAD Format           M/Chip4
-     * DKI                  Derivation Key Index
-     * CVN                  Cryptogram Version Number
-     * CVR                  6 byte Card Verification Results (Not parsed, used CVR parser to parse)
-     * DAC/ICC              DAC/ICC Dynamic Number
-     * Counters+LO-ATC      Plaintext/Encrypted counters & Last Online ATC
-     *
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * @return Derivation Key Index
      */
-    private List<String> mChip4IadParser(String iad) {
-        List<String> mChip4FormatIad = new ArrayList<>();
-        mChip4FormatIad.add(iad.substring(0,2)); // 0 - Key Derivation Index
-        mChip4FormatIad.add(iad.substring(2,4)); // 1 - Cryptogram Version Number
-        mChip4FormatIad.add(iad.substring(4,16)); // 2 - Card Verification Results
-        mChip4FormatIad.add(iad.substring(16,20)); // 3 - DAC/ICC Dynamic Number
-        mChip4FormatIad.add(iad.substring(20)); // 4 - Plaintext/Encrypted Counters and LOATC
-        dki = mChip4FormatIad.get(0);
-        cvn = mChip4FormatIad.get(1);
-        cvr = mChip4FormatIad.get(2);
-        return mChip4FormatIad;
+    public int getDerivationKeyIndex() {
+        return (int) getLong(IadField.DERIVATION_KEY_INDEX);
     }
 
     /**
-     * Parse Mastercard m/Chip2.05 IAD into components. Reference: M/Chip advance card application specification
-     * Key                  Value
-     * ---------            ----------------------
-     * IAD Format           M/Chip2.05
-     * Length               IAD Length
-     * DKI                  Derivation Key Index
-     * CVN                  Cryptogram Version Number
-     * CVR                  4 byte Card Verification Results (Not parsed, used CVR parser to parse)
-     * DAC/ICC              DAC/ICC Dynamic Number
-     *
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * @return Cryptogram version byte as found in the IAD
      */
-    private List<String> mChip205IadParser(String iad) {
-        List<String> mChip205FormatIad = new ArrayList<>();
-        mChip205FormatIad.add(iad.substring(0,2)); // 0 - Length
-        mChip205FormatIad.add(iad.substring(2,4)); // 1 - Key Derivation Index
-        mChip205FormatIad.add(iad.substring(4,6)); // 2 - Cryptogram Version Number
-        mChip205FormatIad.add(iad.substring(6,14)); // 3 - Card Verification Results
-        mChip205FormatIad.add(iad.substring(14,18)); // 4 - DAC/ICC Dynamic Number
-        dki = mChip205FormatIad.get(1);
-        cvn = mChip205FormatIad.get(2);
-        cvr = mChip205FormatIad.get(3);
-        return mChip205FormatIad;
+    public int getCryptogramVersion() {
+        return (int) getLong(IadField.CRYPTOGRAM_VERSION_NUMBER);
     }
 
     /**
-     * Parse Mastercard m/Chip2.10 IAD into components. Reference: M/Chip advance card application specification
-     * Key                  Value
-     * ---------            ----------------------
-     * IAD Format           M/Chip2.10
-     * DKI                  Derivation Key Index
-     * CVN                  Cryptogram Version Number
-     * CVR                  4 byte Card Verification Results (Not parsed, used CVR parser to parse)
-     * DAC/ICC              DAC/ICC Dynamic Number
-     *
-     * @param iad Issuer application data (9F10)
-     * @return Parsed list of strings comprised of IAD components
+     * @return Card Verification Results, for Visa format 0/1/3 preceded by their length byte
      */
-    private List<String> mChip2122IadParser(String iad) {
-        List<String> mChip2122FormatIad = new ArrayList<>();
-        mChip2122FormatIad.add(iad.substring(0,2)); // 0 - Key Derivation Index
-        mChip2122FormatIad.add(iad.substring(2,4)); // 1 - Cryptogram Version Number
-        mChip2122FormatIad.add(iad.substring(4,12)); // 2 - Card Verification Results
-        mChip2122FormatIad.add(iad.substring(12,16)); // 3 - DAC/ICC Dynamic Number
-        dki = mChip2122FormatIad.get(0);
-        cvn = mChip2122FormatIad.get(1);
-        cvr = mChip2122FormatIad.get(2);
-        return mChip2122FormatIad;
+    public long getCardVerificationResults() {
+        return getLong(IadField.CARD_VERIFICATION_RESULTS);
     }
 
-/*    /**
-     * Perform IAD length check
-     * @param iad Issuer Application Data to be validated
-     * @param expectedLength Expected length of the IAD
-     * @return True if length is valid, else return False
+    /**
+     * @return CVN of a Visa format 0/1/3 or M/Chip IAD, null for other formats and unsupported CVNs
      */
-/*    private static boolean isIadLengthValid(String iad, int expectedLength){
-        return (iad.length()/2) == expectedLength;
+    public CryptogramVersionNumber getCryptogramVersionNumber() {
+        if (format == IadFormat.VISA_FORMAT_0_1_3) {
+            return VISA_CVNS[getCryptogramVersion()];
+        }
+        if (format == IadFormat.MCHIP_2_1 || format == IadFormat.MCHIP_2_05 || format == IadFormat.MCHIP_4) {
+            return MCHIP_CVNS[getCryptogramVersion()];
+        }
+        return null;
+    }
+
+    private static boolean isHexadecimal(CharSequence iad) {
+        if (iad == null || (iad.length() & 1) != 0) {
+            return false;
+        }
+        for (int i = 0; i < iad.length(); i++) {
+            // Character.digit also accepts non-ASCII digits
+            if (iad.charAt(i) > 'f' || Character.digit(iad.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
-*/
-}
\ No newline at end of file
+}
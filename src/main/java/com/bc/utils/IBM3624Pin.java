@@ -1,6 +1,8 @@
 package com.bc.utils;
 
 import com.bc.constants.PINFunctions;
+import com.bc.metrics.Diagnostics;
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
@@ -11,7 +13,6 @@ import javax.crypto.NoSuchPaddingException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import static com.bc.constants.PINFunctions.*;
 
@@ -29,6 +30,8 @@ import static com.bc.constants.PINFunctions.*;
  * - D substituted with 3
  * - E substituted with 4
  * - F substituted with 5
+ * The table is compiled once into a nibble lookup table, see {@link DecimalisationTable}, and the intermediate PIN is
+ * derived in a single pass over the encrypted PIN verification data.
  * This class supports methods and attributes for generating an IBM 3624 compatible PIN and Offset, with a minimum
  * length of 4, and supports a maximum PIN length of 16.
  */
@@ -40,6 +43,10 @@ public class IBM3624Pin {
     private String pvk;
     private String pan;
     private String [] decimalisationTable = null;
+    /** Compiled decimalisation table, takes precedence over decimalisationTable when set */
+    private DecimalisationTable decimalisation;
+    /** PVK schedule owned by the caller, e.g. a bulk issuance worker, else the PVK schedule is taken from the cache */
+    private KeySchedule pvkSchedule;
     private String pinOffset;
     private String pinLength;
     private boolean generateNaturalPin;
@@ -48,19 +55,22 @@ public class IBM3624Pin {
 
     public void generateIBM3624Pin() throws NoSuchPaddingException,
             IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        if (validatePinRequest()){
-            cryptoFunctions.setKey(pvk);
-            cryptoFunctions.setInputData(pan);
-            pin = (calculateIntermediatePin(cryptoFunctions.tDEAEncrypt().toUpperCase(), decimalisationTable));
-            if (!generateNaturalPin){
-                naturalPin = pin.substring(0, Integer.parseInt(pinLength));
-                pin = addOffset(pin, pinOffset);
-            } else {
-                pin = pin.substring(0, Integer.parseInt(pinLength));
-                naturalPin = pin;
+        long started = EmvMetrics.start();
+        try {
+            if (validatePinRequest()){
+                long pinVerificationData = pvkSchedule != null ? pvkSchedule.encrypt(HexCodec.decodeBlock(pan))
+                        : TdeaEngine.encrypt(HexCodec.decode(pvk), HexCodec.decodeBlock(pan));
+                pin = decimalisation.decimalise(pinVerificationData);
+                if (!generateNaturalPin){
+                    naturalPin = pin.substring(0, Integer.parseInt(pinLength));
+                    pin = addOffset(pin, pinOffset);
+                } else {
+                    pin = pin.substring(0, Integer.parseInt(pinLength));
+                    naturalPin = pin;
+                }
             }
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.PIN, started);
         }
     }
 
@@ -74,28 +84,6 @@ public class IBM3624Pin {
         else return pan.substring(16 - panLength, panLength);
     }
 
-    /**
-     * Derive natural PIN from encrypted PIN verification data, by substituting digits based on decimalisation table.
-     * @param encryptedPinVerificationData PIN validation data, usually PAN, encrypted under PVK, 16 chars long
-     * @param decimalisationTable Decimalisation table to be used for substitution of encrypted pin verification data
-     *                            , primarily used to convert hexadecimal alphabetic chars A through F. However, this
-     *                            may be used to substitute numeric characters as well
-     * @return Derived intermediate PIN
-     */
-    private String calculateIntermediatePin(String encryptedPinVerificationData, String [] decimalisationTable){
-        for (int i = 0; i < encryptedPinVerificationData.length(); i++){
-            for (int j = 0; j < encryptedPinVerificationData.length(); j++){
-                if (decimalisationTable[j].contains(String.valueOf(encryptedPinVerificationData.charAt(i)))) {
-                    encryptedPinVerificationData = encryptedPinVerificationData
-                            .replace(encryptedPinVerificationData.charAt(i), decimalisationTable[j].charAt(2));
-                    break;
-                }
-            }
-
-        }
-        return encryptedPinVerificationData;
-    }
-
     /**
      * Calculate PIN based on an input offset
      * @param naturalPin Natural PIN associated with the PAN
@@ -125,7 +113,7 @@ public class IBM3624Pin {
     public String deriveOffset(String customerPin, String naturalPin){
         StringBuilder pinOffset = new StringBuilder();
         if (customerPin.length() != naturalPin.length()){
-            System.out.println("ERRR: NCPI01: Natural PIN and Customer PIN length must match.");
+            Diagnostics.error("NCPI01", "Natural PIN and Customer PIN length must match.");
             return null;
         }
         for(int i = 0; i < naturalPin.length(); i++){
@@ -151,7 +139,7 @@ public class IBM3624Pin {
         StringBuilder naturalPin = new StringBuilder();
         String adjustedPinOffset = pinOffset.substring(pinOffset.length() - Integer.parseInt(pinLength));
         if (customerPin.length() != adjustedPinOffset.length()){
-            System.out.println("ERRR: OFFC01: Customer PIN and PIN offset length must match.");
+            Diagnostics.error("OFFC01", "Customer PIN and PIN offset length must match.");
             return null;
         }
 
@@ -179,17 +167,17 @@ public class IBM3624Pin {
         validRequest.add(DataChecker.isNumeric(pinOffset));
         validRequest.add(DataChecker.isNumeric(pinLength));
         validRequest.add(DataChecker.isHexadecimal(pvk));
-        if (decimalisationTable == null){
-            System.out.println("WARN: DECE01: No decimalisation table supplied, using system default table.");
-            System.out.println("Default Table: " + Arrays.toString(DEFAULT_DECIMALISATION_TABLE));
-            decimalisationTable = DEFAULT_DECIMALISATION_TABLE;
-        } else if (getDecimalisationTable().length != 16) {
-            System.out.println("WARN: DECE02: Invalid decimalisation table supplied, using system default table.");
-            System.out.println("Default Table: " + Arrays.toString(DEFAULT_DECIMALISATION_TABLE));
-            decimalisationTable = DEFAULT_DECIMALISATION_TABLE;
+        // Compiled tables are cached, so only a table seen for the first time is parsed
+        if (decimalisation == null && decimalisationTable == null){
+            Diagnostics.warn("DECE01", "No decimalisation table supplied, using system default table.");
+            decimalisation = DecimalisationTable.DEFAULT;
+        } else if (decimalisation == null) {
+            decimalisation = DecimalisationTable.forTable(decimalisationTable);
+            if (decimalisation == null) {
+                Diagnostics.warn("DECE02", "Invalid decimalisation table supplied, using system default table.");
+                decimalisation = DecimalisationTable.DEFAULT;
+            }
         }
-        validRequest.add(DataChecker.isHexadecimal(Arrays.toString(
-                getDecimalisationTable()).replaceAll("[\\[\\]s :,]", "")));
         //Check if any of the validations have failed, if yes, return false, else at end of loop, return true
         for (Boolean aBoolean : validRequest) {
             if (!aBoolean) {
@@ -198,19 +186,19 @@ public class IBM3624Pin {
         }
         if (pinLength.length() > 2){
             pinLength = Integer.toString(MAX_PIN_LENGTH);
-            System.out.println("WARN: PINL01: PIN length cannot exceed 16, resetting PIN length to 16.");
+            Diagnostics.warn("PINL01", "PIN length cannot exceed 16, resetting PIN length to 16.");
         }
         if (Integer.parseInt(pinLength) < MIN_PIN_LENGTH) {
             pinLength = Integer.toString(MIN_PIN_LENGTH);
-            System.out.println("WARN: PINL02: PIN length cannot be less than 4, resetting PIN length to 4.");
+            Diagnostics.warn("PINL02", "PIN length cannot be less than 4, resetting PIN length to 4.");
         } else if (Integer.parseInt(pinLength) > MAX_PIN_LENGTH) {
             pinLength = Integer.toString(MAX_PIN_LENGTH);
-            System.out.println("WARN: PINL03: PIN length cannot exceed 16, resetting PIN length to 16.");
+            Diagnostics.warn("PINL03", "PIN length cannot exceed 16, resetting PIN length to 16.");
         }
         // Basic validations passed, now ensure that the assigned PIN length is less than or equal to
         // the PIN offset length, else return error
         if (!generateNaturalPin && !(Integer.parseInt(pinLength) <= pinOffset.length())) {
-            System.out.println("ERRR: PINOFF: PIN length must be less than or equal PIN offset length.");
+            Diagnostics.error("PINOFF", "PIN length must be less than or equal PIN offset length.");
             return false;
         }
         return true;
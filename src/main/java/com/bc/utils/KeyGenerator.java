@@ -3,15 +3,33 @@ package com.bc.utils;
 import com.bc.enums.CryptogramVersionNumber;
 import com.bc.enums.KeyType;
 import com.bc.enums.UdkDerivationOption;
+import com.bc.metrics.EmvMetrics;
 import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 public class KeyGenerator {
+
+    /** Session key component data following the ATC, left: F0 00 00 00 00 00, right: 0F 00 00 00 00 00 */
+    private static final long SEK_LEFT_COMPONENT_DATA = 0x0000F00000000000L;
+    private static final long SEK_RIGHT_COMPONENT_DATA = 0x00000F0000000000L;
+    /** Decimal value of every hash nibble, A through F decimalise to 0 through 5 */
+    private static final byte [] DECIMALISATION_TABLE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 0, 1, 2, 3, 4, 5};
+    /** SHA-1 digest per thread, digest() leaves it reset for the next derivation */
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-1 is not available in this JVM.", exception);
+        }
+    });
+
     public String pan;
     public String panSeq;
     public String atc;
@@ -25,182 +43,197 @@ public class KeyGenerator {
 
     public String getKey() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
 
+        long started = EmvMetrics.start();
         switch (keyType){
             case UDK_CRYPTOGRAM:
-                switch (udkDerivationOption){
-                    case Option_A:
-                        return getUniqueDerivationKeyOptionA();
-                    case Option_B:
-                        return getUniqueDerivationKeyOptionB();
-                    }
+                try {
+                    return getUniqueDerivationKey();
+                } finally {
+                    EmvMetrics.record(EmvMetrics.Phase.UDK_DERIVATION, started);
+                }
             case SEK_CRYPTOGRAM:
-                return getUniqueSessionKey();
+                try {
+                    return getUniqueSessionKey();
+                } finally {
+                    EmvMetrics.record(EmvMetrics.Phase.SESSION_KEY_DERIVATION, started);
+                }
             default:
                 return null;
         }
     }
 
+    /**
+     * Return the UDK for the PAN and PAN Sequence Number, from {@link UdkCache} for cards seen before
+     * @return UDK derived using the configured derivation option
+     * @throws NoSuchAlgorithmException Could throw this exception
+     * @throws InvalidKeyException Could throw this exception
+     * @throws DecoderException Could throw this exception
+     */
+    private String getUniqueDerivationKey() throws NoSuchAlgorithmException, InvalidKeyException, DecoderException {
+        byte [] udk;
+        try {
+            udk = UdkCache.getUdk(HexCodec.decode(mkCryptogram), pan, panSeq, udkDerivationOption,
+                    this::deriveUniqueDerivationKey);
+        } catch (NoSuchAlgorithmException | InvalidKeyException exception) {
+            throw exception;
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("UDK derivation failed: " + exception.getMessage(), exception);
+        }
+        String uniqueDerivationKey = HexCodec.encode(udk, false);
+        Arrays.fill(udk, (byte) 0);
+        return uniqueDerivationKey;
+    }
+
+    private byte [] deriveUniqueDerivationKey() throws InvalidKeyException, DecoderException {
+        switch (udkDerivationOption){
+            case Option_A:
+                return getUniqueDerivationKeyOptionA();
+            case Option_B:
+            case Option_C:  // Tree based session keys are derived from an Option A or B UDK, see getUniqueSessionKey
+                return getUniqueDerivationKeyOptionB();
+            default:
+                throw new IllegalArgumentException("Unsupported UDK derivation option: " + udkDerivationOption);
+        }
+    }
+
     /**
      * Generate and return a UDK using Option A for a given PAN and PAN Sequence Number based on a Cryptogram MasterKey
      * @return UDK derived using method A
-     * @throws NoSuchPaddingException Could throw this exception
-     * @throws IllegalBlockSizeException Could throw this exception
-     * @throws NoSuchAlgorithmException Could throw this exception
-     * @throws BadPaddingException Could throw this exception
      * @throws InvalidKeyException Could throw this exception
+     * @throws DecoderException Could throw this exception
      */
-    private String getUniqueDerivationKeyOptionA() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-        String udkLeft;
-        String udkRight;
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        cryptoFunctions.setInputData(buildUDKLeftComponentData());
-        cryptoFunctions.setKey(mkCryptogram);
-        udkLeft = cryptoFunctions.tDEAEncrypt();
-        cryptoFunctions.setInputData(buildUDKRightComponentData());
-        udkRight = cryptoFunctions.tDEAEncrypt();
-//        cryptoFunctions.setInputData(buildUDKLeftComponentData());
+    private byte [] getUniqueDerivationKeyOptionA() throws InvalidKeyException, DecoderException {
+        byte [] udk = deriveKeyPair(HexCodec.decode(mkCryptogram), HexCodec.decodeBlock(buildUDKLeftComponentData()));
         if (debug){
             System.out.println("Method A:");
-            System.out.println("Udk left: " + udkLeft);
-            System.out.println("Udk right: " + udkRight);
+            System.out.println("Udk left: " + HexCodec.encode(udk, 0, 8, false));
+            System.out.println("Udk right: " + HexCodec.encode(udk, 8, 8, false));
         }
-        return udkLeft + udkRight;
+        return udk;
     }
 
     /**
-     * Generate and return a UDK for a given PAN and PAN Sequence Number based on a Cryptogram MasterKey
+     * Generate and return a UDK using Option B for a given PAN and PAN Sequence Number based on a Cryptogram
+     * MasterKey, as per EMV 4.3 Book 2 A1.4.2:
+     * - A PAN of up to 16 digits falls back to Option A, whatever the length of the PAN Sequence Number
+     * - Otherwise the SHA-1 of PAN || PAN Sequence Number, BCD packed and left padded with a zero nibble to a whole
+     *   number of bytes, is decimalised into 16 digits which are then used as Option A input
      * @return Card specific Unique derivation key
-     * @throws NoSuchPaddingException Could throw this exception
-     * @throws IllegalBlockSizeException Could throw this exception
-     * @throws NoSuchAlgorithmException Could throw this exception
-     * @throws BadPaddingException Could throw this exception
      * @throws InvalidKeyException Could throw this exception
+     * @throws DecoderException Could throw this exception
      */
-    private String getUniqueDerivationKeyOptionB() throws NoSuchPaddingException, IllegalBlockSizeException,
-            NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-        String udkLeft;
-        String udkRight;
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        cryptoFunctions.setInputData(buildUDKLeftComponentData());
-        String sha1Hash = cryptoFunctions.calcSha1Hash();
-        StringBuilder hashResult = new StringBuilder();
-        // Extract numeric digits from SHA1 hash till 16 digits are extracted or SHA1 hash fully parsed
-        for(int i = 0; i < sha1Hash.length(); i++){
-            char sha1Char = sha1Hash.charAt(i);
-            switch (sha1Char){
-                case '0':
-                case '1':
-                case '2':
-                case '3':
-                case '4':
-                case '5':
-                case '6':
-                case '7':
-                case '8':
-                case '9':
-                    hashResult.append(sha1Char);
-                    break;
-            }
-            if (hashResult.length() == 16){
-                break;
-            }
-        }
-        // If initial extract of numeric digits from SHA1 hash did not yield 16 digits, then decimalise the
-        // hexadecimal digits using following decimalisation table, until 16 digits are yielded
-        // 1. 'a' = '0';
-        // 2. 'b' = '1';
-        // 3. 'c' = '2';
-        // 4. 'd' = '3';
-        // 5. 'e' = '4';
-        // 6. 'f' = '5';
-        if (hashResult.toString().length() < 16){
-            for(int i = 0; i < sha1Hash.length(); i++){
-                char sha1Char = sha1Hash.charAt(i);
-                switch (sha1Char){
-                    case 'a':
-                        hashResult.append("0");
-                        break;
-                    case 'b':
-                        hashResult.append("1");
-                        break;
-                    case 'c':
-                        hashResult.append("2");
-                        break;
-                    case 'd':
-                        hashResult.append("3");
-                        break;
-                    case 'e':
-                        hashResult.append("4");
-                        break;
-                    case 'f':
-                        hashResult.append("5");
-                        break;
-                }
-                if(hashResult.length() == 16){
-                    break;
-                }
+    private byte [] getUniqueDerivationKeyOptionB() throws InvalidKeyException, DecoderException {
+        if (pan.length() <= 16) {
+            if (debug) {
+                System.out.println("Method B: PAN up to 16 digits, using Method A");
             }
+            return getUniqueDerivationKeyOptionA();
         }
-        cryptoFunctions.setInputData(hashResult.toString());
-        cryptoFunctions.setKey(mkCryptogram);
-        udkLeft = cryptoFunctions.tDEAEncrypt();
-        cryptoFunctions.setInputData(exclusiveOr(hashResult.toString()));
-        udkRight = cryptoFunctions.tDEAEncrypt();
-        cryptoFunctions.setInputData(hashResult.toString());
+        String panAndSeq = pan + panSeq;
+        byte [] sha1Hash = SHA1.get().digest(HexCodec.decode((panAndSeq.length() & 1) == 0 ? panAndSeq
+                : "0" + panAndSeq));
+        long hashResult = decimaliseHash(sha1Hash);
+        byte [] udk = deriveKeyPair(HexCodec.decode(mkCryptogram), hashResult);
         if (debug) {
             System.out.println("Method B:");
-            System.out.println("Sha1 Hash: " + sha1Hash);
-            System.out.println("Hash Result: " + hashResult);
-            System.out.println("Udk left: " + udkLeft);
-            System.out.println("Udk left:  " + udkRight);
+            System.out.println("Sha1 Hash: " + HexCodec.encode(sha1Hash, false));
+            System.out.println("Hash Result: " + HexCodec.encodeBlock(hashResult, false));
+            System.out.println("Udk left: " + HexCodec.encode(udk, 0, 8, false));
+            System.out.println("Udk right: " + HexCodec.encode(udk, 8, 8, false));
         }
 
-        return udkLeft + udkRight;
+        return udk;
+    }
+
+    /**
+     * Decimalise a SHA-1 hash into 16 digits, scanning its nibbles from left to right. Decimal nibbles are selected
+     * first, if those yield less than 16 digits the scan is repeated, converting nibbles A through F to 0 through 5.
+     * @param sha1Hash 20 byte SHA-1 hash
+     * @return 16 decimal digits as a 64-bit block
+     */
+    private static long decimaliseHash(byte [] sha1Hash) {
+        long hashResult = 0;
+        int digits = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 2 * sha1Hash.length && digits < 16; i++) {
+                int hashNibble = (i & 1) == 0 ? (sha1Hash[i >> 1] >>> 4) & 0x0F : sha1Hash[i >> 1] & 0x0F;
+                if ((hashNibble < 10) == (pass == 0)) {
+                    hashResult = (hashResult << 4) | DECIMALISATION_TABLE[hashNibble];
+                    digits++;
+                }
+            }
+        }
+        return hashResult;
     }
 
-    private String getUniqueSessionKey() throws NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
+    private String getUniqueSessionKey() throws InvalidKeyException, DecoderException {
+        //Option_C derives the session key through the EMV session key tree for every CVN
+        boolean treeDerivation = udkDerivationOption == UdkDerivationOption.Option_C;
         //Return udk as session key for CVN_10 & CNV_14
-        if ((cryptogramVersionNumber == CryptogramVersionNumber.CVN_10)
-        || (cryptogramVersionNumber == CryptogramVersionNumber.CVN_14)) return udkCryptogram;
-        // For CVN_18 and CVN_22 derive a sessionkey from udk
-        String uskLeft;
-        String uskRight;
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        cryptoFunctions.setInputData(buildSEKLeftComponentData());
-        cryptoFunctions.setKey(udkCryptogram);
-        uskLeft = cryptoFunctions.tDEAEncrypt();
-        cryptoFunctions.setInputData(buildSEKRightComponentData());
-        uskRight = cryptoFunctions.tDEAEncrypt();
+        if (!treeDerivation && ((cryptogramVersionNumber == CryptogramVersionNumber.CVN_10)
+        || (cryptogramVersionNumber == CryptogramVersionNumber.CVN_14))) return udkCryptogram;
+        // For CVN_18 and CVN_22 derive a sessionkey from udk, prefetched once ARQCs of the card are being verified
+        byte [] udk = HexCodec.decode(udkCryptogram);
+        byte [] sessionKey = SessionKeyPrefetcher.getSessionKey(udk, treeDerivation,
+                (int) HexCodec.decodeLong(atc, 0, atc.length()));
         if (debug) {
-            System.out.println("Session Key left: " + uskLeft);
-            System.out.println("Session Key right: " + uskRight);
+            System.out.println("Session Key left: " + HexCodec.encode(sessionKey, 0, 8, false));
+            System.out.println("Session Key right: " + HexCodec.encode(sessionKey, 8, 8, false));
         }
 
-        return uskLeft + uskRight;
+        String uniqueSessionKey = HexCodec.encode(sessionKey, false);
+        Arrays.fill(sessionKey, (byte) 0);
+        return uniqueSessionKey;
     }
 
     /**
-     * Builds left component data that will be encrypted using the Cryptogram Master Key to derive card level UDK
-     * left component
-     * @return left component data for UDK
+     * Derive the session key for an ATC from a card UDK
+     * @param udk            Double length card UDK
+     * @param treeDerivation True for EMV tree based session keys, false for the CVN 18/22 method, which encrypts
+     *                       ATC || F0 || 00 00 00 00 00 and ATC || 0F || 00 00 00 00 00 under the UDK
+     * @param atc            Application Transaction Counter
+     * @return 16 byte session key
+     * @throws InvalidKeyException When the UDK length is invalid
      */
-    private String buildUDKLeftComponentData() throws DecoderException {
-        if (debug) {
-            System.out.println("UDK left component data: " + udkInputData(pan, panSeq, true));
+    static byte [] deriveSessionKey(byte [] udk, boolean treeDerivation, int atc) throws InvalidKeyException {
+        if (treeDerivation) {
+            return SessionKeyTree.deriveSessionKey(udk, atc);
+        }
+        long atcBlock = (long) atc << 48;
+        // UDKs are many and each used for two blocks, so they do not go through the key schedule cache
+        KeySchedule schedule = new KeySchedule(udk);
+        TdeaEngine.countBlocks(2);
+        try {
+            return Block64.toBytes(schedule.encrypt(atcBlock | SEK_LEFT_COMPONENT_DATA),
+                    schedule.encrypt(atcBlock | SEK_RIGHT_COMPONENT_DATA));
+        } finally {
+            schedule.destroy();
         }
-        return udkInputData(pan, panSeq, true);
     }
 
     /**
-     * Builds right component data that will be encrypted using the Cryptogram Master Key to derive card level UDK
-     * right component
-     * @return right component data for UDK
+     * Derive a double length key by encrypting the left component data, and the left component data xOred with
+     * 16 F, under the master key.
+     * @param masterKey Master key the components are encrypted under
+     * @param leftComponentData Left component data block, e.g. PAN and PAN Sequence for Option A
+     * @return 16 byte derived key, left half followed by right half
+     * @throws InvalidKeyException When the master key length is invalid
      */
-    private String buildUDKRightComponentData() throws DecoderException {
+    private byte [] deriveKeyPair(byte [] masterKey, long leftComponentData) throws InvalidKeyException {
+        return Block64.toBytes(TdeaEngine.encrypt(masterKey, leftComponentData),
+                TdeaEngine.encrypt(masterKey, ~leftComponentData));
+    }
+
+    /**
+     * Builds left component data that will be encrypted using the Cryptogram Master Key to derive card level UDK
+     * left component. The right component data is the left component data xOred with 16 F.
+     * @return left component data for UDK
+     */
+    private String buildUDKLeftComponentData() {
         if (debug) {
-            System.out.println("UDK right component data: " + udkInputData(pan, panSeq, false));
+            System.out.println("UDK left component data: " + udkInputData(pan, panSeq));
         }
-        return udkInputData(pan, panSeq, false);
+        return udkInputData(pan, panSeq);
     }
 
     /**
@@ -211,7 +244,7 @@ public class KeyGenerator {
      * @param panSeq   PAN sequence number associated with the card
      * @return         PAN and PAN Sequence number combined as per OPTION_A
      */
-    private String udkInputData(String pan, String panSeq, boolean udkA) throws DecoderException {
+    private String udkInputData(String pan, String panSeq) {
 
         String panAndSeq = (pan + panSeq);
         String padChar = "0";
@@ -223,59 +256,10 @@ public class KeyGenerator {
             panAndSeq = panAndSeq.substring((panAndSeq.length() - UDK_DATA_LEN)) ;
         }
 
-        if (udkA) {
-            return panAndSeq;
-        } else{
-            return exclusiveOr(panAndSeq);
-        }
+        return panAndSeq;
 
     }
 
-    /**
-     * Perform exclusive or operation on UDK component L with 16 F and return the xOred result as a String
-     * @param panAndSeq This value will be set to the same value as UDK left component data
-     * @return Exclusive or data
-     */
-    private String exclusiveOr(String panAndSeq) throws DecoderException {
-
-        String ALLF = "FFFFFFFFFFFFFFFF";
-
-//        byte [] panAndSeqBytes = HexFormat.of().parseHex(panAndSeq); // Convert panAndSeq to Hexadecimal byte array
-//        byte [] ALL16FBytes = HexFormat.of().parseHex(ALLF); // Convert 16F chars to Hexadecimal byte array
-        byte [] panAndSeqBytes = Hex.decodeHex((panAndSeq)); // Convert panAndSeq to Hexadecimal byte array
-        byte [] ALL16FBytes = Hex.decodeHex((ALLF)); // Convert 16F chars to Hexadecimal byte array
-        byte [] xOredPanAndSeq = new byte [ALL16FBytes.length]; // New byte array to store xored value
-
-        for(int i = 0; i < panAndSeqBytes.length; i++){
-            xOredPanAndSeq[i] = (byte) (panAndSeqBytes[i] ^ ALL16FBytes[i]);
-        }
-        if (debug){
-            System.out.println("Hexformat xored PAN and Sequence: " + Hex.encodeHexString((xOredPanAndSeq)));
-        }
-        return Hex.encodeHexString((xOredPanAndSeq));
-//        return HexFormat.of().formatHex(xOredPanAndSeq);
-    }
-
-    /**
-     * Builds left component data that will be encrypted using the UDK key to derive session key
-     * left component
-     * @return left component data for session key
-     */
-    private String buildSEKLeftComponentData() {
-        String atcString = atc;
-        return "0".repeat(4  - atcString.length()) + atcString + "F00000000000";
-    }
-
-    /**
-     * Builds right component data that will be encrypted using the Cryptogram Master Key to derive card level UDK
-     * right component
-     * @return right component data for UDK
-     */
-    private String buildSEKRightComponentData() {
-        String atcString = atc;
-        return "0".repeat(4  - atcString.length()) + atcString + "0F0000000000";
-    }
-
     /**
      * Force a key to odd parity by setting LSB of each byte of the key adjusted to ensure there are odd number of
      * bits set to 1.
@@ -0,0 +1,321 @@
+package com.bc.utils;
+
+import com.bc.enums.TdeaBackend;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initialised TDEA key schedule for a single key. Depending on the configured {@link TdeaBackend} it holds either:
+ * - JCE: a pool of Cipher instances initialised for encrypt and decrypt, so a block operation under a known key never
+ *   pays Cipher.init again. Cipher instances are borrowed for the duration of one block and handed back, which keeps
+ *   a schedule safe to share between threads. The pool of each direction is only filled on first use, so a key only
+ *   ever used to encrypt, as most are, never initialises a decrypt Cipher.
+ * - SOFTWARE: the precomputed round keys for {@link DesBlockCipher}, which are read only once built.
+ * Schedules of long lived keys are obtained from {@link KeyScheduleCache} and zeroised by it on eviction. One-shot
+ * keys, e.g. session keys, get a schedule of their own that the caller zeroises once done, see
+ * {@link TdeaEngine#encryptOnce(byte[], long)}. The Cipher instances of a zeroised schedule are kept in a bounded
+ * spare pool shared by all schedules and initialised again under the next new key, so a one-shot key pays Cipher.init
+ * but not Cipher.getInstance. A spare Cipher holds the provider's copy of its last key until then.
+ */
+public final class KeySchedule {
+
+    private static final String DES_EDE = "DESede";
+    private static final String TRANSFORMATION = DES_EDE + "/ECB/NoPadding";
+    private static final int MAX_SPARE_CIPHERS = 256;
+
+    /** Cipher instances of destroyed schedules, to be initialised under another key */
+    private static final Queue<Cipher> SPARE_CIPHERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SPARE_CIPHER_COUNT = new AtomicInteger();
+
+    private final byte[] key;
+    private final TdeaKey secretKey;
+    private final int[] subkeys;
+    private final Queue<Cipher> encryptCiphers = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> decryptCiphers = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<byte[]> BLOCK = ThreadLocal.withInitial(() -> new byte[TdeaEngine.BLOCK_SIZE]);
+
+    private final long createdNanos = System.nanoTime();
+    private volatile long lastAccessNanos = createdNanos;
+    private volatile boolean destroyed;
+
+    /**
+     * Build a key schedule, expanding single and double length keys to triple length.
+     * @param key Single, double or triple length TDEA key, the array is copied
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    KeySchedule(byte[] key) throws InvalidKeyException {
+        this.key = key.clone();
+        secretKey = new TdeaKey(expandKey(key));
+        if (TdeaEngine.getBackend() == TdeaBackend.SOFTWARE) {
+            subkeys = DesBlockCipher.schedule(secretKey.key);
+        } else {
+            // Cipher instances are initialised on the first block of each direction
+            subkeys = null;
+        }
+    }
+
+    /**
+     * TDEA encrypt a single 8 byte block.
+     * @param input        Buffer holding the clear block
+     * @param inputOffset  Offset of the clear block in the input buffer
+     * @param output       Buffer receiving the encrypted block
+     * @param outputOffset Offset in the output buffer at which the encrypted block is written
+     * @throws InvalidKeyException When a new cipher instance could not be initialised
+     * @throws IllegalStateException When the schedule has been evicted and zeroised
+     */
+    public void encrypt(byte[] input, int inputOffset, byte[] output, int outputOffset) throws InvalidKeyException {
+        if (!process(true, input, inputOffset, output, outputOffset)) {
+            throw new IllegalStateException("TDEA key schedule has been destroyed.");
+        }
+    }
+
+    /**
+     * TDEA decrypt a single 8 byte block.
+     * @param input        Buffer holding the encrypted block
+     * @param inputOffset  Offset of the encrypted block in the input buffer
+     * @param output       Buffer receiving the clear block
+     * @param outputOffset Offset in the output buffer at which the clear block is written
+     * @throws InvalidKeyException When a new cipher instance could not be initialised
+     * @throws IllegalStateException When the schedule has been evicted and zeroised
+     */
+    public void decrypt(byte[] input, int inputOffset, byte[] output, int outputOffset) throws InvalidKeyException {
+        if (!process(false, input, inputOffset, output, outputOffset)) {
+            throw new IllegalStateException("TDEA key schedule has been destroyed.");
+        }
+    }
+
+    /**
+     * TDEA encrypt a 64-bit block, most significant byte first.
+     * @param block Clear block
+     * @return Encrypted block
+     * @throws InvalidKeyException When a new cipher instance could not be initialised
+     * @throws IllegalStateException When the schedule has been evicted and zeroised
+     */
+    public long encrypt(long block) throws InvalidKeyException {
+        if (subkeys != null) {
+            long result = DesBlockCipher.encrypt(subkeys, block);
+            if (destroyed) {
+                throw new IllegalStateException("TDEA key schedule has been destroyed.");
+            }
+            return result;
+        }
+        byte[] buffer = BLOCK.get();
+        Block64.toBytes(block, buffer, 0);
+        encrypt(buffer, 0, buffer, 0);
+        return Block64.toLong(buffer, 0);
+    }
+
+    /**
+     * TDEA decrypt a 64-bit block, most significant byte first.
+     * @param block Encrypted block
+     * @return Clear block
+     * @throws InvalidKeyException When a new cipher instance could not be initialised
+     * @throws IllegalStateException When the schedule has been evicted and zeroised
+     */
+    public long decrypt(long block) throws InvalidKeyException {
+        if (subkeys != null) {
+            long result = DesBlockCipher.decrypt(subkeys, block);
+            if (destroyed) {
+                throw new IllegalStateException("TDEA key schedule has been destroyed.");
+            }
+            return result;
+        }
+        byte[] buffer = BLOCK.get();
+        Block64.toBytes(block, buffer, 0);
+        decrypt(buffer, 0, buffer, 0);
+        return Block64.toLong(buffer, 0);
+    }
+
+    /**
+     * Process a single block with the software cipher or a pooled Cipher instance.
+     * @return False if the schedule was destroyed before a Cipher instance could be obtained, in which case the
+     * caller should look the key up again
+     */
+    boolean process(boolean encrypt, byte[] input, int inputOffset, byte[] output, int outputOffset)
+            throws InvalidKeyException {
+        if (subkeys != null) {
+            long block = Block64.toLong(input, inputOffset);
+            block = encrypt ? DesBlockCipher.encrypt(subkeys, block) : DesBlockCipher.decrypt(subkeys, block);
+            if (destroyed) {
+                return false;
+            }
+            Block64.toBytes(block, output, outputOffset);
+            return true;
+        }
+        Queue<Cipher> pool = encrypt ? encryptCiphers : decryptCiphers;
+        Cipher cipher = pool.poll();
+        if (cipher == null) {
+            if (destroyed) {
+                return false;
+            }
+            try {
+                cipher = newCipher(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE);
+            } catch (IllegalStateException exception) {
+                if (destroyed) {
+                    return false;
+                }
+                throw exception;
+            }
+        }
+        try {
+            cipher.doFinal(input, inputOffset, TdeaEngine.BLOCK_SIZE, output, outputOffset);
+        } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException exception) {
+            // ECB without padding on exactly one block cannot fail, other than on an undersized output buffer
+            throw new IllegalArgumentException("TDEA block operation failed: " + exception.getMessage(), exception);
+        }
+        if (destroyed) {
+            offerSpare(cipher);
+        } else {
+            pool.offer(cipher);
+        }
+        return true;
+    }
+
+    boolean isDestroyed() {
+        return destroyed;
+    }
+
+    byte[] getKey() {
+        return key;
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch(long nowNanos) {
+        lastAccessNanos = nowNanos;
+    }
+
+    /**
+     * Zeroise the key material held by this schedule and move its pooled Cipher instances to the spare pool. Blocks
+     * already in flight complete normally, their Cipher instances go to the spare pool rather than back to this
+     * schedule. The provider's internal copies of the key are not reachable, they are overwritten when the Cipher is
+     * initialised again or left to the garbage collector.
+     */
+    void destroy() {
+        destroyed = true;
+        Arrays.fill(key, (byte) 0);
+        secretKey.destroy();
+        if (subkeys != null) {
+            DesBlockCipher.destroy(subkeys);
+        }
+        for (Cipher cipher = encryptCiphers.poll(); cipher != null; cipher = encryptCiphers.poll()) {
+            offerSpare(cipher);
+        }
+        for (Cipher cipher = decryptCiphers.poll(); cipher != null; cipher = decryptCiphers.poll()) {
+            offerSpare(cipher);
+        }
+    }
+
+    /**
+     * @return Cipher initialised under this key, a spare one when available
+     */
+    private Cipher newCipher(int mode) throws InvalidKeyException {
+        Cipher cipher = SPARE_CIPHERS.poll();
+        if (cipher != null) {
+            SPARE_CIPHER_COUNT.decrementAndGet();
+        } else {
+            try {
+                cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException exception) {
+                throw new IllegalStateException(TRANSFORMATION + " is not available in this JVM.", exception);
+            }
+        }
+        cipher.init(mode, secretKey);
+        return cipher;
+    }
+
+    private static void offerSpare(Cipher cipher) {
+        if (SPARE_CIPHER_COUNT.incrementAndGet() <= MAX_SPARE_CIPHERS) {
+            SPARE_CIPHERS.offer(cipher);
+        } else {
+            SPARE_CIPHER_COUNT.decrementAndGet();
+        }
+    }
+
+    /**
+     * Expand a single or double length key into a new triple length key array.
+     * @param key Single, double or triple length TDEA key
+     * @return Triple length key
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    private static byte[] expandKey(byte[] key) throws InvalidKeyException {
+        byte[] expandedKey = new byte[24];
+        switch (key.length) {
+            case 8:     //  Repeat the single length DES key three times
+                System.arraycopy(key, 0, expandedKey, 0, 8);
+                System.arraycopy(key, 0, expandedKey, 8, 8);
+                System.arraycopy(key, 0, expandedKey, 16, 8);
+                return expandedKey;
+            case 16:    //  Append the first 8 bytes of the key to itself
+                System.arraycopy(key, 0, expandedKey, 0, 16);
+                System.arraycopy(key, 0, expandedKey, 16, 8);
+                return expandedKey;
+            case 24:
+                System.arraycopy(key, 0, expandedKey, 0, 24);
+                return expandedKey;
+            default:
+                throw new InvalidKeyException("Invalid TDEA key length: 8, 16 or 24 bytes expected, received "
+                        + key.length + " bytes.");
+        }
+    }
+
+    /**
+     * Raw TDEA key whose bytes can be zeroised, unlike SecretKeySpec. Providers copy the encoded key on init.
+     */
+    private static final class TdeaKey implements SecretKey {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] key;
+        private volatile boolean keyDestroyed;
+
+        private TdeaKey(byte[] key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return DES_EDE;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            if (keyDestroyed) {
+                throw new IllegalStateException("TDEA key has been destroyed.");
+            }
+            return key.clone();
+        }
+
+        @Override
+        public void destroy() {
+            keyDestroyed = true;
+            Arrays.fill(key, (byte) 0);
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return keyDestroyed;
+        }
+    }
+}
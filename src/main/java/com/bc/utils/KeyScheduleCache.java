@@ -0,0 +1,131 @@
+package com.bc.utils;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, concurrent cache of initialised TDEA key schedules keyed by key bytes. Hot master keys (MDK-AC, CVK, PVK,
+ * ZPK) are initialised once and then reused by every request that presents the same key. One-shot keys, session keys,
+ * UDKs and MAC keys, bypass the cache, see {@link TdeaEngine#encryptOnce(byte[], long)}, so they do not push the
+ * master keys out.
+ * Eviction:
+ * - Least recently used schedules are evicted when the cache grows beyond emv.key-cache.max-entries, an eighth of
+ *   the cache at a time, see {@link LruEviction}
+ * - A schedule older than emv.key-cache.ttl-seconds is evicted on its next lookup, so rotated keys age out
+ * Evicted schedules are zeroised. Setting emv.key-cache.max-entries to 0 disables caching altogether.
+ */
+public final class KeyScheduleCache {
+
+    private static final int MAX_ENTRIES = ConfigProvider.getConfig()
+            .getOptionalValue("emv.key-cache.max-entries", Integer.class).orElse(256);
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(ConfigProvider.getConfig()
+            .getOptionalValue("emv.key-cache.ttl-seconds", Long.class).orElse(3600L));
+
+    private static final Map<CacheKey, KeySchedule> SCHEDULES = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LruEviction<CacheKey, KeySchedule> LRU_EVICTION = new LruEviction<>(SCHEDULES, MAX_ENTRIES,
+            KeySchedule::getLastAccessNanos, KeyScheduleCache::evict);
+
+    private KeyScheduleCache() {
+    }
+
+    /**
+     * Return the initialised key schedule for a key, building and caching it on first use.
+     * @param key Single, double or triple length TDEA key
+     * @return Initialised key schedule
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static KeySchedule getSchedule(byte[] key) throws InvalidKeyException {
+        if (MAX_ENTRIES <= 0) {
+            MISSES.increment();
+            return new KeySchedule(key);
+        }
+        long now = System.nanoTime();
+        CacheKey lookupKey = new CacheKey(key);
+        KeySchedule schedule = SCHEDULES.get(lookupKey);
+        if (schedule != null && now - schedule.getCreatedNanos() <= TTL_NANOS) {
+            HITS.increment();
+            schedule.touch(now);
+            return schedule;
+        }
+        if (schedule != null) {
+            evict(lookupKey, schedule);
+        }
+        MISSES.increment();
+        KeySchedule newSchedule = new KeySchedule(key);
+        schedule = SCHEDULES.putIfAbsent(new CacheKey(newSchedule.getKey()), newSchedule);
+        if (schedule != null) {
+            // Another thread built the same schedule first, use that one and discard ours
+            newSchedule.destroy();
+            schedule.touch(now);
+            return schedule;
+        }
+        if (LRU_EVICTION.isNeeded()) {
+            LRU_EVICTION.run();
+        }
+        return newSchedule;
+    }
+
+    /**
+     * Evict and zeroise every cached key schedule.
+     */
+    public static void clear() {
+        SCHEDULES.forEach(KeyScheduleCache::evict);
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    public static int size() {
+        return SCHEDULES.size();
+    }
+
+    private static void evict(CacheKey cacheKey, KeySchedule schedule) {
+        if (SCHEDULES.remove(cacheKey, schedule)) {
+            EVICTIONS.increment();
+            // Also zeroises the key bytes the map entry was keyed on
+            schedule.destroy();
+        }
+    }
+
+    /**
+     * Map key wrapping raw key bytes. Lookups wrap the caller's array, inserted keys wrap the schedule's own copy.
+     */
+    private static final class CacheKey {
+
+        private final byte[] key;
+        private final int hash;
+
+        private CacheKey(byte[] key) {
+            this.key = key;
+            this.hash = Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CacheKey && Arrays.equals(key, ((CacheKey) other).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.bc.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Amortised least recently used eviction of a bounded concurrent map. Rather than scanning the whole map for its
+ * single oldest entry on every insertion beyond the bound, one scan evicts the oldest eighth of the entries, so the map
+ * is only scanned once per max-entries / 8 insertions. One thread scans at a time, the others carry on meanwhile, so
+ * the map may briefly hold a few entries more than its bound.
+ * @param <K> Map key type
+ * @param <V> Map value type
+ */
+final class LruEviction<K, V> {
+
+    private final Map<K, V> map;
+    private final int maxEntries;
+    private final ToLongFunction<V> lastAccessNanos;
+    private final BiConsumer<K, V> evict;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param map             Map to bound
+     * @param maxEntries      Bound of the map
+     * @param lastAccessNanos Last access time of an entry, System.nanoTime()
+     * @param evict           Removes an entry from the map, if still mapped, and zeroises it
+     */
+    LruEviction(Map<K, V> map, int maxEntries, ToLongFunction<V> lastAccessNanos, BiConsumer<K, V> evict) {
+        this.map = map;
+        this.maxEntries = maxEntries;
+        this.lastAccessNanos = lastAccessNanos;
+        this.evict = evict;
+    }
+
+    /**
+     * @return True if the map is over its bound and an eviction should be run
+     */
+    boolean isNeeded() {
+        return map.size() > maxEntries;
+    }
+
+    /**
+     * Evict the least recently used entries down to seven eighths of the bound, unless another thread already is.
+     */
+    void run() {
+        if (!isNeeded() || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<K, V>> entries = new ArrayList<>(map.size() + 16);
+            entries.addAll(map.entrySet());
+            int count = entries.size() - (maxEntries - maxEntries / 8);
+            if (count <= 0) {
+                return;
+            }
+            // Access times relative to now, so that the ordering survives System.nanoTime() wrapping around
+            long now = System.nanoTime();
+            long[] ages = new long[entries.size()];
+            for (int i = 0; i < ages.length; i++) {
+                ages[i] = now - lastAccessNanos.applyAsLong(entries.get(i).getValue());
+            }
+            long[] sorted = ages.clone();
+            Arrays.sort(sorted);
+            long youngestEvicted = sorted[sorted.length - count];
+            for (int i = 0; i < ages.length && count > 0; i++) {
+                if (ages[i] >= youngestEvicted) {
+                    evict.accept(entries.get(i).getKey(), entries.get(i).getValue());
+                    count--;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.bc.utils;
+
+import com.bc.metrics.Diagnostics;
+import org.apache.commons.codec.DecoderException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidKeyException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bulk IBM 3624 PIN issuance of a card personalisation file, one {@link IBM3624Pin} per card.
+ * The input file holds one card per line, "PAN" for a natural PIN or "PAN,CustomerPIN" for the offset of a customer
+ * selected PIN, blank lines and lines starting with # are skipped. The output file holds one line per card,
+ * "PAN,Offset,NaturalPIN,Error": the natural PIN only for cards without a customer PIN, the error, e.g. an invalid
+ * PAN, without the offset or natural PIN. Customer PINs are never written.
+ * - The input is read as a stream in chunks of CHUNK_SIZE cards, and at most two chunks per worker are read ahead of
+ *   the output, so memory stays bounded whatever the size of the file
+ * - Every worker owns a key schedule of the PVK, so workers never contend on the key schedule cache
+ * - Chunks are written in input order once decoded, then the output is forced to disk and a checkpoint records the
+ *   input and output offsets reached. A job started again with the same files resumes from its checkpoint, without
+ *   duplicate or missing cards, and the checkpoint is deleted once the whole input has been written
+ * - A chunk that fails fails the job, and so does a worker that stops, rather than leave the writer waiting on
+ *   chunks no worker issues
+ * An instance runs one job, {@link #open()} then {@link #run()}, and its progress can be read from any thread.
+ */
+public class PinIssuance {
+
+    private static final int CHUNK_SIZE = 4096;
+    /** Longest line kept, longer lines are truncated and rejected as an invalid PAN */
+    private static final int MAX_LINE_LENGTH = 64;
+    private static final int MIN_PIN_LENGTH = 4;
+    private static final int MAX_PIN_LENGTH = 12;
+    private static final String ZEROS = "000000000000";
+    /** Interval at which the writer waiting on a chunk checks that the workers are still running */
+    private static final long WORKER_CHECK_MILLIS = 100;
+    private static final Chunk END = new Chunk();
+
+    private final Path input;
+    private final Path output;
+    private final Path checkpoint;
+    private final byte[] pvk;
+    private final String pvkHex;
+    private final int pinLength;
+    private final DecimalisationTable decimalisation;
+    private final ExecutorService executor;
+    private final int workers;
+
+    /** Parameters a checkpoint is only resumed with */
+    private Properties parameters;
+    private FileChannel inputChannel;
+    private FileChannel outputChannel;
+    private long inputSize;
+    private volatile long inputOffset;
+    private volatile long records;
+    private volatile long failedRecords;
+    private long resumedRecords;
+
+    /**
+     * @param input          Input file
+     * @param output         Output file, its checkpoint is written alongside with the .checkpoint extension
+     * @param pvk            PIN verification key, 32 hexadecimal digits
+     * @param pinLength      Length of natural PINs, 4 to 12, customer PINs keep their own length
+     * @param decimalisation Decimalisation table
+     * @param executor       Executor running the workers
+     * @param workers        Number of workers
+     * @throws IllegalArgumentException When the PVK or PIN length is invalid
+     */
+    public PinIssuance(Path input, Path output, String pvk, int pinLength, DecimalisationTable decimalisation,
+                       ExecutorService executor, int workers) throws DecoderException {
+        if (pvk == null || pvk.length() != 32 || !DataChecker.isHexadecimal(pvk)) {
+            throw new IllegalArgumentException("PVK must be exactly 32 hexadecimal digits.");
+        }
+        if (pinLength < MIN_PIN_LENGTH || pinLength > MAX_PIN_LENGTH) {
+            throw new IllegalArgumentException("PINLength must be 4 to 12.");
+        }
+        this.input = input;
+        this.output = output;
+        this.checkpoint = output.resolveSibling(output.getFileName() + ".checkpoint");
+        this.pvk = HexCodec.decode(pvk);
+        this.pvkHex = pvk;
+        this.pinLength = pinLength;
+        this.decimalisation = decimalisation;
+        this.executor = executor;
+        this.workers = workers;
+    }
+
+    /**
+     * Open the files, resuming from the checkpoint of the output file when there is one
+     * @throws IllegalArgumentException When the input file does not exist, the output file exists without a
+     *                                  checkpoint, or the checkpoint was written for another input or parameters
+     * @throws IOException              When the files cannot be opened
+     */
+    public void open() throws IOException {
+        if (!Files.isRegularFile(input)) {
+            throw new IllegalArgumentException("InputFile not found.");
+        }
+        inputSize = Files.size(input);
+        parameters = parameters();
+        long outputLength = 0;
+        if (Files.exists(checkpoint)) {
+            Properties properties = new Properties();
+            try (InputStream stream = Files.newInputStream(checkpoint)) {
+                properties.load(stream);
+            }
+            if (!parameters.equals(parameters(properties))) {
+                throw new IllegalArgumentException("Checkpoint of OutputFile was written for another InputFile, PVK "
+                        + "or PIN parameters, delete it to start over.");
+            }
+            try {
+                inputOffset = Long.parseLong(properties.getProperty("inputOffset"));
+                outputLength = Long.parseLong(properties.getProperty("outputLength"));
+                resumedRecords = Long.parseLong(properties.getProperty("records"));
+                failedRecords = Long.parseLong(properties.getProperty("failedRecords"));
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("Checkpoint of OutputFile is corrupt, delete it to start over.");
+            }
+            if (inputOffset > inputSize || !Files.exists(output) || outputLength > Files.size(output)) {
+                throw new IllegalArgumentException("InputFile or OutputFile changed since the checkpoint, delete it "
+                        + "to start over.");
+            }
+            records = resumedRecords;
+        } else if (Files.exists(output)) {
+            throw new IllegalArgumentException("OutputFile already exists.");
+        }
+        inputChannel = FileChannel.open(input, StandardOpenOption.READ);
+        try {
+            outputChannel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Cards written after the last checkpoint are written again
+            outputChannel.truncate(outputLength);
+            outputChannel.position(outputLength);
+            inputChannel.position(inputOffset);
+        } catch (IOException exception) {
+            close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Issue the PINs of the input file from the offset reached, and delete the checkpoint once done. The checkpoint
+     * is kept when the job fails, so that it can be resumed.
+     * @throws IOException When a file cannot be read or written, or the job is interrupted
+     */
+    public void run() throws IOException {
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(2 * workers);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> work(queue)));
+        }
+        try {
+            Deque<Chunk> pending = new ArrayDeque<>();
+            LineReader reader = new LineReader(inputChannel, inputOffset);
+            Chunk chunk = new Chunk();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank() || line.charAt(0) == '#') {
+                    continue;
+                }
+                chunk.lines[chunk.size++] = line;
+                if (chunk.size == CHUNK_SIZE) {
+                    chunk.endOffset = reader.getOffset();
+                    dispatch(queue, pending, chunk, futures);
+                    chunk = new Chunk();
+                }
+            }
+            if (chunk.size > 0 || reader.getOffset() > inputOffset) {
+                chunk.endOffset = reader.getOffset();
+                dispatch(queue, pending, chunk, futures);
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), futures);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Issuance interrupted.", exception);
+        } finally {
+            stop(queue, futures);
+            close();
+        }
+        Files.deleteIfExists(checkpoint);
+    }
+
+    /**
+     * @return Size of the input file in bytes
+     */
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * @return Input offset of the cards written so far
+     */
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    /**
+     * @return Cards written so far, including those written before the job resumed
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return Cards written with an error so far
+     */
+    public long getFailedRecords() {
+        return failedRecords;
+    }
+
+    /**
+     * @return Cards written before the job resumed, 0 for a new job
+     */
+    public long getResumedRecords() {
+        return resumedRecords;
+    }
+
+    private void dispatch(BlockingQueue<Chunk> queue, Deque<Chunk> pending, Chunk chunk, List<Future<?>> futures)
+            throws IOException, InterruptedException {
+        if (pending.size() == 2 * workers) {
+            write(pending.poll(), futures);
+        }
+        pending.add(chunk);
+        // Never blocks, the queue holds at most the chunks pending
+        queue.put(chunk);
+    }
+
+    private void write(Chunk chunk, List<Future<?>> futures) throws IOException, InterruptedException {
+        await(chunk, futures);
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.output);
+        while (buffer.hasRemaining()) {
+            outputChannel.write(buffer);
+        }
+        inputOffset = chunk.endOffset;
+        failedRecords += chunk.failed;
+        records += chunk.size;
+        writeCheckpoint();
+    }
+
+    /**
+     * Wait for a chunk to be issued. Workers only return once they have taken the end of the file, so a worker done
+     * while chunks are pending has failed, and the chunks it held would never complete.
+     * @throws IllegalStateException When the chunk or a worker failed
+     */
+    private static void await(Chunk chunk, List<Future<?>> futures) throws InterruptedException {
+        while (true) {
+            try {
+                chunk.done.get(WORKER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException("Issuance failed: " + exception.getCause(), exception.getCause());
+            } catch (TimeoutException exception) {
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException failure) {
+                            throw new IllegalStateException("Issuance worker failed: " + failure.getCause(),
+                                    failure.getCause());
+                        }
+                        throw new IllegalStateException("Issuance worker stopped early.");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Force the output to disk then replace the checkpoint, so the checkpoint never gets ahead of the output
+     */
+    private void writeCheckpoint() throws IOException {
+        outputChannel.force(false);
+        Properties properties = new Properties();
+        properties.putAll(parameters);
+        properties.setProperty("inputOffset", Long.toString(inputOffset));
+        properties.setProperty("outputLength", Long.toString(outputChannel.position()));
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("failedRecords", Long.toString(failedRecords));
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary)) {
+            properties.store(stream, "PIN issuance checkpoint");
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Parameters a checkpoint is only resumed with, the PVK by its check value
+     */
+    private Properties parameters() {
+        Properties properties = new Properties();
+        properties.setProperty("input", input.getFileName().toString());
+        properties.setProperty("pinLength", Integer.toString(pinLength));
+        properties.setProperty("decimalisationTable", decimalisation.getDigits());
+        try {
+            KeySchedule schedule = new KeySchedule(pvk);
+            properties.setProperty("pvkCheckValue", HexCodec.encodeBlock(schedule.encrypt(0L), true).substring(0, 6));
+            schedule.destroy();
+        } catch (InvalidKeyException exception) {
+            throw new IllegalArgumentException("PVK is not a valid TDEA key.", exception);
+        }
+        return properties;
+    }
+
+    private static Properties parameters(Properties checkpoint) {
+        Properties properties = new Properties();
+        for (String name : Arrays.asList("input", "pinLength", "decimalisationTable", "pvkCheckValue")) {
+            properties.setProperty(name, checkpoint.getProperty(name, ""));
+        }
+        return properties;
+    }
+
+    private void stop(BlockingQueue<Chunk> queue, List<Future<?>> futures) {
+        boolean interrupted = false;
+        // Chunks a failed job left queued are dropped, so the end of the file never waits behind them
+        queue.clear();
+        for (int i = 0; i < workers; i++) {
+            try {
+                queue.put(END);
+            } catch (InterruptedException exception) {
+                interrupted = true;
+                i--;
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            } catch (ExecutionException exception) {
+                Diagnostics.error("ISSU01", "Issuance worker failed: " + exception.getCause());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close() throws IOException {
+        try {
+            if (inputChannel != null) {
+                inputChannel.close();
+            }
+        } finally {
+            if (outputChannel != null) {
+                outputChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Issue the PINs of chunks with a PVK schedule of its own until the end of the file
+     */
+    private Void work(BlockingQueue<Chunk> queue) throws InterruptedException, InvalidKeyException {
+        KeySchedule schedule = new KeySchedule(pvk);
+        try {
+            IBM3624Pin ibm3624Pin = new IBM3624Pin();
+            ibm3624Pin.setPvk(pvkHex);
+            ibm3624Pin.setPvkSchedule(schedule);
+            ibm3624Pin.setDecimalisation(decimalisation);
+            ibm3624Pin.setGenerateNaturalPin(true);
+            StringBuilder lines = new StringBuilder(CHUNK_SIZE * 48);
+            for (Chunk chunk = queue.take(); chunk != END; chunk = queue.take()) {
+                try {
+                    lines.setLength(0);
+                    for (int i = 0; i < chunk.size; i++) {
+                        if (!issue(ibm3624Pin, chunk.lines[i], lines)) {
+                            chunk.failed++;
+                        }
+                    }
+                    chunk.output = lines.toString().getBytes(StandardCharsets.US_ASCII);
+                    chunk.done.complete(null);
+                } catch (RuntimeException exception) {
+                    chunk.done.completeExceptionally(exception);
+                } catch (Error error) {
+                    // The writer learns why the job failed from the chunk, the worker itself does not carry on
+                    chunk.done.completeExceptionally(error);
+                    throw error;
+                }
+            }
+        } finally {
+            schedule.destroy();
+        }
+        return null;
+    }
+
+    /**
+     * Issue the PIN of one card and append its output line
+     * @return True if the PIN was issued, false if the line was written with an error
+     */
+    private boolean issue(IBM3624Pin ibm3624Pin, String line, StringBuilder lines) {
+        int comma = line.indexOf(',');
+        String pan = (comma < 0 ? line : line.substring(0, comma)).trim();
+        String customerPin = comma < 0 ? "" : line.substring(comma + 1).trim();
+        if (pan.length() != 16 || !DataChecker.isNumeric(pan)) {
+            // Not echoed, a malformed line may hold a PIN, the output line number identifies the card
+            lines.append(",,,Invalid PAN\n");
+            return false;
+        }
+        lines.append(pan).append(',');
+        if (!customerPin.isEmpty() && (customerPin.length() < MIN_PIN_LENGTH || customerPin.length() > MAX_PIN_LENGTH
+                || !DataChecker.isNumeric(customerPin))) {
+            lines.append(",,Invalid customer PIN\n");
+            return false;
+        }
+        int length = customerPin.isEmpty() ? pinLength : customerPin.length();
+        ibm3624Pin.setPan(pan);
+        ibm3624Pin.setPinLength(Integer.toString(length));
+        ibm3624Pin.setPinOffset(ZEROS.substring(0, length));
+        ibm3624Pin.setPin(null);
+        ibm3624Pin.setNaturalPin(null);
+        try {
+            ibm3624Pin.generateIBM3624Pin();
+        } catch (Exception exception) {
+            Diagnostics.error("ISSU02", "PIN generation failed: " + exception.getMessage());
+        }
+        String naturalPin = ibm3624Pin.getNaturalPin();
+        if (naturalPin == null) {
+            lines.append(",,PIN generation failed\n");
+            return false;
+        }
+        if (customerPin.isEmpty()) {
+            lines.append(ZEROS, 0, length).append(',').append(naturalPin).append(",\n");
+        } else {
+            lines.append(ibm3624Pin.deriveOffset(customerPin, naturalPin)).append(",,\n");
+        }
+        return true;
+    }
+
+    /**
+     * Cards of the input between two input offsets, and their output once issued
+     */
+    private static final class Chunk {
+
+        private final String[] lines = new String[CHUNK_SIZE];
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int size;
+        /** Input offset after the last line of the chunk */
+        private long endOffset;
+        private byte[] output;
+        private int failed;
+    }
+
+    /**
+     * Reads lines of an ASCII file, keeping the offset after the last line read
+     */
+    private static final class LineReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private final StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+        private long offset;
+
+        private LineReader(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.offset = offset;
+            buffer.flip();
+        }
+
+        /**
+         * @return Next line without its line terminator, null at the end of the file
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            boolean read = false;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear();
+                    int count = channel.read(buffer);
+                    buffer.flip();
+                    if (count < 0) {
+                        return read ? line.toString() : null;
+                    }
+                    continue;
+                }
+                byte next = buffer.get();
+                offset++;
+                read = true;
+                if (next == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                if (line.length() < MAX_LINE_LENGTH) {
+                    line.append((char) (next & 0xFF));
+                }
+            }
+        }
+
+        private long getOffset() {
+            return offset;
+        }
+    }
+}
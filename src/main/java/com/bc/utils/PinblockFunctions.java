@@ -1,5 +1,6 @@
 package com.bc.utils;
 
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
@@ -46,29 +47,35 @@ public class PinblockFunctions {
      */
     public void decryptPinblock() throws NoSuchPaddingException,
             IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        if (validPinblockDecryptRequest()){
-            cryptoFunctions.setKey(zonePinKey);
-            cryptoFunctions.setInputData(pinBlock);
-            decryptedPinBlock = cryptoFunctions.tDEADecrypt().toUpperCase();
-            pinBlockFormat = decryptedPinBlock.charAt(0);
-            pinLength = decryptedPinBlock.charAt(1);
-            clearPin = derivePinFromPinBlock();
+        long started = EmvMetrics.start();
+        try {
+            if (validPinblockDecryptRequest()){
+                long clearPinBlock = TdeaEngine.decrypt(HexCodec.decode(zonePinKey), HexCodec.decodeBlock(pinBlock));
+                decryptedPinBlock = HexCodec.encodeBlock(clearPinBlock, true);
+                pinBlockFormat = decryptedPinBlock.charAt(0);
+                pinLength = decryptedPinBlock.charAt(1);
+                clearPin = derivePinFromPinBlock();
+            }
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.PIN_BLOCK, started);
         }
     }
 
     public String generatePinblock() throws DecoderException, NoSuchPaddingException, IllegalBlockSizeException, NoSuchAlgorithmException, BadPaddingException, InvalidKeyException {
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        if (validPinblockGenerateRequest()){
-            decryptedPinBlock = generatePinblockDriver();
-            cryptoFunctions.setInputData(decryptedPinBlock);
-            cryptoFunctions.setKey(zonePinKey);
-            pinBlock = cryptoFunctions.tDEAEncrypt().toUpperCase();
-            pinLength = convertIntegerToHex(pin.length()).charAt(0);
-            return generateISOFormat0PINblock();
+        long started = EmvMetrics.start();
+        try {
+            if (validPinblockGenerateRequest()){
+                decryptedPinBlock = generatePinblockDriver();
+                long encryptedPinBlock = TdeaEngine.encrypt(HexCodec.decode(zonePinKey),
+                        HexCodec.decodeBlock(decryptedPinBlock));
+                pinBlock = HexCodec.encodeBlock(encryptedPinBlock, true);
+                pinLength = convertIntegerToHex(pin.length()).charAt(0);
+                return generateISOFormat0PINblock();
+            }
+            return null;
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.PIN_BLOCK, started);
         }
-        return null;
     }
 
     /**
@@ -144,9 +151,7 @@ public class PinblockFunctions {
      * @return Clear PIN
      */
     private String deriveISOFormat0PIN() throws DecoderException {
-        String format0Pan = "0000" + pan.substring(3,15);
-        Xor xor =  new Xor();
-        String xorPinBlock = xor.exclusiveOr(format0Pan, decryptedPinBlock);
+        String xorPinBlock = HexCodec.encodeBlock(format0PanBlock() ^ HexCodec.decodeBlock(decryptedPinBlock), true);
         return xorPinBlock.substring(2, (xorPinBlock.charAt(1) - '0') + 2);
     }
 
@@ -164,13 +169,19 @@ public class PinblockFunctions {
      */
     private String generateISOFormat0PINblock() throws DecoderException {
 
-        String format0Pan = "0000" + pan.substring(3,15);
         String tempFormat0Pin = pinBlockFormat
                 + convertIntegerToHex(pin.length())
                 + pin;
         String format0Pin = tempFormat0Pin + "F".repeat(16 - tempFormat0Pin.length());
-        Xor xor =  new Xor();
-        return xor.exclusiveOr(format0Pan, format0Pin).toUpperCase();
+        return HexCodec.encodeBlock(format0PanBlock() ^ HexCodec.decodeBlock(format0Pin), true);
+    }
+
+    /**
+     * Build the ISO Format-0 PAN block, 0000 followed by PAN digits 4 through 15
+     * @return ISO Format-0 PAN block
+     */
+    private long format0PanBlock() throws DecoderException {
+        return HexCodec.decodeLong(pan, 3, 12);
     }
 
     /**
@@ -0,0 +1,137 @@
+package com.bc.utils;
+
+import com.bc.enums.MacPaddingMethod;
+
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+/**
+ * Incremental ISO 9797-1 MAC algorithm 3 (retail MAC) under a double length key KL KR:
+ * - Every block is chained with single DES CBC under KL, starting from a zero IV
+ * - The last chained block is decrypted under KR and encrypted under KL again
+ * Data is fed through {@link #update(byte[], int, int)} and full blocks are processed as soon as they are complete,
+ * so a MAC over n blocks costs n + 2 block operations and no intermediate copies of the data. An instance is not
+ * thread safe and is reset by {@link #doFinal()}, so it may be reused for the next MAC under the same key.
+ * MAC keys are session keys, so KL gets a key schedule of its own for the life of the instance rather than one from
+ * {@link KeyScheduleCache}, and KR, used for a single block, none at all. {@link #destroy()} zeroises both.
+ */
+public class RetailMac {
+
+    private final KeySchedule keyLeft;
+    private final byte[] keyRight;
+    private final MacPaddingMethod paddingMethod;
+    private final byte[] block = new byte[TdeaEngine.BLOCK_SIZE];
+    private int blockLength;
+    private long chainingValue;
+    private boolean empty = true;
+
+    /**
+     * @param key           Double length MAC key, the array is copied
+     * @param paddingMethod ISO 9797-1 padding method applied by {@link #doFinal()}
+     * @throws InvalidKeyException When the key is not 16 bytes long
+     */
+    public RetailMac(byte[] key, MacPaddingMethod paddingMethod) throws InvalidKeyException {
+        if (key.length != 16) {
+            throw new InvalidKeyException("Invalid retail MAC key length: 16 bytes expected, received "
+                    + key.length + " bytes.");
+        }
+        byte[] left = Arrays.copyOfRange(key, 0, 8);
+        keyLeft = new KeySchedule(left);
+        Arrays.fill(left, (byte) 0);
+        keyRight = Arrays.copyOfRange(key, 8, 16);
+        this.paddingMethod = paddingMethod;
+    }
+
+    /**
+     * Add a single byte to the MAC input.
+     * @param input Input byte
+     * @throws InvalidKeyException Could throw this exception
+     */
+    public void update(byte input) throws InvalidKeyException {
+        block[blockLength++] = input;
+        empty = false;
+        if (blockLength == TdeaEngine.BLOCK_SIZE) {
+            processBlock();
+        }
+    }
+
+    /**
+     * Add a range of bytes to the MAC input.
+     * @param input  Buffer holding the input data
+     * @param offset Offset of the first input byte
+     * @param length Number of input bytes
+     * @throws InvalidKeyException Could throw this exception
+     */
+    public void update(byte[] input, int offset, int length) throws InvalidKeyException {
+        if (length > 0) {
+            empty = false;
+        }
+        while (length > 0) {
+            int count = Math.min(length, TdeaEngine.BLOCK_SIZE - blockLength);
+            System.arraycopy(input, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == TdeaEngine.BLOCK_SIZE) {
+                processBlock();
+            }
+        }
+    }
+
+    /**
+     * Add a byte array to the MAC input.
+     * @param input Input data
+     * @throws InvalidKeyException Could throw this exception
+     */
+    public void update(byte[] input) throws InvalidKeyException {
+        update(input, 0, input.length);
+    }
+
+    /**
+     * Pad the remaining input, complete the MAC and reset this instance.
+     * @return 8 byte MAC
+     * @throws InvalidKeyException Could throw this exception
+     */
+    public byte[] doFinal() throws InvalidKeyException {
+        if (paddingMethod == MacPaddingMethod.Method_2) {
+            block[blockLength++] = (byte) 0x80;
+        }
+        // Method 1 leaves block aligned input as is, but still MACs one zero block for empty input
+        if (blockLength > 0 || empty) {
+            Arrays.fill(block, blockLength, TdeaEngine.BLOCK_SIZE, (byte) 0x00);
+            processBlock();
+        }
+        long mac = TdeaEngine.decryptOnce(keyRight, chainingValue);
+        TdeaEngine.countBlocks(1);
+        mac = keyLeft.encrypt(mac);
+        byte[] output = new byte[TdeaEngine.BLOCK_SIZE];
+        Block64.toBytes(mac, output, 0);
+        reset();
+        return output;
+    }
+
+    /**
+     * Discard any input and start a new MAC under the same key.
+     */
+    public void reset() {
+        Arrays.fill(block, (byte) 0x00);
+        blockLength = 0;
+        chainingValue = 0;
+        empty = true;
+    }
+
+    /**
+     * Zeroise the key and any pending input, the instance can no longer be used.
+     */
+    public void destroy() {
+        reset();
+        keyLeft.destroy();
+        Arrays.fill(keyRight, (byte) 0);
+    }
+
+    private void processBlock() throws InvalidKeyException {
+        TdeaEngine.countBlocks(1);
+        chainingValue = keyLeft.encrypt(chainingValue ^ Block64.toLong(block, 0));
+        blockLength = 0;
+    }
+}
@@ -0,0 +1,307 @@
+package com.bc.utils;
+
+import com.bc.metrics.Diagnostics;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session key prefetch for upcoming ATCs. The ATC of a card only ever increases, so once an ARQC of the card has
+ * been verified at ATC n, see {@link #prefetchAfter(byte[], boolean, int)}, the keys for n+1 to n+k are derived on a
+ * background thread into a ring per card, and the next authorisation for that card takes its session key from the
+ * ring instead of deriving it. Generating an ARQC, or probing parameters during discovery, never starts a prefetch,
+ * and a lookup only reads the ring, so a request that is not verified, e.g. one at a far higher ATC, cannot flush it.
+ * - k is set through emv.session-key-prefetch.depth, 0 disables prefetching and every key is derived on the caller
+ * - Keys for ATCs at or below the last one verified are evicted and zeroised, as are the rings of cards evicted least
+ *   recently used first beyond emv.session-key-prefetch.max-cards, see {@link LruEviction}. Rings are evicted on the
+ *   background thread, never on the caller's, which may be an event loop
+ * - Prefetch work is dropped rather than queued without bound when the background thread falls behind
+ * Ring hits and misses of the cards with a ring are counted, together with prefetched keys that were evicted without
+ * being used.
+ */
+public final class SessionKeyPrefetcher {
+
+    private static final int DEPTH = ConfigProvider.getConfig()
+            .getOptionalValue("emv.session-key-prefetch.depth", Integer.class).orElse(4);
+    private static final int MAX_CARDS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.session-key-prefetch.max-cards", Integer.class).orElse(4096);
+    private static final int MAX_ATC = 0xFFFF;
+
+    private static final Map<CardKey, CardRing> RINGS = new ConcurrentHashMap<>();
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder PREFETCHED = new LongAdder();
+    private static final LongAdder UNUSED = new LongAdder();
+    private static final LruEviction<CardKey, CardRing> LRU_EVICTION = new LruEviction<>(RINGS, MAX_CARDS,
+            cardRing -> cardRing.lastAccessNanos, SessionKeyPrefetcher::evict);
+
+    private SessionKeyPrefetcher() {
+    }
+
+    /**
+     * Return the session key for an ATC from the card's prefetch ring, or derive it when the card has no ring or the
+     * key has not been prefetched. The ring is left as it is, it only moves on once an ARQC is verified.
+     * @param udk            Double length card UDK
+     * @param treeDerivation True for EMV tree based session keys, false for the CVN 18/22 ATC padding method
+     * @param atc            Application Transaction Counter
+     * @return New 16 byte session key
+     * @throws InvalidKeyException When the UDK is not 16 bytes long
+     */
+    public static byte[] getSessionKey(byte[] udk, boolean treeDerivation, int atc) throws InvalidKeyException {
+        CardRing cardRing = DEPTH <= 0 ? null : RINGS.get(new CardKey(udk, treeDerivation));
+        if (cardRing == null) {
+            return KeyGenerator.deriveSessionKey(udk, treeDerivation, atc);
+        }
+        cardRing.lastAccessNanos = System.nanoTime();
+        byte[] sessionKey = cardRing.get(atc);
+        if (sessionKey != null) {
+            HITS.increment();
+            return sessionKey;
+        }
+        MISSES.increment();
+        return KeyGenerator.deriveSessionKey(udk, treeDerivation, atc);
+    }
+
+    /**
+     * Prefetch the session keys of the ATCs following one an ARQC of the card has just been verified at, in the
+     * background. The card's ring is created on its first verification.
+     * @param udk            Double length card UDK
+     * @param treeDerivation True for EMV tree based session keys, false for the CVN 18/22 ATC padding method
+     * @param atc            ATC the ARQC was verified at
+     */
+    public static void prefetchAfter(byte[] udk, boolean treeDerivation, int atc) {
+        if (DEPTH <= 0) {
+            return;
+        }
+        CardRing cardRing = getCardRing(udk, treeDerivation);
+        // Keys up to the verified ATC are no longer needed, e.g. when the ATC was found by a window search
+        cardRing.advance(atc);
+        cardRing.schedulePrefetch(atc);
+    }
+
+    /**
+     * Evict and zeroise every prefetched session key.
+     */
+    public static void clear() {
+        RINGS.forEach(SessionKeyPrefetcher::evict);
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getPrefetchCount() {
+        return PREFETCHED.sum();
+    }
+
+    public static long getUnusedCount() {
+        return UNUSED.sum();
+    }
+
+    public static int size() {
+        return RINGS.size();
+    }
+
+    private static CardRing getCardRing(byte[] udk, boolean treeDerivation) {
+        long now = System.nanoTime();
+        CardRing cardRing = RINGS.get(new CardKey(udk, treeDerivation));
+        if (cardRing == null) {
+            CardRing newCardRing = new CardRing(udk, treeDerivation);
+            cardRing = RINGS.putIfAbsent(new CardKey(newCardRing.udk, treeDerivation), newCardRing);
+            if (cardRing == null) {
+                cardRing = newCardRing;
+                if (LRU_EVICTION.isNeeded()) {
+                    EXECUTOR.execute(LRU_EVICTION::run);
+                }
+            }
+        }
+        cardRing.lastAccessNanos = now;
+        return cardRing;
+    }
+
+    private static void evict(CardKey cardKey, CardRing cardRing) {
+        if (RINGS.remove(cardKey, cardRing)) {
+            cardRing.destroy();
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1024), runnable -> {
+                    Thread thread = new Thread(runnable, "emv-session-key-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Prefetched session keys of one card, slot atc % k holds the key for that ATC. Access is synchronized on the
+     * instance.
+     */
+    private static final class CardRing {
+
+        private final byte[] udk;
+        private final boolean treeDerivation;
+        private final int[] atcs = new int[DEPTH];
+        private final byte[][] sessionKeys = new byte[DEPTH][];
+        /** Highest ATC prefetched or queued for prefetch */
+        private int prefetchedUpTo = -1;
+        /** Highest ATC an ARQC has been verified at */
+        private int lastVerifiedAtc = -1;
+        private volatile long lastAccessNanos;
+        private boolean destroyed;
+
+        private CardRing(byte[] udk, boolean treeDerivation) {
+            this.udk = udk.clone();
+            this.treeDerivation = treeDerivation;
+        }
+
+        /**
+         * @return Copy of the prefetched key for an ATC, or null if it has not been prefetched
+         */
+        private synchronized byte[] get(int atc) {
+            int slot = atc % DEPTH;
+            return sessionKeys[slot] != null && atcs[slot] == atc ? sessionKeys[slot].clone() : null;
+        }
+
+        /**
+         * Evict the keys of the verified ATC and of any ATC below it, which the card will not use again.
+         */
+        private synchronized void advance(int atc) {
+            for (int slot = 0; slot < DEPTH; slot++) {
+                if (sessionKeys[slot] != null && atcs[slot] <= atc) {
+                    if (atcs[slot] < atc) {
+                        UNUSED.increment();
+                    }
+                    Arrays.fill(sessionKeys[slot], (byte) 0);
+                    sessionKeys[slot] = null;
+                }
+            }
+            lastVerifiedAtc = Math.max(lastVerifiedAtc, atc);
+            prefetchedUpTo = Math.max(prefetchedUpTo, atc);
+        }
+
+        /**
+         * Queue the derivation of the keys after an ATC that are not prefetched or queued yet.
+         */
+        private void schedulePrefetch(int atc) {
+            int from;
+            int to = Math.min(atc + DEPTH, MAX_ATC);
+            synchronized (this) {
+                from = prefetchedUpTo + 1;
+                if (destroyed || from > to) {
+                    return;
+                }
+                prefetchedUpTo = to;
+            }
+            EXECUTOR.execute(() -> prefetch(from, to));
+        }
+
+        private void prefetch(int from, int to) {
+            byte[] prefetchUdk;
+            synchronized (this) {
+                if (destroyed) {
+                    return;
+                }
+                prefetchUdk = udk.clone();
+            }
+            try {
+                for (int atc = from; atc <= to; atc++) {
+                    byte[] sessionKey = KeyGenerator.deriveSessionKey(prefetchUdk, treeDerivation, atc);
+                    if (!store(atc, sessionKey)) {
+                        return;
+                    }
+                }
+            } catch (InvalidKeyException | RuntimeException exception) {
+                Diagnostics.warn("SKPF01", "Session key prefetch failed: " + exception.getMessage());
+            } finally {
+                Arrays.fill(prefetchUdk, (byte) 0);
+            }
+        }
+
+        /**
+         * Put a prefetched key in its slot, unless the card has been evicted or its ATC has already been verified.
+         * @return False when the card has been evicted
+         */
+        private synchronized boolean store(int atc, byte[] sessionKey) {
+            if (destroyed) {
+                Arrays.fill(sessionKey, (byte) 0);
+                return false;
+            }
+            if (atc <= lastVerifiedAtc) {
+                // The ATC moved past this key while it was being derived
+                UNUSED.increment();
+                Arrays.fill(sessionKey, (byte) 0);
+                return true;
+            }
+            int slot = atc % DEPTH;
+            if (sessionKeys[slot] != null) {
+                if (atcs[slot] >= atc) {
+                    // A newer key already occupies the slot, this one is no longer needed
+                    Arrays.fill(sessionKey, (byte) 0);
+                    return true;
+                }
+                UNUSED.increment();
+                Arrays.fill(sessionKeys[slot], (byte) 0);
+            }
+            atcs[slot] = atc;
+            sessionKeys[slot] = sessionKey;
+            PREFETCHED.increment();
+            return true;
+        }
+
+        private synchronized void destroy() {
+            destroyed = true;
+            Arrays.fill(udk, (byte) 0);
+            for (int slot = 0; slot < DEPTH; slot++) {
+                if (sessionKeys[slot] != null) {
+                    UNUSED.increment();
+                    Arrays.fill(sessionKeys[slot], (byte) 0);
+                    sessionKeys[slot] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Map key wrapping UDK bytes and the session key method. Lookups wrap the caller's array, inserted keys wrap the
+     * ring's own copy.
+     */
+    private static final class CardKey {
+
+        private final byte[] udk;
+        private final boolean treeDerivation;
+        private final int hash;
+
+        private CardKey(byte[] udk, boolean treeDerivation) {
+            this.udk = udk;
+            this.treeDerivation = treeDerivation;
+            this.hash = 31 * Arrays.hashCode(udk) + Boolean.hashCode(treeDerivation);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CardKey && treeDerivation == ((CardKey) other).treeDerivation
+                    && Arrays.equals(udk, ((CardKey) other).udk);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.bc.utils;
+
+import com.bc.metrics.Diagnostics;
+import org.apache.commons.codec.DecoderException;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EMV tree based session key derivation, EMV 4.3 Book 2 A1.3. With branch factor b, height H and initial vector IV:
+ * - IK(0,0) = UDK and IK(-1,0) = IV
+ * - IK(i,j) = f(IK(i-1, j / b), IK(i-2, j / b^2), j) for i = 1 to H
+ * - f(X, Y, j) = DES3(X)[YL xor (j mod b)] || DES3(X)[YR xor (j mod b) xor 'F0']
+ * - SK = IK(H, ATC) xor IK(H-2, ATC / b^2)
+ * b, H and IV are set through emv.skd.branch-factor, emv.skd.height and emv.skd.iv, b^H must cover the 2 byte ATC.
+ * Intermediate nodes are memoised per card, bounded by emv.skd.node-cache.max-nodes-per-card, and cards are evicted
+ * least recently used first beyond emv.skd.node-cache.max-cards, see {@link LruEviction}. Consecutive ATCs of a card
+ * share their ancestors, so a new ATC typically costs one node, two block operations. Node keys are only used once or
+ * twice as TDEA keys and are therefore not put in {@link KeyScheduleCache}. Evicted nodes are zeroised.
+ * A card is locked with a ReentrantLock rather than a monitor while its nodes are derived, so a virtual thread
+ * deriving a node does not pin its carrier thread.
+ */
+public final class SessionKeyTree {
+
+    private static final int BRANCH_FACTOR = ConfigProvider.getConfig()
+            .getOptionalValue("emv.skd.branch-factor", Integer.class).orElse(2);
+    private static final int HEIGHT = ConfigProvider.getConfig()
+            .getOptionalValue("emv.skd.height", Integer.class).orElse(16);
+    private static final byte[] IV = initialVector(ConfigProvider.getConfig()
+            .getOptionalValue("emv.skd.iv", String.class).orElse("0".repeat(32)));
+    private static final int MAX_CARDS = ConfigProvider.getConfig()
+            .getOptionalValue("emv.skd.node-cache.max-cards", Integer.class).orElse(1024);
+    private static final int MAX_NODES_PER_CARD = ConfigProvider.getConfig()
+            .getOptionalValue("emv.skd.node-cache.max-nodes-per-card", Integer.class).orElse(128);
+    /** Number of leaves, b^H, capped at Long.MAX_VALUE */
+    private static final long LEAF_COUNT = leafCount();
+
+    private static final Map<CardKey, CardNodes> CARDS = new ConcurrentHashMap<>();
+    private static final LongAdder NODE_HITS = new LongAdder();
+    private static final LongAdder NODE_MISSES = new LongAdder();
+    private static final LongAdder CARD_EVICTIONS = new LongAdder();
+    private static final LruEviction<CardKey, CardNodes> LRU_EVICTION = new LruEviction<>(CARDS, MAX_CARDS,
+            cardNodes -> cardNodes.lastAccessNanos, SessionKeyTree::evict);
+
+    private SessionKeyTree() {
+    }
+
+    /**
+     * Derive the session key for an ATC from a card UDK.
+     * @param udk Double length card UDK
+     * @param atc Application Transaction Counter
+     * @return New 16 byte session key
+     * @throws InvalidKeyException When the UDK is not 16 bytes long
+     */
+    public static byte[] deriveSessionKey(byte[] udk, int atc) throws InvalidKeyException {
+        if (udk.length != 16) {
+            throw new InvalidKeyException("Invalid UDK length: 16 bytes expected, received " + udk.length
+                    + " bytes.");
+        }
+        if (atc < 0 || atc >= LEAF_COUNT) {
+            throw new IllegalArgumentException("ATC " + atc + " is outside the session key tree, branch factor "
+                    + BRANCH_FACTOR + " and height " + HEIGHT + " cover " + LEAF_COUNT + " ATCs.");
+        }
+        while (true) {
+            CardNodes cardNodes = getCardNodes(udk);
+            cardNodes.lock.lock();
+            try {
+                // An evicted card has been zeroised, look it up again
+                if (!cardNodes.destroyed) {
+                    byte[] sessionKey = cardNodes.node(HEIGHT, atc);
+                    byte[] grandParent = cardNodes.node(HEIGHT - 2, atc / ((long) BRANCH_FACTOR * BRANCH_FACTOR));
+                    Xor.exclusiveOr(sessionKey, grandParent, sessionKey);
+                    Arrays.fill(grandParent, (byte) 0);
+                    return sessionKey;
+                }
+            } finally {
+                cardNodes.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Evict and zeroise the nodes of every card.
+     */
+    public static void clear() {
+        CARDS.forEach(SessionKeyTree::evict);
+    }
+
+    public static long getNodeHitCount() {
+        return NODE_HITS.sum();
+    }
+
+    public static long getNodeMissCount() {
+        return NODE_MISSES.sum();
+    }
+
+    public static long getCardEvictionCount() {
+        return CARD_EVICTIONS.sum();
+    }
+
+    public static int size() {
+        return CARDS.size();
+    }
+
+    private static CardNodes getCardNodes(byte[] udk) {
+        long now = System.nanoTime();
+        CardNodes cardNodes = CARDS.get(new CardKey(udk));
+        if (cardNodes == null) {
+            CardNodes newCardNodes = new CardNodes(udk);
+            cardNodes = CARDS.putIfAbsent(new CardKey(newCardNodes.udk), newCardNodes);
+            if (cardNodes == null) {
+                cardNodes = newCardNodes;
+                if (LRU_EVICTION.isNeeded()) {
+                    LRU_EVICTION.run();
+                }
+            }
+        }
+        cardNodes.lastAccessNanos = now;
+        return cardNodes;
+    }
+
+    private static void evict(CardKey cardKey, CardNodes cardNodes) {
+        if (CARDS.remove(cardKey, cardNodes)) {
+            CARD_EVICTIONS.increment();
+            cardNodes.lock.lock();
+            try {
+                cardNodes.destroy();
+            } finally {
+                cardNodes.lock.unlock();
+            }
+        }
+    }
+
+    private static long leafCount() {
+        long leafCount = 1;
+        for (int i = 0; i < HEIGHT && leafCount <= 0xFFFF; i++) {
+            leafCount *= BRANCH_FACTOR;
+        }
+        if (BRANCH_FACTOR < 2 || HEIGHT < 2 || leafCount <= 0xFFFF) {
+            Diagnostics.warn("SKDT01", "Session key tree with branch factor " + BRANCH_FACTOR + " and height "
+                    + HEIGHT + " does not cover all 65536 ATCs.");
+        }
+        return BRANCH_FACTOR < 2 || HEIGHT < 2 ? 0 : leafCount;
+    }
+
+    private static byte[] initialVector(String iv) {
+        try {
+            byte[] initialVector = HexCodec.decode(iv);
+            if (initialVector.length == 16) {
+                return initialVector;
+            }
+        } catch (DecoderException exception) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("emv.skd.iv: 32 hexadecimal characters expected, received \"" + iv
+                + "\".");
+    }
+
+    /**
+     * Memoised tree nodes of one card. Access is guarded by the lock, nodes are handed out as copies so an eviction
+     * never zeroises a node still in use.
+     */
+    private static final class CardNodes {
+
+        private final byte[] udk;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, byte[]> nodes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                if (size() > MAX_NODES_PER_CARD) {
+                    Arrays.fill(eldest.getValue(), (byte) 0);
+                    return true;
+                }
+                return false;
+            }
+        };
+        private volatile long lastAccessNanos;
+        private boolean destroyed;
+
+        private CardNodes(byte[] udk) {
+            this.udk = udk.clone();
+        }
+
+        /**
+         * Return a copy of node IK(level, index), computing and memoising missing ancestors.
+         */
+        private byte[] node(int level, long index) throws InvalidKeyException {
+            if (level < 0) {
+                return IV.clone();
+            }
+            if (level == 0) {
+                return udk.clone();
+            }
+            Long nodeKey = ((long) level << 48) | index;
+            byte[] node = nodes.get(nodeKey);
+            if (node != null) {
+                NODE_HITS.increment();
+                return node.clone();
+            }
+            NODE_MISSES.increment();
+            byte[] parent = node(level - 1, index / BRANCH_FACTOR);
+            byte[] grandParent = node(level - 2, index / ((long) BRANCH_FACTOR * BRANCH_FACTOR));
+            node = f(parent, grandParent, index);
+            Arrays.fill(parent, (byte) 0);
+            Arrays.fill(grandParent, (byte) 0);
+            nodes.put(nodeKey, node.clone());
+            return node;
+        }
+
+        /**
+         * f(X, Y, j) = DES3(X)[YL xor (j mod b)] || DES3(X)[YR xor (j mod b) xor 'F0'], X only ever encrypts, so its
+         * schedule never initialises a decrypt Cipher
+         */
+        private static byte[] f(byte[] x, byte[] y, long j) throws InvalidKeyException {
+            long branch = j % BRANCH_FACTOR;
+            KeySchedule schedule = new KeySchedule(x);
+            TdeaEngine.countBlocks(2);
+            try {
+                return Block64.toBytes(schedule.encrypt(Block64.toLong(y, 0) ^ branch),
+                        schedule.encrypt(Block64.toLong(y, 8) ^ branch ^ 0xF0L));
+            } finally {
+                schedule.destroy();
+            }
+        }
+
+        private void destroy() {
+            destroyed = true;
+            Arrays.fill(udk, (byte) 0);
+            nodes.values().forEach(node -> Arrays.fill(node, (byte) 0));
+            nodes.clear();
+        }
+    }
+
+    /**
+     * Map key wrapping UDK bytes. Lookups wrap the caller's array, inserted keys wrap the card's own copy.
+     */
+    private static final class CardKey {
+
+        private final byte[] udk;
+        private final int hash;
+
+        private CardKey(byte[] udk) {
+            this.udk = udk;
+            this.hash = Arrays.hashCode(udk);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CardKey && Arrays.equals(udk, ((CardKey) other).udk);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
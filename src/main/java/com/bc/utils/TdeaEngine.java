@@ -0,0 +1,215 @@
+package com.bc.utils;
+
+import com.bc.enums.TdeaBackend;
+import com.bc.metrics.Diagnostics;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.security.InvalidKeyException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stateless, thread-safe TDEA (DESede/ECB/NoPadding) block engine working on raw bytes and 64-bit blocks.
+ * Single, double and triple length keys are accepted and expanded to a triple length key schedule as follows:
+ * - 8 bytes:  K1 K1 K1 (equivalent to single DES)
+ * - 16 bytes: K1 K2 K1
+ * - 24 bytes: K1 K2 K3
+ * Initialised key schedules are taken from {@link KeyScheduleCache}, so hot keys never pay Cipher.getInstance or
+ * Cipher.init on the hot path. One-shot keys, e.g. session keys, go through {@link #encryptOnce(byte[], long)} and
+ * {@link #decryptOnce(byte[], long)} instead, so they do not push the master keys out of the cache, and reuse spare
+ * Cipher instances, see {@link KeySchedule}. Setting emv.tdea.backend=SOFTWARE switches block operations from the JCE
+ * provider to the allocation free {@link DesBlockCipher}. Outputs are written into caller supplied buffers, input and
+ * output may be the same array.
+ */
+public final class TdeaEngine {
+
+    public static final int BLOCK_SIZE = Block64.SIZE;
+
+    private static final TdeaBackend BACKEND = selectBackend(ConfigProvider.getConfig()
+            .getOptionalValue("emv.tdea.backend", TdeaBackend.class).orElse(TdeaBackend.JCE));
+    private static final LongAdder BLOCKS = new LongAdder();
+
+    private TdeaEngine() {
+    }
+
+    /**
+     * TDEA encrypt a single 8 byte block.
+     * @param key          Single, double or triple length TDEA key
+     * @param input        Buffer holding the clear block
+     * @param inputOffset  Offset of the clear block in the input buffer
+     * @param output       Buffer receiving the encrypted block
+     * @param outputOffset Offset in the output buffer at which the encrypted block is written
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static void encrypt(byte[] key, byte[] input, int inputOffset, byte[] output, int outputOffset)
+            throws InvalidKeyException {
+        process(true, key, input, inputOffset, output, outputOffset);
+    }
+
+    /**
+     * TDEA decrypt a single 8 byte block.
+     * @param key          Single, double or triple length TDEA key
+     * @param input        Buffer holding the encrypted block
+     * @param inputOffset  Offset of the encrypted block in the input buffer
+     * @param output       Buffer receiving the clear block
+     * @param outputOffset Offset in the output buffer at which the clear block is written
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static void decrypt(byte[] key, byte[] input, int inputOffset, byte[] output, int outputOffset)
+            throws InvalidKeyException {
+        process(false, key, input, inputOffset, output, outputOffset);
+    }
+
+    /**
+     * TDEA encrypt a 64-bit block, see {@link Block64}.
+     * @param key   Single, double or triple length TDEA key
+     * @param block Clear block
+     * @return Encrypted block
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static long encrypt(byte[] key, long block) throws InvalidKeyException {
+        return process(true, key, block);
+    }
+
+    /**
+     * TDEA decrypt a 64-bit block, see {@link Block64}.
+     * @param key   Single, double or triple length TDEA key
+     * @param block Encrypted block
+     * @return Clear block
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static long decrypt(byte[] key, long block) throws InvalidKeyException {
+        return process(false, key, block);
+    }
+
+    /**
+     * TDEA encrypt a 64-bit block under a one-shot key, e.g. a session key, with a key schedule of its own that is
+     * zeroised afterwards rather than one from {@link KeyScheduleCache}.
+     * @param key   Single, double or triple length TDEA key
+     * @param block Clear block
+     * @return Encrypted block
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static long encryptOnce(byte[] key, long block) throws InvalidKeyException {
+        BLOCKS.increment();
+        KeySchedule schedule = new KeySchedule(key);
+        try {
+            return schedule.encrypt(block);
+        } finally {
+            schedule.destroy();
+        }
+    }
+
+    /**
+     * TDEA decrypt a 64-bit block under a one-shot key, see {@link #encryptOnce(byte[], long)}.
+     * @param key   Single, double or triple length TDEA key
+     * @param block Encrypted block
+     * @return Clear block
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static long decryptOnce(byte[] key, long block) throws InvalidKeyException {
+        BLOCKS.increment();
+        KeySchedule schedule = new KeySchedule(key);
+        try {
+            return schedule.decrypt(block);
+        } finally {
+            schedule.destroy();
+        }
+    }
+
+    /**
+     * TDEA encrypt one or more 8 byte blocks in ECB mode.
+     * @param key  Single, double or triple length TDEA key
+     * @param data Clear data, must be a multiple of 8 bytes
+     * @return Encrypted data
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static byte[] encrypt(byte[] key, byte[] data) throws InvalidKeyException {
+        byte[] output = new byte[checkLength(data)];
+        for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+            encrypt(key, data, offset, output, offset);
+        }
+        return output;
+    }
+
+    /**
+     * TDEA decrypt one or more 8 byte blocks in ECB mode.
+     * @param key  Single, double or triple length TDEA key
+     * @param data Encrypted data, must be a multiple of 8 bytes
+     * @return Clear data
+     * @throws InvalidKeyException When the key is not 8, 16 or 24 bytes long
+     */
+    public static byte[] decrypt(byte[] key, byte[] data) throws InvalidKeyException {
+        byte[] output = new byte[checkLength(data)];
+        for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+            decrypt(key, data, offset, output, offset);
+        }
+        return output;
+    }
+
+    /**
+     * Return the block cipher backend selected through emv.tdea.backend.
+     * @return JCE or SOFTWARE
+     */
+    public static TdeaBackend getBackend() {
+        return BACKEND;
+    }
+
+    /**
+     * @return Number of TDEA block operations since start up
+     */
+    public static long getBlockCount() {
+        return BLOCKS.sum();
+    }
+
+    /**
+     * Count block operations run on a key schedule directly rather than through the engine.
+     * @param blocks Number of blocks
+     */
+    static void countBlocks(int blocks) {
+        BLOCKS.add(blocks);
+    }
+
+    private static long process(boolean encrypt, byte[] key, long block) throws InvalidKeyException {
+        BLOCKS.increment();
+        // A schedule evicted between lookup and use refuses the block, in which case the key is looked up again
+        while (true) {
+            KeySchedule schedule = KeyScheduleCache.getSchedule(key);
+            try {
+                return encrypt ? schedule.encrypt(block) : schedule.decrypt(block);
+            } catch (IllegalStateException exception) {
+                if (!schedule.isDestroyed()) {
+                    throw exception;
+                }
+            }
+        }
+    }
+
+    private static void process(boolean encrypt, byte[] key, byte[] input, int inputOffset, byte[] output,
+                                int outputOffset) throws InvalidKeyException {
+        BLOCKS.increment();
+        // A schedule evicted between lookup and use refuses the block, in which case the key is looked up again
+        boolean processed;
+        do {
+            processed = KeyScheduleCache.getSchedule(key).process(encrypt, input, inputOffset, output, outputOffset);
+        } while (!processed);
+    }
+
+    /**
+     * Only switch to the software backend once it has been validated against the JCE provider on this JVM.
+     */
+    private static TdeaBackend selectBackend(TdeaBackend backend) {
+        if (backend == TdeaBackend.SOFTWARE && !DesBlockCipher.selfTest()) {
+            Diagnostics.warn("TDEA01", "Software TDEA self test failed, using JCE TDEA backend.");
+            return TdeaBackend.JCE;
+        }
+        return backend;
+    }
+
+    private static int checkLength(byte[] data) {
+        if (data.length % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("TDEA data length must be a multiple of 8 bytes, received "
+                    + data.length + " bytes.");
+        }
+        return data.length;
+    }
+}
@@ -0,0 +1,166 @@
+package com.bc.utils;
+
+import com.bc.enums.EmvTag;
+
+import java.util.Arrays;
+
+/**
+ * Single pass BER-TLV decoder of ICC data, e.g. ISO 8583 DE55. The data objects listed in {@link EmvTag} are indexed
+ * in place, by the offset and length of their value in the decoded array, other data objects are skipped. Nothing is
+ * copied or allocated, so one decoder can be reused from one message to the next, and values can be handed on without
+ * a copy, e.g. the issuer application data to {@link IADParser#wrap(byte[], int, int, boolean)}.
+ * - Tags of up to 3 bytes and lengths of up to 3 bytes (0x82 followed by 2 bytes) are accepted
+ * - Constructed data objects, e.g. a 77 template, are entered rather than skipped, so their data objects are indexed
+ *   in the same pass
+ * - 0x00 and 0xFF bytes between data objects are skipped as padding (EMV Book 3, Annex B)
+ * - A data object of {@link EmvTag} repeated or of an unexpected length is rejected
+ */
+public class TlvDecoder {
+
+    private static final EmvTag[] TAGS = EmvTag.values();
+    /** Open addressing table of the indexed tags, a power of two at least twice the number of tags */
+    private static final int TABLE_SIZE = 32;
+    private static final int[] TABLE_TAGS = new int[TABLE_SIZE];
+    private static final byte[] TABLE_FIELDS = new byte[TABLE_SIZE];
+
+    static {
+        Arrays.fill(TABLE_FIELDS, (byte) -1);
+        for (EmvTag emvTag : TAGS) {
+            int slot = slot(emvTag.getTag());
+            while (TABLE_FIELDS[slot] >= 0) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            TABLE_TAGS[slot] = emvTag.getTag();
+            TABLE_FIELDS[slot] = (byte) emvTag.ordinal();
+        }
+    }
+
+    private byte[] data;
+    /** Value offset in data by tag ordinal, -1 when the tag is absent */
+    private final int[] valueOffsets = new int[TAGS.length];
+    private final int[] valueLengths = new int[TAGS.length];
+
+    /**
+     * Decode ICC data and index the data objects of {@link EmvTag}. The array must not change while values are read.
+     * @param iccData Array holding the ICC data
+     * @param offset  Offset of the ICC data in the array
+     * @param length  ICC data length in bytes
+     * @throws IllegalArgumentException When the data is not valid BER-TLV, or an indexed data object is repeated or of
+     *                                  an unexpected length
+     */
+    public void decode(byte[] iccData, int offset, int length) {
+        data = iccData;
+        Arrays.fill(valueOffsets, -1);
+        Arrays.fill(valueLengths, 0);
+        int index = offset;
+        int end = offset + length;
+        while (index < end) {
+            int first = iccData[index++] & 0xFF;
+            if (first == 0x00 || first == 0xFF) {
+                continue;
+            }
+            int tag = first;
+            if ((first & 0x1F) == 0x1F) {
+                // Multi byte tag, subsequent bytes follow while bit 8 is set
+                do {
+                    if (index >= end || tag > 0xFFFF) {
+                        throw new IllegalArgumentException("DE55: truncated or oversized tag at offset "
+                                + (index - offset) + ".");
+                    }
+                    tag = (tag << 8) | (iccData[index] & 0xFF);
+                } while ((iccData[index++] & 0x80) != 0);
+            }
+            if (index >= end) {
+                throw new IllegalArgumentException("DE55: missing length for tag " + toHex(tag) + ".");
+            }
+            int valueLength = iccData[index++] & 0xFF;
+            if (valueLength > 0x80) {
+                int lengthBytes = valueLength & 0x7F;
+                if (lengthBytes > 2 || index + lengthBytes > end) {
+                    throw new IllegalArgumentException("DE55: invalid length for tag " + toHex(tag) + ".");
+                }
+                valueLength = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    valueLength = (valueLength << 8) | (iccData[index++] & 0xFF);
+                }
+            } else if (valueLength == 0x80) {
+                throw new IllegalArgumentException("DE55: indefinite length for tag " + toHex(tag) + ".");
+            }
+            if (valueLength > end - index) {
+                throw new IllegalArgumentException("DE55: truncated value for tag " + toHex(tag) + ".");
+            }
+            if ((first & 0x20) != 0) {
+                // Constructed, its value is decoded as the data objects that follow
+                continue;
+            }
+            int field = field(tag);
+            if (field >= 0) {
+                EmvTag emvTag = TAGS[field];
+                if (valueOffsets[field] >= 0) {
+                    throw new IllegalArgumentException("DE55: tag " + toHex(tag) + " repeated.");
+                }
+                if (valueLength < emvTag.getMinLength() || valueLength > emvTag.getMaxLength()) {
+                    throw new IllegalArgumentException("DE55: tag " + toHex(tag) + " " + emvTag.getMinLength()
+                            + (emvTag.getMinLength() == emvTag.getMaxLength() ? "" : " to " + emvTag.getMaxLength())
+                            + " bytes expected, received " + valueLength + ".");
+                }
+                valueOffsets[field] = index;
+                valueLengths[field] = valueLength;
+            }
+            index += valueLength;
+        }
+    }
+
+    /**
+     * @return Array the last ICC data was decoded from
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean has(EmvTag emvTag) {
+        return valueOffsets[emvTag.ordinal()] >= 0;
+    }
+
+    /**
+     * @param emvTag Indexed data object
+     * @return Offset of its value in {@link #getData()}, -1 if the ICC data does not hold it
+     */
+    public int offset(EmvTag emvTag) {
+        return valueOffsets[emvTag.ordinal()];
+    }
+
+    /**
+     * @param emvTag Indexed data object
+     * @return Length of its value in bytes, 0 if the ICC data does not hold it
+     */
+    public int length(EmvTag emvTag) {
+        return valueLengths[emvTag.ordinal()];
+    }
+
+    /**
+     * @param emvTag Indexed data object
+     * @return Value in upper case hexadecimal, null if the ICC data does not hold it
+     */
+    public String getHex(EmvTag emvTag) {
+        int offset = valueOffsets[emvTag.ordinal()];
+        return offset < 0 ? null : HexCodec.encode(data, offset, valueLengths[emvTag.ordinal()], true);
+    }
+
+    private static int field(int tag) {
+        for (int slot = slot(tag); TABLE_FIELDS[slot] >= 0; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            if (TABLE_TAGS[slot] == tag) {
+                return TABLE_FIELDS[slot];
+            }
+        }
+        return -1;
+    }
+
+    private static int slot(int tag) {
+        return (tag * 0x9E3779B9) >>> 27;
+    }
+
+    private static String toHex(int tag) {
+        return Integer.toHexString(tag).toUpperCase();
+    }
+}
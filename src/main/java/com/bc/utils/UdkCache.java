@@ -0,0 +1,231 @@
+package com.bc.utils;
+
+import com.bc.enums.UdkDerivationOption;
+import org.apache.commons.codec.DecoderException;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, concurrent cache of card Unique Derivation Keys keyed by MDK, PAN, PAN sequence number and derivation
+ * option. A UDK only changes when the card is reissued, so repeat cards skip the two TDEA operations of the
+ * derivation and, for Option B, the SHA-1.
+ * Eviction:
+ * - When the cache grows beyond emv.udk-cache.max-entries the least recently used entries are evicted in one pass,
+ *   see {@link LruEviction}, so the cost of finding them is spread over many misses
+ * - A UDK older than emv.udk-cache.ttl-seconds is evicted on its next lookup, so rotated MDKs age out
+ * Evicted UDKs and the MDK copies in their cache keys are zeroised. Setting emv.udk-cache.off-heap=true keeps the UDK
+ * bytes in direct buffers outside the Java heap, where the garbage collector never copies them. Setting
+ * emv.udk-cache.max-entries to 0 disables caching altogether.
+ */
+public final class UdkCache {
+
+    private static final int MAX_ENTRIES = ConfigProvider.getConfig()
+            .getOptionalValue("emv.udk-cache.max-entries", Integer.class).orElse(10000);
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(ConfigProvider.getConfig()
+            .getOptionalValue("emv.udk-cache.ttl-seconds", Long.class).orElse(86400L));
+    private static final boolean OFF_HEAP = ConfigProvider.getConfig()
+            .getOptionalValue("emv.udk-cache.off-heap", Boolean.class).orElse(false);
+
+    private static final Map<CacheKey, CachedUdk> UDKS = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LruEviction<CacheKey, CachedUdk> LRU_EVICTION = new LruEviction<>(UDKS, MAX_ENTRIES,
+            cachedUdk -> cachedUdk.lastAccessNanos, UdkCache::evict);
+
+    private UdkCache() {
+    }
+
+    /**
+     * Derivation run on a cache miss.
+     */
+    @FunctionalInterface
+    public interface UdkDerivation {
+        /**
+         * @return 16 byte UDK, the array is zeroised once cached
+         */
+        byte[] derive() throws GeneralSecurityException, DecoderException;
+    }
+
+    /**
+     * Return the UDK for a card, deriving and caching it on first use.
+     * @param mdk        Issuer master key for application cryptograms
+     * @param pan        PAN associated with the card
+     * @param panSeq     PAN sequence number associated with the card
+     * @param option     UDK derivation option
+     * @param derivation Derivation of the UDK, run on a cache miss
+     * @return New array holding the 16 byte UDK
+     * @throws GeneralSecurityException When the derivation fails
+     * @throws DecoderException When the derivation fails
+     */
+    public static byte[] getUdk(byte[] mdk, String pan, String panSeq, UdkDerivationOption option,
+                                UdkDerivation derivation) throws GeneralSecurityException, DecoderException {
+        return getUdk(mdk, pan, panSeq, option, derivation, System.nanoTime());
+    }
+
+    /**
+     * {@link #getUdk(byte[], String, String, UdkDerivationOption, UdkDerivation)} at a given time.
+     * @param now System.nanoTime() of the lookup
+     */
+    static byte[] getUdk(byte[] mdk, String pan, String panSeq, UdkDerivationOption option, UdkDerivation derivation,
+                         long now) throws GeneralSecurityException, DecoderException {
+        if (MAX_ENTRIES <= 0) {
+            MISSES.increment();
+            return derivation.derive();
+        }
+        CacheKey cacheKey = new CacheKey(mdk, pan, panSeq, option);
+        byte[] udk = new byte[16];
+        CachedUdk cachedUdk = UDKS.get(cacheKey);
+        if (cachedUdk != null && now - cachedUdk.createdNanos <= TTL_NANOS && cachedUdk.read(udk)) {
+            HITS.increment();
+            cachedUdk.lastAccessNanos = now;
+            cacheKey.destroy();
+            return udk;
+        }
+        if (cachedUdk != null) {
+            evict(cacheKey, cachedUdk);
+        }
+        MISSES.increment();
+        byte[] derivedUdk = derivation.derive();
+        System.arraycopy(derivedUdk, 0, udk, 0, udk.length);
+        CachedUdk newUdk = new CachedUdk(cacheKey, derivedUdk, now, OFF_HEAP);
+        Arrays.fill(derivedUdk, (byte) 0);
+        if (UDKS.putIfAbsent(cacheKey, newUdk) != null) {
+            // Another thread cached the same card first, both derived the same UDK
+            cacheKey.destroy();
+            newUdk.destroy();
+        } else if (LRU_EVICTION.isNeeded()) {
+            LRU_EVICTION.run();
+        }
+        return udk;
+    }
+
+    /**
+     * Evict and zeroise every cached UDK.
+     */
+    public static void clear() {
+        UDKS.forEach(UdkCache::evict);
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    public static int size() {
+        return UDKS.size();
+    }
+
+    private static void evict(CacheKey cacheKey, CachedUdk cachedUdk) {
+        if (UDKS.remove(cacheKey, cachedUdk)) {
+            EVICTIONS.increment();
+            cachedUdk.destroy();
+            // Zeroise the key the entry was mapped under, which may be a different instance than the lookup key
+            cachedUdk.cacheKey.destroy();
+        }
+    }
+
+    /**
+     * Cached UDK bytes, on or off heap, together with the map key it was inserted under.
+     */
+    static final class CachedUdk {
+
+        private final CacheKey cacheKey;
+        private final byte[] heapUdk;
+        private final ByteBuffer offHeapUdk;
+        private final long createdNanos;
+        private volatile long lastAccessNanos;
+        private volatile boolean destroyed;
+
+        CachedUdk(CacheKey cacheKey, byte[] udk, long nowNanos, boolean offHeap) {
+            this.cacheKey = cacheKey;
+            if (offHeap) {
+                heapUdk = null;
+                offHeapUdk = ByteBuffer.allocateDirect(udk.length);
+                offHeapUdk.put(udk);
+            } else {
+                heapUdk = udk.clone();
+                offHeapUdk = null;
+            }
+            createdNanos = nowNanos;
+            lastAccessNanos = nowNanos;
+        }
+
+        /**
+         * Copy the UDK into a caller supplied array.
+         * @return False if the UDK was zeroised by an eviction, in which case the output must not be used
+         */
+        boolean read(byte[] output) {
+            if (heapUdk != null) {
+                System.arraycopy(heapUdk, 0, output, 0, heapUdk.length);
+            } else {
+                for (int i = 0; i < output.length; i++) {
+                    output[i] = offHeapUdk.get(i);
+                }
+            }
+            return !destroyed;
+        }
+
+        boolean isOffHeap() {
+            return offHeapUdk != null;
+        }
+
+        void destroy() {
+            destroyed = true;
+            if (heapUdk != null) {
+                Arrays.fill(heapUdk, (byte) 0);
+            } else {
+                for (int i = 0; i < offHeapUdk.capacity(); i++) {
+                    offHeapUdk.put(i, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Map key made of the MDK bytes, the derivation option and the PAN and PAN sequence number digits.
+     */
+    private static final class CacheKey {
+
+        private final byte[] key;
+        private final int hash;
+
+        private CacheKey(byte[] mdk, String pan, String panSeq, UdkDerivationOption option) {
+            byte[] card = (pan + '|' + panSeq).getBytes(StandardCharsets.US_ASCII);
+            key = new byte[mdk.length + 1 + card.length];
+            System.arraycopy(mdk, 0, key, 0, mdk.length);
+            key[mdk.length] = (byte) option.ordinal();
+            System.arraycopy(card, 0, key, mdk.length + 1, card.length);
+            hash = Arrays.hashCode(key);
+        }
+
+        private void destroy() {
+            Arrays.fill(key, (byte) 0);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CacheKey && Arrays.equals(key, ((CacheKey) other).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
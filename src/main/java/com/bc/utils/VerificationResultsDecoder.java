@@ -0,0 +1,120 @@
+package com.bc.utils;
+
+import com.bc.enums.IadFormat;
+import com.bc.enums.IadField;
+import com.bc.enums.VerificationFlag;
+import com.bc.enums.VerificationLayout;
+import org.apache.commons.codec.DecoderException;
+
+import java.util.EnumSet;
+
+/**
+ * Decode the Terminal Verification Results and the Card Verification Results of every IAD format into a bitmask of
+ * their layout, and the bitmask into its named {@link VerificationFlag} set.
+ * Bitmasks number the bits as they are read: byte 1 bit b8 is bit 0, byte 1 bit b1 bit 7, byte 2 bit b8 bit 8 and so
+ * on, so the same bit of a layout is always at the same position whatever the length of the value. Bits of bytes that
+ * are not flags, e.g. the Visa CVR length, are cleared.
+ */
+public final class VerificationResultsDecoder {
+
+    /** Longest layout, the M/Chip 4 CVR */
+    public static final int MAX_BITS = 48;
+
+    private static final VerificationLayout[] CVR_LAYOUTS = new VerificationLayout[IadFormat.values().length];
+    /** Flag by layout and bit index, null for bits without a name */
+    private static final VerificationFlag[][] FLAGS =
+            new VerificationFlag[VerificationLayout.values().length][MAX_BITS];
+
+    static {
+        CVR_LAYOUTS[IadFormat.VISA_FORMAT_0_1_3.ordinal()] = VerificationLayout.VISA;
+        CVR_LAYOUTS[IadFormat.VISA_FORMAT_2.ordinal()] = VerificationLayout.CCD;
+        CVR_LAYOUTS[IadFormat.CCD.ordinal()] = VerificationLayout.CCD;
+        CVR_LAYOUTS[IadFormat.MCHIP_2_1.ordinal()] = VerificationLayout.MCHIP_2;
+        CVR_LAYOUTS[IadFormat.MCHIP_2_05.ordinal()] = VerificationLayout.MCHIP_2;
+        CVR_LAYOUTS[IadFormat.MCHIP_4.ordinal()] = VerificationLayout.MCHIP_4;
+        for (VerificationFlag flag : VerificationFlag.values()) {
+            FLAGS[flag.getLayout().ordinal()][flag.getBitIndex()] = flag;
+        }
+    }
+
+    private VerificationResultsDecoder() {
+    }
+
+    /**
+     * @param iadFormat IAD format
+     * @return Layout of the CVR of the IAD format
+     */
+    public static VerificationLayout cvrLayout(IadFormat iadFormat) {
+        return CVR_LAYOUTS[iadFormat.ordinal()];
+    }
+
+    /**
+     * @param iadParser Parser over a valid IAD
+     * @return CVR bitmask, in the layout {@link #cvrLayout(IadFormat)} of the IAD format
+     * @throws IllegalArgumentException When the IAD is not valid or too short to hold the CVR
+     */
+    public static long cvrBits(IADParser iadParser) {
+        if (iadParser.isInvalidIad()) {
+            throw new IllegalArgumentException("Issuer application data is not of a known IAD format.");
+        }
+        VerificationLayout layout = cvrLayout(iadParser.getFormat());
+        if (iadParser.length(IadField.CARD_VERIFICATION_RESULTS) != layout.getLength()) {
+            throw new IllegalArgumentException(iadParser.getFormat() + " IAD too short to hold the CVR.");
+        }
+        return toBits(layout, iadParser.getCardVerificationResults());
+    }
+
+    /**
+     * @param tvr Terminal Verification Results, 10 hexadecimal digits
+     * @return TVR bitmask
+     * @throws DecoderException When the TVR is not 10 hexadecimal digits
+     */
+    public static long tvrBits(CharSequence tvr) throws DecoderException {
+        if (tvr.length() != 2 * VerificationLayout.TVR.getLength()) {
+            throw new DecoderException("TVR: 10 hexadecimal digits expected, received \"" + tvr + "\".");
+        }
+        return toBits(VerificationLayout.TVR, HexCodec.decodeLong(tvr, 0, tvr.length()));
+    }
+
+    /**
+     * @param layout Layout of the value
+     * @param value  Value read big endian, e.g. 0x0000008000 for a TVR of 0000008000
+     * @return Bitmask of the value
+     */
+    public static long toBits(VerificationLayout layout, long value) {
+        return (Long.reverse(value) >>> (64 - 8 * layout.getLength())) & ~layout.getIgnoredBits();
+    }
+
+    /**
+     * @param layout Layout of the bitmask
+     * @param bits   Bitmask
+     * @return Named flags set in the bitmask
+     */
+    public static EnumSet<VerificationFlag> flags(VerificationLayout layout, long bits) {
+        EnumSet<VerificationFlag> flags = EnumSet.noneOf(VerificationFlag.class);
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            VerificationFlag flag = flag(layout, Long.numberOfTrailingZeros(remaining));
+            if (flag != null) {
+                flags.add(flag);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * @param layout   Layout
+     * @param bitIndex Bit index in the bitmask
+     * @return Flag at the bit index, null if the bit has no name
+     */
+    public static VerificationFlag flag(VerificationLayout layout, int bitIndex) {
+        return bitIndex < MAX_BITS ? FLAGS[layout.ordinal()][bitIndex] : null;
+    }
+
+    /**
+     * @param bitIndex Bit index in a bitmask
+     * @return Byte and bit as numbered in the specifications, e.g. B1b8 for bit 0
+     */
+    public static String bitName(int bitIndex) {
+        return "B" + (bitIndex / 8 + 1) + "b" + (8 - bitIndex % 8);
+    }
+}
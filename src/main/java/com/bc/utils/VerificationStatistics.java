@@ -0,0 +1,81 @@
+package com.bc.utils;
+
+import com.bc.enums.VerificationLayout;
+
+/**
+ * Per bit counts and bit pair co-occurrence counts of TVR and CVR bitmasks, by layout. An instance is not thread
+ * safe: parallel aggregation gives every worker its own instance and merges them once the workers are done.
+ */
+public class VerificationStatistics {
+
+    private static final int LAYOUTS = VerificationLayout.values().length;
+    private static final int BITS = VerificationResultsDecoder.MAX_BITS;
+
+    private final long[] transactions = new long[LAYOUTS];
+    private final long[][] bitCounts = new long[LAYOUTS][BITS];
+    /** Pair counts by layout, at [low bit * BITS + high bit] for every pair of distinct bits set together */
+    private final long[][] pairCounts = new long[LAYOUTS][BITS * BITS];
+
+    /**
+     * Count one bitmask.
+     * @param layout Layout of the bitmask
+     * @param bits   TVR or CVR bitmask
+     */
+    public void add(VerificationLayout layout, long bits) {
+        int layoutIndex = layout.ordinal();
+        transactions[layoutIndex]++;
+        long[] layoutBitCounts = bitCounts[layoutIndex];
+        long[] layoutPairCounts = pairCounts[layoutIndex];
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            int low = Long.numberOfTrailingZeros(remaining);
+            layoutBitCounts[low]++;
+            int row = low * BITS;
+            for (long higher = remaining & (remaining - 1); higher != 0; higher &= higher - 1) {
+                layoutPairCounts[row + Long.numberOfTrailingZeros(higher)]++;
+            }
+        }
+    }
+
+    /**
+     * Add the counts of another instance to this one.
+     * @param other Statistics no longer being added to
+     */
+    public void merge(VerificationStatistics other) {
+        for (int layout = 0; layout < LAYOUTS; layout++) {
+            transactions[layout] += other.transactions[layout];
+            for (int bit = 0; bit < BITS; bit++) {
+                bitCounts[layout][bit] += other.bitCounts[layout][bit];
+            }
+            for (int pair = 0; pair < BITS * BITS; pair++) {
+                pairCounts[layout][pair] += other.pairCounts[layout][pair];
+            }
+        }
+    }
+
+    /**
+     * @param layout Layout
+     * @return Number of bitmasks of the layout counted
+     */
+    public long getTransactions(VerificationLayout layout) {
+        return transactions[layout.ordinal()];
+    }
+
+    /**
+     * @param layout   Layout
+     * @param bitIndex Bit index
+     * @return Number of bitmasks of the layout with the bit set
+     */
+    public long getBitCount(VerificationLayout layout, int bitIndex) {
+        return bitCounts[layout.ordinal()][bitIndex];
+    }
+
+    /**
+     * @param layout Layout
+     * @param first  Bit index
+     * @param second Another bit index
+     * @return Number of bitmasks of the layout with both bits set
+     */
+    public long getPairCount(VerificationLayout layout, int first, int second) {
+        return pairCounts[layout.ordinal()][Math.min(first, second) * BITS + Math.max(first, second)];
+    }
+}
@@ -1,5 +1,6 @@
 package com.bc.utils;
 
+import com.bc.metrics.EmvMetrics;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.codec.DecoderException;
@@ -43,35 +44,29 @@ public class VisaPvv {
      */
     public void generateVisaPvv() throws NoSuchPaddingException, IllegalBlockSizeException,
             NoSuchAlgorithmException, BadPaddingException, InvalidKeyException, DecoderException {
-
-        CryptoFunctions cryptoFunctions = new CryptoFunctions();
-        StringBuilder pvv = new StringBuilder();
-        cryptoFunctions.setInputData(deriveTsp());
-        cryptoFunctions.setKey(key);
-        String encryptedTsp = cryptoFunctions.tDEAEncrypt();
-        // Extract numeric digits, if any from the encrypted TSP data
-        for (int i = 0; i < encryptedTsp.length(); i++) {
-            String pvvDigit = encryptedTsp.substring(i, i + 1);
-            if (DataChecker.isNumeric(pvvDigit)) {
-                pvv.append(pvvDigit);
-            }
-            if (pvv.length() == 4) {
-                break;
-            }
-        }
-        // If PVV length is less than 4 digits, convert A through F hex chars to numbers by substituting x'10'
-        if (pvv.length() < 4) {
-            for (int i = 0; i < encryptedTsp.length(); i++) {
-                String pvvDigit = encryptedTsp.substring(i, i + 1);
-                if (!DataChecker.isNumeric(pvvDigit)) {
-                    pvv.append(convertHexToDigits(pvvDigit));
+        long started = EmvMetrics.start();
+        try {
+            long encryptedTsp = TdeaEngine.encrypt(HexCodec.decode(key), HexCodec.decodeBlock(deriveTsp()));
+            char [] pvv = new char[4];
+            int pvvLength = 0;
+            // Extract numeric digits, if any from the encrypted TSP data
+            for (int i = 0; i < 16 && pvvLength < pvv.length; i++) {
+                int pvvNibble = Block64.nibble(encryptedTsp, i);
+                if (pvvNibble < 10) {
+                    pvv[pvvLength++] = (char) ('0' + pvvNibble);
                 }
-                if (pvv.length() == 4) {
-                    break;
+            }
+            // If PVV length is less than 4 digits, convert A through F hex chars to numbers by substituting x'10'
+            for (int i = 0; i < 16 && pvvLength < pvv.length; i++) {
+                int pvvNibble = Block64.nibble(encryptedTsp, i);
+                if (pvvNibble >= 10) {
+                    pvv[pvvLength++] = (char) ('0' + pvvNibble - 10);
                 }
             }
+            pinVerificationValue = new String(pvv);
+        } finally {
+            EmvMetrics.record(EmvMetrics.Phase.PVV, started);
         }
-        pinVerificationValue = pvv.toString();
     }
 
     /**
@@ -91,28 +86,4 @@ public class VisaPvv {
                + (pin.substring(0, MAX_PVV_TSP_PIN_LEN));
 
     }
-
-    /**
-     * Convert hexadecimal character to numeric digit by subtracting x"0" from hexadecimal char
-     * @param hexChar Hexadecimal character
-     * @return Converted numeric digit
-     */
-    private String convertHexToDigits(String hexChar){
-         switch (hexChar) {
-             case "A":
-                 return  "0";
-             case "B":
-                 return  "1";
-             case "C":
-                 return  "2";
-             case "D":
-                 return  "3";
-             case "E":
-                 return  "4";
-             case "F":
-                 return  "5";
-             default:
-                 return null;
-        }
-    }
 }
@@ -1,28 +1,38 @@
 package com.bc.utils;
 
 import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 
 public class Xor {
     /**
-     * Perform exclusive or operation on ARQC data segments and return the xOred result as a String
+     * Perform exclusive or operation on two hexadecimal strings and return the xOred result as a String. The
+     * operands are xOred digit by digit, without decoding them into byte arrays first.
      * @param leftOperand   Value to be used as the left operand in the xOr function
      * @param rightOperand  Value to be used as the right operand in the xOr function
-     * @return Exclusive or data
+     * @return Exclusive or data, lower case hexadecimal
+     * @throws DecoderException When an operand has an odd length or contains a non hexadecimal character
      */
     public String exclusiveOr(String leftOperand, String rightOperand) throws DecoderException {
 
-//        byte [] leftOperandBytes = HexFormat.of().parseHex(leftOperand); // Convert leftOperand to Hexadecimal byte array
-//        byte [] rightOperandBytes = HexFormat.of().parseHex(rightOperand); // Convert rightOperand to Hexadecimal byte array
-        byte [] leftOperandBytes = Hex.decodeHex(leftOperand); // Convert leftOperand to Hexadecimal byte array
-        byte [] rightOperandBytes = Hex.decodeHex(rightOperand); // Convert rightOperand to Hexadecimal byte array
-        byte [] xOredData = new byte [leftOperandBytes.length]; // New byte array to store xored value
-
-        for(int i = 0; i < leftOperandBytes.length; i++){
-            xOredData[i] = (byte) (leftOperandBytes[i] ^ rightOperandBytes[i]);
+        if ((leftOperand.length() & 0x01) != 0 || (rightOperand.length() & 0x01) != 0) {
+            throw new DecoderException("Odd number of characters.");
+        }
+        char [] xOredData = new char [leftOperand.length()]; // New char array to store xored value
+        for (int i = 0; i < xOredData.length; i++) {
+            xOredData[i] = HexCodec.toDigit(HexCodec.digit(leftOperand, i) ^ HexCodec.digit(rightOperand, i), false);
         }
+        return new String(xOredData);
+    }
 
-        return Hex.encodeHexString(xOredData);
-//        return HexFormat.of().formatHex(xOredData);
+    /**
+     * Perform exclusive or operation on two byte arrays into a caller supplied result array. The result array may be
+     * either of the operands.
+     * @param leftOperand   Value to be used as the left operand in the xOr function
+     * @param rightOperand  Value to be used as the right operand in the xOr function
+     * @param result        Array receiving the xOred data, must be at least as long as the left operand
+     */
+    public static void exclusiveOr(byte [] leftOperand, byte [] rightOperand, byte [] result) {
+        for(int i = 0; i < leftOperand.length; i++){
+            result[i] = (byte) (leftOperand[i] ^ rightOperand[i]);
+        }
     }
 }
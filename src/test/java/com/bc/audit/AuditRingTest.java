@@ -0,0 +1,43 @@
+package com.bc.audit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link AuditRing} keeps records in order, and drops and counts them rather than waiting once full.
+ */
+class AuditRingTest {
+
+    @Test
+    void dropsAndCountsWhenFull() {
+        AuditRing<Integer> ring = new AuditRing<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertFalse(ring.offer(5));
+        assertEquals(2, ring.getDroppedCount());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(6));
+        assertFalse(ring.offer(7));
+        assertEquals(3, ring.getDroppedCount());
+        for (int expected : new int[] {1, 2, 3, 6}) {
+            assertEquals(expected, ring.poll());
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        AuditRing<Integer> ring = new AuditRing<>(5);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(8));
+    }
+}
@@ -0,0 +1,92 @@
+package com.bc.audit;
+
+import com.bc.requestResponse.PinGenerateRequest;
+import com.bc.requestResponse.PinIssuanceRequest;
+import com.bc.requestResponse.PinblockDecryptRequest;
+import com.bc.requestResponse.PinblockGenerateRequest;
+import com.bc.requestResponse.PvvGenerateRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Masking of audit records by {@link AuditTemplate}: PANs keep their first 6 and last 4 digits, and no key, PIN, PIN
+ * block or PIN offset of a PIN request is ever written in clear.
+ */
+class AuditTemplateTest {
+
+    private static final List<Class<?>> PIN_REQUESTS = List.of(PinGenerateRequest.class, PinIssuanceRequest.class,
+            PvvGenerateRequest.class, PinblockDecryptRequest.class, PinblockGenerateRequest.class);
+
+    @Test
+    void masksPan() {
+        assertEquals("476173******0010", AuditTemplate.mask("4761739001010010", AuditTemplate.Mask.PAN));
+        assertEquals("476173*********0123", AuditTemplate.mask("4761739001010010123", AuditTemplate.Mask.PAN));
+        assertEquals("476173*1234", AuditTemplate.mask("47617391234", AuditTemplate.Mask.PAN));
+        // Too short to show 10 digits and still hide any
+        assertEquals("****", AuditTemplate.mask("4761739001", AuditTemplate.Mask.PAN));
+        assertEquals("****", AuditTemplate.mask("", AuditTemplate.Mask.PAN));
+    }
+
+    @Test
+    void redactsWithoutRevealingLength() {
+        assertEquals("****", AuditTemplate.mask("0123456789ABCDEFFEDCBA9876543210", AuditTemplate.Mask.REDACT));
+        assertEquals("****", AuditTemplate.mask("1", AuditTemplate.Mask.REDACT));
+        assertEquals("1234", AuditTemplate.mask("1234", AuditTemplate.Mask.CLEAR));
+    }
+
+    @Test
+    void pinRequestsNeverWriteKeysOrPins() throws Exception {
+        for (Class<?> requestType : PIN_REQUESTS) {
+            AuditTemplate<?> template = AuditTemplate.forType(requestType);
+            assertNotNull(template, requestType.getSimpleName());
+            // Every String attribute set to a value of its own, those of keys and PINs must not appear in the record
+            Object request = requestType.getDeclaredConstructor().newInstance();
+            Map<String, String> values = new HashMap<>();
+            for (Method method : requestType.getMethods()) {
+                if (method.getName().startsWith("set") && method.getParameterCount() == 1
+                        && method.getParameterTypes()[0] == String.class) {
+                    String value = String.format("%016d", 1000 + values.size());
+                    method.invoke(request, value);
+                    values.put(method.getName().substring(3), value);
+                }
+            }
+            String record = write(template, request);
+            int sensitive = 0;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (isKeyOrPin(entry.getKey())) {
+                    sensitive++;
+                    assertFalse(record.contains(entry.getValue()), requestType.getSimpleName() + "."
+                            + entry.getKey() + " written in clear: " + record);
+                }
+            }
+            assertTrue(sensitive > 0, requestType.getSimpleName());
+        }
+    }
+
+    private static boolean isKeyOrPin(String attribute) {
+        return attribute.endsWith("Key") || attribute.equals("Pin") || attribute.equals("PinBlock")
+                || attribute.equals("PinOffset");
+    }
+
+    private static String write(AuditTemplate<?> template, Object request) throws Exception {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            template.write(request, generator);
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.bc.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batch ARQC generation of {@link CryptogramBatchServiceImpl}: every request is answered in place, malformed JSON ends
+ * the batch, and reading stops while results are not being written, at the default of 256 requests in flight.
+ */
+class CryptogramBatchServiceImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final String REQUEST = "{\"Pan\":\"4761739001010010\",\"PanSequence\":\"01\","
+            + "\"CryptogramMasterKey\":\"0123456789ABCDEFFEDCBA9876543210\",\"AmountAuthorised\":\"1000\","
+            + "\"AmountOther\":\"0\",\"TerminalCountryCode\":\"826\",\"TerminalVerificationResults\":\"0000008000\","
+            + "\"TransactionCurrencyCode\":\"826\",\"TransactionDate\":\"2023-09-01\",\"TransactionType\":\"00\","
+            + "\"UnpredictableNumber\":\"A1B2C3D4\",\"ApplicationInterchangeProfile\":\"3800\","
+            + "\"ApplicationTransactionCounter\":\"0001\",\"IssuerApplicationData\":\"06010A03A00000\","
+            + "\"CSUorARC\":\"30\"}";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static Validator validator;
+
+    @BeforeAll
+    static void createValidator() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Test
+    void reportsInvalidRequestsInPlace() throws Exception {
+        Map<Long, JsonNode> results = generate("[" + REQUEST + ","
+                + REQUEST.replace("4761739001010010", "12") + ","
+                + "{\"Pan\":{}},"
+                + "42,"
+                + REQUEST.replace("\"CSUorARC\":\"30\"", "\"CSUorARC\":\"3030\"") + ","
+                + REQUEST + "]");
+        assertEquals(6, results.size());
+        assertEquals(16, results.get(0L).get("ARQC").asText().length());
+        assertNull(results.get(0L).get("Error"));
+        assertEquals("Pan is required, must be numeric and 16 to 19 digits long.",
+                results.get(1L).get("Error").asText());
+        for (long index = 1; index < 5; index++) {
+            assertNull(results.get(index).get("ARQC"), "Index " + index);
+            assertTrue(results.get(index).get("Error").asText().length() > 0, "Index " + index);
+        }
+        assertEquals(results.get(0L).get("ARQC"), results.get(5L).get("ARQC"));
+    }
+
+    @Test
+    void malformedJsonEndsTheBatch() throws Exception {
+        Map<Long, JsonNode> results = generate(REQUEST + "\n" + REQUEST + "\n{\"Pan\": 4761\n" + REQUEST + "\n");
+        assertEquals(3, results.size());
+        assertNull(results.get(1L).get("Error"));
+        assertTrue(results.get(2L).get("Error").asText().startsWith("Malformed JSON: "));
+
+        results = generate("[" + REQUEST + "," + REQUEST + "}");
+        assertEquals(3, results.size());
+        assertTrue(results.get(2L).get("Error").asText().startsWith("Malformed JSON: "));
+    }
+
+    @Test
+    void readingWaitsForResultsToBeWritten() throws Exception {
+        int requests = 4000;
+        byte[] batch = (REQUEST + "\n").repeat(requests).getBytes(StandardCharsets.UTF_8);
+        AtomicLong bytesRead = new AtomicLong();
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(batch)) {
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int count = super.read(bytes, offset, length);
+                bytesRead.addAndGet(Math.max(0, count));
+                return count;
+            }
+        };
+        CountDownLatch released = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int value) {
+                write(new byte[] {(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                try {
+                    released.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (written) {
+                    written.write(bytes, offset, length);
+                }
+            }
+        };
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread batchThread = new Thread(() -> {
+            try {
+                CryptogramBatchServiceImpl.generateArqcAndArpcBatch(input, output, validator);
+            } catch (Exception exception) {
+                failure.set(exception);
+            }
+        });
+        batchThread.start();
+
+        assertTimeoutPreemptively(TIMEOUT, () -> {
+            // Wait for the reader to stall behind the blocked writer
+            long read;
+            do {
+                read = bytesRead.get();
+                Thread.sleep(300);
+            } while (read != bytesRead.get());
+            // Requests in flight, results written but not flushed and the parser's read buffer
+            int requestSize = REQUEST.length() + 1;
+            assertTrue(read < (MAX_IN_FLIGHT + 128) * requestSize + 8000L, read + " bytes read");
+            released.countDown();
+            batchThread.join();
+        });
+        assertNull(failure.get());
+        assertEquals(requests, results(written.toString(StandardCharsets.UTF_8)).size());
+    }
+
+    private static Map<Long, JsonNode> generate(String batch) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTimeoutPreemptively(TIMEOUT, () -> CryptogramBatchServiceImpl.generateArqcAndArpcBatch(
+                new ByteArrayInputStream(batch.getBytes(StandardCharsets.UTF_8)), output, validator));
+        return results(output.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return Result lines by index, each index at most once
+     */
+    private static Map<Long, JsonNode> results(String lines) throws IOException {
+        Map<Long, JsonNode> results = new TreeMap<>();
+        for (String line : lines.split("\n")) {
+            JsonNode result = OBJECT_MAPPER.readTree(line);
+            assertNull(results.put(result.get("Index").asLong(), result), line);
+        }
+        return results;
+    }
+}
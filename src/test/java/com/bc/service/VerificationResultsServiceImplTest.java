@@ -0,0 +1,109 @@
+package com.bc.service;
+
+import com.bc.enums.VerificationLayout;
+import com.bc.requestResponse.VerificationLayoutStatistics;
+import com.bc.requestResponse.VerificationResultsAnalysis;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Transaction file analysis of {@link VerificationResultsServiceImpl}, elements that are not valid transactions are
+ * counted as invalid and never stop the analysis.
+ */
+class VerificationResultsServiceImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final String VISA_TRANSACTION =
+            "{\"Pan\":\"4761739001010010\",\"IssuerApplicationData\":\"06010A03A00000\"}";
+    private static final String TVR_TRANSACTION = "{\"TerminalVerificationResults\":\"0000008000\"}";
+
+    private static Validator validator;
+
+    @BeforeAll
+    static void createValidator() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Test
+    void countsValidTransactions() {
+        VerificationResultsAnalysis analysis = analyse("[" + VISA_TRANSACTION + "," + TVR_TRANSACTION + "]");
+        assertEquals(2, analysis.getTransactions());
+        assertEquals(0, analysis.getInvalidTransactions());
+        assertEquals(1, layout(analysis, VerificationLayout.TVR).getTransactions());
+        assertEquals(1, layout(analysis, VerificationLayout.TVR).getBits().size());
+    }
+
+    @Test
+    void countsNullAndMalformedElementsAsInvalid() {
+        VerificationResultsAnalysis analysis = analyse("[null, 42, \"text\", [], {},"
+                + " {\"Pan\":{}},"
+                + " {\"TerminalVerificationResults\":\"ZZ\"},"
+                + " {\"TerminalVerificationResults\":\"00000080\"},"
+                + " {\"IssuerApplicationData\":\"06010A03A00000\"},"
+                + " {\"Pan\":\"47617390\",\"IssuerApplicationData\":\"06010A03A00000\"},"
+                + VISA_TRANSACTION + "," + TVR_TRANSACTION + "]");
+        assertEquals(12, analysis.getTransactions());
+        assertEquals(10, analysis.getInvalidTransactions());
+        assertEquals(1, layout(analysis, VerificationLayout.TVR).getTransactions());
+    }
+
+    @Test
+    void countsNullNdjsonLinesAsInvalid() {
+        VerificationResultsAnalysis analysis = analyse("null\n" + TVR_TRANSACTION + "\n\"text\"\n"
+                + VISA_TRANSACTION + "\n");
+        assertEquals(4, analysis.getTransactions());
+        assertEquals(2, analysis.getInvalidTransactions());
+    }
+
+    @Test
+    void completesWhenEveryChunkIsInvalid() {
+        // More chunks of nulls than the workers and their queue hold, which would block the reader if nulls stopped
+        // the workers
+        int elements = 8 * 1024 * Runtime.getRuntime().availableProcessors();
+        StringBuilder transactions = new StringBuilder(elements * 5 + 2).append('[');
+        for (int i = 0; i < elements; i++) {
+            transactions.append(i == 0 ? "null" : ",null");
+        }
+        VerificationResultsAnalysis analysis = analyse(transactions.append(']').toString());
+        assertEquals(elements, analysis.getTransactions());
+        assertEquals(elements, analysis.getInvalidTransactions());
+    }
+
+    @Test
+    void malformedJsonEndsTheAnalysis() {
+        assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IOException.class,
+                () -> VerificationResultsServiceImpl.analyse(stream("[" + TVR_TRANSACTION + ", {\"Pan\":"),
+                        validator)));
+    }
+
+    private static VerificationResultsAnalysis analyse(String transactions) {
+        return assertTimeoutPreemptively(TIMEOUT,
+                () -> VerificationResultsServiceImpl.analyse(stream(transactions), validator));
+    }
+
+    private static InputStream stream(String transactions) {
+        return new ByteArrayInputStream(transactions.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static VerificationLayoutStatistics layout(VerificationResultsAnalysis analysis,
+                                                       VerificationLayout layout) {
+        for (VerificationLayoutStatistics layoutStatistics : analysis.getLayouts()) {
+            if (layoutStatistics.getLayout() == layout) {
+                return layoutStatistics;
+            }
+        }
+        throw new AssertionError("No statistics of layout " + layout);
+    }
+}
@@ -0,0 +1,88 @@
+package com.bc.tcp;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Splitting a connection's byte stream into frames with {@link CommandFrameDecoder}, whatever the read boundaries.
+ */
+class CommandFrameDecoderTest {
+
+    private static final int FRAMES = 40;
+
+    private final List<Buffer> frames = new ArrayList<>();
+    private final CommandFrameDecoder decoder = new CommandFrameDecoder(frames::add);
+
+    @Test
+    void framesWithinOneRead() {
+        Buffer stream = stream();
+        decoder.handle(stream);
+        assertFrames();
+    }
+
+    @Test
+    void framesSplitAcrossReads() {
+        Buffer stream = stream();
+        // Every read size from a single byte, so reads end within the length prefix, the header and the fields
+        for (int readSize = 1; readSize <= 16; readSize++) {
+            frames.clear();
+            for (int position = 0; position < stream.length(); position += readSize) {
+                decoder.handle(stream.getBuffer(position, Math.min(position + readSize, stream.length())));
+            }
+            assertFrames();
+        }
+    }
+
+    @Test
+    void holdsIncompleteFrame() {
+        Buffer stream = stream();
+        Buffer first = frame(0);
+        decoder.handle(stream.getBuffer(0, first.length() + 1));
+        assertEquals(1, frames.size());
+        decoder.handle(stream.getBuffer(first.length() + 1, first.length() + 2));
+        assertEquals(1, frames.size());
+        decoder.handle(stream.getBuffer(first.length() + 2, stream.length()));
+        assertFrames();
+    }
+
+    @Test
+    void emptyFrame() {
+        decoder.handle(Buffer.buffer(new byte[] {0, 0, 0, 1, 'X'}));
+        decoder.handle(Buffer.buffer(new byte[] {0}));
+        assertEquals(2, frames.size());
+        assertEquals(0, frames.get(0).length());
+        assertEquals(1, frames.get(1).length());
+    }
+
+    /**
+     * Frames of increasing length, so that a frame passed on with the wrong bounds does not match
+     */
+    private static Buffer stream() {
+        Buffer stream = Buffer.buffer();
+        for (int i = 0; i < FRAMES; i++) {
+            stream.appendBuffer(frame(i));
+        }
+        return stream;
+    }
+
+    private static Buffer frame(int index) {
+        Buffer frame = CommandFrame.request(index, "PV");
+        for (int i = 0; i < index; i++) {
+            frame.appendUnsignedByte((short) (index + i));
+        }
+        return CommandFrame.end(frame);
+    }
+
+    private void assertFrames() {
+        assertEquals(FRAMES, frames.size());
+        for (int i = 0; i < FRAMES; i++) {
+            Buffer expected = frame(i);
+            assertEquals(expected.getBuffer(CommandFrame.LENGTH_SIZE, expected.length()), frames.get(i));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.bc.tcp;
+
+import com.bc.utils.HexCodec;
+import io.vertx.core.buffer.Buffer;
+import org.apache.commons.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Byte layout of {@link CommandFrame} requests and responses, and reading their fields back.
+ */
+class CommandFrameTest {
+
+    @Test
+    void requestLayout() throws Exception {
+        Buffer request = CommandFrame.request(0x01020304, "PO");
+        CommandFrame.appendDigits(request, "4761739001010010");
+        CommandFrame.appendDigits(request, "123");
+        CommandFrame.appendHex(request, "0123456789ABCDEF");
+        CommandFrame.appendVarHex(request, "06010A03A00000");
+        CommandFrame.end(request);
+        assertEquals("0022" + "01020304" + "504F"
+                        + "10" + "4761739001010010"
+                        + "03" + "123F"
+                        + "0123456789ABCDEF"
+                        + "07" + "06010A03A00000",
+                hex(request));
+        assertEquals(request.length() - CommandFrame.LENGTH_SIZE, request.getUnsignedShort(0));
+    }
+
+    @Test
+    void readsRequestFields() throws Exception {
+        Buffer request = CommandFrame.request(-2, "PV");
+        CommandFrame.appendDigits(request, "");
+        CommandFrame.appendDigits(request, "12345");
+        CommandFrame.appendHex(request, "ab");
+        CommandFrame.appendVarHex(request, "");
+        CommandFrame frame = new CommandFrame(frame(request), CommandFrame.REQUEST_HEADER_SIZE);
+        assertEquals(-2, frame.getCorrelationId());
+        assertEquals("PV", frame.getCode());
+        assertEquals("", frame.readDigits());
+        assertEquals("12345", frame.readDigits());
+        assertFalse(frame.isFullyRead());
+        assertEquals("AB", frame.readHex(1));
+        assertEquals("", frame.readVarHex());
+        assertTrue(frame.isFullyRead());
+    }
+
+    @Test
+    void responseLayout() throws Exception {
+        Buffer response = CommandFrame.end(CommandFrame.appendHex(CommandFrame.response(7, "PP", "00"), "ABCD"));
+        assertEquals("000A" + "00000007" + "5050" + "3030" + "ABCD", hex(response));
+        CommandFrame frame = new CommandFrame(frame(response), CommandFrame.RESPONSE_HEADER_SIZE);
+        assertEquals(7, frame.getCorrelationId());
+        assertEquals("PP", frame.getCode());
+        assertEquals("00", frame.getErrorCode());
+        assertEquals("ABCD", frame.readHex(2));
+
+        Buffer error = CommandFrame.end(CommandFrame.response(7, "PP", "15")
+                .appendString("PIN offset missing."));
+        frame = new CommandFrame(frame(error), CommandFrame.RESPONSE_HEADER_SIZE);
+        assertEquals("15", frame.getErrorCode());
+        assertEquals("PIN offset missing.", frame.readRemainingText());
+        assertTrue(frame.isFullyRead());
+    }
+
+    @Test
+    void rejectsTruncatedFields() throws Exception {
+        Buffer request = CommandFrame.appendHex(CommandFrame.request(1, "PT"), "10" + "47617390");
+        CommandFrame truncated = new CommandFrame(frame(CommandFrame.end(request)),
+                CommandFrame.REQUEST_HEADER_SIZE);
+        assertThrows(IllegalArgumentException.class, truncated::readDigits);
+
+        CommandFrame empty = new CommandFrame(frame(CommandFrame.end(CommandFrame.request(1, "PT"))),
+                CommandFrame.REQUEST_HEADER_SIZE);
+        assertThrows(IllegalArgumentException.class, empty::readVarHex);
+        assertThrows(IllegalArgumentException.class, () -> empty.readHex(1));
+    }
+
+    @Test
+    void rejectsInvalidFields() {
+        assertThrows(DecoderException.class, () -> CommandFrame.appendDigits(CommandFrame.request(1, "PT"), "12A4"));
+        assertThrows(DecoderException.class, () -> CommandFrame.appendHex(CommandFrame.request(1, "PT"), "ABC"));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandFrame.appendDigits(CommandFrame.request(1, "PT"), "1".repeat(256)));
+        assertThrows(IllegalArgumentException.class,
+                () -> CommandFrame.appendVarHex(CommandFrame.request(1, "PT"), "00".repeat(256)));
+        Buffer oversized = CommandFrame.request(1, "PT").appendBytes(new byte[CommandFrame.MAX_LENGTH]);
+        assertThrows(IllegalArgumentException.class, () -> CommandFrame.end(oversized));
+    }
+
+    private static Buffer frame(Buffer frameWithLength) {
+        return frameWithLength.slice(CommandFrame.LENGTH_SIZE, frameWithLength.length());
+    }
+
+    private static String hex(Buffer buffer) {
+        return HexCodec.encode(buffer.getBytes(), true);
+    }
+}
@@ -0,0 +1,104 @@
+package com.bc.tcp;
+
+import io.vertx.core.buffer.Buffer;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Response framing of {@link CommandHandler}: the correlation id is echoed, the response code is the command code with
+ * its second letter incremented, and every failure is answered with an error code rather than a dropped frame.
+ */
+class CommandHandlerTest {
+
+    private static Validator validator;
+
+    @BeforeAll
+    static void createValidator() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Test
+    void generatesArqc() throws Exception {
+        CommandFrame response = process(CommandClient.appendSampleArqcData(CommandFrame.request(42, "AG"), "0001"));
+        assertEquals(42, response.getCorrelationId());
+        assertEquals("AH", response.getCode());
+        assertEquals(CommandHandler.NO_ERROR, response.getErrorCode());
+        assertEquals(16, response.readHex(8).length());
+    }
+
+    @Test
+    void shortFrame() {
+        CommandFrame frame = response(CommandHandler.process(Buffer.buffer(new byte[] {0, 0, 0, 42}), validator));
+        assertEquals(0, frame.getCorrelationId());
+        assertEquals(CommandHandler.INVALID_INPUT, frame.getErrorCode());
+    }
+
+    @Test
+    void unknownCommand() {
+        CommandFrame response = process(CommandFrame.request(7, "XY"));
+        assertEquals(7, response.getCorrelationId());
+        assertEquals("XZ", response.getCode());
+        assertEquals(CommandHandler.UNKNOWN_COMMAND, response.getErrorCode());
+    }
+
+    @Test
+    void truncatedAndTrailingFields() throws Exception {
+        Buffer truncated = CommandClient.appendSampleArqcData(CommandFrame.request(1, "AG"), "0001");
+        CommandFrame response = process(truncated.getBuffer(0, truncated.length() - 3));
+        assertEquals(CommandHandler.INVALID_INPUT, response.getErrorCode());
+        assertFalse(response.readRemainingText().isEmpty());
+
+        Buffer trailing = CommandClient.appendSampleArqcData(CommandFrame.request(2, "AG"), "0001")
+                .appendByte((byte) 0);
+        response = process(trailing);
+        assertEquals(2, response.getCorrelationId());
+        assertEquals(CommandHandler.INVALID_INPUT, response.getErrorCode());
+    }
+
+    @Test
+    void offloadsOnlyArqcSearches() throws Exception {
+        assertTrue(CommandHandler.isOffloaded(verifyRequest("04")));
+        assertFalse(CommandHandler.isOffloaded(verifyRequest("00")));
+        // The last byte is only the window when the fields end there
+        Buffer trailing = verifyRequest("04").appendByte((byte) 4);
+        assertFalse(CommandHandler.isOffloaded(trailing));
+        Buffer truncated = verifyRequest("04");
+        assertFalse(CommandHandler.isOffloaded(truncated.slice(0, truncated.length() - 2).copy().appendByte((byte) 4)));
+        Buffer headerOnly = CommandFrame.request(1, "AV").appendByte((byte) 4);
+        assertFalse(CommandHandler.isOffloaded(headerOnly.slice(CommandFrame.LENGTH_SIZE, headerOnly.length())));
+        Buffer generate = CommandClient.appendSampleArqcData(CommandFrame.request(1, "AG"), "0001");
+        CommandFrame.appendHex(generate, "000000000000000004");
+        assertFalse(CommandHandler.isOffloaded(generate.slice(CommandFrame.LENGTH_SIZE, generate.length())));
+    }
+
+    /**
+     * @return AV request without its length prefix, with the given ATC search window
+     */
+    private static Buffer verifyRequest(String atcSearchWindow) throws Exception {
+        Buffer request = CommandClient.appendSampleArqcData(CommandFrame.request(1, "AV"), "0001");
+        CommandFrame.appendHex(request, "0000000000000000");
+        CommandFrame.appendHex(request, atcSearchWindow);
+        return request.getBuffer(CommandFrame.LENGTH_SIZE, request.length());
+    }
+
+    /**
+     * @param request Request frame, its length is set here
+     * @return Response frame positioned on its first field
+     */
+    private static CommandFrame process(Buffer request) {
+        CommandFrame.end(request);
+        return response(CommandHandler.process(request.slice(CommandFrame.LENGTH_SIZE, request.length()), validator));
+    }
+
+    private static CommandFrame response(Buffer response) {
+        assertEquals(response.length() - CommandFrame.LENGTH_SIZE, response.getUnsignedShort(0));
+        return new CommandFrame(response.slice(CommandFrame.LENGTH_SIZE, response.length()),
+                CommandFrame.RESPONSE_HEADER_SIZE);
+    }
+}
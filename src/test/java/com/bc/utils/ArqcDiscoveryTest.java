@@ -0,0 +1,93 @@
+package com.bc.utils;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.MacPaddingMethod;
+import com.bc.enums.UdkDerivationOption;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parameter discovery of {@link ArqcDiscovery}: only CVN and padding pairs that ARQC validation accepts are reported,
+ * and Option B is reported with Option A for PANs of up to 16 digits, which it falls back to.
+ */
+class ArqcDiscoveryTest {
+
+    private static final String MDK = "0123456789ABCDEFFEDCBA9876543210";
+    private static final String PAN = "4761739001010010";
+    private static final String PAN_19_DIGITS = "4761739001010010123";
+
+    @Test
+    void cvn10() throws Exception {
+        ArqcGen arqcGen = arqcGen(PAN, UdkDerivationOption.Option_A, CryptogramVersionNumber.CVN_10);
+        assertEquals(Set.of("CVN_10 Option_A Method_1", "CVN_10 Option_B Method_1"),
+                matches(ArqcDiscovery.discover(arqcGen, arqcGen.getArqc())));
+    }
+
+    @Test
+    void cvn18And22ShareTheirKeyAndPadding() throws Exception {
+        ArqcGen arqcGen = arqcGen(PAN, UdkDerivationOption.Option_A, CryptogramVersionNumber.CVN_18);
+        assertEquals(Set.of("CVN_18 Option_A Method_2", "CVN_22 Option_A Method_2", "CVN_18 Option_B Method_2",
+                        "CVN_22 Option_B Method_2"),
+                matches(ArqcDiscovery.discover(arqcGen, arqcGen.getArqc())));
+    }
+
+    @Test
+    void optionBOf19DigitPan() throws Exception {
+        ArqcGen arqcGen = arqcGen(PAN_19_DIGITS, UdkDerivationOption.Option_B, CryptogramVersionNumber.CVN_10);
+        assertEquals(Set.of("CVN_10 Option_B Method_1"), matches(ArqcDiscovery.discover(arqcGen, arqcGen.getArqc())));
+    }
+
+    @Test
+    void treeDerivation() throws Exception {
+        ArqcGen arqcGen = arqcGen(PAN, UdkDerivationOption.Option_C, CryptogramVersionNumber.CVN_10);
+        assertEquals(Set.of("CVN_10 Option_C Method_1"), matches(ArqcDiscovery.discover(arqcGen, arqcGen.getArqc())));
+    }
+
+    @Test
+    void unusedPaddingIsNotReported() throws Exception {
+        // The CVN 18 session key with the CVN 10 padding, a combination no card uses
+        ArqcGen arqcGen = arqcGen(PAN, UdkDerivationOption.Option_A, CryptogramVersionNumber.CVN_18);
+        byte[] udk = HexCodec.decode(arqcGen.getUniqueDerivationKey(UdkDerivationOption.Option_A));
+        byte[] arqc = ArqcGen.arqcMac(KeyGenerator.deriveSessionKey(udk, false, 1),
+                arqcGen.buildArqcTransactionData(), MacPaddingMethod.Method_1);
+        assertTrue(ArqcDiscovery.discover(arqcGen, HexCodec.encode(arqc, true)).isEmpty());
+    }
+
+    private static ArqcGen arqcGen(String pan, UdkDerivationOption udkDerivationOption,
+                                   CryptogramVersionNumber cryptogramVersionNumber) throws Exception {
+        ArqcGen arqcGen = new ArqcGen();
+        arqcGen.setMdkAc(MDK);
+        arqcGen.setPan(pan);
+        arqcGen.setPanSeqNbr("01");
+        arqcGen.setAmountAuthorised("000000001000");
+        arqcGen.setAmountOther("000000000000");
+        arqcGen.setTerminalCountryCode("0826");
+        arqcGen.setTerminalVerificationResults("0000008000");
+        arqcGen.setTransactionCurrencyCode("0826");
+        arqcGen.setTransactionDate("230901");
+        arqcGen.setTransactionType("00");
+        arqcGen.setUnpredictableNumber("A1B2C3D4");
+        arqcGen.setApplicationInterchangeProfile("3800");
+        arqcGen.setApplicationTransactionCounter("0001");
+        arqcGen.setIssuerApplicationData("06010A03A00000");
+        arqcGen.setUdkDerivationOption(udkDerivationOption);
+        arqcGen.setCryptogramVersionNumber(cryptogramVersionNumber);
+        return arqcGen;
+    }
+
+    private static Set<String> matches(List<ArqcDiscovery.Match> matches) {
+        Set<String> names = new HashSet<>();
+        for (ArqcDiscovery.Match match : matches) {
+            names.add(match.getCryptogramVersionNumber() + " " + match.getUdkDerivationOption() + " "
+                    + match.getPaddingMethod());
+        }
+        assertEquals(matches.size(), names.size());
+        return names;
+    }
+}
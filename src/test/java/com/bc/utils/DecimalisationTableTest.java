@@ -0,0 +1,84 @@
+package com.bc.utils;
+
+import com.bc.constants.PINFunctions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Decimalisation by {@link DecimalisationTable}, and the IBM 3624 PIN it derives.
+ */
+class DecimalisationTableTest {
+
+    private static final String PVK = "0123456789ABCDEFFEDCBA9876543210";
+    private static final String VALIDATION_DATA = "4761739001010010";
+
+    @Test
+    void defaultTable() {
+        assertEquals("0123456789012345", DecimalisationTable.DEFAULT.getDigits());
+        assertEquals("0123456789012345", DecimalisationTable.DEFAULT.decimalise(0x0123456789ABCDEFL));
+        assertEquals("5432109876543210", DecimalisationTable.DEFAULT.decimalise(0xFEDCBA9876543210L));
+        assertSame(DecimalisationTable.DEFAULT,
+                DecimalisationTable.forTable(PINFunctions.DEFAULT_DECIMALISATION_TABLE));
+    }
+
+    @Test
+    void customTable() {
+        DecimalisationTable table = DecimalisationTable.forDigits("9876543210987654");
+        assertEquals("9876543210987654", table.decimalise(0x0123456789ABCDEFL));
+        char[] output = new char[20];
+        table.decimalise(0xFFFFFFFFFFFFFFFFL, output, 2);
+        assertEquals("4444444444444444", new String(output, 2, 16));
+        assertSame(table, DecimalisationTable.forDigits("9876543210987654"));
+
+        // Entries in any order, nibbles in either case
+        String[] entries = new String[16];
+        for (int nibble = 0; nibble < 16; nibble++) {
+            entries[15 - nibble] = Character.toLowerCase(HexCodec.toDigit(nibble, true)) + ":" + (9 - nibble % 10);
+        }
+        assertEquals("9876543210987654", DecimalisationTable.forTable(entries).getDigits());
+    }
+
+    @Test
+    void rejectsInvalidTables() {
+        assertNull(DecimalisationTable.forDigits(null));
+        assertNull(DecimalisationTable.forDigits("012345678901234"));
+        assertNull(DecimalisationTable.forDigits("01234567890123456"));
+        assertNull(DecimalisationTable.forDigits("012345678901234A"));
+        assertNull(DecimalisationTable.forDigits("\uFF10123456789012345"));
+        assertNull(DecimalisationTable.forTable(new String[15]));
+        String[] repeated = PINFunctions.DEFAULT_DECIMALISATION_TABLE.clone();
+        repeated[15] = "E:5";
+        assertNull(DecimalisationTable.forTable(repeated));
+        String[] notDecimal = PINFunctions.DEFAULT_DECIMALISATION_TABLE.clone();
+        notDecimal[15] = "F:F";
+        assertNull(DecimalisationTable.forTable(notDecimal));
+    }
+
+    @Test
+    void ibm3624PinKnownAnswer() throws Exception {
+        // 3DES(PVK, validation data) = EA9947D64F3BACB1, natural PIN EA99 decimalised
+        IBM3624Pin ibm3624Pin = ibm3624Pin("1234");
+        ibm3624Pin.generateIBM3624Pin();
+        assertEquals("4099", ibm3624Pin.getNaturalPin());
+        assertEquals("5223", ibm3624Pin.getPin());
+        assertEquals("1234", ibm3624Pin.deriveOffset("5223", "4099"));
+        assertEquals("4099", ibm3624Pin.deriveNaturalPin("5223", "1234"));
+
+        ibm3624Pin = ibm3624Pin("0000");
+        ibm3624Pin.setDecimalisation(DecimalisationTable.forDigits("9876543210987654"));
+        ibm3624Pin.generateIBM3624Pin();
+        assertEquals("5900", ibm3624Pin.getNaturalPin());
+    }
+
+    private static IBM3624Pin ibm3624Pin(String pinOffset) {
+        IBM3624Pin ibm3624Pin = new IBM3624Pin();
+        ibm3624Pin.setPvk(PVK);
+        ibm3624Pin.setPan(VALIDATION_DATA);
+        ibm3624Pin.setPinOffset(pinOffset);
+        ibm3624Pin.setPinLength("4");
+        return ibm3624Pin;
+    }
+}
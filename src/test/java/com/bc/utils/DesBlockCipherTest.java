@@ -0,0 +1,86 @@
+package com.bc.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The software TDEA backend, {@link DesBlockCipher}, against the JCE DESede provider.
+ */
+class DesBlockCipherTest {
+
+    private static final int RANDOM_BLOCKS = 2000;
+
+    @Test
+    void singleDesKnownAnswer() throws Exception {
+        // FIPS 46 worked example
+        int[] subkeys = DesBlockCipher.schedule(expand(HexCodec.decode("133457799BBCDFF1")));
+        assertEquals(0x85E813540F0AB405L, DesBlockCipher.encrypt(subkeys, 0x0123456789ABCDEFL));
+        assertEquals(0x0123456789ABCDEFL, DesBlockCipher.decrypt(subkeys, 0x85E813540F0AB405L));
+    }
+
+    @Test
+    void tripleLengthKnownAnswer() throws Exception {
+        // NIST SP 800-67 example, first block of "The qufck brown fox jump"
+        int[] subkeys = DesBlockCipher.schedule(HexCodec.decode("0123456789ABCDEF23456789ABCDEF01456789ABCDEF0123"));
+        assertEquals(0xA826FD8CE53B855FL, DesBlockCipher.encrypt(subkeys, 0x5468652071756663L));
+        assertEquals(0x5468652071756663L, DesBlockCipher.decrypt(subkeys, 0xA826FD8CE53B855FL));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {8, 16, 24})
+    void softwareMatchesJce(int keyLength) throws Exception {
+        SplittableRandom random = new SplittableRandom(0x3624L + keyLength);
+        Cipher encrypt = Cipher.getInstance("DESede/ECB/NoPadding");
+        Cipher decrypt = Cipher.getInstance("DESede/ECB/NoPadding");
+        for (int i = 0; i < RANDOM_BLOCKS; i++) {
+            byte[] key = new byte[keyLength];
+            for (int j = 0; j < keyLength; j++) {
+                key[j] = (byte) random.nextInt(256);
+            }
+            long block = random.nextLong();
+            SecretKeySpec secretKey = new SecretKeySpec(expand(key), "DESede");
+            encrypt.init(Cipher.ENCRYPT_MODE, secretKey);
+            decrypt.init(Cipher.DECRYPT_MODE, secretKey);
+            byte[] data = new byte[8];
+            Block64.toBytes(block, data, 0);
+            long encrypted = Block64.toLong(encrypt.doFinal(data), 0);
+            long decrypted = Block64.toLong(decrypt.doFinal(data), 0);
+
+            int[] subkeys = DesBlockCipher.schedule(expand(key));
+            assertEquals(encrypted, DesBlockCipher.encrypt(subkeys, block));
+            assertEquals(decrypted, DesBlockCipher.decrypt(subkeys, block));
+            assertEquals(block, DesBlockCipher.decrypt(subkeys, encrypted));
+            // The key schedule expands single and double length keys the same way
+            KeySchedule schedule = new KeySchedule(key);
+            assertEquals(encrypted, schedule.encrypt(block));
+            assertEquals(decrypted, schedule.decrypt(block));
+        }
+    }
+
+    @Test
+    void selfTestPasses() {
+        assertEquals(true, DesBlockCipher.selfTest());
+    }
+
+    /**
+     * K1 to K1 K1 K1, K1 K2 to K1 K2 K1, K1 K2 K3 as is
+     */
+    private static byte[] expand(byte[] key) {
+        byte[] tripleLengthKey = new byte[24];
+        System.arraycopy(key, 0, tripleLengthKey, 0, key.length);
+        if (key.length == 8) {
+            System.arraycopy(key, 0, tripleLengthKey, 8, 8);
+        }
+        if (key.length < 24) {
+            System.arraycopy(key, 0, tripleLengthKey, 16, 8);
+        }
+        return tripleLengthKey;
+    }
+}
@@ -0,0 +1,102 @@
+package com.bc.utils;
+
+import com.bc.enums.CryptogramVersionNumber;
+import com.bc.enums.IadField;
+import com.bc.enums.IadFormat;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Format detection and field extraction of {@link IADParser}, from hexadecimal and from a byte array.
+ */
+class IADParserTest {
+
+    private static final String VISA_CVN_10 = "06010A03A00000";
+    private static final String MCHIP_4_CVN_10 = "0110A04000000000ABCD00000000FF";
+    private static final String CCD = "1F0A01" + "A000000000" + "0102030405060708" + "0F" + "00".repeat(15);
+
+    private final IADParser iadParser = new IADParser();
+
+    @Test
+    void visaFormat013() {
+        assertEquals(IadFormat.VISA_FORMAT_0_1_3, iadParser.parse(VISA_CVN_10, true));
+        assertEquals(7, iadParser.getLength());
+        assertEquals(1, iadParser.getDerivationKeyIndex());
+        assertEquals(10, iadParser.getCryptogramVersion());
+        assertEquals(CryptogramVersionNumber.CVN_10, iadParser.getCryptogramVersionNumber());
+        assertEquals(0x03A00000L, iadParser.getCardVerificationResults());
+        assertEquals("03A00000", iadParser.getHex(IadField.CARD_VERIFICATION_RESULTS));
+        // The IDD length byte and the IDD are optional
+        assertFalse(iadParser.has(IadField.ISSUER_DISCRETIONARY_DATA_LENGTH));
+        assertNull(iadParser.getHex(IadField.ISSUER_DISCRETIONARY_DATA));
+
+        assertEquals(IadFormat.VISA_FORMAT_0_1_3, iadParser.parse("06011203A0B80003" + "0102", true));
+        assertEquals(CryptogramVersionNumber.CVN_18, iadParser.getCryptogramVersionNumber());
+        assertEquals(3, iadParser.getLong(IadField.ISSUER_DISCRETIONARY_DATA_LENGTH));
+        assertEquals("0102", iadParser.getHex(IadField.ISSUER_DISCRETIONARY_DATA));
+    }
+
+    @Test
+    void visaFormat2AndCcd() {
+        assertEquals(IadFormat.VISA_FORMAT_2, iadParser.parse(CCD, true));
+        assertEquals(0x0A, iadParser.getCryptogramVersion());
+        assertEquals(1, iadParser.getDerivationKeyIndex());
+        assertNull(iadParser.getCryptogramVersionNumber());
+
+        // The same 32 bytes of a non Visa card are a CCD IAD
+        assertEquals(IadFormat.CCD, iadParser.parse(CCD, false));
+        assertEquals(0xA000000000L, iadParser.getCardVerificationResults());
+        assertEquals("0102030405060708", iadParser.getHex(IadField.COUNTERS));
+        assertEquals(15, iadParser.length(IadField.ISSUER_DISCRETIONARY_DATA));
+        assertFalse(iadParser.has(IadField.CRYPTOGRAM_VERSION_NUMBER));
+    }
+
+    @Test
+    void mchipFormats() {
+        assertEquals(IadFormat.MCHIP_2_1, iadParser.parse("0114A0000000ABCD", false));
+        assertEquals(CryptogramVersionNumber.CVN_14, iadParser.getCryptogramVersionNumber());
+        assertEquals("ABCD", iadParser.getHex(IadField.DAC_ICC_DYNAMIC_NUMBER));
+
+        assertEquals(IadFormat.MCHIP_2_05, iadParser.parse("080222A0000000ABCD", false));
+        assertEquals(2, iadParser.getDerivationKeyIndex());
+        assertEquals(CryptogramVersionNumber.CVN_22, iadParser.getCryptogramVersionNumber());
+
+        assertEquals(IadFormat.MCHIP_4, iadParser.parse(MCHIP_4_CVN_10, false));
+        assertEquals(CryptogramVersionNumber.CVN_10, iadParser.getCryptogramVersionNumber());
+        assertEquals(0xA04000000000L, iadParser.getCardVerificationResults());
+        assertEquals("00000000FF", iadParser.getHex(IadField.COUNTERS));
+        // M/Chip encodes the CVN as two decimal digits, 0x0A is not CVN 10
+        assertEquals(IadFormat.MCHIP_2_1, iadParser.parse("010AA0000000ABCD", false));
+        assertNull(iadParser.getCryptogramVersionNumber());
+    }
+
+    @Test
+    void wrapsByteArrays() throws Exception {
+        byte[] data = HexCodec.decode("FFFF" + MCHIP_4_CVN_10 + "FF");
+        assertEquals(IadFormat.MCHIP_4, iadParser.wrap(data, 2, data.length - 3, false));
+        assertEquals(0xA04000000000L, iadParser.getCardVerificationResults());
+        assertEquals("00000000FF", iadParser.getHex(IadField.COUNTERS));
+        byte[] counters = new byte[5];
+        assertEquals(5, iadParser.copy(IadField.COUNTERS, counters, 0));
+        assertEquals("00000000FF", HexCodec.encode(counters, true));
+    }
+
+    @Test
+    void unknownFormats() {
+        assertNull(iadParser.parse("060A", true));
+        assertTrue(iadParser.isInvalidIad());
+        assertNull(iadParser.parse("06010A03A0000", true));
+        assertNull(iadParser.parse("06010A03A0000G", true));
+        assertNull(iadParser.parse("", false));
+        assertNull(iadParser.parse(null, false));
+        assertNull(iadParser.parse("1F" + "00".repeat(20), true));
+        assertNull(iadParser.parse("00".repeat(33), false));
+        assertNull(iadParser.parse("0110A0000000AB", false));
+        assertThrows(IllegalArgumentException.class, () -> iadParser.getLong(IadField.CARD_VERIFICATION_RESULTS));
+    }
+}
@@ -0,0 +1,60 @@
+package com.bc.utils;
+
+import com.bc.enums.KeyType;
+import com.bc.enums.UdkDerivationOption;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Option A and Option B UDK derivation of {@link KeyGenerator}, EMV 4.3 Book 2 A1.4. Expected UDKs were computed with
+ * JCE SHA-1 and DESede, decimalising the digest as hexadecimal text.
+ */
+class KeyGeneratorTest {
+
+    private static final String MDK = "0123456789ABCDEFFEDCBA9876543210";
+
+    @Test
+    void optionAKnownAnswer() throws Exception {
+        // Rightmost 16 digits of PAN || PSN, 6173900101001001
+        assertEquals("2F02C8B1E9CBC7B05B5067F7A0CDE6E4", udk("4761739001010010", "01", UdkDerivationOption.Option_A));
+    }
+
+    @Test
+    void optionBFallsBackToOptionAUpTo16Digits() throws Exception {
+        assertEquals("2F02C8B1E9CBC7B05B5067F7A0CDE6E4", udk("4761739001010010", "01", UdkDerivationOption.Option_B));
+        assertEquals(udk("4761739001010", "01", UdkDerivationOption.Option_A),
+                udk("4761739001010", "01", UdkDerivationOption.Option_B));
+    }
+
+    @Test
+    void optionB19DigitPan() throws Exception {
+        // SHA-1 C2981BDC540ACAF071417A22C99F2ED982A872E3, decimal nibbles 2981540071417229
+        assertEquals("30E987A1890CD9646D1F41D27F30353E", udk("4761739001010010123", "01",
+                UdkDerivationOption.Option_B));
+    }
+
+    @Test
+    void optionBDigestWithLeadingZeroNibbles() throws Exception {
+        // SHA-1 0000272EA2966DF6A76B70A075683A617A18FB7C, decimal nibbles 0000272296667670
+        assertEquals("DE4C5B59EB6C3DF93FF5D74E81DD8FC5", udk("4761739001010002088", "01",
+                UdkDerivationOption.Option_B));
+    }
+
+    @Test
+    void optionBDigestOfFewDecimalNibbles() throws Exception {
+        // SHA-1 F55EAA7CAAC5EEA9C7FECCD30C4CB9CFFAC5E88C, 13 decimal nibbles then F, E and A as 5, 4 and 0
+        assertEquals("BB4B2A66CC763C76FCF8EE798D79E6D3", udk("4761739001010000101", "01",
+                UdkDerivationOption.Option_B));
+    }
+
+    private static String udk(String pan, String panSeq, UdkDerivationOption udkDerivationOption) throws Exception {
+        KeyGenerator keyGenerator = new KeyGenerator();
+        keyGenerator.pan = pan;
+        keyGenerator.panSeq = panSeq;
+        keyGenerator.mkCryptogram = MDK;
+        keyGenerator.keyType = KeyType.UDK_CRYPTOGRAM;
+        keyGenerator.udkDerivationOption = udkDerivationOption;
+        return keyGenerator.getKey().toUpperCase();
+    }
+}
@@ -0,0 +1,44 @@
+package com.bc.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * One-shot {@link KeySchedule}s, whose Cipher instances are initialised again under the next key once zeroised.
+ */
+class KeyScheduleTest {
+
+    @Test
+    void oneShotKeysMatchJce() throws Exception {
+        SplittableRandom random = new SplittableRandom(0x3624L);
+        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        byte[] key = new byte[16];
+        byte[] expandedKey = new byte[24];
+        byte[] block = new byte[TdeaEngine.BLOCK_SIZE];
+        for (int i = 0; i < 200; i++) {
+            random.nextBytes(key);
+            System.arraycopy(key, 0, expandedKey, 0, 16);
+            System.arraycopy(key, 0, expandedKey, 16, 8);
+            long clear = random.nextLong();
+            Block64.toBytes(clear, block, 0);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(expandedKey, "DESede"));
+            long encrypted = Block64.toLong(cipher.doFinal(block), 0);
+            assertEquals(encrypted, TdeaEngine.encryptOnce(key, clear));
+            assertEquals(clear, TdeaEngine.decryptOnce(key, encrypted));
+        }
+    }
+
+    @Test
+    void destroyedScheduleRefusesBlocks() throws Exception {
+        KeySchedule schedule = new KeySchedule(new byte[16]);
+        schedule.encrypt(0L);
+        schedule.destroy();
+        assertThrows(IllegalStateException.class, () -> schedule.encrypt(0L));
+    }
+}
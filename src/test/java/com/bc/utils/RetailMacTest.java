@@ -0,0 +1,117 @@
+package com.bc.utils;
+
+import com.bc.enums.MacPaddingMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ISO 9797-1 MAC algorithm 3, {@link RetailMac}, against the ISO 9797-1 example and a JCE single DES composition.
+ */
+class RetailMacTest {
+
+    private static final String KEY = "0123456789ABCDEFFEDCBA9876543210";
+    private static final byte[] DATA = "Now is the time for all ".getBytes(StandardCharsets.US_ASCII);
+    private static final int RANDOM_MESSAGES = 500;
+
+    @Test
+    void paddingMethod1KnownAnswer() throws Exception {
+        // ISO 9797-1 Annex B example of MAC algorithm 3
+        assertEquals("A1C72E74EA3FA9B6", mac(MacPaddingMethod.Method_1, DATA));
+    }
+
+    @Test
+    void paddingMethod2KnownAnswer() throws Exception {
+        assertEquals("E9086230CA3BE796", mac(MacPaddingMethod.Method_2, DATA));
+    }
+
+    @Test
+    void partialLastBlockKnownAnswer() throws Exception {
+        byte[] data = "Now is the time for it".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("2E2B1428CC78254F", mac(MacPaddingMethod.Method_1, data));
+        assertEquals("5A692CE64F404145", mac(MacPaddingMethod.Method_2, data));
+    }
+
+    @ParameterizedTest
+    @EnumSource(MacPaddingMethod.class)
+    void matchesJce(MacPaddingMethod paddingMethod) throws Exception {
+        SplittableRandom random = new SplittableRandom(0x9797L + paddingMethod.ordinal());
+        for (int i = 0; i < RANDOM_MESSAGES; i++) {
+            byte[] key = new byte[16];
+            byte[] data = new byte[random.nextInt(1, 65)];
+            random.nextBytes(key);
+            random.nextBytes(data);
+            RetailMac retailMac = new RetailMac(key, paddingMethod);
+            retailMac.update(data);
+            assertArrayEquals(jceMac(key, data, paddingMethod), retailMac.doFinal());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(MacPaddingMethod.class)
+    void incrementalUpdatesMatchOneShot(MacPaddingMethod paddingMethod) throws Exception {
+        RetailMac retailMac = new RetailMac(HexCodec.decode(KEY), paddingMethod);
+        retailMac.update(DATA[0]);
+        retailMac.update(DATA, 1, 10);
+        retailMac.update(Arrays.copyOfRange(DATA, 11, DATA.length));
+        assertEquals(mac(paddingMethod, DATA), HexCodec.encode(retailMac.doFinal(), true));
+    }
+
+    @Test
+    void doFinalResets() throws Exception {
+        RetailMac retailMac = new RetailMac(HexCodec.decode(KEY), MacPaddingMethod.Method_1);
+        retailMac.update(DATA);
+        byte[] first = retailMac.doFinal();
+        retailMac.update(DATA);
+        assertArrayEquals(first, retailMac.doFinal());
+        retailMac.update(DATA);
+        retailMac.reset();
+        retailMac.update(DATA);
+        assertArrayEquals(first, retailMac.doFinal());
+    }
+
+    @Test
+    void rejectsSingleLengthKey() {
+        assertThrows(InvalidKeyException.class, () -> new RetailMac(new byte[8], MacPaddingMethod.Method_1));
+    }
+
+    private static String mac(MacPaddingMethod paddingMethod, byte[] data) throws Exception {
+        RetailMac retailMac = new RetailMac(HexCodec.decode(KEY), paddingMethod);
+        retailMac.update(data);
+        return HexCodec.encode(retailMac.doFinal(), true);
+    }
+
+    /**
+     * MAC algorithm 3 from JCE single DES: CBC under KL, then decrypt under KR and encrypt under KL
+     */
+    private static byte[] jceMac(byte[] key, byte[] data, MacPaddingMethod paddingMethod) throws Exception {
+        int paddedLength = paddingMethod == MacPaddingMethod.Method_2 ? (data.length / 8 + 1) * 8
+                : (data.length + 7) / 8 * 8;
+        byte[] padded = Arrays.copyOf(data, paddedLength);
+        if (paddingMethod == MacPaddingMethod.Method_2) {
+            padded[data.length] = (byte) 0x80;
+        }
+        SecretKeySpec keyLeft = new SecretKeySpec(Arrays.copyOfRange(key, 0, 8), "DES");
+        SecretKeySpec keyRight = new SecretKeySpec(Arrays.copyOfRange(key, 8, 16), "DES");
+        Cipher cbc = Cipher.getInstance("DES/CBC/NoPadding");
+        cbc.init(Cipher.ENCRYPT_MODE, keyLeft, new IvParameterSpec(new byte[8]));
+        byte[] chained = cbc.doFinal(padded);
+        Cipher decrypt = Cipher.getInstance("DES/ECB/NoPadding");
+        decrypt.init(Cipher.DECRYPT_MODE, keyRight);
+        Cipher encrypt = Cipher.getInstance("DES/ECB/NoPadding");
+        encrypt.init(Cipher.ENCRYPT_MODE, keyLeft);
+        return encrypt.doFinal(decrypt.doFinal(chained, paddedLength - 8, 8));
+    }
+}
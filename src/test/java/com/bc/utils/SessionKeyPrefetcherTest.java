@@ -0,0 +1,61 @@
+package com.bc.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prefetch ring of {@link SessionKeyPrefetcher}: lookups only read it, and it only moves on after a verification.
+ */
+class SessionKeyPrefetcherTest {
+
+    private static final byte[] UDK = {0x2F, 0x02, (byte) 0xC8, (byte) 0xB1, (byte) 0xE9, (byte) 0xCB, (byte) 0xC7,
+            (byte) 0xB0, 0x5B, 0x50, 0x67, (byte) 0xF7, (byte) 0xA0, (byte) 0xCD, (byte) 0xE6, (byte) 0xE4};
+
+    @AfterEach
+    void clear() {
+        SessionKeyPrefetcher.clear();
+    }
+
+    @Test
+    void lookupDoesNotAdvanceTheRing() throws Exception {
+        prefetchAfter(1);
+        // An unverified request at a far higher ATC must not flush the ring
+        SessionKeyPrefetcher.getSessionKey(UDK, false, 0xFFFF);
+        assertHit(2);
+        // Reading a key twice returns it twice, the caller zeroises its own copy
+        assertHit(2);
+    }
+
+    @Test
+    void verificationEvictsEarlierKeys() throws Exception {
+        prefetchAfter(1);
+        prefetchAfter(3);
+        long misses = SessionKeyPrefetcher.getMissCount();
+        assertArrayEquals(KeyGenerator.deriveSessionKey(UDK, false, 2),
+                SessionKeyPrefetcher.getSessionKey(UDK, false, 2));
+        assertEquals(misses + 1, SessionKeyPrefetcher.getMissCount());
+        assertHit(4);
+    }
+
+    private static void prefetchAfter(int atc) throws InterruptedException {
+        long prefetched = SessionKeyPrefetcher.getPrefetchCount();
+        SessionKeyPrefetcher.prefetchAfter(UDK, false, atc);
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (SessionKeyPrefetcher.getPrefetchCount() == prefetched && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Let the background thread finish the rest of the ring
+        Thread.sleep(100);
+    }
+
+    private static void assertHit(int atc) throws Exception {
+        long hits = SessionKeyPrefetcher.getHitCount();
+        assertArrayEquals(KeyGenerator.deriveSessionKey(UDK, false, atc),
+                SessionKeyPrefetcher.getSessionKey(UDK, false, atc));
+        assertTrue(SessionKeyPrefetcher.getHitCount() > hits);
+    }
+}
@@ -0,0 +1,84 @@
+package com.bc.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Memoised tree derivation of {@link SessionKeyTree} against a direct recursive evaluation of EMV 4.3 Book 2 A1.3 with
+ * JCE DESede, at the default branch factor 2, height 16 and zero IV.
+ */
+class SessionKeyTreeTest {
+
+    private static final int BRANCH_FACTOR = 2;
+    private static final int HEIGHT = 16;
+    private static final int[] ATCS = {0, 1, 2, 3, 0x00FF, 0x0100, 0x1234, 0x7FFF, 0x8000, 0xFFFE, 0xFFFF};
+
+    @Test
+    void matchesSpecification() throws Exception {
+        byte[] udk = HexCodec.decode("0123456789ABCDEFFEDCBA9876543210");
+        for (int atc : ATCS) {
+            assertArrayEquals(referenceSessionKey(udk, atc), SessionKeyTree.deriveSessionKey(udk, atc),
+                    "ATC " + atc);
+        }
+    }
+
+    @Test
+    void memoisedNodesMatchAfterClear() throws Exception {
+        byte[] udk = HexCodec.decode("FEDCBA98765432100123456789ABCDEF");
+        for (int atc = 0x0400; atc < 0x0440; atc++) {
+            SessionKeyTree.deriveSessionKey(udk, atc);
+        }
+        SessionKeyTree.clear();
+        for (int atc = 0x0440; atc > 0x0400; atc -= 3) {
+            assertArrayEquals(referenceSessionKey(udk, atc), SessionKeyTree.deriveSessionKey(udk, atc),
+                    "ATC " + atc);
+        }
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(InvalidKeyException.class, () -> SessionKeyTree.deriveSessionKey(new byte[8], 1));
+        assertThrows(IllegalArgumentException.class, () -> SessionKeyTree.deriveSessionKey(new byte[16], 0x10000));
+    }
+
+    /**
+     * SK = IK(H, ATC) xor IK(H-2, ATC / b^2)
+     */
+    private static byte[] referenceSessionKey(byte[] udk, int atc) throws Exception {
+        byte[] sessionKey = node(udk, HEIGHT, atc);
+        byte[] grandParent = node(udk, HEIGHT - 2, atc / (BRANCH_FACTOR * BRANCH_FACTOR));
+        for (int i = 0; i < sessionKey.length; i++) {
+            sessionKey[i] ^= grandParent[i];
+        }
+        return sessionKey;
+    }
+
+    /**
+     * IK(i,j) = DES3(IK(i-1, j/b))[YL xor (j mod b)] || DES3(IK(i-1, j/b))[YR xor (j mod b) xor 'F0'],
+     * Y = IK(i-2, j/b^2), IK(0,0) = UDK and IK(-1,0) = IV
+     */
+    private static byte[] node(byte[] udk, int level, int index) throws Exception {
+        if (level < 0) {
+            return new byte[16];
+        }
+        if (level == 0) {
+            return udk.clone();
+        }
+        byte[] parent = node(udk, level - 1, index / BRANCH_FACTOR);
+        byte[] y = node(udk, level - 2, index / (BRANCH_FACTOR * BRANCH_FACTOR));
+        y[7] ^= (byte) (index % BRANCH_FACTOR);
+        y[15] ^= (byte) (index % BRANCH_FACTOR ^ 0xF0);
+        byte[] key = Arrays.copyOf(parent, 24);
+        System.arraycopy(parent, 0, key, 16, 8);
+        Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DESede"));
+        return cipher.doFinal(y);
+    }
+}
@@ -0,0 +1,119 @@
+package com.bc.utils;
+
+import com.bc.enums.EmvTag;
+import org.apache.commons.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BER-TLV decoding of DE55 ICC data by {@link TlvDecoder}.
+ */
+class TlvDecoderTest {
+
+    /** ICC data of an ARQC request, tags in the usual DE55 order with a 9F34 the decoder does not index */
+    private static final String ICC_DATA = "9F2608" + "EC2A78D150945772"
+            + "9F2701" + "80"
+            + "9F1007" + "06010A03A00000"
+            + "9F3704" + "A1B2C3D4"
+            + "9F3602" + "0001"
+            + "9505" + "0000008000"
+            + "9A03" + "230901"
+            + "9C01" + "00"
+            + "9F0206" + "000000001000"
+            + "5F2A02" + "0826"
+            + "8202" + "3800"
+            + "9F1A02" + "0826"
+            + "9F0306" + "000000000000"
+            + "9F3403" + "1E0300";
+
+    private final TlvDecoder tlvDecoder = new TlvDecoder();
+
+    @Test
+    void indexesEveryTag() throws Exception {
+        decode(ICC_DATA);
+        assertEquals("EC2A78D150945772", tlvDecoder.getHex(EmvTag.APPLICATION_CRYPTOGRAM));
+        assertEquals("06010A03A00000", tlvDecoder.getHex(EmvTag.ISSUER_APPLICATION_DATA));
+        assertEquals("A1B2C3D4", tlvDecoder.getHex(EmvTag.UNPREDICTABLE_NUMBER));
+        assertEquals("0001", tlvDecoder.getHex(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        assertEquals("0000008000", tlvDecoder.getHex(EmvTag.TERMINAL_VERIFICATION_RESULTS));
+        assertEquals("230901", tlvDecoder.getHex(EmvTag.TRANSACTION_DATE));
+        assertEquals("00", tlvDecoder.getHex(EmvTag.TRANSACTION_TYPE));
+        assertEquals("000000001000", tlvDecoder.getHex(EmvTag.AMOUNT_AUTHORISED));
+        assertEquals("0826", tlvDecoder.getHex(EmvTag.TRANSACTION_CURRENCY_CODE));
+        assertEquals("3800", tlvDecoder.getHex(EmvTag.APPLICATION_INTERCHANGE_PROFILE));
+        assertEquals("0826", tlvDecoder.getHex(EmvTag.TERMINAL_COUNTRY_CODE));
+        assertEquals("000000000000", tlvDecoder.getHex(EmvTag.AMOUNT_OTHER));
+    }
+
+    @Test
+    void indexesValuesInPlace() throws Exception {
+        byte[] data = HexCodec.decode("AAAA" + "9F3602" + "0001" + "BBBB");
+        tlvDecoder.decode(data, 2, 5);
+        assertTrue(tlvDecoder.has(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        assertEquals(5, tlvDecoder.offset(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        assertEquals(2, tlvDecoder.length(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        assertEquals(data, tlvDecoder.getData());
+    }
+
+    @Test
+    void absentTags() throws Exception {
+        decode("9F3602" + "0001");
+        assertFalse(tlvDecoder.has(EmvTag.AMOUNT_OTHER));
+        assertEquals(-1, tlvDecoder.offset(EmvTag.AMOUNT_OTHER));
+        assertEquals(0, tlvDecoder.length(EmvTag.AMOUNT_OTHER));
+        assertNull(tlvDecoder.getHex(EmvTag.AMOUNT_OTHER));
+        // The decoder is reused, nothing of the previous message is kept
+        decode("9F0306" + "000000000000");
+        assertFalse(tlvDecoder.has(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+    }
+
+    @Test
+    void skipsPaddingAndEntersTemplates() throws Exception {
+        decode("00" + "7716" + "9F2608" + "EC2A78D150945772" + "FF" + "9F1007" + "06010A03A00000" + "0000");
+        assertEquals("EC2A78D150945772", tlvDecoder.getHex(EmvTag.APPLICATION_CRYPTOGRAM));
+        assertEquals("06010A03A00000", tlvDecoder.getHex(EmvTag.ISSUER_APPLICATION_DATA));
+    }
+
+    @Test
+    void skipsThreeByteTagsAndLongLengths() throws Exception {
+        decode("DF8101" + "02" + "1234" + "9F7C" + "8181" + "00".repeat(0x81) + "DF8102" + "820003" + "ABCDEF"
+                + "9F3602" + "00FF");
+        assertEquals("00FF", tlvDecoder.getHex(EmvTag.APPLICATION_TRANSACTION_COUNTER));
+        decode("9F10" + "8120" + "1F".repeat(32));
+        assertEquals(32, tlvDecoder.length(EmvTag.ISSUER_APPLICATION_DATA));
+    }
+
+    @Test
+    void rejectsRepeatedTags() {
+        assertThrows(IllegalArgumentException.class, () -> decode("9F3602" + "0001" + "9F3602" + "0002"));
+    }
+
+    @Test
+    void rejectsUnexpectedLengths() {
+        assertThrows(IllegalArgumentException.class, () -> decode("9F3603" + "000100"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F2607" + "EC2A78D1509457"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F1000"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F1021" + "00".repeat(33)));
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        // Truncated tag, missing length, truncated value, indefinite and oversized lengths
+        assertThrows(IllegalArgumentException.class, () -> decode("9F"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F36"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F3602" + "00"));
+        assertThrows(IllegalArgumentException.class, () -> decode("7780" + "9F3602" + "0001" + "0000"));
+        assertThrows(IllegalArgumentException.class, () -> decode("9F7C" + "83000001" + "00"));
+        assertThrows(IllegalArgumentException.class, () -> decode("DFFFFF01" + "01" + "00"));
+    }
+
+    private void decode(String iccData) throws DecoderException {
+        byte[] data = HexCodec.decode(iccData);
+        tlvDecoder.decode(data, 0, data.length);
+    }
+}
@@ -0,0 +1,93 @@
+package com.bc.utils;
+
+import com.bc.enums.UdkDerivationOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link UdkCache} at its default bound of 10000 cards and time to live of a day: derived UDKs are zeroised once
+ * cached, entries expire and are evicted least recently used first, and on or off heap they are zeroised on eviction.
+ */
+class UdkCacheTest {
+
+    private static final byte[] MDK = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+    private static final long TTL_NANOS = TimeUnit.DAYS.toNanos(1);
+
+    @BeforeEach
+    @AfterEach
+    void clear() {
+        UdkCache.clear();
+    }
+
+    @Test
+    void cachesAndZeroisesDerivedUdk() throws Exception {
+        byte[] derived = udk(7);
+        AtomicInteger derivations = new AtomicInteger();
+        UdkCache.UdkDerivation derivation = () -> {
+            derivations.incrementAndGet();
+            return derived;
+        };
+        assertArrayEquals(udk(7), UdkCache.getUdk(MDK, "4761739001010010", "01", UdkDerivationOption.Option_A,
+                derivation, 0));
+        assertArrayEquals(new byte[16], derived);
+        assertArrayEquals(udk(7), UdkCache.getUdk(MDK, "4761739001010010", "01", UdkDerivationOption.Option_A,
+                () -> udk(8), 1));
+        assertEquals(1, derivations.get());
+    }
+
+    @Test
+    void expiresAfterTimeToLive() throws Exception {
+        long evictions = UdkCache.getEvictionCount();
+        UdkCache.getUdk(MDK, "4761739001010010", "01", UdkDerivationOption.Option_A, () -> udk(1), 0);
+        assertArrayEquals(udk(1), UdkCache.getUdk(MDK, "4761739001010010", "01", UdkDerivationOption.Option_A,
+                () -> udk(2), TTL_NANOS));
+        assertArrayEquals(udk(2), UdkCache.getUdk(MDK, "4761739001010010", "01", UdkDerivationOption.Option_A,
+                () -> udk(2), TTL_NANOS + 1));
+        assertEquals(evictions + 1, UdkCache.getEvictionCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        long now = System.nanoTime();
+        for (int card = 0; card <= 10000; card++) {
+            UdkCache.getUdk(MDK, String.format("476173900%07d", card), "01", UdkDerivationOption.Option_A,
+                    () -> udk(3), now + card);
+        }
+        assertTrue(UdkCache.size() <= 10000 - 10000 / 8);
+        // The most recently used card is kept, the least recently used one is derived again
+        assertArrayEquals(udk(3), UdkCache.getUdk(MDK, "4761739000010000", "01", UdkDerivationOption.Option_A,
+                () -> udk(4), now + 10001));
+        assertArrayEquals(udk(4), UdkCache.getUdk(MDK, "4761739000000000", "01", UdkDerivationOption.Option_A,
+                () -> udk(4), now + 10002));
+    }
+
+    @Test
+    void zeroisesOnAndOffHeap() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            UdkCache.CachedUdk cachedUdk = new UdkCache.CachedUdk(null, udk(5), 0, offHeap);
+            assertEquals(offHeap, cachedUdk.isOffHeap());
+            byte[] output = new byte[16];
+            assertTrue(cachedUdk.read(output));
+            assertArrayEquals(udk(5), output);
+            cachedUdk.destroy();
+            assertFalse(cachedUdk.read(output));
+            assertArrayEquals(new byte[16], output);
+        }
+    }
+
+    private static byte[] udk(int value) {
+        byte[] udk = new byte[16];
+        udk[0] = (byte) value;
+        udk[15] = (byte) value;
+        return udk;
+    }
+}
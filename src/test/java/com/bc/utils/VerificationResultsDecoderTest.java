@@ -0,0 +1,96 @@
+package com.bc.utils;
+
+import com.bc.enums.IadFormat;
+import com.bc.enums.VerificationFlag;
+import com.bc.enums.VerificationLayout;
+import org.apache.commons.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * TVR and CVR bitmasks and flags of {@link VerificationResultsDecoder}, bit 0 is byte 1 bit b8.
+ */
+class VerificationResultsDecoderTest {
+
+    @Test
+    void tvrBits() throws Exception {
+        assertEquals(1L << 24, VerificationResultsDecoder.tvrBits("0000008000"));
+        assertEquals(EnumSet.of(VerificationFlag.TVR_FLOOR_LIMIT_EXCEEDED),
+                VerificationResultsDecoder.flags(VerificationLayout.TVR, 1L << 24));
+        assertEquals(1L, VerificationResultsDecoder.tvrBits("8000000000"));
+        assertEquals(1L << 39, VerificationResultsDecoder.tvrBits("0000000001"));
+        assertEquals(EnumSet.of(VerificationFlag.TVR_OFFLINE_DATA_AUTHENTICATION_NOT_PERFORMED,
+                        VerificationFlag.TVR_EXPIRED_APPLICATION, VerificationFlag.TVR_ONLINE_PIN_ENTERED,
+                        VerificationFlag.TVR_DEFAULT_TDOL_USED),
+                VerificationResultsDecoder.flags(VerificationLayout.TVR,
+                        VerificationResultsDecoder.tvrBits("8040040080")));
+    }
+
+    @Test
+    void rejectsInvalidTvr() {
+        assertThrows(DecoderException.class, () -> VerificationResultsDecoder.tvrBits("00000080"));
+        assertThrows(DecoderException.class, () -> VerificationResultsDecoder.tvrBits("00000080000"));
+        assertThrows(DecoderException.class, () -> VerificationResultsDecoder.tvrBits("000000800G"));
+    }
+
+    @Test
+    void visaCvrIgnoresItsLengthByte() {
+        IADParser iadParser = new IADParser();
+        iadParser.parse("06010A03A00000", true);
+        assertEquals(VerificationLayout.VISA, VerificationResultsDecoder.cvrLayout(iadParser.getFormat()));
+        long bits = VerificationResultsDecoder.cvrBits(iadParser);
+        assertEquals(1L << 8 | 1L << 10, bits);
+        assertEquals(EnumSet.of(VerificationFlag.VISA_SECOND_AC_NOT_REQUESTED, VerificationFlag.VISA_FIRST_AC_ARQC),
+                VerificationResultsDecoder.flags(VerificationLayout.VISA, bits));
+    }
+
+    @Test
+    void cvrLayouts() {
+        assertEquals(VerificationLayout.CCD, VerificationResultsDecoder.cvrLayout(IadFormat.VISA_FORMAT_2));
+        assertEquals(VerificationLayout.CCD, VerificationResultsDecoder.cvrLayout(IadFormat.CCD));
+        assertEquals(VerificationLayout.MCHIP_2, VerificationResultsDecoder.cvrLayout(IadFormat.MCHIP_2_1));
+        assertEquals(VerificationLayout.MCHIP_2, VerificationResultsDecoder.cvrLayout(IadFormat.MCHIP_2_05));
+        assertEquals(VerificationLayout.MCHIP_4, VerificationResultsDecoder.cvrLayout(IadFormat.MCHIP_4));
+    }
+
+    @Test
+    void mchip4AndCcdCvr() {
+        IADParser iadParser = new IADParser();
+        iadParser.parse("0110A04000000000ABCD00000000FF", false);
+        long bits = VerificationResultsDecoder.cvrBits(iadParser);
+        assertEquals(1L | 1L << 2 | 1L << 9, bits);
+        assertEquals(EnumSet.of(VerificationFlag.MCHIP_4_SECOND_AC_NOT_REQUESTED,
+                        VerificationFlag.MCHIP_4_FIRST_AC_ARQC, VerificationFlag.MCHIP_4_CDA_FIRST_AC),
+                VerificationResultsDecoder.flags(VerificationLayout.MCHIP_4, bits));
+
+        iadParser.parse("1F0A01" + "A008000000" + "00".repeat(24), false);
+        assertEquals(EnumSet.of(VerificationFlag.CCD_SECOND_AC_NOT_REQUESTED, VerificationFlag.CCD_FIRST_AC_ARQC,
+                        VerificationFlag.CCD_OFFLINE_PIN_PERFORMED),
+                VerificationResultsDecoder.flags(VerificationLayout.CCD,
+                        VerificationResultsDecoder.cvrBits(iadParser)));
+    }
+
+    @Test
+    void rejectsInvalidIad() {
+        IADParser iadParser = new IADParser();
+        iadParser.parse("060A", true);
+        assertThrows(IllegalArgumentException.class, () -> VerificationResultsDecoder.cvrBits(iadParser));
+    }
+
+    @Test
+    void bitNames() {
+        assertEquals("B1b8", VerificationResultsDecoder.bitName(0));
+        assertEquals("B1b1", VerificationResultsDecoder.bitName(7));
+        assertEquals("B4b8", VerificationResultsDecoder.bitName(24));
+        assertEquals("B6b1", VerificationResultsDecoder.bitName(47));
+        assertEquals(VerificationFlag.TVR_FLOOR_LIMIT_EXCEEDED,
+                VerificationResultsDecoder.flag(VerificationLayout.TVR, 24));
+        assertNull(VerificationResultsDecoder.flag(VerificationLayout.TVR, 7));
+        assertNull(VerificationResultsDecoder.flag(VerificationLayout.TVR, VerificationResultsDecoder.MAX_BITS));
+    }
+}